@@ -70,6 +70,16 @@ public class AgentConfiguration {
 
     private String waitStrategy = DataEndpointConstants.BLOCKING_WAIT_STRATEGY;
 
+    private int maxInFlightBatches = DataEndpointConstants.DEFAULT_MAX_IN_FLIGHT_BATCHES;
+
+    private String spoolDirectory;
+
+    private int maxSpoolSizeMB = DataEndpointConstants.DEFAULT_MAX_SPOOL_SIZE_MB;
+
+    private int spoolSegmentSizeMB = DataEndpointConstants.DEFAULT_SPOOL_SEGMENT_SIZE_MB;
+
+    private boolean framedTransport;
+
     @XmlElement(name = "Name")
     public String getDataEndpointName() {
         return dataEndpointName;
@@ -276,6 +286,59 @@ public class AgentConfiguration {
         this.waitStrategy = waitStrategy;
     }
 
+    @XmlElement(name = "MaxInFlightBatches")
+    public int getMaxInFlightBatches() {
+        return maxInFlightBatches;
+    }
+
+    public void setMaxInFlightBatches(int maxInFlightBatches) {
+        this.maxInFlightBatches = maxInFlightBatches;
+    }
+
+    @XmlElement(name = "SpoolDirectory")
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public void setSpoolDirectory(String spoolDirectory) {
+        if (spoolDirectory != null && !spoolDirectory.trim().isEmpty()) {
+            this.spoolDirectory = spoolDirectory.trim();
+        } else {
+            this.spoolDirectory = null;
+        }
+    }
+
+    @XmlElement(name = "MaxSpoolSizeMB")
+    public int getMaxSpoolSizeMB() {
+        return maxSpoolSizeMB;
+    }
+
+    public void setMaxSpoolSizeMB(int maxSpoolSizeMB) {
+        this.maxSpoolSizeMB = maxSpoolSizeMB;
+    }
+
+    @XmlElement(name = "SpoolSegmentSizeMB")
+    public int getSpoolSegmentSizeMB() {
+        return spoolSegmentSizeMB;
+    }
+
+    public void setSpoolSegmentSizeMB(int spoolSegmentSizeMB) {
+        this.spoolSegmentSizeMB = spoolSegmentSizeMB;
+    }
+
+    /**
+     * @return true if the Thrift clients need to use the framed transport, which is required by the receivers
+     * running a selector based (non blocking) Thrift server.
+     */
+    @XmlElement(name = "FramedTransport")
+    public boolean isFramedTransport() {
+        return framedTransport;
+    }
+
+    public void setFramedTransport(boolean framedTransport) {
+        this.framedTransport = framedTransport;
+    }
+
     /**
      * Validates the configurations that valid.
      *
@@ -30,16 +30,25 @@ import org.wso2.carbon.databridge.commons.exception.TransportException;
 import org.wso2.carbon.databridge.commons.exception.UndefinedEventTypeException;
 import org.wso2.carbon.databridge.commons.utils.DataBridgeThreadFactory;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Abstract class for DataEndpoint, and this is a main class that needs to be implemented
  * for supporting different transports to DataPublisher. This abstraction provides the additional
  * functionality to handle failover, asynchronous connection to the endpoint, etc.
+ * <p>
+ * Events are collected into reusable batches which are pre-sized for the largest batch size, and the batch
+ * size adapts between the configured batch size and {@link DataEndpointConstants#ADAPTIVE_BATCH_SIZE_FACTOR}
+ * times of it, based on how long the batches take to be sent compared to how long they take to be filled.
  */
 
 public abstract class DataEndpoint {
@@ -52,6 +61,20 @@ public abstract class DataEndpoint {
 
     private int batchSize;
 
+    private int maxBatchSize;
+
+    private int currentBatchSize;
+
+    private long lastDispatchTime;
+
+    private long batchFillTime;
+
+    private volatile long batchSendTime;
+
+    private BlockingQueue<EventBatch> freeBatches;
+
+    private final AtomicInteger inFlightBatches = new AtomicInteger();
+
     private EventPublisherThreadPoolExecutor threadPoolExecutor;
 
     private DataEndpointFailureCallback dataEndpointFailureCallback;
@@ -60,7 +83,7 @@ public abstract class DataEndpoint {
 
     private int maxPoolSize;
 
-    private List<Event> events;
+    private EventBatch events;
 
     private State state;
 
@@ -73,49 +96,167 @@ public abstract class DataEndpoint {
     public DataEndpoint() {
         this.batchSize = DataEndpointConstants.DEFAULT_DATA_AGENT_BATCH_SIZE;
         this.state = State.INITIALIZING;
-        events = new ArrayList<>();
     }
 
+    /**
+     * Events are collected by the event queue consumer, and also by the publisher threads re-sending the
+     * events of a failed batch, hence the current batch is only accessed while holding this lock. Full
+     * batches are swapped out under the lock and sent after releasing it.
+     */
+    private final Object batchLock = new Object();
+
     void collectAndSend(Event event) {
-        events.add(event);
-        if (events.size() >= batchSize) {
-            threadPoolExecutor.submitJobAndSetState(new Thread(new EventPublisher(events)), this);
-            events = new ArrayList<>();
+        EventBatch eventBatch = collect(event);
+        if (eventBatch != null) {
+            publishEvents(eventBatch);
         }
     }
 
     void collectAndSendNow(Event event) {
-        events.add(event);
-        if (events.size() >= batchSize) {
-            publishEventsNow();
+        EventBatch eventBatch = collect(event);
+        if (eventBatch != null) {
+            publishEventsNow(eventBatch);
         }
     }
 
     void flushEvents() {
-        if (events.size() != 0) {
-            threadPoolExecutor.submitJobAndSetState(new Thread(new EventPublisher(events)), this);
-            events = new ArrayList<>();
+        EventBatch eventBatch = swapBatch();
+        if (eventBatch != null) {
+            publishEvents(eventBatch);
         }
     }
 
     void flushEventsNow() {
-        if (events.size() != 0) {
-            publishEventsNow();
+        EventBatch eventBatch = swapBatch();
+        if (eventBatch != null) {
+            publishEventsNow(eventBatch);
+        }
+    }
+
+    /**
+     * Adds the event to the current batch.
+     *
+     * @return the batch to be sent if the batch got full, or null.
+     */
+    private EventBatch collect(Event event) {
+        synchronized (batchLock) {
+            events.add(event);
+            if (events.size() >= currentBatchSize || events.isFull()) {
+                adaptBatchSize();
+                return takeBatch();
+            }
+            return null;
+        }
+    }
+
+    private EventBatch swapBatch() {
+        synchronized (batchLock) {
+            return events.size() != 0 ? takeBatch() : null;
         }
     }
 
-    private void publishEventsNow() {
-        EventPublisher eventPublisher = new EventPublisher(events);
+    private EventBatch takeBatch() {
+        EventBatch eventBatch = events;
+        inFlightBatches.incrementAndGet();
+        events = acquireBatch();
+        return eventBatch;
+    }
+
+    private void publishEvents(EventBatch eventBatch) {
+        threadPoolExecutor.submitJobAndSetState(eventBatch, this);
+    }
+
+    private void publishEventsNow(EventBatch eventBatch) {
         setStateBusy();
         acquireImmediateDispatchSemaphore();
         try {
-            events = new ArrayList<>();
-            eventPublisher.run();
+            eventBatch.run();
         } finally {
             releaseImmediateDispatchSemaphore();
         }
     }
 
+    /**
+     * Sends the events on the calling thread, and unlike the batches of the collected events, the events are
+     * not re-sent through the group when the send fails, so that the caller can keep them until they are sent.
+     *
+     * @param events the events to be sent.
+     * @return true if the events are sent, or dropped as they can never be sent, false if the send failed.
+     */
+    boolean sendNow(List<Event> events) {
+        String sessionId = getDataEndpointConfiguration().getSessionId();
+        try {
+            try {
+                sendEvents(events);
+            } catch (SessionTimeoutException e) {
+                syncConnect(sessionId);
+                sendEvents(events);
+            }
+            return true;
+        } catch (UndefinedEventTypeException e) {
+            log.error("Unable to process this event.", e);
+            return true;
+        } catch (Exception e) {
+            log.error("Unable to send events to the endpoint. ", e);
+            deactivate();
+            return false;
+        }
+    }
+
+    private void sendEvents(List<Event> events) throws DataEndpointException, SessionTimeoutException,
+            UndefinedEventTypeException {
+        Object client = getClient();
+        try {
+            send(client, events);
+        } finally {
+            returnClient(client);
+        }
+    }
+
+    /**
+     * Grows the batch size when sending a batch takes longer than filling one, so that the per batch cost of
+     * the send is shared by more events, and shrinks it back towards the configured batch size when sending
+     * is much faster than filling, to keep the events from waiting in the batch.
+     */
+    private void adaptBatchSize() {
+        long now = System.nanoTime();
+        if (lastDispatchTime != 0) {
+            long fillTime = now - lastDispatchTime;
+            batchFillTime = batchFillTime == 0 ? fillTime : (batchFillTime * 7 + fillTime) / 8;
+            long sendTime = batchSendTime;
+            if (sendTime > batchFillTime && currentBatchSize < maxBatchSize) {
+                currentBatchSize = Math.min(maxBatchSize, currentBatchSize * 2);
+            } else if (sendTime * 4 < batchFillTime && currentBatchSize > batchSize) {
+                currentBatchSize = Math.max(batchSize, currentBatchSize / 2);
+            }
+        }
+        lastDispatchTime = now;
+    }
+
+    /**
+     * Returns the load of the endpoint used for load balancing, which is the expected time for a new batch
+     * to be sent, estimated from the batches that are sent but not completed yet and the average send time.
+     *
+     * @return the load of the endpoint.
+     */
+    long getLoad() {
+        return (inFlightBatches.get() + 1) * Math.max(batchSendTime, 1);
+    }
+
+    private void recordBatchSendTime(long sendTime) {
+        long averageSendTime = batchSendTime;
+        batchSendTime = averageSendTime == 0 ? sendTime : (averageSendTime * 7 + sendTime) / 8;
+    }
+
+    private EventBatch acquireBatch() {
+        EventBatch eventBatch = freeBatches.poll();
+        if (eventBatch == null) {
+            eventBatch = new EventBatch(maxBatchSize);
+        }
+        eventBatch.retain();
+        return eventBatch;
+    }
+
     private void acquireImmediateDispatchSemaphore() {
         boolean acquired = false;
         do {
@@ -170,6 +311,8 @@ public abstract class DataEndpoint {
             TransportException {
         this.transportPool = dataEndpointConfiguration.getTransportPool();
         this.batchSize = dataEndpointConfiguration.getBatchSize();
+        this.currentBatchSize = batchSize;
+        this.maxBatchSize = batchSize * DataEndpointConstants.ADAPTIVE_BATCH_SIZE_FACTOR;
         this.connectionWorker = new DataEndpointConnectionWorker();
         this.connectionWorker.initialize(this, dataEndpointConfiguration);
         this.threadPoolExecutor = new EventPublisherThreadPoolExecutor(dataEndpointConfiguration.getCorePoolSize(),
@@ -178,6 +321,8 @@ public abstract class DataEndpoint {
         this.connectionService = Executors.newSingleThreadExecutor(new DataBridgeThreadFactory("ConnectionService-" +
                 dataEndpointConfiguration.getReceiverURL()));
         this.maxPoolSize = dataEndpointConfiguration.getMaxPoolSize();
+        this.freeBatches = new ArrayBlockingQueue<>(maxPoolSize * 2 + 1);
+        this.events = acquireBatch();
         immediateDispatchSemaphore = new Semaphore(maxPoolSize);
         connect();
     }
@@ -262,23 +407,119 @@ public abstract class DataEndpoint {
         }
     }
 
+    /**
+     * Handles a batch of events whose send failed after {@link #send(Object, List)} returned, which happens
+     * when the transport acknowledges the batches asynchronously. The events are handled the same way as the
+     * events of a failed synchronous send.
+     *
+     * @param events The events of the failed batch.
+     * @param e      The cause of the failure.
+     */
+    protected void handleAsyncSendFailure(List<Event> events, Exception e) {
+        if (e instanceof UndefinedEventTypeException) {
+            log.error("Unable to process this event.", e);
+            return;
+        }
+        if (e instanceof SessionTimeoutException) {
+            log.warn("Session timed out while sending events to " + getDataEndpointConfiguration().getReceiverURL()
+                    + ", reconnecting to the endpoint.");
+            try {
+                connect();
+            } catch (Exception ex) {
+                log.error("Unable to reconnect to the endpoint. ", ex);
+                deactivate();
+            }
+        } else {
+            log.error("Unable to send events to the endpoint. ", e);
+            deactivate();
+        }
+        dataEndpointFailureCallback.tryResendEvents(events);
+    }
+
+    /**
+     * The batch of events given to {@link #send(Object, List)} is reused once the send returns. Transports that
+     * hold on to the events after that, e.g. until they are acknowledged, need to retain the batch and release
+     * it with {@link #releaseEvents(List)} once they are done with it.
+     *
+     * @param events The events given to the send.
+     */
+    protected void retainEvents(List<Event> events) {
+        if (events instanceof EventBatch) {
+            ((EventBatch) events).retain();
+        }
+    }
+
+    /**
+     * Releases a batch of events retained with {@link #retainEvents(List)}.
+     *
+     * @param events The retained events.
+     */
+    protected void releaseEvents(List<Event> events) {
+        if (events instanceof EventBatch) {
+            ((EventBatch) events).release();
+        }
+    }
+
     void registerDataEndpointFailureCallback(DataEndpointFailureCallback callback) {
         dataEndpointFailureCallback = callback;
     }
 
     /**
-     * Event Publisher worker thread to actually sends the events to the endpoint.
+     * Reusable batch of events, which is also the worker that actually sends the events to the endpoint.
+     * A batch is returned to the free batches once it's sent, and it isn't retained by the transport.
      */
-    class EventPublisher implements Runnable {
-        List<Event> events;
+    class EventBatch extends AbstractList<Event> implements RandomAccess, Runnable {
+        private final Event[] events;
+        private final AtomicInteger references = new AtomicInteger();
+        private int size;
 
-        public EventPublisher(List<Event> events) {
-            this.events = events;
+        EventBatch(int capacity) {
+            this.events = new Event[capacity];
+        }
+
+        @Override
+        public boolean add(Event event) {
+            if (size == events.length) {
+                throw new IllegalStateException("Event batch is full, capacity: " + events.length);
+            }
+            events[size++] = event;
+            return true;
+        }
+
+        @Override
+        public Event get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return events[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        boolean isFull() {
+            return size == events.length;
+        }
+
+        void retain() {
+            references.incrementAndGet();
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                inFlightBatches.decrementAndGet();
+                Arrays.fill(events, 0, size, null);
+                size = 0;
+                freeBatches.offer(this);
+            }
         }
 
         @Override
         public void run() {
             String sessionId = getDataEndpointConfiguration().getSessionId();
+            long startTime = System.nanoTime();
             try {
                 publish();
             } catch (SessionTimeoutException e) {
@@ -312,6 +553,8 @@ public abstract class DataEndpoint {
                 if (state.equals(State.BUSY)) {
                     activate();
                 }
+                recordBatchSendTime(System.nanoTime() - startTime);
+                release();
                 if (log.isDebugEnabled()) {
                     log.debug("Current threads count is : " + threadPoolExecutor.getActiveCount() + ", maxPoolSize is : " +
                             maxPoolSize + ", therefore state is now : " + getState() + "at time : " + System.nanoTime());
@@ -321,16 +564,11 @@ public abstract class DataEndpoint {
 
         private void handleFailedEvents() {
             deactivate();
-            dataEndpointFailureCallback.tryResendEvents(events);
+            dataEndpointFailureCallback.tryResendEvents(this);
         }
 
         private void publish() throws DataEndpointException, SessionTimeoutException, UndefinedEventTypeException {
-            Object client = getClient();
-            try {
-                send(client, this.events);
-            } finally {
-                returnClient(client);
-            }
+            sendEvents(this);
         }
     }
 
@@ -33,11 +33,13 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.databridge.agent.DataEndpointAgent;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointConfigurationException;
 import org.wso2.carbon.databridge.agent.exception.EventQueueFullException;
+import org.wso2.carbon.databridge.agent.spool.EventSpool;
 import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
 import org.wso2.carbon.databridge.agent.util.DataPublisherUtil;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.utils.DataBridgeThreadFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.Socket;
 import java.net.UnknownHostException;
@@ -46,6 +48,7 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -53,6 +56,11 @@ import java.util.concurrent.atomic.AtomicInteger;
  * This class holds the endpoints associated within a group. Also it has a queue
  * to hold the list of events that needs to be processed by the endpoints with
  * provided the load balancing, or failover configuration.
+ * <p>
+ * If a spool directory is configured for the agent, the events which cannot be queued or resent while the
+ * receivers are unreachable are written to a disk backed {@link EventSpool}, and they are replayed to the
+ * endpoints once an endpoint accepts events again. Replayed events are removed from the spool only once
+ * they are sent.
  */
 public class DataEndpointGroup implements DataEndpointFailureCallback {
     private static final Log log = LogFactory.getLog(DataEndpointGroup.class);
@@ -77,6 +85,18 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
 
     private final String disruptorWaitStrategy;
 
+    private final String agentName;
+
+    private String spoolDirectory;
+
+    private final long maxSpoolSize;
+
+    private final int spoolSegmentSize;
+
+    private volatile EventSpool eventSpool;
+
+    private ScheduledExecutorService spoolReplayService;
+
     public enum HAType {
         FAILOVER, LOADBALANCE
     }
@@ -91,6 +111,17 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
         this.eventQueue = new EventQueue(agent.getAgentConfiguration().getQueueSize());
         this.reconnectionService.scheduleAtFixedRate(new ReconnectionTask(), reconnectionInterval,
                 reconnectionInterval, TimeUnit.SECONDS);
+        this.agentName = agent.getAgentConfiguration().getDataEndpointName();
+        this.spoolDirectory = agent.getAgentConfiguration().getSpoolDirectory();
+        this.maxSpoolSize = agent.getAgentConfiguration().getMaxSpoolSizeMB() * 1024L * 1024L;
+        this.spoolSegmentSize = agent.getAgentConfiguration().getSpoolSegmentSizeMB() * 1024 * 1024;
+        if (spoolDirectory != null) {
+            this.spoolReplayService = Executors.newSingleThreadScheduledExecutor(
+                    new DataBridgeThreadFactory("SpoolReplayService"));
+            this.spoolReplayService.scheduleWithFixedDelay(new SpoolReplayTask(),
+                    DataEndpointConstants.SPOOL_REPLAY_INTERVAL_MS, DataEndpointConstants.SPOOL_REPLAY_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+        }
         currentDataPublisherIndex.set(START_INDEX);
     }
 
@@ -146,7 +177,9 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
                 bufferedEvent.setEvent(event);
                 this.ringBuffer.publish(sequence);
             } catch (InsufficientCapacityException e) {
-                throw new EventQueueFullException("Cannot send events because the event queue is full", e);
+                if (!spool(event)) {
+                    throw new EventQueueFullException("Cannot send events because the event queue is full", e);
+                }
             }
         }
 
@@ -162,6 +195,9 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
                     break;
                 } catch (InsufficientCapacityException ex) {
                     if (stopTime <= System.currentTimeMillis()) {
+                        if (spool(event)) {
+                            break;
+                        }
                         throw new EventQueueFullException("Cannot send events because the event queue is full", ex);
                     }
                     try {
@@ -182,6 +218,9 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
                     this.ringBuffer.publish(sequence);
                     return;
                 } catch (InsufficientCapacityException ex) {
+                    if (!isAcceptingEndpointExists() && spool(event)) {
+                        return;
+                    }
                     try {
                         Thread.sleep(2);
                     } catch (InterruptedException ignored) {
@@ -202,6 +241,7 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
         public void onEvent(WrappedEventFactory.WrappedEvent wrappedEvent, long sequence, boolean endOfBatch) {
             DataEndpoint endpoint = getDataEndpoint(true);
             Event event = wrappedEvent.getEvent();
+            wrappedEvent.setEvent(null);
             if (endpoint != null) {
                 endpoint.collectAndSend(event);
                 if (endOfBatch) {
@@ -223,6 +263,7 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
             try {
                 DataEndpoint endpoint = getDataEndpoint(true);
                 Event event = wrappedEvent.getEvent();
+                wrappedEvent.setEvent(null);
                 if (endpoint != null) {
                     endpoint.collectAndSendNow(event);
                     if (endOfBatch) {
@@ -242,7 +283,7 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
 
     private void flushAllDataEndpoints() {
         for (DataEndpoint dataEndpoint : dataEndpoints) {
-            if (dataEndpoint.getState().equals(DataEndpoint.State.ACTIVE)) {
+            if (isAcceptingEvents(dataEndpoint)) {
                 dataEndpoint.flushEvents();
             }
         }
@@ -250,7 +291,7 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
 
     private void flushAllDataEndpointsNow() {
         for (DataEndpoint dataEndpoint : dataEndpoints) {
-            if (dataEndpoint.getState().equals(DataEndpoint.State.ACTIVE)) {
+            if (isAcceptingEvents(dataEndpoint)) {
                 dataEndpoint.flushEventsNow();
             }
         }
@@ -268,6 +309,10 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
     private DataEndpoint getDataEndpoint(boolean isBusyWait) {
         int startIndex;
         if (haType.equals(HAType.LOADBALANCE)) {
+            DataEndpoint dataEndpoint = getLeastLoadedDataEndpoint();
+            if (dataEndpoint != null) {
+                return dataEndpoint;
+            }
             startIndex = getDataPublisherIndex();
         } else {
             startIndex = START_INDEX;
@@ -337,17 +382,49 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
         return false;
     }
 
-    private synchronized int getDataPublisherIndex() {
-        int index = currentDataPublisherIndex.getAndIncrement();
-        if (index == maximumDataPublisherIndex.get() - 1) {
-            currentDataPublisherIndex.set(START_INDEX);
+    private int getDataPublisherIndex() {
+        return (currentDataPublisherIndex.getAndIncrement() & Integer.MAX_VALUE) % maximumDataPublisherIndex.get();
+    }
+
+    /**
+     * Picks the endpoint for load balancing with the power of two choices, the next endpoint in round robin
+     * order is compared with a randomly picked one, and the one with the lower load is used. The load of an
+     * endpoint grows with its outstanding batches and its average send time, hence a slow endpoint receives
+     * fewer events without waiting for it to become busy.
+     *
+     * @return the less loaded endpoint among the two choices, or null if neither of them can accept events.
+     */
+    private DataEndpoint getLeastLoadedDataEndpoint() {
+        int endpointCount = maximumDataPublisherIndex.get();
+        int index = getDataPublisherIndex();
+        DataEndpoint dataEndpoint = dataEndpoints.get(index);
+        boolean available = isAcceptingEvents(dataEndpoint);
+        if (endpointCount > 1) {
+            int otherIndex = (index + 1 + ThreadLocalRandom.current().nextInt(endpointCount - 1)) % endpointCount;
+            DataEndpoint otherDataEndpoint = dataEndpoints.get(otherIndex);
+            if (isAcceptingEvents(otherDataEndpoint) &&
+                    (!available || otherDataEndpoint.getLoad() < dataEndpoint.getLoad())) {
+                return otherDataEndpoint;
+            }
         }
-        return index;
+        return available ? dataEndpoint : null;
+    }
+
+    /**
+     * Busy endpoints still accept events, as the dispatch of a batch to a busy endpoint waits for its publisher
+     * pool instead of spinning, and their load reflects the outstanding batches when load balancing.
+     */
+    private boolean isAcceptingEvents(DataEndpoint dataEndpoint) {
+        DataEndpoint.State state = dataEndpoint.getState();
+        return state == DataEndpoint.State.ACTIVE || state == DataEndpoint.State.BUSY;
     }
 
     public void tryResendEvents(List<Event> events) {
         List<Event> unsuccessfulEvents = trySendActiveEndpoints(events);
         for (Event event : unsuccessfulEvents) {
+            if (spool(event)) {
+                continue;
+            }
             try {
                 eventQueue.tryPut(event);
             } catch (EventQueueFullException e) {
@@ -356,6 +433,83 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
         }
     }
 
+    private boolean spool(Event event) {
+        EventSpool spool = getEventSpool();
+        return spool != null && spool.append(event);
+    }
+
+    /**
+     * Opens the event spool of the group when it's first needed, as the spool directory of the group is named
+     * after its receiver URLs, which are known only after the endpoints are added.
+     */
+    private EventSpool getEventSpool() {
+        if (eventSpool == null && spoolDirectory != null) {
+            synchronized (this) {
+                if (eventSpool == null && spoolDirectory != null) {
+                    StringBuilder receiverURLs = new StringBuilder();
+                    for (DataEndpoint dataEndpoint : dataEndpoints) {
+                        receiverURLs.append(dataEndpoint.getDataEndpointConfiguration().getReceiverURL());
+                        receiverURLs.append(DataEndpointConstants.SEPARATOR);
+                    }
+                    File directory = new File(spoolDirectory, agentName + "-" +
+                            Integer.toHexString(receiverURLs.toString().hashCode()));
+                    try {
+                        eventSpool = new EventSpool(directory, maxSpoolSize, spoolSegmentSize);
+                    } catch (IOException e) {
+                        log.error("Unable to open the event spool at " + directory.getAbsolutePath() +
+                                ", events will not be spooled.", e);
+                        spoolDirectory = null;
+                    }
+                }
+            }
+        }
+        return eventSpool;
+    }
+
+    private boolean isAcceptingEndpointExists() {
+        for (int i = START_INDEX; i < maximumDataPublisherIndex.get(); i++) {
+            if (isAcceptingEvents(dataEndpoints.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replays the spooled events to the endpoints while at least one endpoint accepts events. Each batch of
+     * spooled events is committed once it's sent, and a batch which cannot be sent is left in the spool to be
+     * replayed again.
+     */
+    private class SpoolReplayTask implements Runnable {
+        public void run() {
+            try {
+                if (!isAcceptingEndpointExists()) {
+                    return;
+                }
+                EventSpool spool = getEventSpool();
+                if (spool == null) {
+                    return;
+                }
+                List<Event> events = spool.read(DataEndpointConstants.SPOOL_REPLAY_BATCH_SIZE);
+                while (!events.isEmpty()) {
+                    DataEndpoint endpoint = getDataEndpoint(false);
+                    if (endpoint == null || !endpoint.sendNow(events)) {
+                        spool.rewind();
+                        return;
+                    }
+                    spool.commit();
+                    events = spool.read(DataEndpointConstants.SPOOL_REPLAY_BATCH_SIZE);
+                }
+            } catch (Throwable t) {
+                log.error("Unexpected error while replaying the spooled events: " + t.getMessage(), t);
+                EventSpool spool = eventSpool;
+                if (spool != null) {
+                    spool.rewind();
+                }
+            }
+        }
+    }
+
     private List<Event> trySendActiveEndpoints(List<Event> events) {
         ArrayList<Event> unsuccessfulEvents = new ArrayList<>();
         for (Event event : events) {
@@ -440,9 +594,15 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
 
     public void shutdown() {
         reconnectionService.shutdownNow();
+        if (spoolReplayService != null) {
+            spoolReplayService.shutdownNow();
+        }
         eventQueue.shutdown();
         for (DataEndpoint dataEndpoint : dataEndpoints) {
             dataEndpoint.shutdown();
         }
+        if (eventSpool != null) {
+            eventSpool.close();
+        }
     }
 }
@@ -48,12 +48,12 @@ public class EventPublisherThreadPoolExecutor extends ThreadPoolExecutor {
         super.execute(task);
     }
 
-    public void submitJobAndSetState(Thread thread, DataEndpoint dataEndpoint) {
+    public void submitJobAndSetState(Runnable job, DataEndpoint dataEndpoint) {
         int permits = semaphore.availablePermits();
         if (permits <= 1){
             dataEndpoint.setState(DataEndpoint.State.BUSY);
         }
-        submit(thread);
+        execute(job);
     }
 
     @Override
@@ -0,0 +1,87 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.binary;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Reads the pipelined acknowledgements of a connection. The reader blocks on the connection while the client has
+ * batches in flight, bounded by the socket timeout, rather than polling for the acknowledgements that are already
+ * buffered, as those cannot be detected for SSL connections until a blocking read decrypts them. While the client
+ * has no batches in flight, the reader waits on the lock of the client, so that the other responses of the
+ * connection are read by the thread that sent the request. The reader stops once the client is closed.
+ */
+class AcknowledgementReader implements Runnable {
+    private static Log log = LogFactory.getLog(AcknowledgementReader.class);
+
+    private final BinaryClient client;
+
+    AcknowledgementReader(BinaryClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (awaitInFlightBatches()) {
+                if (!BinaryEventSender.readAcknowledgement(client)) {
+                    checkAckTimeout();
+                }
+            }
+        } catch (IOException e) {
+            BinaryEventSender.failInFlightBatches(client, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Error while reading the acknowledgements from " + client, e);
+            BinaryEventSender.failInFlightBatches(client, e);
+        }
+    }
+
+    /**
+     * Waits until the client has batches in flight.
+     *
+     * @return true if the client has batches in flight, false if the client is closed.
+     */
+    private boolean awaitInFlightBatches() throws InterruptedException {
+        synchronized (client) {
+            while (client.getInFlightBatchCount() == 0) {
+                if (client.getSocket().isClosed()) {
+                    return false;
+                }
+                client.wait();
+            }
+            return true;
+        }
+    }
+
+    private void checkAckTimeout() throws SocketTimeoutException {
+        synchronized (client) {
+            long oldestSentTime = client.getOldestInFlightBatchSentTime();
+            if (client.getAckTimeout() > 0 && oldestSentTime != -1 &&
+                    System.currentTimeMillis() - oldestSentTime > client.getAckTimeout()) {
+                throw new SocketTimeoutException(client.getInFlightBatchCount() + " batches are not " +
+                        "acknowledged by the receiver within " + client.getAckTimeout() + " ms");
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.binary;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Binary transport client that is pooled by the Binary client pool factories. It holds the socket connected
+ * to the receiver along with its streams, and a buffer which is reused to encode every message sent over
+ * the connection, so that a message can be written to the socket with a single write.
+ * <p>
+ * When pipelined acknowledgements are used, the client also holds the batches that are sent over the connection
+ * but not acknowledged yet. The pool hands the client to one thread at a time, but the acknowledgements are read
+ * by the {@link AcknowledgementReader} of the connection, also while the client is idle in the pool, hence the
+ * in-flight batches are only accessed while holding the lock of the client. The lock is notified whenever
+ * in-flight batches are added or completed, or the client is closed.
+ */
+public class BinaryClient {
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    private final Socket socket;
+    private final OutputStream outputStream;
+    private final InputStream inputStream;
+    private final int ackTimeout;
+    private ByteBuffer buffer;
+    private final Deque<InFlightBatch> inFlightBatches = new ArrayDeque<>();
+    private long nextSequence;
+    private boolean pipelinedAcksAccepted;
+    private boolean acknowledgementReaderStarted;
+
+    public BinaryClient(Socket socket) throws IOException {
+        this.socket = socket;
+        this.outputStream = socket.getOutputStream();
+        this.inputStream = new BufferedInputStream(socket.getInputStream());
+        this.ackTimeout = socket.getSoTimeout();
+        this.buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    }
+
+    public Socket getSocket() {
+        return socket;
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Clears the encoding buffer and makes sure it can hold at least the given number of bytes.
+     *
+     * @param capacity the number of bytes that are going to be written.
+     * @return the cleared encoding buffer.
+     */
+    ByteBuffer getBuffer(int capacity) {
+        buffer.clear();
+        return ensureCapacity(capacity);
+    }
+
+    /**
+     * Makes sure the encoding buffer can accept the given number of additional bytes, the buffer is grown
+     * by copying the already encoded bytes if it cannot.
+     *
+     * @param additionalBytes the number of bytes that are going to be written.
+     * @return the encoding buffer, which needs to be used for further writes.
+     */
+    ByteBuffer ensureCapacity(int additionalBytes) {
+        if (buffer.remaining() < additionalBytes) {
+            int newCapacity = Math.max(buffer.capacity() * 2, buffer.position() + additionalBytes);
+            ByteBuffer expandedBuffer = ByteBuffer.allocate(newCapacity);
+            buffer.flip();
+            expandedBuffer.put(buffer);
+            buffer = expandedBuffer;
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes the bytes encoded in the buffer to the socket.
+     */
+    void send() throws IOException {
+        outputStream.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+        outputStream.flush();
+    }
+
+    boolean isPipelinedAcksAccepted() {
+        return pipelinedAcksAccepted;
+    }
+
+    void setPipelinedAcksAccepted(boolean pipelinedAcksAccepted) {
+        this.pipelinedAcksAccepted = pipelinedAcksAccepted;
+    }
+
+    /**
+     * @return the time in milliseconds to wait for the acknowledgement of a batch, which is the socket timeout of
+     * the connection, 0 to wait forever.
+     */
+    int getAckTimeout() {
+        return ackTimeout;
+    }
+
+    /**
+     * Marks the acknowledgement reader of the connection as started.
+     *
+     * @return true if the reader needs to be started, false if it's already started.
+     */
+    synchronized boolean startAcknowledgementReader() {
+        if (acknowledgementReaderStarted) {
+            return false;
+        }
+        acknowledgementReaderStarted = true;
+        return true;
+    }
+
+    long nextSequence() {
+        return nextSequence++;
+    }
+
+    void addInFlightBatch(InFlightBatch inFlightBatch) {
+        inFlightBatches.add(inFlightBatch);
+        notifyAll();
+    }
+
+    int getInFlightBatchCount() {
+        return inFlightBatches.size();
+    }
+
+    /**
+     * @return the time at which the oldest in-flight batch was sent, or -1 if there are no in-flight batches.
+     */
+    long getOldestInFlightBatchSentTime() {
+        InFlightBatch inFlightBatch = inFlightBatches.peek();
+        return inFlightBatch != null ? inFlightBatch.getSentTime() : -1;
+    }
+
+    /**
+     * Completes the in-flight batches up to and including the given sequence.
+     *
+     * @param sequence the sequence acknowledged by the receiver.
+     */
+    void acknowledge(long sequence) {
+        while (!inFlightBatches.isEmpty() && inFlightBatches.peek().getSequence() <= sequence) {
+            inFlightBatches.poll().complete();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Removes the in-flight batch of the given sequence that was failed by the receiver, the batches sent before
+     * it are implicitly acknowledged. The returned batch needs to be failed after releasing the lock of the client.
+     *
+     * @param sequence the sequence that was failed by the receiver.
+     * @return the failed batch, or null if it's not in flight.
+     */
+    InFlightBatch fail(long sequence) {
+        acknowledge(sequence - 1);
+        if (!inFlightBatches.isEmpty() && inFlightBatches.peek().getSequence() == sequence) {
+            return inFlightBatches.poll();
+        }
+        return null;
+    }
+
+    /**
+     * Removes all the in-flight batches and closes the socket, as the acknowledgements of the batches cannot be
+     * received anymore. The returned batches need to be failed after releasing the lock of the client.
+     *
+     * @return the removed batches.
+     */
+    List<InFlightBatch> failInFlightBatches() {
+        close();
+        List<InFlightBatch> failedBatches = new ArrayList<>(inFlightBatches);
+        inFlightBatches.clear();
+        return failedBatches;
+    }
+
+    /**
+     * Closes the socket, and wakes up the threads waiting on the client, including the acknowledgement reader.
+     */
+    synchronized void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        notifyAll();
+    }
+
+    @Override
+    public String toString() {
+        return socket.getRemoteSocketAddress().toString();
+    }
+}
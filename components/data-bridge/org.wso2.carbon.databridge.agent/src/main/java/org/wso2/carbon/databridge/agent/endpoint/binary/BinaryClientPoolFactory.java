@@ -45,7 +45,7 @@ public class BinaryClientPoolFactory extends AbstractClientPoolFactory {
             try {
                 Socket socket =  new Socket(hostName, port);
                 socket.setSoTimeout(timeout);
-                return socket;
+                return new BinaryClient(socket);
             } catch (IOException e) {
                 throw new DataEndpointException("Error while opening socket to " + hostName + ":" + port + ". " +
                         e.getMessage(), e);
@@ -58,18 +58,14 @@ public class BinaryClientPoolFactory extends AbstractClientPoolFactory {
 
     @Override
     public boolean validateClient(Object client) {
-        return ((Socket) client).isConnected();
+        Socket socket = ((BinaryClient) client).getSocket();
+        return socket.isConnected() && !socket.isClosed();
     }
 
     @Override
     public void terminateClient(Object client) {
-        Socket socket = null;
-        try {
-            socket = (Socket) client;
-            socket.close();
-        } catch (IOException e) {
-            log.warn("Cannot close the socket successfully from " + socket.getLocalAddress().getHostAddress()
-                    + ":" + socket.getPort());
-        }
+        BinaryClient binaryClient = (BinaryClient) client;
+        BinaryEventSender.completeInFlightBatches(binaryClient);
+        binaryClient.close();
     }
 }
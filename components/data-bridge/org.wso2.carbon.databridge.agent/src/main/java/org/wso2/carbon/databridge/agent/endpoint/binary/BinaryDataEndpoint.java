@@ -17,51 +17,106 @@
 */
 package org.wso2.carbon.databridge.agent.endpoint.binary;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.databridge.agent.AgentHolder;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
 import org.wso2.carbon.databridge.agent.endpoint.DataEndpoint;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointAuthenticationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
+import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.exception.SessionTimeoutException;
 import org.wso2.carbon.databridge.commons.exception.UndefinedEventTypeException;
+import org.wso2.carbon.databridge.commons.utils.DataBridgeThreadFactory;
 
-import java.net.Socket;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender.*;
 
 /**
  * This class is Binary transport implementation for the Data Endpoint.
+ * <p>
+ * If the receiver accepts pipelined acknowledgements at login, the batches are sent as sequenced publish
+ * messages without waiting for a response, and up to the configured number of batches can be in flight per
+ * connection. The receiver acknowledges them cumulatively, and the acknowledgements are read by an
+ * {@link AcknowledgementReader} per connection, so that the batches are completed even when no more batches are
+ * sent over their connection. The batches which are not acknowledged within the socket timeout are failed. As the
+ * receiver ends the session of all the connections at logout, the in-flight batches are completed before logging out.
+ * <p>
+ * Failed batches are resent through the failure callback of the endpoint on a separate thread, as resending may
+ * reconnect and block until a publisher thread is available, which must not hold up the acknowledgement readers
+ * or the publisher threads waiting for acknowledgements.
  */
 public class BinaryDataEndpoint extends DataEndpoint {
+    private static Log log = LogFactory.getLog(BinaryDataEndpoint.class);
+    private static final int FAILED_BATCH_HANDLER_SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private volatile boolean pipelinedAcks;
+
+    private volatile int maxInFlightBatches = DataEndpointConstants.DEFAULT_MAX_IN_FLIGHT_BATCHES;
+
+    private final Set<BinaryClient> pipelinedClients =
+            Collections.newSetFromMap(new ConcurrentHashMap<BinaryClient, Boolean>());
+
+    private ExecutorService acknowledgementReaders;
+
+    private ExecutorService failedBatchHandler;
 
     @Override
     protected String login(Object client, String userName, String password) throws DataEndpointAuthenticationException {
-        Socket socket = (Socket) client;
+        BinaryClient binaryClient = (BinaryClient) client;
         try {
-            sendBinaryLoginMessage(socket, userName, password);
-            return processResponse(socket);
+            AgentConfiguration agentConfiguration = AgentHolder.getInstance().getDataEndpointAgent(
+                    DataEndpointConstants.BINARY_DATA_AGENT_TYPE).getAgentConfiguration();
+            maxInFlightBatches = agentConfiguration.getMaxInFlightBatches();
+            sendBinaryLoginMessage(binaryClient, userName, password, maxInFlightBatches > 1);
+            String sessionId = processResponse(binaryClient);
+            pipelinedAcks = binaryClient.isPipelinedAcksAccepted();
+            if (pipelinedAcks) {
+                startPipelining();
+            }
+            return sessionId;
         } catch (Exception e) {
             if (e instanceof DataEndpointAuthenticationException) {
                 throw (DataEndpointAuthenticationException) e;
             } else {
                 throw new DataEndpointAuthenticationException("Error while trying to login to data receiver :"
-                        + socket.getRemoteSocketAddress().toString(), e);
+                        + binaryClient.toString(), e);
             }
         }
     }
 
     @Override
     protected void logout(Object client, String sessionId) throws DataEndpointAuthenticationException {
-        Socket socket = (Socket) client;
+        BinaryClient binaryClient = (BinaryClient) client;
         try {
-            sendBinaryLogoutMessage(socket, sessionId);
-            processResponse(socket);
+            // The receiver ends the session of all the connections of the endpoint at logout, hence the batches in
+            // flight on any of them are completed first.
+            for (BinaryClient pipelinedClient : pipelinedClients) {
+                completeInFlightBatches(pipelinedClient);
+            }
+            // The acknowledgement reader doesn't read from the connection once no batches are in flight, hence the
+            // response is read under the lock of the client, so that the reader cannot start reading before it.
+            completeInFlightBatches(binaryClient);
+            synchronized (binaryClient) {
+                sendBinaryLogoutMessage(binaryClient, sessionId);
+                processResponse(binaryClient);
+            }
         } catch (Exception e) {
             if (e instanceof DataEndpointAuthenticationException) {
                 throw (DataEndpointAuthenticationException) e;
             } else {
                 throw new DataEndpointAuthenticationException("Error while trying to logout to data receiver :"
-                        + socket.getRemoteSocketAddress().toString(), e);
+                        + binaryClient.toString(), e);
             }
         }
     }
@@ -69,17 +124,135 @@ public class BinaryDataEndpoint extends DataEndpoint {
     @Override
     protected void send(Object client, List<Event> events) throws DataEndpointException,
             SessionTimeoutException, UndefinedEventTypeException {
-        Socket socket = (Socket) client;
+        BinaryClient binaryClient = (BinaryClient) client;
         String sessionId = getDataEndpointConfiguration().getSessionId();
         try {
-            sendBinaryPublishMessage(socket, events, sessionId);
-            processResponse(socket);
+            if (pipelinedAcks) {
+                sendPipelined(binaryClient, events, sessionId);
+            } else {
+                sendBinaryPublishMessage(binaryClient, events, sessionId);
+                processResponse(binaryClient);
+            }
         } catch (Exception e) {
             if (e instanceof DataEndpointException) {
                 throw (DataEndpointException) e;
             } else {
                 throw new DataEndpointException("Error while trying to publish events to data receiver :"
-                        + socket.getRemoteSocketAddress().toString(), e);
+                        + binaryClient.toString(), e);
+            }
+        }
+    }
+
+    private void sendPipelined(BinaryClient binaryClient, List<Event> events, String sessionId) throws IOException {
+        boolean sent = false;
+        try {
+            synchronized (binaryClient) {
+                long sequence = binaryClient.nextSequence();
+                sendBinarySequencedPublishMessage(binaryClient, events, sessionId, sequence);
+                sent = true;
+                retainEvents(events);
+                binaryClient.addInFlightBatch(new InFlightBatch(sequence, events, this));
+                if (binaryClient.startAcknowledgementReader()) {
+                    startAcknowledgementReader(binaryClient);
+                }
+                awaitAcknowledgements(binaryClient, maxInFlightBatches);
+            }
+        } catch (IOException e) {
+            // The in-flight batches are failed after releasing the lock of the client. The current batch is handled
+            // by the caller if it could not be sent.
+            failInFlightBatches(binaryClient, e);
+            if (!sent) {
+                throw e;
+            }
+        }
+    }
+
+    private synchronized void startPipelining() {
+        if (acknowledgementReaders == null) {
+            String receiverURL = getDataEndpointConfiguration().getReceiverURL();
+            acknowledgementReaders = Executors.newCachedThreadPool(new DataBridgeThreadFactory(
+                    "AcknowledgementReader-" + receiverURL));
+            failedBatchHandler = Executors.newSingleThreadExecutor(new DataBridgeThreadFactory(
+                    "FailedBatchHandler-" + receiverURL));
+        }
+    }
+
+    private synchronized void startAcknowledgementReader(BinaryClient binaryClient) {
+        // The clients terminated by the pool are closed, and have no batches left to complete
+        for (BinaryClient pipelinedClient : pipelinedClients) {
+            if (pipelinedClient.getSocket().isClosed()) {
+                pipelinedClients.remove(pipelinedClient);
+            }
+        }
+        pipelinedClients.add(binaryClient);
+        AcknowledgementReader acknowledgementReader = new AcknowledgementReader(binaryClient);
+        if (acknowledgementReaders != null) {
+            try {
+                acknowledgementReaders.execute(acknowledgementReader);
+                return;
+            } catch (RejectedExecutionException ignored) {
+                // Shutting down, the in-flight batches are completed when the client is terminated
+            }
+        }
+        log.warn("Cannot start the acknowledgement reader of " + binaryClient);
+    }
+
+    void completeBatch(List<Event> events) {
+        releaseEvents(events);
+    }
+
+    /**
+     * Handles a failed batch on the failed batch handler of the endpoint, as the failure handling may reconnect and
+     * block until the events are accepted for resending. The batches failed while shutting down are handled on the
+     * calling thread, which never holds the lock of a client.
+     */
+    void handleFailedBatch(final List<Event> events, final Exception e) {
+        Runnable failedBatchTask = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    handleAsyncSendFailure(events, e);
+                } finally {
+                    releaseEvents(events);
+                }
+            }
+        };
+        synchronized (this) {
+            if (failedBatchHandler != null) {
+                try {
+                    failedBatchHandler.execute(failedBatchTask);
+                    return;
+                } catch (RejectedExecutionException ignored) {
+                    // Shutting down
+                }
+            }
+        }
+        failedBatchTask.run();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        ExecutorService readers;
+        ExecutorService handler;
+        synchronized (this) {
+            readers = acknowledgementReaders;
+            handler = failedBatchHandler;
+            acknowledgementReaders = null;
+            failedBatchHandler = null;
+        }
+        if (readers != null) {
+            readers.shutdownNow();
+        }
+        if (handler != null) {
+            handler.shutdown();
+            try {
+                if (!handler.awaitTermination(FAILED_BATCH_HANDLER_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("Timed out waiting for the failed batches of " +
+                            getDataEndpointConfiguration().getReceiverURL() + " to be handled");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
     }
@@ -20,102 +20,129 @@ package org.wso2.carbon.databridge.agent.endpoint.binary;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.binary.BinaryMessageConstants;
 
-import java.io.*;
-import java.net.Socket;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.assignData;
 import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.getSize;
+import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.getStringSize;
 import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.loadData;
+import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.putString;
 
 /**
  * This is a Util class which does the Binary message transformation for publish, login, logout operations.
+ * The messages are encoded into the reusable buffer of the {@link BinaryClient} and written with a single write.
  */
 public class BinaryEventSender {
-    public static void sendBinaryLoginMessage(Socket socket, String userName, String password) throws IOException {
-        ByteBuffer buf = ByteBuffer.allocate(13 + userName.length() + password.length());
+    public static void sendBinaryLoginMessage(BinaryClient client, String userName, String password)
+            throws IOException {
+        sendBinaryLoginMessage(client, userName, password, false);
+    }
+
+    /**
+     * Sends the login message, and requests pipelined acknowledgements for the session if needed. Receivers
+     * which don't support pipelined acknowledgements ignore the request and respond with a plain login response.
+     */
+    public static void sendBinaryLoginMessage(BinaryClient client, String userName, String password,
+                                              boolean pipelinedAcks) throws IOException {
+        int userNameSize = getStringSize(userName);
+        int passwordSize = getStringSize(password);
+        int optionsSize = pipelinedAcks ? 4 : 0;
+        ByteBuffer buf = client.getBuffer(13 + userNameSize + passwordSize + optionsSize);
         buf.put((byte) 0);
-        buf.putInt(8 + userName.length() + password.length());
-        buf.putInt(userName.length());
-        buf.putInt(password.length());
-        buf.put(userName.getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
-        buf.put(password.getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
-
-        OutputStream outputStream = new BufferedOutputStream(socket.getOutputStream());
-        outputStream.write(buf.array());
-        outputStream.flush();
+        buf.putInt(8 + userNameSize + passwordSize + optionsSize);
+        buf.putInt(userNameSize);
+        buf.putInt(passwordSize);
+        putString(buf, userName);
+        putString(buf, password);
+        if (pipelinedAcks) {
+            buf.putInt(BinaryMessageConstants.LOGIN_OPTION_PIPELINED_ACKS);
+        }
+        client.send();
     }
 
-    public static void sendBinaryLogoutMessage(Socket socket, String sessionId) throws IOException {
-        ByteBuffer buf = ByteBuffer.allocate(9 + sessionId.length());
+    public static void sendBinaryLogoutMessage(BinaryClient client, String sessionId) throws IOException {
+        int sessionIdSize = getStringSize(sessionId);
+        ByteBuffer buf = client.getBuffer(9 + sessionIdSize);
         buf.put((byte) 1);
-        buf.putInt(4 + sessionId.length());
-        buf.putInt(sessionId.length());
-        buf.put(sessionId.getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
+        buf.putInt(4 + sessionIdSize);
+        buf.putInt(sessionIdSize);
+        putString(buf, sessionId);
+        client.send();
+    }
 
-        OutputStream outputStream = new BufferedOutputStream(socket.getOutputStream());
-        outputStream.write(buf.array());
-        outputStream.flush();
+    public static void sendBinaryPublishMessage(BinaryClient client, List<Event> events, String sessionId)
+            throws IOException {
+        ByteBuffer buf = encodePublishMessage(client, 2, events, sessionId);
+        buf.putInt(1, buf.position() - 5);
+        client.send();
     }
 
-    public static void sendBinaryPublishMessage(Socket socket, List<Event> events, String sessionId) throws IOException {
-        int messageSize = 8 + sessionId.length();
-        List<byte[]> bytes = new ArrayList<byte[]>();
+    /**
+     * Sends a publish message which carries the given sequence after the events, and is acknowledged
+     * asynchronously by the receiver.
+     */
+    public static void sendBinarySequencedPublishMessage(BinaryClient client, List<Event> events, String sessionId,
+                                                         long sequence) throws IOException {
+        ByteBuffer buf = encodePublishMessage(client, BinaryMessageConstants.SEQUENCED_PUBLISH_MESSAGE, events,
+                sessionId);
+        buf = client.ensureCapacity(8);
+        buf.putLong(sequence);
+        buf.putInt(1, buf.position() - 5);
+        client.send();
+    }
 
-        for (Event event : events) {
+    private static ByteBuffer encodePublishMessage(BinaryClient client, int messageType, List<Event> events,
+                                                   String sessionId) throws IOException {
+        int sessionIdSize = getStringSize(sessionId);
+        ByteBuffer buf = client.getBuffer(13 + sessionIdSize);
+        buf.put((byte) messageType);  //1
+        buf.putInt(0); //4, message size is set after encoding the events
+        buf.putInt(sessionIdSize); //4
+        putString(buf, sessionId);
+        buf.putInt(events.size()); //4
 
+        for (Event event : events) {
             int eventSize = getEventSize(event);
-            messageSize += eventSize + 4;
-            ByteBuffer eventDataBuffer = ByteBuffer.allocate(4 + eventSize);
-            eventDataBuffer.putInt(eventSize);
-            eventDataBuffer.putLong(event.getTimeStamp());
-            eventDataBuffer.putInt(event.getStreamId().length());
-            eventDataBuffer.put(event.getStreamId().getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
+            buf = client.ensureCapacity(4 + eventSize);
+            buf.putInt(eventSize);
+            buf.putLong(event.getTimeStamp());
+            buf.putInt(getStringSize(event.getStreamId()));
+            putString(buf, event.getStreamId());
 
             if (event.getMetaData() != null && event.getMetaData().length != 0) {
                 for (Object aMetaData : event.getMetaData()) {
-                    assignData(aMetaData, eventDataBuffer);
+                    assignData(aMetaData, buf);
                 }
             }
             if (event.getCorrelationData() != null && event.getCorrelationData().length != 0) {
                 for (Object aCorrelationData : event.getCorrelationData()) {
-                    assignData(aCorrelationData, eventDataBuffer);
+                    assignData(aCorrelationData, buf);
                 }
             }
             if (event.getPayloadData() != null && event.getPayloadData().length != 0) {
                 for (Object aPayloadData : event.getPayloadData()) {
-                    assignData(aPayloadData, eventDataBuffer);
+                    assignData(aPayloadData, buf);
                 }
             }
             if (event.getArbitraryDataMap() != null && event.getArbitraryDataMap().size() != 0) {
                 for (Map.Entry<String, String> aArbitraryData : event.getArbitraryDataMap().entrySet()) {
-                    assignData(aArbitraryData.getKey(), eventDataBuffer);
-                    assignData(aArbitraryData.getValue(), eventDataBuffer);
+                    assignData(aArbitraryData.getKey(), buf);
+                    assignData(aArbitraryData.getValue(), buf);
                 }
             }
-            bytes.add(eventDataBuffer.array());
         }
-
-        ByteBuffer buf = ByteBuffer.allocate(sessionId.length() + 13);
-        buf.put((byte) 2);  //1
-        buf.putInt(messageSize); //4
-        buf.putInt(sessionId.length()); //4
-        buf.put(sessionId.getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
-        buf.putInt(events.size()); //4
-
-        OutputStream outputstream = new BufferedOutputStream(socket.getOutputStream());
-        outputstream.write(buf.array());
-        for (byte[] byteArray : bytes) {
-            outputstream.write(byteArray);
-        }
-        outputstream.flush();
+        return buf;
     }
 
     private static int getEventSize(Event event) {
-        int eventSize = 4 + event.getStreamId().length() + 8;
+        int eventSize = 4 + getStringSize(event.getStreamId()) + 8;
         Object[] data = event.getMetaData();
         if (data != null) {
             for (Object aData : data) {
@@ -136,17 +163,16 @@ public class BinaryEventSender {
         }
         if (event.getArbitraryDataMap() != null && event.getArbitraryDataMap().size() != 0) {
             for (Map.Entry<String, String> aArbitraryData : event.getArbitraryDataMap().entrySet()) {
-                eventSize += 8 + aArbitraryData.getKey().length() + aArbitraryData.getValue().length();
+                eventSize += getSize(aArbitraryData.getKey()) + getSize(aArbitraryData.getValue());
             }
         }
         return eventSize;
     }
 
-    public static  String processResponse(Socket socket) throws Exception {
+    public static String processResponse(BinaryClient client) throws Exception {
 
-        InputStream inputStream = socket.getInputStream();
-        BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream);
-        int messageType = bufferedInputStream.read();
+        InputStream inputStream = client.getInputStream();
+        int messageType = inputStream.read();
         ByteBuffer bbuf;
         switch (messageType) {
             case 0:
@@ -154,23 +180,147 @@ public class BinaryEventSender {
                 break;
             case 1:
                 //Error Message
-                bbuf = ByteBuffer.wrap(loadData(bufferedInputStream, new byte[8]));
+                bbuf = ByteBuffer.wrap(loadData(inputStream, new byte[8]));
                 int errorClassNameLength = bbuf.getInt();
                 int errorMsgLength = bbuf.getInt();
 
-                String className = new String(ByteBuffer.wrap(loadData(bufferedInputStream, new byte[errorClassNameLength])).array());
-                String errorMsg = new String(ByteBuffer.wrap(loadData(bufferedInputStream, new byte[errorMsgLength])).array());
+                String className = new String(ByteBuffer.wrap(loadData(inputStream, new byte[errorClassNameLength])).array());
+                String errorMsg = new String(ByteBuffer.wrap(loadData(inputStream, new byte[errorMsgLength])).array());
 
                 throw (Exception) (BinaryDataEndpoint.class.getClassLoader().
                         loadClass(className).getConstructor(String.class).newInstance(errorMsg));
             case 2:
+            case BinaryMessageConstants.PIPELINED_LOGIN_OK_RESPONSE:
                 //Logging OK response
-                bbuf = ByteBuffer.wrap(loadData(bufferedInputStream, new byte[4]));
+                client.setPipelinedAcksAccepted(messageType == BinaryMessageConstants.PIPELINED_LOGIN_OK_RESPONSE);
+                bbuf = ByteBuffer.wrap(loadData(inputStream, new byte[4]));
                 int sessionIdLength = bbuf.getInt();
-                String sessionId= new String(ByteBuffer.wrap(loadData(bufferedInputStream, new byte[sessionIdLength])).array());
+                String sessionId= new String(ByteBuffer.wrap(loadData(inputStream, new byte[sessionIdLength])).array());
                 return sessionId;
         }
         return null;
     }
 
+    /**
+     * Reads the next response for the in-flight batches of the client and processes it, blocking until a response
+     * is received or the socket times out. This is called only by the {@link AcknowledgementReader} of the client,
+     * without holding the lock of the client, and only while the client has batches in flight, so that the other
+     * responses of the connection, e.g. the logout response, are never read here.
+     *
+     * @param client the client that sent the batches.
+     * @return true if a response is processed, false if no response is received within the socket timeout.
+     * @throws IOException if the acknowledgements cannot be read from the connection.
+     */
+    static boolean readAcknowledgement(BinaryClient client) throws IOException {
+        InputStream inputStream = client.getInputStream();
+        int messageType;
+        try {
+            messageType = inputStream.read();
+        } catch (SocketTimeoutException e) {
+            return false;
+        }
+        try {
+            switch (messageType) {
+                case BinaryMessageConstants.ACK_RESPONSE:
+                    long ackSequence = ByteBuffer.wrap(loadData(inputStream, new byte[8])).getLong();
+                    synchronized (client) {
+                        client.acknowledge(ackSequence);
+                    }
+                    return true;
+                case BinaryMessageConstants.SEQUENCED_ERROR_RESPONSE:
+                    long sequence = ByteBuffer.wrap(loadData(inputStream, new byte[8])).getLong();
+                    try {
+                        processResponse(client);
+                    } catch (IOException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        InFlightBatch failedBatch;
+                        synchronized (client) {
+                            failedBatch = client.fail(sequence);
+                        }
+                        if (failedBatch != null) {
+                            failedBatch.fail(e);
+                        }
+                    }
+                    return true;
+                case -1:
+                    throw new EOFException("Connection closed by the receiver with " +
+                            client.getInFlightBatchCount() + " batches waiting for acknowledgement");
+                default:
+                    throw new IOException("Unexpected response type " + messageType + " for a sequenced publish " +
+                            "message");
+            }
+        } catch (SocketTimeoutException e) {
+            // The connection cannot be used anymore once a response is partially read
+            throw new IOException("Timed out while reading the response for a sequenced publish message", e);
+        }
+    }
+
+    /**
+     * Waits while the client has the given maximum number of batches in flight. The caller needs to hold the lock
+     * of the client, which is notified when the acknowledgement reader of the client completes batches.
+     *
+     * @param client             the client that sent the batches.
+     * @param maxInFlightBatches the number of in-flight batches which requires waiting for acknowledgements.
+     * @throws IOException if the oldest in-flight batch is not acknowledged within the ack timeout of the client,
+     *                     or the client is closed.
+     */
+    static void awaitAcknowledgements(BinaryClient client, int maxInFlightBatches) throws IOException {
+        while (client.getInFlightBatchCount() >= maxInFlightBatches) {
+            if (client.getSocket().isClosed()) {
+                throw new IOException("Connection closed with " + client.getInFlightBatchCount() +
+                        " batches waiting for acknowledgement");
+            }
+            long waitTime = 0;
+            if (client.getAckTimeout() > 0) {
+                waitTime = client.getOldestInFlightBatchSentTime() + client.getAckTimeout()
+                        - System.currentTimeMillis();
+                if (waitTime <= 0) {
+                    throw new SocketTimeoutException(client.getInFlightBatchCount() + " batches are not " +
+                            "acknowledged by the receiver within " + client.getAckTimeout() + " ms");
+                }
+            }
+            try {
+                client.wait(waitTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the acknowledgements of " +
+                        client.getInFlightBatchCount() + " batches");
+            }
+        }
+    }
+
+    /**
+     * Fails all the in-flight batches of the client and closes it, the batches are failed after releasing the lock
+     * of the client, so that the failure handling never runs while holding it.
+     *
+     * @param client the client that sent the batches.
+     * @param e      the cause of the failure.
+     */
+    static void failInFlightBatches(BinaryClient client, Exception e) {
+        List<InFlightBatch> failedBatches;
+        synchronized (client) {
+            failedBatches = client.failInFlightBatches();
+        }
+        for (InFlightBatch failedBatch : failedBatches) {
+            failedBatch.fail(e);
+        }
+    }
+
+    /**
+     * Waits for the acknowledgements of all the in-flight batches of the client, and fails them if the
+     * acknowledgements cannot be received.
+     *
+     * @param client the client that sent the batches.
+     */
+    public static void completeInFlightBatches(BinaryClient client) {
+        try {
+            synchronized (client) {
+                awaitAcknowledgements(client, 1);
+            }
+        } catch (IOException e) {
+            failInFlightBatches(client, e);
+        }
+    }
+
 }
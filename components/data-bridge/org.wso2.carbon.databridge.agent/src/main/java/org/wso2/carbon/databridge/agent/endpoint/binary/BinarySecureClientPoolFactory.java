@@ -53,7 +53,7 @@ public class BinarySecureClientPoolFactory extends AbstractSecureClientPoolFacto
                 SSLSocket sslSocket = (SSLSocket) sslsocketfactory.createSocket(hostName, port);
                 sslSocket.setSoTimeout(timeout);
                 sslSocket.setEnabledCipherSuites(sslSocket.getSupportedCipherSuites());
-                return sslSocket;
+                return new BinaryClient(sslSocket);
             } catch (IOException e) {
                 throw new DataEndpointException("Error while opening socket to " + hostName + ":" + port + ". " +
                         e.getMessage(), e);
@@ -66,19 +66,14 @@ public class BinarySecureClientPoolFactory extends AbstractSecureClientPoolFacto
 
     @Override
     public boolean validateClient(Object client) {
-        Socket socket = (Socket) client;
-        return socket.isConnected();
+        Socket socket = ((BinaryClient) client).getSocket();
+        return socket.isConnected() && !socket.isClosed();
     }
 
     @Override
     public void terminateClient(Object client) {
-        Socket socket = null;
-        try {
-            socket = (Socket) client;
-            socket.close();
-        } catch (IOException e) {
-            log.warn("Cannot close the socket successfully from " + socket.getLocalAddress().getHostAddress()
-                    + ":" + socket.getPort());
-        }
+        BinaryClient binaryClient = (BinaryClient) client;
+        BinaryEventSender.completeInFlightBatches(binaryClient);
+        binaryClient.close();
     }
 }
@@ -0,0 +1,55 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.binary;
+
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.List;
+
+/**
+ * A batch of events which is sent as a sequenced publish message and waits for its acknowledgement.
+ */
+class InFlightBatch {
+    private final long sequence;
+    private final List<Event> events;
+    private final BinaryDataEndpoint dataEndpoint;
+    private final long sentTime;
+
+    InFlightBatch(long sequence, List<Event> events, BinaryDataEndpoint dataEndpoint) {
+        this.sequence = sequence;
+        this.events = events;
+        this.dataEndpoint = dataEndpoint;
+        this.sentTime = System.currentTimeMillis();
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    long getSentTime() {
+        return sentTime;
+    }
+
+    void complete() {
+        dataEndpoint.completeBatch(events);
+    }
+
+    void fail(Exception e) {
+        dataEndpoint.handleFailedBatch(events, e);
+    }
+}
@@ -24,6 +24,7 @@ import org.wso2.carbon.databridge.agent.AgentHolder;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointAgentConfigurationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
 import org.wso2.carbon.databridge.agent.client.AbstractClientPoolFactory;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
 import org.wso2.carbon.databridge.agent.conf.DataEndpointConfiguration;
 import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
 import org.wso2.carbon.databridge.commons.thrift.service.general.ThriftEventTransmissionService;
@@ -37,9 +38,12 @@ public class ThriftClientPoolFactory extends AbstractClientPoolFactory {
     public Object createClient(String protocol, String hostName, int port) throws DataEndpointException,
             DataEndpointAgentConfigurationException {
         if (protocol.equalsIgnoreCase(DataEndpointConfiguration.Protocol.TCP.toString())) {
-            int socketTimeout = AgentHolder.getInstance().getDataEndpointAgent(DataEndpointConstants.THRIFT_DATA_AGENT_TYPE).
-                    getAgentConfiguration().getSocketTimeoutMS();
-            TTransport receiverTransport = new TSocket(hostName, port, socketTimeout);
+            AgentConfiguration agentConfiguration = AgentHolder.getInstance().getDataEndpointAgent(
+                    DataEndpointConstants.THRIFT_DATA_AGENT_TYPE).getAgentConfiguration();
+            TTransport receiverTransport = new TSocket(hostName, port, agentConfiguration.getSocketTimeoutMS());
+            if (agentConfiguration.isFramedTransport()) {
+                receiverTransport = new TFramedTransport(receiverTransport);
+            }
             TProtocol tProtocol = new TBinaryProtocol(receiverTransport);
             ThriftEventTransmissionService.Client client = new ThriftEventTransmissionService.Client(tProtocol);
             try {
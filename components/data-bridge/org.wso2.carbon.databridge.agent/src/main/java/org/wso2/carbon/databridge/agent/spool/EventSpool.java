@@ -0,0 +1,206 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.spool;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Disk backed spool which holds the events that cannot be queued or sent, while the receivers are unreachable.
+ * The events are appended to a log of fixed size, memory mapped segment files, and the number of segments is
+ * bounded by the maximum spool size. The events are read back in the order they were appended, and the events
+ * read are only removed from the spool when the read is committed, once they are sent. A segment file is deleted
+ * once all its events are committed, hence the events left in the spool when the agent stops, including the
+ * events read but not committed, are read again when the spool is opened on the same directory.
+ */
+public class EventSpool {
+    private static final Log log = LogFactory.getLog(EventSpool.class);
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_SUFFIX = ".spool";
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Deque<SpoolSegment> segments = new ArrayDeque<>();
+    private long nextSequence;
+
+    public EventSpool(File directory, long maxSpoolSize, int segmentSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the event spool directory " + directory.getAbsolutePath());
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(1, maxSpoolSize / segmentSize);
+        loadSegments();
+    }
+
+    private void loadSegments() throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX);
+            }
+        });
+        if (files == null) {
+            throw new IOException("Unable to list the event spool directory " + directory.getAbsolutePath());
+        }
+        long[] sequences = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            String name = files[i].getName();
+            sequences[i] = Long.parseLong(name.substring(SEGMENT_FILE_PREFIX.length(),
+                    name.length() - SEGMENT_FILE_SUFFIX.length()));
+        }
+        Arrays.sort(sequences);
+        for (long sequence : sequences) {
+            File file = getSegmentFile(sequence);
+            SpoolSegment segment = SpoolSegment.open(sequence, file, (int) file.length());
+            if (segment.hasUnreadRecords()) {
+                segments.add(segment);
+            } else {
+                deleteSegment(segment);
+            }
+            nextSequence = sequence + 1;
+        }
+        if (!segments.isEmpty()) {
+            log.info("Found " + segments.size() + " event spool segments with events to be resent in " +
+                    directory.getAbsolutePath());
+        }
+    }
+
+    private File getSegmentFile(long sequence) {
+        return new File(directory, SEGMENT_FILE_PREFIX + sequence + SEGMENT_FILE_SUFFIX);
+    }
+
+    /**
+     * Appends the event to the spool.
+     *
+     * @param event the event to be spooled.
+     * @return true if the event is spooled, false if the spool is full or the event cannot be written.
+     */
+    public synchronized boolean append(Event event) {
+        int size = SpoolEventSerializer.getSize(event);
+        try {
+            SpoolSegment segment = segments.peekLast();
+            ByteBuffer buffer = segment == null ? null : segment.reserve(size);
+            if (buffer == null) {
+                if (segments.size() >= maxSegments ||
+                        size + SpoolSegment.SEGMENT_HEADER_SIZE + SpoolSegment.RECORD_HEADER_SIZE > segmentSize) {
+                    return false;
+                }
+                if (segment != null) {
+                    segment.flush();
+                }
+                segment = SpoolSegment.open(nextSequence, getSegmentFile(nextSequence), segmentSize);
+                nextSequence++;
+                segments.add(segment);
+                buffer = segment.reserve(size);
+            }
+            SpoolEventSerializer.write(event, buffer);
+            segment.commit();
+            return true;
+        } catch (IOException e) {
+            log.error("Unable to write the event to the event spool " + directory.getAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Reads the next events from the spool. The events stay in the spool until the read is committed with
+     * {@link #commit()}, or they are read again after {@link #rewind()}.
+     *
+     * @param maxEvents the maximum number of events to be read.
+     * @return the events read, which is empty if the spool has no unread events.
+     */
+    public synchronized List<Event> read(int maxEvents) {
+        List<Event> events = new ArrayList<>();
+        for (SpoolSegment segment : segments) {
+            while (events.size() < maxEvents && segment.hasUnreadRecords()) {
+                try {
+                    events.add(SpoolEventSerializer.read(segment.nextRecord()));
+                } catch (RuntimeException e) {
+                    log.error("Dropping the unreadable events of the event spool segment " + segment.getSequence()
+                            + " in " + directory.getAbsolutePath(), e);
+                    segment.skipUnreadRecords();
+                }
+            }
+            if (events.size() >= maxEvents) {
+                break;
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Removes the events read so far from the spool, deleting the segments whose events are all removed.
+     */
+    public synchronized void commit() {
+        Iterator<SpoolSegment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            SpoolSegment segment = iterator.next();
+            segment.commitRead();
+            if (segment.hasUnreadRecords()) {
+                break;
+            }
+            iterator.remove();
+            deleteSegment(segment);
+        }
+    }
+
+    /**
+     * Returns the events read since the last commit to the spool, so that they are read again.
+     */
+    public synchronized void rewind() {
+        for (SpoolSegment segment : segments) {
+            segment.rewind();
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        for (SpoolSegment segment : segments) {
+            if (segment.hasUnreadRecords()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized void close() {
+        for (SpoolSegment segment : segments) {
+            segment.flush();
+        }
+    }
+
+    private void deleteSegment(SpoolSegment segment) {
+        if (!segment.delete()) {
+            log.warn("Unable to delete the event spool segment " + segment.getSequence() + " in " +
+                    directory.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.spool;
+
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.getStringSize;
+import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.putString;
+
+/**
+ * Serializes the events written to the spool. Unlike the Binary transport format the attribute values carry
+ * their type, as the stream definitions are not known when the spooled events are read back.
+ */
+class SpoolEventSerializer {
+    private static final int NULL_LENGTH = -1;
+
+    private static final byte NULL_TYPE = 0;
+    private static final byte INT_TYPE = 1;
+    private static final byte LONG_TYPE = 2;
+    private static final byte FLOAT_TYPE = 3;
+    private static final byte DOUBLE_TYPE = 4;
+    private static final byte BOOL_TYPE = 5;
+    private static final byte STRING_TYPE = 6;
+
+    private SpoolEventSerializer() {
+    }
+
+    static int getSize(Event event) {
+        int size = 8 + getSize(event.getStreamId());
+        size += getSize(event.getMetaData());
+        size += getSize(event.getCorrelationData());
+        size += getSize(event.getPayloadData());
+        size += 4;
+        if (event.getArbitraryDataMap() != null) {
+            for (Map.Entry<String, String> entry : event.getArbitraryDataMap().entrySet()) {
+                size += getSize(entry.getKey()) + getSize(entry.getValue());
+            }
+        }
+        return size;
+    }
+
+    static void write(Event event, ByteBuffer buffer) {
+        buffer.putLong(event.getTimeStamp());
+        write(event.getStreamId(), buffer);
+        write(event.getMetaData(), buffer);
+        write(event.getCorrelationData(), buffer);
+        write(event.getPayloadData(), buffer);
+        Map<String, String> arbitraryDataMap = event.getArbitraryDataMap();
+        if (arbitraryDataMap == null) {
+            buffer.putInt(NULL_LENGTH);
+        } else {
+            buffer.putInt(arbitraryDataMap.size());
+            for (Map.Entry<String, String> entry : arbitraryDataMap.entrySet()) {
+                write(entry.getKey(), buffer);
+                write(entry.getValue(), buffer);
+            }
+        }
+    }
+
+    static Event read(ByteBuffer buffer) {
+        Event event = new Event();
+        event.setTimeStamp(buffer.getLong());
+        event.setStreamId(readString(buffer));
+        event.setMetaData(readArray(buffer));
+        event.setCorrelationData(readArray(buffer));
+        event.setPayloadData(readArray(buffer));
+        int mapSize = buffer.getInt();
+        if (mapSize != NULL_LENGTH) {
+            Map<String, String> arbitraryDataMap = new HashMap<>(mapSize * 2);
+            for (int i = 0; i < mapSize; i++) {
+                arbitraryDataMap.put(readString(buffer), readString(buffer));
+            }
+            event.setArbitraryDataMap(arbitraryDataMap);
+        }
+        return event;
+    }
+
+    private static int getSize(String value) {
+        return value == null ? 4 : 4 + getStringSize(value);
+    }
+
+    private static int getSize(Object[] values) {
+        int size = 4;
+        if (values != null) {
+            for (Object value : values) {
+                size += 1;
+                if (value instanceof Integer || value instanceof Float) {
+                    size += 4;
+                } else if (value instanceof Long || value instanceof Double) {
+                    size += 8;
+                } else if (value instanceof Boolean) {
+                    size += 1;
+                } else if (value != null) {
+                    size += getSize(value.toString());
+                }
+            }
+        }
+        return size;
+    }
+
+    private static void write(String value, ByteBuffer buffer) {
+        if (value == null) {
+            buffer.putInt(NULL_LENGTH);
+        } else {
+            buffer.putInt(getStringSize(value));
+            putString(buffer, value);
+        }
+    }
+
+    private static void write(Object[] values, ByteBuffer buffer) {
+        if (values == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        buffer.putInt(values.length);
+        for (Object value : values) {
+            if (value == null) {
+                buffer.put(NULL_TYPE);
+            } else if (value instanceof Integer) {
+                buffer.put(INT_TYPE);
+                buffer.putInt((Integer) value);
+            } else if (value instanceof Long) {
+                buffer.put(LONG_TYPE);
+                buffer.putLong((Long) value);
+            } else if (value instanceof Float) {
+                buffer.put(FLOAT_TYPE);
+                buffer.putFloat((Float) value);
+            } else if (value instanceof Double) {
+                buffer.put(DOUBLE_TYPE);
+                buffer.putDouble((Double) value);
+            } else if (value instanceof Boolean) {
+                buffer.put(BOOL_TYPE);
+                buffer.put((byte) (((Boolean) value) ? 1 : 0));
+            } else {
+                buffer.put(STRING_TYPE);
+                write(value.toString(), buffer);
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Object[] readArray(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        Object[] values = new Object[length];
+        for (int i = 0; i < length; i++) {
+            byte type = buffer.get();
+            switch (type) {
+                case INT_TYPE:
+                    values[i] = buffer.getInt();
+                    break;
+                case LONG_TYPE:
+                    values[i] = buffer.getLong();
+                    break;
+                case FLOAT_TYPE:
+                    values[i] = buffer.getFloat();
+                    break;
+                case DOUBLE_TYPE:
+                    values[i] = buffer.getDouble();
+                    break;
+                case BOOL_TYPE:
+                    values[i] = buffer.get() == 1;
+                    break;
+                case STRING_TYPE:
+                    values[i] = readString(buffer);
+                    break;
+                default:
+                    values[i] = null;
+            }
+        }
+        return values;
+    }
+}
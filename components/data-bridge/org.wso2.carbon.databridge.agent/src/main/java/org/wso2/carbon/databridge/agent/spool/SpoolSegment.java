@@ -0,0 +1,201 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.spool;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A fixed size, memory mapped file of the event spool. The segment starts with the position up to which its
+ * records are consumed, followed by the records, which are appended as an int length followed by the record.
+ * As the file is zero filled when it's created, a zero length marks the end of the records. Hence the records
+ * of a segment written before a restart are found again by scanning the lengths, and the records consumed
+ * before the restart are skipped.
+ * <p>
+ * Records are read ahead of the consumed position, and the read position is either committed once the read
+ * records are sent, or rewound to the consumed position so that they are read again.
+ */
+class SpoolSegment {
+    private static final Log log = LogFactory.getLog(SpoolSegment.class);
+    static final int SEGMENT_HEADER_SIZE = 4;
+    static final int RECORD_HEADER_SIZE = 4;
+
+    private final long sequence;
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    private int readPosition;
+    private int committedReadPosition;
+
+    private SpoolSegment(long sequence, File file, MappedByteBuffer buffer) {
+        this.sequence = sequence;
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    static SpoolSegment open(long sequence, File file, int size) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        SpoolSegment segment = new SpoolSegment(sequence, file, buffer);
+        segment.recoverWritePosition();
+        return segment;
+    }
+
+    private void recoverWritePosition() {
+        int position = SEGMENT_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        writePosition = position;
+        int consumedPosition = buffer.getInt(0);
+        committedReadPosition = consumedPosition < SEGMENT_HEADER_SIZE ? SEGMENT_HEADER_SIZE :
+                Math.min(consumedPosition, writePosition);
+        readPosition = committedReadPosition;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Reserves space for a record of the given length, and positions the buffer to write the record.
+     *
+     * @param length length of the record.
+     * @return the buffer to write the record into, or null if the segment doesn't have enough space.
+     */
+    MappedByteBuffer reserve(int length) {
+        if (writePosition + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+            return null;
+        }
+        buffer.limit(writePosition + RECORD_HEADER_SIZE + length);
+        buffer.position(writePosition + RECORD_HEADER_SIZE);
+        return buffer;
+    }
+
+    /**
+     * Completes the record written into the reserved space, the length is written last so that a partially
+     * written record is never read.
+     */
+    void commit() {
+        int length = buffer.position() - writePosition - RECORD_HEADER_SIZE;
+        buffer.limit(buffer.capacity());
+        buffer.putInt(writePosition, length);
+        writePosition += RECORD_HEADER_SIZE + length;
+    }
+
+    boolean hasUnreadRecords() {
+        return readPosition < writePosition;
+    }
+
+    /**
+     * Positions the buffer at the next unread record and limits it to the record.
+     *
+     * @return the buffer to read the record from.
+     */
+    MappedByteBuffer nextRecord() {
+        buffer.limit(buffer.capacity());
+        int length = buffer.getInt(readPosition);
+        buffer.limit(readPosition + RECORD_HEADER_SIZE + length);
+        buffer.position(readPosition + RECORD_HEADER_SIZE);
+        readPosition += RECORD_HEADER_SIZE + length;
+        return buffer;
+    }
+
+    /**
+     * Skips the unread records of the segment, which is used when a record cannot be read.
+     */
+    void skipUnreadRecords() {
+        readPosition = writePosition;
+    }
+
+    /**
+     * Marks the records read so far as consumed, so that they are not read again after a restart.
+     */
+    void commitRead() {
+        if (committedReadPosition != readPosition) {
+            buffer.putInt(0, readPosition);
+            committedReadPosition = readPosition;
+        }
+    }
+
+    /**
+     * Moves the read position back to the consumed position, so that the records read after the last commit
+     * are read again.
+     */
+    void rewind() {
+        readPosition = committedReadPosition;
+    }
+
+    void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Unmaps and deletes the segment file, the segment must not be used after it's deleted.
+     *
+     * @return true if the file is deleted.
+     */
+    boolean delete() {
+        unmap();
+        return file.delete();
+    }
+
+    /**
+     * Releases the mapping of the file, as a mapping otherwise lives until the buffer is garbage collected,
+     * which keeps the disk space of the deleted file in use, and fails the deletion on Windows.
+     */
+    private void unmap() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // Java 8 and earlier, where the cleaner of the buffer is accessible
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (Exception e) {
+            log.debug("Unable to unmap the event spool segment " + file.getAbsolutePath() +
+                    ", it will be unmapped when garbage collected.", e);
+        }
+    }
+}
@@ -36,6 +36,12 @@ public class DataEndpointConstants {
     public static final String DATA_AGENT_CONF_FILE_PATH = File.separator
             + "data-bridge" + File.separator + DATA_AGENT_CONF_FILE_NAME;
     public static final int DEFAULT_DATA_AGENT_BATCH_SIZE = 100;
+    public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 1;
+    public static final int ADAPTIVE_BATCH_SIZE_FACTOR = 8;
+    public static final int DEFAULT_MAX_SPOOL_SIZE_MB = 1024;
+    public static final int DEFAULT_SPOOL_SEGMENT_SIZE_MB = 64;
+    public static final int SPOOL_REPLAY_INTERVAL_MS = 1000;
+    public static final int SPOOL_REPLAY_BATCH_SIZE = 1000;
     public static final String LB_URL_GROUP_SEPARATOR = ",";
     public static final String FAILOVER_URL_GROUP_SEPARATOR = "|";
     public static final String FAILOVER_URL_GROUP_SEPARATOR_REGEX = "\\|";
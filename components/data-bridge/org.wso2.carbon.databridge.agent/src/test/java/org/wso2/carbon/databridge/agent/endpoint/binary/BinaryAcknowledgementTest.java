@@ -0,0 +1,357 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.binary;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageConstants;
+import org.wso2.carbon.databridge.commons.exception.UndefinedEventTypeException;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests the pipelined acknowledgements of the Binary transport against a receiver which is simulated over a
+ * plain or SSL socket, so that the acknowledgements can be controlled by the test.
+ */
+public class BinaryAcknowledgementTest {
+    private static final String STREAM_ID = "org.wso2.test.Stream:1.0.0";
+    private static final String SESSION_ID = "session";
+    private static final String KEY_STORE = "wso2carbon.jks";
+    private static final char[] KEY_STORE_PASSWORD = "wso2carbon".toCharArray();
+    private static final int SOCKET_TIMEOUT = 2000;
+    private static final int ACK_TIMEOUT = 500;
+
+    private ServerSocket serverSocket;
+    private Socket receiverSocket;
+    private DataInputStream receiverInput;
+    private OutputStream receiverOutput;
+    private BinaryClient client;
+    private RecordingDataEndpoint dataEndpoint;
+
+    @Before
+    public void connect() throws IOException {
+        serverSocket = new ServerSocket(0);
+        connect(new Socket("localhost", serverSocket.getLocalPort()));
+    }
+
+    @After
+    public void close() throws IOException {
+        client.close();
+        receiverSocket.close();
+        serverSocket.close();
+        Assert.assertFalse("Failed batches handled while holding the lock of the client",
+                dataEndpoint.failedWhileHoldingLock);
+    }
+
+    @Test
+    public void testBatchesArePipelinedWithoutAcknowledgements() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            send(i, 4);
+        }
+        Assert.assertEquals(3, client.getInFlightBatchCount());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(i, readSequence());
+        }
+        Assert.assertTrue(dataEndpoint.completedBatches.isEmpty());
+    }
+
+    @Test
+    public void testSendBlocksWhileMaxBatchesAreInFlight() throws Exception {
+        send(0, 2);
+        Thread acknowledger = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    readSequence();
+                    readSequence();
+                    Thread.sleep(200);
+                    acknowledge(0);
+                } catch (Exception ignored) {
+                }
+            }
+        };
+        acknowledger.start();
+        long startTime = System.currentTimeMillis();
+        send(1, 2);
+        Assert.assertTrue(System.currentTimeMillis() - startTime >= 150);
+        Assert.assertEquals(1, client.getInFlightBatchCount());
+        Assert.assertEquals(Collections.singletonList(0L), dataEndpoint.completedBatches);
+        acknowledger.join();
+    }
+
+    @Test
+    public void testAcknowledgementsAreReadWithoutFurtherSends() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            send(i, 4);
+        }
+        for (int i = 0; i < 3; i++) {
+            readSequence();
+        }
+        acknowledge(2);
+        waitForInFlightBatches(0);
+        Assert.assertEquals(3, dataEndpoint.completedBatches.size());
+        Assert.assertTrue(dataEndpoint.failedBatches.isEmpty());
+        Assert.assertFalse(client.getSocket().isClosed());
+    }
+
+    @Test
+    public void testAcknowledgementsAreReadWithoutFurtherSendsOverSsl() throws Exception {
+        reconnectOverSsl();
+        for (int i = 0; i < 3; i++) {
+            send(i, 4);
+        }
+        for (int i = 0; i < 3; i++) {
+            readSequence();
+        }
+        // The acknowledgements are buffered in encrypted records, which are only decrypted by a blocking read
+        acknowledge(1);
+        waitForInFlightBatches(1);
+        acknowledge(2);
+        waitForInFlightBatches(0);
+        Assert.assertEquals(3, dataEndpoint.completedBatches.size());
+
+        // The connection stays usable after idling for longer than the socket timeout
+        Thread.sleep(ACK_TIMEOUT * 2);
+        send(3, 4);
+        Assert.assertEquals(3, readSequence());
+        acknowledge(3);
+        waitForInFlightBatches(0);
+        Assert.assertEquals(4, dataEndpoint.completedBatches.size());
+        Assert.assertTrue(dataEndpoint.failedBatches.isEmpty());
+        Assert.assertFalse(client.getSocket().isClosed());
+    }
+
+    @Test
+    public void testSequencedErrorFailsOnlyThatBatch() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            send(i, 4);
+        }
+        for (int i = 0; i < 3; i++) {
+            readSequence();
+        }
+        sendSequencedError(1, new UndefinedEventTypeException("Undefined stream " + STREAM_ID));
+        acknowledge(2);
+        waitForInFlightBatches(0);
+        Assert.assertEquals(2, dataEndpoint.completedBatches.size());
+        Assert.assertEquals(Collections.singletonList(1L), dataEndpoint.failedBatches);
+        Assert.assertTrue(dataEndpoint.failures.get(0) instanceof UndefinedEventTypeException);
+        Assert.assertFalse(client.getSocket().isClosed());
+    }
+
+    @Test
+    public void testUnacknowledgedBatchesFailAfterTimeout() throws Exception {
+        send(0, 4);
+        send(1, 4);
+        Thread.sleep(ACK_TIMEOUT / 2);
+        Assert.assertEquals(2, client.getInFlightBatchCount());
+        waitForInFlightBatches(0);
+        Assert.assertEquals(2, dataEndpoint.failedBatches.size());
+        Assert.assertTrue(dataEndpoint.failures.get(0) instanceof SocketTimeoutException);
+        Assert.assertTrue(client.getSocket().isClosed());
+    }
+
+    @Test
+    public void testBatchesFailWhenReceiverClosesConnection() throws Exception {
+        send(0, 4);
+        send(1, 4);
+        readSequence();
+        acknowledge(0);
+        waitForInFlightBatches(1);
+        receiverSocket.close();
+        // The acknowledgement reader blocks on the connection, hence the closed connection is detected right away
+        long startTime = System.currentTimeMillis();
+        waitForInFlightBatches(0);
+        Assert.assertTrue(System.currentTimeMillis() - startTime < ACK_TIMEOUT);
+        Assert.assertEquals(Collections.singletonList(0L), dataEndpoint.completedBatches);
+        Assert.assertEquals(Collections.singletonList(1L), dataEndpoint.failedBatches);
+        Assert.assertTrue(dataEndpoint.failures.get(0) instanceof IOException);
+    }
+
+    @Test
+    public void testInFlightBatchesAreCompletedOnTermination() throws Exception {
+        send(0, 4);
+        send(1, 4);
+        readSequence();
+        readSequence();
+        acknowledge(1);
+        BinaryEventSender.completeInFlightBatches(client);
+        Assert.assertEquals(0, client.getInFlightBatchCount());
+        Assert.assertEquals(2, dataEndpoint.completedBatches.size());
+    }
+
+    @Test
+    public void testSendFailureFailsInFlightBatches() throws Exception {
+        send(0, 4);
+        client.getSocket().shutdownOutput();
+        try {
+            send(1, 4);
+            Assert.fail("Batch sent over a closed connection");
+        } catch (IOException expected) {
+        }
+        waitForInFlightBatches(0);
+        // The batch which could not be sent is handled by the caller
+        Assert.assertEquals(Collections.singletonList(0L), dataEndpoint.failedBatches);
+    }
+
+    private void connect(Socket socket) throws IOException {
+        socket.setSoTimeout(ACK_TIMEOUT);
+        client = new BinaryClient(socket);
+        client.setPipelinedAcksAccepted(true);
+        receiverSocket = serverSocket.accept();
+        receiverSocket.setSoTimeout(SOCKET_TIMEOUT);
+        receiverInput = new DataInputStream(receiverSocket.getInputStream());
+        receiverOutput = receiverSocket.getOutputStream();
+        dataEndpoint = new RecordingDataEndpoint();
+    }
+
+    private void reconnectOverSsl() throws Exception {
+        close();
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream keyStoreInput = getClass().getClassLoader().getResourceAsStream(KEY_STORE);
+        try {
+            keyStore.load(keyStoreInput, KEY_STORE_PASSWORD);
+        } finally {
+            keyStoreInput.close();
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, KEY_STORE_PASSWORD);
+        TrustManagerFactory trustManagerFactory =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+        serverSocket = sslContext.getServerSocketFactory().createServerSocket(0);
+        ((SSLServerSocket) serverSocket).setNeedClientAuth(false);
+        connect(sslContext.getSocketFactory().createSocket("localhost", serverSocket.getLocalPort()));
+        // The handshake is completed up front, as the simulated receiver doesn't read while the batches are sent
+        Thread receiverHandshake = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    ((SSLSocket) receiverSocket).startHandshake();
+                } catch (IOException ignored) {
+                }
+            }
+        };
+        receiverHandshake.start();
+        ((SSLSocket) client.getSocket()).startHandshake();
+        receiverHandshake.join();
+    }
+
+    /**
+     * Sends a batch the same way the pipelined send of the endpoint does.
+     */
+    private void send(long id, int maxInFlightBatches) throws IOException {
+        List<Event> events = Collections.singletonList(
+                new Event(STREAM_ID, System.currentTimeMillis(), null, null, new Object[]{id}));
+        boolean sent = false;
+        try {
+            synchronized (client) {
+                long sequence = client.nextSequence();
+                BinaryEventSender.sendBinarySequencedPublishMessage(client, events, SESSION_ID, sequence);
+                sent = true;
+                client.addInFlightBatch(new InFlightBatch(sequence, events, dataEndpoint));
+                if (client.startAcknowledgementReader()) {
+                    new Thread(new AcknowledgementReader(client)).start();
+                }
+                BinaryEventSender.awaitAcknowledgements(client, maxInFlightBatches);
+            }
+        } catch (IOException e) {
+            BinaryEventSender.failInFlightBatches(client, e);
+            if (!sent) {
+                throw e;
+            }
+        }
+    }
+
+    private void waitForInFlightBatches(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + SOCKET_TIMEOUT;
+        while (client.getInFlightBatchCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, client.getInFlightBatchCount());
+    }
+
+    private long readSequence() throws IOException {
+        Assert.assertEquals(BinaryMessageConstants.SEQUENCED_PUBLISH_MESSAGE, receiverInput.readByte());
+        byte[] message = new byte[receiverInput.readInt()];
+        receiverInput.readFully(message);
+        return ByteBuffer.wrap(message).getLong(message.length - 8);
+    }
+
+    private void acknowledge(long sequence) throws IOException {
+        ByteBuffer response = ByteBuffer.allocate(9);
+        response.put((byte) BinaryMessageConstants.ACK_RESPONSE);
+        response.putLong(sequence);
+        receiverOutput.write(response.array());
+        receiverOutput.flush();
+    }
+
+    private void sendSequencedError(long sequence, Exception e) throws IOException {
+        byte[] className = e.getClass().getCanonicalName().getBytes(BinaryMessageConstants.DEFAULT_CHARSET);
+        byte[] message = e.getMessage().getBytes(BinaryMessageConstants.DEFAULT_CHARSET);
+        ByteBuffer response = ByteBuffer.allocate(18 + className.length + message.length);
+        response.put((byte) BinaryMessageConstants.SEQUENCED_ERROR_RESPONSE);
+        response.putLong(sequence);
+        response.put((byte) 1);
+        response.putInt(className.length);
+        response.putInt(message.length);
+        response.put(className);
+        response.put(message);
+        receiverOutput.write(response.array());
+        receiverOutput.flush();
+    }
+
+    private class RecordingDataEndpoint extends BinaryDataEndpoint {
+        private final List<Long> completedBatches = Collections.synchronizedList(new ArrayList<Long>());
+        private final List<Long> failedBatches = Collections.synchronizedList(new ArrayList<Long>());
+        private final List<Exception> failures = Collections.synchronizedList(new ArrayList<Exception>());
+        private volatile boolean failedWhileHoldingLock;
+
+        @Override
+        void completeBatch(List<Event> events) {
+            completedBatches.add((Long) events.get(0).getPayloadData()[0]);
+        }
+
+        @Override
+        void handleFailedBatch(List<Event> events, Exception e) {
+            failedWhileHoldingLock |= Thread.holdsLock(client);
+            failedBatches.add((Long) events.get(0).getPayloadData()[0]);
+            failures.add(e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test.spool;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.databridge.agent.spool.EventSpool;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+public class EventSpoolTest {
+    private static final String STREAM_ID = "org.wso2.test.Stream:1.0.0";
+    private static final int SEGMENT_SIZE = 4096;
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = File.createTempFile("event-spool", "");
+        Assert.assertTrue(directory.delete());
+        Assert.assertTrue(directory.mkdirs());
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testAppendAndRead() throws IOException {
+        EventSpool spool = new EventSpool(directory, SEGMENT_SIZE * 10, SEGMENT_SIZE);
+        Assert.assertTrue(spool.isEmpty());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(spool.append(createEvent(i)));
+        }
+        Assert.assertFalse(spool.isEmpty());
+        List<Event> events = spool.read(60);
+        Assert.assertEquals(60, events.size());
+        events.addAll(spool.read(60));
+        Assert.assertEquals(100, events.size());
+        for (int i = 0; i < 100; i++) {
+            assertEvent(i, events.get(i));
+        }
+        spool.commit();
+        Assert.assertTrue(spool.isEmpty());
+        Assert.assertTrue(spool.read(10).isEmpty());
+        Assert.assertEquals(0, countSegmentFiles());
+        spool.close();
+    }
+
+    @Test
+    public void testRewindReplaysUncommittedEvents() throws IOException {
+        EventSpool spool = new EventSpool(directory, SEGMENT_SIZE * 10, SEGMENT_SIZE);
+        for (int i = 0; i < 100; i++) {
+            spool.append(createEvent(i));
+        }
+        spool.read(30);
+        spool.commit();
+        List<Event> events = spool.read(50);
+        assertEvent(30, events.get(0));
+        spool.rewind();
+        events = spool.read(50);
+        Assert.assertEquals(50, events.size());
+        assertEvent(30, events.get(0));
+        assertEvent(79, events.get(49));
+        spool.close();
+    }
+
+    @Test
+    public void testEventsAreReadAgainAfterRestart() throws IOException {
+        EventSpool spool = new EventSpool(directory, SEGMENT_SIZE * 10, SEGMENT_SIZE);
+        for (int i = 0; i < 100; i++) {
+            spool.append(createEvent(i));
+        }
+        spool.read(40);
+        spool.commit();
+        // Read but not committed, hence read again after the restart
+        spool.read(20);
+        spool.close();
+
+        EventSpool reopenedSpool = new EventSpool(directory, SEGMENT_SIZE * 10, SEGMENT_SIZE);
+        List<Event> events = reopenedSpool.read(100);
+        Assert.assertEquals(60, events.size());
+        for (int i = 0; i < 60; i++) {
+            assertEvent(40 + i, events.get(i));
+        }
+        Assert.assertTrue(reopenedSpool.append(createEvent(100)));
+        events = reopenedSpool.read(100);
+        Assert.assertEquals(1, events.size());
+        assertEvent(100, events.get(0));
+        reopenedSpool.commit();
+        reopenedSpool.close();
+        Assert.assertTrue(new EventSpool(directory, SEGMENT_SIZE * 10, SEGMENT_SIZE).isEmpty());
+    }
+
+    @Test
+    public void testSpoolSizeLimit() throws IOException {
+        EventSpool spool = new EventSpool(directory, SEGMENT_SIZE * 2, SEGMENT_SIZE);
+        int appended = 0;
+        while (spool.append(createEvent(appended))) {
+            appended++;
+        }
+        Assert.assertTrue(appended > 0);
+        Assert.assertEquals(2, countSegmentFiles());
+        // Space is freed only once the events of a segment are committed
+        List<Event> events = spool.read(appended);
+        Assert.assertEquals(appended, events.size());
+        Assert.assertFalse(spool.append(createEvent(appended)));
+        spool.commit();
+        Assert.assertTrue(spool.append(createEvent(appended)));
+        spool.close();
+    }
+
+    @Test
+    public void testEventLargerThanSegmentIsRejected() throws IOException {
+        EventSpool spool = new EventSpool(directory, SEGMENT_SIZE * 2, SEGMENT_SIZE);
+        Event event = new Event(STREAM_ID, 0, null, null, new Object[]{new String(new char[SEGMENT_SIZE])});
+        Assert.assertFalse(spool.append(event));
+        Assert.assertTrue(spool.append(createEvent(0)));
+        spool.close();
+    }
+
+    private int countSegmentFiles() {
+        String[] names = directory.list();
+        return names == null ? 0 : names.length;
+    }
+
+    private static Event createEvent(int index) {
+        return new Event(STREAM_ID, index, new Object[]{"127.0.0.1"}, null,
+                new Object[]{index, (long) index, 1.5f, 2.5d, index % 2 == 0, "payload-" + index});
+    }
+
+    private static void assertEvent(int index, Event event) {
+        Assert.assertEquals(STREAM_ID, event.getStreamId());
+        Assert.assertEquals(index, event.getTimeStamp());
+        Assert.assertEquals("127.0.0.1", event.getMetaData()[0]);
+        Assert.assertEquals(index, event.getPayloadData()[0]);
+        Assert.assertEquals((long) index, event.getPayloadData()[1]);
+        Assert.assertEquals(index % 2 == 0, event.getPayloadData()[4]);
+        Assert.assertEquals("payload-" + index, event.getPayloadData()[5]);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryClient;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.core.EventBundleView;
+import org.wso2.carbon.databridge.core.StreamTypeHolder;
+import org.wso2.carbon.databridge.receiver.binary.BinaryEventConverter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of a Binary publish message by the receiver, both into an event list and by reading a single
+ * attribute of each event through the lazily decoded event bundle view.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BinaryEventConverterBenchmark {
+    private static final int MESSAGE_HEADER_SIZE = 5;
+
+    @Param({"NARROW", "WIDE", "STRING_HEAVY"})
+    private StreamShape shape;
+
+    @Param({"100"})
+    private int batchSize;
+
+    private byte[] eventBundle;
+    private StreamTypeHolder streamTypeHolder;
+    private BinaryEventConverter converter;
+
+    @Setup
+    public void setup() throws IOException {
+        CapturingSocket socket = CapturingSocket.capturing();
+        BinaryEventSender.sendBinaryPublishMessage(new BinaryClient(socket), shape.createEvents(batchSize),
+                "8a7a1a4c-2f3e-4c2a-9d8e-6b1f0c5d4e3a");
+        byte[] message = socket.getCapturedBytes();
+        eventBundle = Arrays.copyOfRange(message, MESSAGE_HEADER_SIZE, message.length);
+        streamTypeHolder = new StreamTypeHolder(-1234);
+        streamTypeHolder.putStreamDefinition(shape.getStreamDefinition());
+        converter = BinaryEventConverter.getConverter();
+    }
+
+    @Benchmark
+    public List<Event> toEventList() {
+        return converter.toEventList(eventBundle, streamTypeHolder);
+    }
+
+    @Benchmark
+    public void readLastPayloadAttribute(Blackhole blackhole) {
+        EventBundleView eventBundleView = converter.toEventBundleView(eventBundle, streamTypeHolder);
+        while (eventBundleView.next()) {
+            int index = eventBundleView.getAttributeTypes(EventBundleView.PAYLOAD_DATA).length - 1;
+            blackhole.consume(eventBundleView.getAttribute(EventBundleView.PAYLOAD_DATA, index));
+        }
+    }
+}
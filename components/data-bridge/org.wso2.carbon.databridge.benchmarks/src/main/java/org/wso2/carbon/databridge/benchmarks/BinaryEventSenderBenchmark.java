@@ -0,0 +1,71 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryClient;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of a batch of events into a Binary publish message by the data agent, written to a socket which
+ * discards the bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BinaryEventSenderBenchmark {
+    private static final String SESSION_ID = "8a7a1a4c-2f3e-4c2a-9d8e-6b1f0c5d4e3a";
+
+    @Param({"NARROW", "WIDE", "STRING_HEAVY"})
+    private StreamShape shape;
+
+    @Param({"100"})
+    private int batchSize;
+
+    private BinaryClient client;
+    private List<Event> events;
+
+    @Setup
+    public void setup() throws IOException {
+        client = new BinaryClient(CapturingSocket.discarding());
+        events = shape.createEvents(batchSize);
+    }
+
+    @Benchmark
+    public void publishMessage() throws IOException {
+        BinaryEventSender.sendBinaryPublishMessage(client, events, SESSION_ID);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * Unconnected socket which lets the Binary transport client be benchmarked without a receiver. The bytes
+ * written to the socket are either discarded, or captured so that they can be used as decoder input.
+ */
+public class CapturingSocket extends Socket {
+    private final OutputStream outputStream;
+    private final ByteArrayOutputStream capturedBytes;
+
+    private CapturingSocket(ByteArrayOutputStream capturedBytes) {
+        this.capturedBytes = capturedBytes;
+        if (capturedBytes != null) {
+            this.outputStream = capturedBytes;
+        } else {
+            this.outputStream = new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) {
+                }
+            };
+        }
+    }
+
+    public static CapturingSocket discarding() {
+        return new CapturingSocket(null);
+    }
+
+    public static CapturingSocket capturing() {
+        return new CapturingSocket(new ByteArrayOutputStream());
+    }
+
+    public byte[] getCapturedBytes() {
+        return capturedBytes.toByteArray();
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(new byte[0]);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.databridge.agent.DataEndpointAgent;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
+import org.wso2.carbon.databridge.agent.conf.DataEndpointConfiguration;
+import org.wso2.carbon.databridge.agent.endpoint.DataEndpoint;
+import org.wso2.carbon.databridge.agent.endpoint.DataEndpointGroup;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishing of events by concurrent client threads through the event queue ring of a data endpoint group,
+ * which collects the events into batches for load balanced endpoints that discard them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(4)
+public class DataEndpointGroupBenchmark {
+    private static final long ENDPOINT_ACTIVATION_TIMEOUT_MS = 10000;
+
+    @Param({"NARROW", "STRING_HEAVY"})
+    private StreamShape shape;
+
+    @Param({"1", "2"})
+    private int endpoints;
+
+    @Param({"blocking", "sleeping"})
+    private String waitStrategy;
+
+    private DataEndpointAgent agent;
+    private DataEndpointGroup dataEndpointGroup;
+    private Event[] events;
+
+    @Setup
+    public void setup() throws Exception {
+        AgentConfiguration agentConfiguration = new AgentConfiguration();
+        agentConfiguration.setDataEndpointName("Benchmark");
+        agentConfiguration.setClassName(NoOpDataEndpoint.class.getName());
+        agentConfiguration.setQueueSize(32768);
+        agentConfiguration.setBatchSize(200);
+        agentConfiguration.setCorePoolSize(1);
+        agentConfiguration.setMaxPoolSize(1);
+        agentConfiguration.setKeepAliveTimeInPool(20);
+        agentConfiguration.setReconnectionInterval(30);
+        agentConfiguration.setMaxTransportPoolSize(250);
+        agentConfiguration.setMaxIdleConnections(250);
+        agentConfiguration.setEvictionTimePeriod(5500);
+        agentConfiguration.setMinIdleTimeInPool(5000);
+        agentConfiguration.setSecureMaxTransportPoolSize(250);
+        agentConfiguration.setSecureMaxIdleConnections(250);
+        agentConfiguration.setSecureEvictionTimePeriod(5500);
+        agentConfiguration.setSecureMinIdleTimeInPool(5000);
+        agentConfiguration.setWaitStrategy(waitStrategy);
+        agent = new DataEndpointAgent(agentConfiguration);
+
+        dataEndpointGroup = new DataEndpointGroup(DataEndpointGroup.HAType.LOADBALANCE, agent);
+        DataEndpoint[] dataEndpoints = new DataEndpoint[endpoints];
+        for (int i = 0; i < endpoints; i++) {
+            dataEndpoints[i] = agent.getNewDataEndpoint();
+            dataEndpoints[i].initialize(new DataEndpointConfiguration("tcp://localhost:" + (9611 + i),
+                    "ssl://localhost:" + (9711 + i), "admin", "admin", agent.getTransportPool(),
+                    agent.getSecuredTransportPool(), agentConfiguration.getBatchSize(),
+                    agentConfiguration.getCorePoolSize(), agentConfiguration.getMaxPoolSize(),
+                    agentConfiguration.getKeepAliveTimeInPool()));
+            dataEndpointGroup.addDataEndpoint(dataEndpoints[i]);
+        }
+        long timeout = System.currentTimeMillis() + ENDPOINT_ACTIVATION_TIMEOUT_MS;
+        for (DataEndpoint dataEndpoint : dataEndpoints) {
+            while (dataEndpoint.getState() != DataEndpoint.State.ACTIVE) {
+                if (System.currentTimeMillis() > timeout) {
+                    throw new IllegalStateException("Benchmark data endpoints are not activated");
+                }
+                Thread.sleep(10);
+            }
+        }
+        List<Event> eventList = shape.createEvents(1024);
+        events = eventList.toArray(new Event[eventList.size()]);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        dataEndpointGroup.shutdown();
+        agent.shutDown();
+    }
+
+    @Benchmark
+    public void publish(PublisherState publisherState) {
+        dataEndpointGroup.publish(events[publisherState.nextIndex()]);
+    }
+
+    /**
+     * Index of the next event to be published by a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class PublisherState {
+        private int index;
+
+        int nextIndex() {
+            index = (index + 1) & 1023;
+            return index;
+        }
+    }
+}
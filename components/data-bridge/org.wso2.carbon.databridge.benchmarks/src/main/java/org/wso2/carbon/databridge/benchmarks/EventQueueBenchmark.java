@@ -0,0 +1,132 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryClient;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender;
+import org.wso2.carbon.databridge.commons.Credentials;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.core.AgentCallback;
+import org.wso2.carbon.databridge.core.RawDataAgentCallback;
+import org.wso2.carbon.databridge.core.StreamTypeHolder;
+import org.wso2.carbon.databridge.core.Utils.AgentSession;
+import org.wso2.carbon.databridge.core.Utils.EventComposite;
+import org.wso2.carbon.databridge.core.conf.DataBridgeConfiguration;
+import org.wso2.carbon.databridge.core.internal.queue.EventQueue;
+import org.wso2.carbon.databridge.receiver.binary.BinaryEventConverter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishing of received Binary event bundles into the data bridge core event queue by concurrent receiver
+ * threads, with the queue workers handing the bundles to either a raw data subscriber, or a subscriber which
+ * needs the bundles converted into event lists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(4)
+public class EventQueueBenchmark {
+    private static final int MESSAGE_HEADER_SIZE = 5;
+
+    @Param({"NARROW", "WIDE", "STRING_HEAVY"})
+    private StreamShape shape;
+
+    @Param({"RAW", "EVENT_LIST"})
+    private String subscriber;
+
+    private EventQueue eventQueue;
+    private EventComposite eventComposite;
+
+    @Setup
+    public void setup() throws IOException {
+        List<AgentCallback> subscribers = new ArrayList<>();
+        List<RawDataAgentCallback> rawDataSubscribers = new ArrayList<>();
+        if ("RAW".equals(subscriber)) {
+            rawDataSubscribers.add(new RawDataAgentCallback() {
+                @Override
+                public void definedStream(StreamDefinition streamDefinition, int tenantId) {
+                }
+
+                @Override
+                public void removeStream(StreamDefinition streamDefinition, int tenantId) {
+                }
+
+                @Override
+                public void receive(Object eventComposite) {
+                }
+            });
+        } else {
+            subscribers.add(new AgentCallback() {
+                @Override
+                public void definedStream(StreamDefinition streamDefinition, int tenantId) {
+                }
+
+                @Override
+                public void removeStream(StreamDefinition streamDefinition, int tenantId) {
+                }
+
+                @Override
+                public void receive(List<Event> eventList, Credentials credentials) {
+                }
+            });
+        }
+        eventQueue = new EventQueue(subscribers, rawDataSubscribers, new DataBridgeConfiguration());
+
+        CapturingSocket socket = CapturingSocket.capturing();
+        BinaryEventSender.sendBinaryPublishMessage(new BinaryClient(socket), shape.createEvents(100),
+                "8a7a1a4c-2f3e-4c2a-9d8e-6b1f0c5d4e3a");
+        byte[] message = socket.getCapturedBytes();
+        StreamTypeHolder streamTypeHolder = new StreamTypeHolder(-1234);
+        streamTypeHolder.putStreamDefinition(shape.getStreamDefinition());
+        eventComposite = new EventComposite(Arrays.copyOfRange(message, MESSAGE_HEADER_SIZE, message.length),
+                streamTypeHolder, new AgentSession("8a7a1a4c-2f3e-4c2a-9d8e-6b1f0c5d4e3a",
+                new Credentials("admin", "admin", "carbon.super", -1234)), BinaryEventConverter.getConverter());
+    }
+
+    @TearDown
+    public void tearDown() {
+        eventQueue.shutdown();
+    }
+
+    @Benchmark
+    public void publish() {
+        eventQueue.publish(eventComposite);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks;
+
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.commons.exception.MalformedStreamDefinitionException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Stream shapes used by the benchmarks, modelled after the streams seen in production.
+ * <ul>
+ * <li>NARROW - a metrics stream with a few numeric attributes.</li>
+ * <li>WIDE - a stream with string meta data, a correlation id and a wide, mixed type payload.</li>
+ * <li>STRING_HEAVY - a log like stream with long, partly non ASCII string attributes and arbitrary data.</li>
+ * </ul>
+ * The events are generated from a fixed seed, so that every run works on the same data.
+ */
+public enum StreamShape {
+    NARROW {
+        @Override
+        void defineAttributes(StreamDefinition streamDefinition) {
+            streamDefinition.addPayloadData("value", AttributeType.DOUBLE);
+            streamDefinition.addPayloadData("count", AttributeType.INT);
+            streamDefinition.addPayloadData("timestamp", AttributeType.LONG);
+            streamDefinition.addPayloadData("valid", AttributeType.BOOL);
+        }
+
+        @Override
+        Event createEvent(String streamId, Random random) {
+            return new Event(streamId, System.currentTimeMillis(), null, null,
+                    new Object[]{random.nextDouble(), random.nextInt(), random.nextLong(), random.nextBoolean()});
+        }
+    },
+    WIDE {
+        private static final int TYPED_ATTRIBUTE_COUNT = 10;
+
+        @Override
+        void defineAttributes(StreamDefinition streamDefinition) {
+            streamDefinition.addMetaData("host", AttributeType.STRING);
+            streamDefinition.addMetaData("tenant", AttributeType.STRING);
+            streamDefinition.addMetaData("region", AttributeType.STRING);
+            streamDefinition.addCorrelationData("activityId", AttributeType.LONG);
+            for (int i = 0; i < TYPED_ATTRIBUTE_COUNT; i++) {
+                streamDefinition.addPayloadData("int" + i, AttributeType.INT);
+                streamDefinition.addPayloadData("long" + i, AttributeType.LONG);
+                streamDefinition.addPayloadData("double" + i, AttributeType.DOUBLE);
+                streamDefinition.addPayloadData("string" + i, AttributeType.STRING);
+            }
+        }
+
+        @Override
+        Event createEvent(String streamId, Random random) {
+            Object[] payloadData = new Object[TYPED_ATTRIBUTE_COUNT * 4];
+            for (int i = 0; i < TYPED_ATTRIBUTE_COUNT; i++) {
+                payloadData[i * 4] = random.nextInt();
+                payloadData[i * 4 + 1] = random.nextLong();
+                payloadData[i * 4 + 2] = random.nextDouble();
+                payloadData[i * 4 + 3] = randomString(random, 8, 32, false);
+            }
+            return new Event(streamId, System.currentTimeMillis(),
+                    new Object[]{"host-" + random.nextInt(64) + ".example.com", "carbon.super", "us-east-1"},
+                    new Object[]{random.nextLong()}, payloadData);
+        }
+    },
+    STRING_HEAVY {
+        private static final int STRING_ATTRIBUTE_COUNT = 8;
+        private static final int ARBITRARY_ATTRIBUTE_COUNT = 6;
+
+        @Override
+        void defineAttributes(StreamDefinition streamDefinition) {
+            streamDefinition.addMetaData("host", AttributeType.STRING);
+            streamDefinition.addMetaData("application", AttributeType.STRING);
+            for (int i = 0; i < STRING_ATTRIBUTE_COUNT; i++) {
+                streamDefinition.addPayloadData("field" + i, AttributeType.STRING);
+            }
+        }
+
+        @Override
+        Event createEvent(String streamId, Random random) {
+            Object[] payloadData = new Object[STRING_ATTRIBUTE_COUNT];
+            for (int i = 0; i < STRING_ATTRIBUTE_COUNT; i++) {
+                payloadData[i] = randomString(random, 20, 200, i % 4 == 0);
+            }
+            Map<String, String> arbitraryDataMap = new HashMap<>();
+            for (int i = 0; i < ARBITRARY_ATTRIBUTE_COUNT; i++) {
+                arbitraryDataMap.put("property" + i, randomString(random, 4, 64, false));
+            }
+            return new Event(streamId, System.currentTimeMillis(),
+                    new Object[]{"host-" + random.nextInt(64) + ".example.com", "order-service"}, null, payloadData,
+                    arbitraryDataMap);
+        }
+    };
+
+    private static final String ASCII_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 _-:/.";
+    private static final String NON_ASCII_CHARACTERS = "\u00e4\u00f6\u00fc\u00df\u00e9\u00e8\u00e7\u00f1\u00f8\u00e5\u00e6\u20ac\u4e2d\u6587\u65e5\u672c\u8a9e\ud55c\uad6d\uc5b4";
+
+    abstract void defineAttributes(StreamDefinition streamDefinition);
+
+    abstract Event createEvent(String streamId, Random random);
+
+    public StreamDefinition getStreamDefinition() {
+        try {
+            StreamDefinition streamDefinition = new StreamDefinition("org.wso2.benchmark." + name().toLowerCase(),
+                    "1.0.0");
+            defineAttributes(streamDefinition);
+            return streamDefinition;
+        } catch (MalformedStreamDefinitionException e) {
+            throw new IllegalStateException("Invalid benchmark stream definition " + name(), e);
+        }
+    }
+
+    public List<Event> createEvents(int count) {
+        String streamId = getStreamDefinition().getStreamId();
+        Random random = new Random(count);
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(createEvent(streamId, random));
+        }
+        return events;
+    }
+
+    private static String randomString(Random random, int minLength, int maxLength, boolean nonAscii) {
+        int length = minLength + random.nextInt(maxLength - minLength);
+        StringBuilder value = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            if (nonAscii && random.nextInt(8) == 0) {
+                value.append(NON_ASCII_CHARACTERS.charAt(random.nextInt(NON_ASCII_CHARACTERS.length())));
+            } else {
+                value.append(ASCII_CHARACTERS.charAt(random.nextInt(ASCII_CHARACTERS.length())));
+            }
+        }
+        return value.toString();
+    }
+}
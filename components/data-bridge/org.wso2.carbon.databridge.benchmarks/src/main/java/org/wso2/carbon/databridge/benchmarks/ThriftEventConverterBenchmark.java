@@ -0,0 +1,92 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks;
+
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.databridge.agent.endpoint.thrift.ThriftEventConverter;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.thrift.data.ThriftEventBundle;
+import org.wso2.carbon.databridge.core.StreamTypeHolder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of a batch of events into a Thrift event bundle by the data agent, and of the received Thrift
+ * event bundle into an event list by the receiver. The receiver side decodes a bundle which went through
+ * Thrift serialization, so that it has the same list implementations as a received bundle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ThriftEventConverterBenchmark {
+    private static final String SESSION_ID = "8a7a1a4c-2f3e-4c2a-9d8e-6b1f0c5d4e3a";
+
+    @Param({"NARROW", "WIDE", "STRING_HEAVY"})
+    private StreamShape shape;
+
+    @Param({"100"})
+    private int batchSize;
+
+    private List<Event> events;
+    private ThriftEventBundle receivedEventBundle;
+    private StreamTypeHolder streamTypeHolder;
+    private org.wso2.carbon.databridge.receiver.thrift.converter.ThriftEventConverter receiverConverter;
+
+    @Setup
+    public void setup() throws TException {
+        events = shape.createEvents(batchSize);
+        byte[] serializedBundle = new TSerializer(new TBinaryProtocol.Factory()).serialize(toThriftEventBundle());
+        receivedEventBundle = new ThriftEventBundle();
+        new TDeserializer(new TBinaryProtocol.Factory()).deserialize(receivedEventBundle, serializedBundle);
+        streamTypeHolder = new StreamTypeHolder(-1234);
+        streamTypeHolder.putStreamDefinition(shape.getStreamDefinition());
+        receiverConverter = new org.wso2.carbon.databridge.receiver.thrift.converter.ThriftEventConverter();
+    }
+
+    @Benchmark
+    public ThriftEventBundle toThriftEventBundle() {
+        ThriftEventBundle eventBundle = null;
+        for (Event event : events) {
+            eventBundle = ThriftEventConverter.toThriftEventBundle(event, eventBundle, SESSION_ID);
+        }
+        return eventBundle;
+    }
+
+    @Benchmark
+    public List<Event> toEventList() {
+        return receiverConverter.toEventList(receivedEventBundle, streamTypeHolder);
+    }
+}
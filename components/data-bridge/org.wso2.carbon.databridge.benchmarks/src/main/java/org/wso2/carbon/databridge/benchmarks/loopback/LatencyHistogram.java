@@ -0,0 +1,86 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks.loopback;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of latencies in nanoseconds. Values are counted in log-linear buckets, 64 linear
+ * buckets per power of two, hence the reported percentiles are within about 1.6% of the recorded values.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT_BITS = SUB_BUCKET_BITS + 1;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    void record(long value) {
+        counts.incrementAndGet(getIndex(Math.max(0, value)));
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100.
+     * @return the upper bound of the bucket holding the percentile, or 0 if no values are recorded.
+     */
+    long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target) {
+                return getUpperBound(i);
+            }
+        }
+        return getUpperBound(BUCKET_COUNT - 1);
+    }
+
+    private static int getIndex(long value) {
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        if (highestBit < LINEAR_LIMIT_BITS) {
+            return (int) value;
+        }
+        int shift = highestBit - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >> shift) - SUB_BUCKET_COUNT);
+    }
+
+    private static long getUpperBound(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
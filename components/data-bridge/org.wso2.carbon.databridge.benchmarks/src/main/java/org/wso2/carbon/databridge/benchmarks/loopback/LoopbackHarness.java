@@ -0,0 +1,274 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks.loopback;
+
+import org.wso2.carbon.databridge.agent.AgentHolder;
+import org.wso2.carbon.databridge.agent.DataPublisher;
+import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
+import org.wso2.carbon.databridge.benchmarks.StreamShape;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.receiver.binary.BinaryDataReceiverConstants;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End to end loopback harness, which publishes events with a number of data publishers to a Binary or Thrift
+ * data bridge receiver running in the same process, and reports the sustained throughput, the latency from
+ * the publish call to the subscriber callback, and the allocation rate of the process.
+ * <p>
+ * Usage, from the root of the repository, after building the benchmarks module:
+ * <pre>
+ * java -cp components/data-bridge/org.wso2.carbon.databridge.benchmarks/target/benchmarks.jar \
+ *     org.wso2.carbon.databridge.benchmarks.loopback.LoopbackHarness transport=binary publishers=4 duration=60
+ * </pre>
+ * Options, given as name=value:
+ * <ul>
+ * <li>transport - binary or thrift, default binary.</li>
+ * <li>publishers - number of data publishers, each publishing from its own thread, default 1.</li>
+ * <li>shape - NARROW, WIDE or STRING_HEAVY, default WIDE.</li>
+ * <li>rate - events per second published by each publisher, 0 for as fast as possible, default 0.</li>
+ * <li>warmup - warm up time in seconds, default 10.</li>
+ * <li>duration - measurement time in seconds, default 30.</li>
+ * <li>receiverIOMode - blocking or nio for the Binary receiver, default blocking, and threadPool, hsha or
+ * threadedSelector for the Thrift receiver, default threadPool.</li>
+ * <li>resources - directory holding the data-agent-config.xml, the key store and the trust store, default
+ * the test resources of the data agent.</li>
+ * </ul>
+ * The latency of an event is measured with {@link System#nanoTime()}, which is set as the time stamp of the
+ * event when it's published. The allocation rate is the sum of the bytes allocated by the live threads, hence
+ * it doesn't account for the threads which terminated during the measurement.
+ */
+public class LoopbackHarness {
+    static final String BINARY = "binary";
+    static final String THRIFT = "thrift";
+    static final String HOST_NAME = "localhost";
+
+    private static final int BINARY_PORT = 9611;
+    private static final int BINARY_SECURE_PORT = 9711;
+    private static final int THRIFT_PORT = 7611;
+    private static final int THRIFT_SECURE_PORT = 7711;
+    private static final int EVENT_POOL_SIZE = 1024;
+    private static final String THRIFT_THREAD_POOL_SERVER_MODE = "threadPool";
+    private static final String DEFAULT_RESOURCES = "components" + File.separator + "data-bridge" + File.separator +
+            "org.wso2.carbon.databridge.agent" + File.separator + "src" + File.separator + "test" + File.separator +
+            "resources";
+
+    private final String transport;
+    private final int publishers;
+    private final StreamShape shape;
+    private final int rate;
+    private final int warmup;
+    private final int duration;
+    private final String receiverIOMode;
+    private final File resources;
+    private final AtomicLong publishedEvents = new AtomicLong();
+    private volatile boolean publishing = true;
+
+    LoopbackHarness(Map<String, String> options) {
+        this.transport = getOption(options, "transport", BINARY).toLowerCase();
+        this.publishers = Integer.parseInt(getOption(options, "publishers", "1"));
+        this.shape = StreamShape.valueOf(getOption(options, "shape", StreamShape.WIDE.name()).toUpperCase());
+        this.rate = Integer.parseInt(getOption(options, "rate", "0"));
+        this.warmup = Integer.parseInt(getOption(options, "warmup", "10"));
+        this.duration = Integer.parseInt(getOption(options, "duration", "30"));
+        this.receiverIOMode = getOption(options, "receiverIOMode", BINARY.equals(transport) ?
+                BinaryDataReceiverConstants.BLOCKING_IO_MODE : THRIFT_THREAD_POOL_SERVER_MODE);
+        this.resources = new File(getOption(options, "resources", DEFAULT_RESOURCES));
+        if (!BINARY.equals(transport) && !THRIFT.equals(transport)) {
+            throw new IllegalArgumentException("Unknown transport " + transport + ", expected binary or thrift");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid option " + arg + ", expected name=value");
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        new LoopbackHarness(options).run();
+        // The receiver and the data publishers leave non daemon threads behind.
+        System.exit(0);
+    }
+
+    private static String getOption(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    void run() throws Exception {
+        if (!new File(resources, "data-agent-config.xml").isFile()) {
+            throw new IllegalArgumentException("data-agent-config.xml is not found in " +
+                    resources.getAbsolutePath() + ", set the resources option");
+        }
+        System.setProperty("Security.KeyStore.Location", new File(resources, "wso2carbon.jks").getAbsolutePath());
+        System.setProperty("Security.KeyStore.Password", "wso2carbon");
+        System.setProperty("javax.net.ssl.trustStore", new File(resources, "client-truststore.jks").getAbsolutePath());
+        System.setProperty("javax.net.ssl.trustStorePassword", "wso2carbon");
+        AgentHolder.setConfigPath(new File(resources, "data-agent-config.xml").getAbsolutePath());
+
+        boolean binary = BINARY.equals(transport);
+        if (!binary && !THRIFT_THREAD_POOL_SERVER_MODE.equalsIgnoreCase(receiverIOMode)) {
+            // The selector based Thrift servers only accept the framed transport.
+            AgentHolder.getInstance().getDataEndpointAgent(DataEndpointConstants.THRIFT_DATA_AGENT_TYPE)
+                    .getAgentConfiguration().setFramedTransport(true);
+        }
+        int port = binary ? BINARY_PORT : THRIFT_PORT;
+        int securePort = binary ? BINARY_SECURE_PORT : THRIFT_SECURE_PORT;
+        StreamDefinition streamDefinition = shape.getStreamDefinition();
+        LoopbackReceiver receiver = new LoopbackReceiver(transport, port, securePort, receiverIOMode);
+        receiver.addStreamDefinition(streamDefinition);
+        receiver.start();
+
+        DataPublisher[] dataPublishers = new DataPublisher[publishers];
+        for (int i = 0; i < publishers; i++) {
+            dataPublishers[i] = new DataPublisher(binary ? "Binary" : "Thrift", "tcp://" + HOST_NAME + ":" + port,
+                    "ssl://" + HOST_NAME + ":" + securePort, "admin", "admin");
+        }
+        System.out.println("Publishing " + shape + " events over " + transport + " with " + publishers +
+                " publisher(s) to a " + receiverIOMode + " receiver" + (rate > 0 ? " at " + rate + " events/s each" : "") + ", warming up for " +
+                warmup + "s and measuring for " + duration + "s");
+
+        CountDownLatch publishersDone = new CountDownLatch(publishers);
+        for (int i = 0; i < publishers; i++) {
+            Thread publisherThread = new Thread(new Publisher(dataPublishers[i], shape.createEvents(EVENT_POOL_SIZE),
+                    publishersDone), "LoopbackPublisher-" + i);
+            publisherThread.setDaemon(true);
+            publisherThread.start();
+        }
+
+        TimeUnit.SECONDS.sleep(warmup);
+        receiver.getLatencyHistogram().reset();
+        long startPublished = publishedEvents.get();
+        long startReceived = receiver.getReceivedEvents();
+        long startAllocated = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        long lastReceived = startReceived;
+        for (int second = 1; second <= duration; second++) {
+            TimeUnit.SECONDS.sleep(1);
+            long received = receiver.getReceivedEvents();
+            System.out.println(String.format("%4ds %,12d events/s", second, received - lastReceived));
+            lastReceived = received;
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+        long allocated = getAllocatedBytes() - startAllocated;
+        long published = publishedEvents.get() - startPublished;
+        long received = receiver.getReceivedEvents() - startReceived;
+
+        publishing = false;
+        publishersDone.await(10, TimeUnit.SECONDS);
+        for (DataPublisher dataPublisher : dataPublishers) {
+            dataPublisher.shutdown();
+        }
+        receiver.stop();
+
+        double seconds = elapsedNanos / 1e9;
+        LatencyHistogram latencyHistogram = receiver.getLatencyHistogram();
+        System.out.println();
+        System.out.println(String.format("Published          : %,d events (%,.0f events/s)", published,
+                published / seconds));
+        System.out.println(String.format("Received           : %,d events (%,.0f events/s)", received,
+                received / seconds));
+        System.out.println(String.format("Latency p50        : %,.3f ms", toMillis(latencyHistogram.getValueAtPercentile(50))));
+        System.out.println(String.format("Latency p99        : %,.3f ms", toMillis(latencyHistogram.getValueAtPercentile(99))));
+        System.out.println(String.format("Latency p99.9      : %,.3f ms", toMillis(latencyHistogram.getValueAtPercentile(99.9))));
+        System.out.println(String.format("Latency max        : %,.3f ms", toMillis(latencyHistogram.getValueAtPercentile(100))));
+        if (allocated >= 0) {
+            System.out.println(String.format("Allocation rate    : %,.1f MB/s (%,.0f bytes/event)",
+                    allocated / seconds / (1024 * 1024), received == 0 ? 0.0 : (double) allocated / received));
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * @return the bytes allocated by the live threads, or -1 if the JVM doesn't support measuring it.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!allocationMXBean.isThreadAllocatedMemorySupported() || !allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long allocated = 0;
+        for (long allocatedBytes : allocationMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            if (allocatedBytes > 0) {
+                allocated += allocatedBytes;
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Publishes copies of the pooled events, each with the current {@link System#nanoTime()} as its time stamp,
+     * either as fast as possible or at the configured rate.
+     */
+    private class Publisher implements Runnable {
+        private final DataPublisher dataPublisher;
+        private final List<Event> events;
+        private final CountDownLatch done;
+
+        Publisher(DataPublisher dataPublisher, List<Event> events, CountDownLatch done) {
+            this.dataPublisher = dataPublisher;
+            this.events = events;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+                long nextPublishTime = System.nanoTime();
+                int index = 0;
+                while (publishing) {
+                    if (intervalNanos > 0) {
+                        long waitNanos = nextPublishTime - System.nanoTime();
+                        if (waitNanos > 0) {
+                            LockSupport.parkNanos(waitNanos);
+                        }
+                        nextPublishTime += intervalNanos;
+                    }
+                    Event event = events.get(index);
+                    index = (index + 1) % events.size();
+                    dataPublisher.publish(new Event(event.getStreamId(), System.nanoTime(), event.getMetaData(),
+                            event.getCorrelationData(), event.getPayloadData(), event.getArbitraryDataMap()));
+                    publishedEvents.incrementAndGet();
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+}
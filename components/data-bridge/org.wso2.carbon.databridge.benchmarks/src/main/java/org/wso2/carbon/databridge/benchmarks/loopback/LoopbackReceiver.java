@@ -0,0 +1,145 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks.loopback;
+
+import org.wso2.carbon.databridge.commons.Credentials;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.core.AgentCallback;
+import org.wso2.carbon.databridge.core.DataBridge;
+import org.wso2.carbon.databridge.core.Utils.AgentSession;
+import org.wso2.carbon.databridge.core.conf.DataBridgeConfiguration;
+import org.wso2.carbon.databridge.core.definitionstore.InMemoryStreamDefinitionStore;
+import org.wso2.carbon.databridge.core.exception.DataBridgeException;
+import org.wso2.carbon.databridge.core.exception.StreamDefinitionStoreException;
+import org.wso2.carbon.databridge.core.internal.authentication.AuthenticationHandler;
+import org.wso2.carbon.databridge.receiver.binary.conf.BinaryDataReceiverConfiguration;
+import org.wso2.carbon.databridge.receiver.binary.internal.BinaryDataReceiver;
+import org.wso2.carbon.databridge.receiver.thrift.ThriftDataReceiver;
+import org.wso2.carbon.databridge.receiver.thrift.conf.ThriftDataReceiverConfiguration;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In process data bridge receiver of the loopback harness. It authenticates every agent, holds the stream
+ * definitions in memory, and records the number of received events and their latency, which is measured
+ * from the time stamp of the event, set to {@link System#nanoTime()} by the publishing thread.
+ */
+class LoopbackReceiver {
+    static final int TENANT_ID = -1234;
+
+    private final String transport;
+    private final int port;
+    private final int securePort;
+    private final String receiverIOMode;
+    private final InMemoryStreamDefinitionStore streamDefinitionStore = new InMemoryStreamDefinitionStore();
+    private final AtomicLong receivedEvents = new AtomicLong();
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+    private BinaryDataReceiver binaryDataReceiver;
+    private ThriftDataReceiver thriftDataReceiver;
+
+    LoopbackReceiver(String transport, int port, int securePort, String receiverIOMode) {
+        this.transport = transport;
+        this.port = port;
+        this.securePort = securePort;
+        this.receiverIOMode = receiverIOMode;
+    }
+
+    void addStreamDefinition(StreamDefinition streamDefinition) throws StreamDefinitionStoreException {
+        streamDefinitionStore.saveStreamDefinitionToStore(streamDefinition, TENANT_ID);
+    }
+
+    void start() throws DataBridgeException, IOException {
+        DataBridge dataBridge = new DataBridge(new AuthenticationHandler() {
+            @Override
+            public boolean authenticate(String userName, String password) {
+                return true;
+            }
+
+            @Override
+            public String getTenantDomain(String userName) {
+                return "carbon.super";
+            }
+
+            @Override
+            public int getTenantId(String tenantDomain) {
+                return TENANT_ID;
+            }
+
+            @Override
+            public void initContext(AgentSession agentSession) {
+            }
+
+            @Override
+            public void destroyContext(AgentSession agentSession) {
+            }
+        }, streamDefinitionStore, new DataBridgeConfiguration());
+
+        dataBridge.subscribe(new AgentCallback() {
+            @Override
+            public void definedStream(StreamDefinition streamDefinition, int tenantId) {
+            }
+
+            @Override
+            public void removeStream(StreamDefinition streamDefinition, int tenantId) {
+            }
+
+            @Override
+            public void receive(List<Event> eventList, Credentials credentials) {
+                long now = System.nanoTime();
+                for (Event event : eventList) {
+                    latencyHistogram.record(now - event.getTimeStamp());
+                }
+                receivedEvents.addAndGet(eventList.size());
+            }
+        });
+
+        if (LoopbackHarness.BINARY.equals(transport)) {
+            BinaryDataReceiverConfiguration receiverConfiguration = new BinaryDataReceiverConfiguration(securePort,
+                    port);
+            receiverConfiguration.setTCPReceiverIOMode(receiverIOMode);
+            binaryDataReceiver = new BinaryDataReceiver(receiverConfiguration, dataBridge);
+            binaryDataReceiver.start();
+        } else {
+            ThriftDataReceiverConfiguration receiverConfiguration = new ThriftDataReceiverConfiguration(securePort,
+                    port);
+            receiverConfiguration.setServerMode(receiverIOMode);
+            thriftDataReceiver = new ThriftDataReceiver(receiverConfiguration, dataBridge);
+            thriftDataReceiver.start(LoopbackHarness.HOST_NAME);
+        }
+    }
+
+    long getReceivedEvents() {
+        return receivedEvents.get();
+    }
+
+    LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    void stop() {
+        if (binaryDataReceiver != null) {
+            binaryDataReceiver.stop();
+        }
+        if (thriftDataReceiver != null) {
+            thriftDataReceiver.stop();
+        }
+    }
+}
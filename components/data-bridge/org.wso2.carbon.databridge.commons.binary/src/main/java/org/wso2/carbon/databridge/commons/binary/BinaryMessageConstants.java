@@ -20,4 +20,31 @@ package org.wso2.carbon.databridge.commons.binary;
 public class BinaryMessageConstants {
     public static final String DEFAULT_CHARSET = "UTF-8";
 
+    /**
+     * Pipelined acknowledgements are negotiated by appending an int with the login options to the login
+     * message, which receivers that don't support the extension ignore.
+     */
+    public static final int LOGIN_OPTION_PIPELINED_ACKS = 1;
+
+    /**
+     * Publish message which carries a long sequence number after the events, the receiver acknowledges these
+     * messages cumulatively instead of responding to each of them.
+     */
+    public static final int SEQUENCED_PUBLISH_MESSAGE = 3;
+
+    /**
+     * Response to a login which requested pipelined acknowledgements, followed by the session id.
+     */
+    public static final int PIPELINED_LOGIN_OK_RESPONSE = 3;
+
+    /**
+     * Cumulative acknowledgement, followed by the long sequence number up to which all messages are processed.
+     */
+    public static final int ACK_RESPONSE = 4;
+
+    /**
+     * Failure of a sequenced publish message, followed by its long sequence number and an error response.
+     */
+    public static final int SEQUENCED_ERROR_RESPONSE = 5;
+
 }
@@ -20,6 +20,7 @@ package org.wso2.carbon.databridge.commons.binary;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 
 public class BinaryMessageConverterUtil {
@@ -41,15 +42,28 @@ public class BinaryMessageConverterUtil {
     }
 
     public static String getString(ByteBuffer byteBuffer, int size) {
-
+        if (byteBuffer.hasArray()) {
+            if (size > byteBuffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            // Decode directly from the backing array rather than copying the bytes out first.
+            int position = byteBuffer.position();
+            String value = getString(byteBuffer.array(), byteBuffer.arrayOffset() + position, size);
+            byteBuffer.position(position + size);
+            return value;
+        }
         byte[] bytes = new byte[size];
         byteBuffer.get(bytes);
         return new String(bytes);
     }
 
+    public static String getString(byte[] bytes, int offset, int size) {
+        return new String(bytes, offset, size);
+    }
+
     public static int getSize(Object data) {
         if (data instanceof String) {
-            return 4 + ((String) data).length();
+            return 4 + getStringSize((String) data);
         } else if (data instanceof Integer) {
             return 4;
         } else if (data instanceof Long) {
@@ -67,8 +81,8 @@ public class BinaryMessageConverterUtil {
 
     public static void assignData(Object data, ByteBuffer eventDataBuffer) throws IOException {
         if (data instanceof String) {
-            eventDataBuffer.putInt(((String) data).length());
-            eventDataBuffer.put((((String) data).getBytes(BinaryMessageConstants.DEFAULT_CHARSET)));
+            eventDataBuffer.putInt(getStringSize((String) data));
+            putString(eventDataBuffer, (String) data);
         } else if (data instanceof Integer) {
             eventDataBuffer.putInt((Integer) data);
         } else if (data instanceof Long) {
@@ -84,4 +98,57 @@ public class BinaryMessageConverterUtil {
         }
 
     }
+
+    /**
+     * Returns the number of bytes needed to encode the given string in UTF-8, without encoding it.
+     */
+    public static int getStringSize(String value) {
+        int size = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                size++;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are replaced with '?' as done by String.getBytes()
+                size++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes the UTF-8 encoded bytes of the given string to the buffer without creating an intermediate array.
+     */
+    public static void putString(ByteBuffer byteBuffer, String value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                byteBuffer.put((byte) c);
+            } else if (c < 0x800) {
+                byteBuffer.put((byte) (0xC0 | (c >> 6)));
+                byteBuffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                byteBuffer.put((byte) (0xF0 | (codePoint >> 18)));
+                byteBuffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                byteBuffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                byteBuffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                byteBuffer.put((byte) '?');
+            } else {
+                byteBuffer.put((byte) (0xE0 | (c >> 12)));
+                byteBuffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                byteBuffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
 }
@@ -0,0 +1,87 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.core;
+
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.Map;
+
+/**
+ * Flyweight, cursor style view over the events of a received event bundle. The view is positioned on one event
+ * at a time, and the attributes of the current event are read with typed getters, so that the subscribers which
+ * only need a few attributes don't pay for decoding and boxing the whole event.
+ * <p>
+ * The attributes are addressed by their group, which is one of {@link #META_DATA}, {@link #CORRELATION_DATA}
+ * or {@link #PAYLOAD_DATA}, and their index within the group, in the order of the stream definition. A view is
+ * handed to a single subscriber and is only valid within the callback it's passed to.
+ */
+public interface EventBundleView {
+
+    int META_DATA = 0;
+
+    int CORRELATION_DATA = 1;
+
+    int PAYLOAD_DATA = 2;
+
+    /**
+     * @return the number of events in the bundle.
+     */
+    int size();
+
+    /**
+     * Moves the view to the next event of the bundle, the view is positioned before the first event initially.
+     *
+     * @return true if the view is positioned on an event, false if there are no more events.
+     */
+    boolean next();
+
+    String getStreamId();
+
+    long getTimeStamp();
+
+    /**
+     * @param group the attribute group.
+     * @return the attribute types of the group of the current event, or null if the stream has no such attributes.
+     */
+    AttributeType[] getAttributeTypes(int group);
+
+    int getInt(int group, int index);
+
+    long getLong(int group, int index);
+
+    float getFloat(int group, int index);
+
+    double getDouble(int group, int index);
+
+    boolean getBoolean(int group, int index);
+
+    String getString(int group, int index);
+
+    /**
+     * @return the boxed value of the attribute, as it would be in the attribute array of the {@link Event}.
+     */
+    Object getAttribute(int group, int index);
+
+    Map<String, String> getArbitraryDataMap();
+
+    /**
+     * @return the current event fully decoded into an {@link Event}.
+     */
+    Event toEvent();
+}
@@ -0,0 +1,36 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.core;
+
+import org.wso2.carbon.databridge.commons.Credentials;
+
+/**
+ * Agent callback which receives the events through an {@link EventBundleView} rather than a list of events.
+ * When the receiving transport supports views, the events are decoded lazily as the subscriber reads them,
+ * otherwise the view is backed by the converted event list. The {@link #receive(java.util.List, Credentials)}
+ * method is not called for these callbacks.
+ */
+public interface EventViewAgentCallback extends AgentCallback {
+
+    /**
+     * will get called when Events arrive
+     *
+     * @param eventBundleView view over the arrived events
+     */
+    void receive(EventBundleView eventBundleView, Credentials credentials);
+}
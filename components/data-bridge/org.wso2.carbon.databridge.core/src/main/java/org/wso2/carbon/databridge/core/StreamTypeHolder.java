@@ -25,15 +25,20 @@ import org.wso2.carbon.databridge.core.internal.EventDispatcher;
 import org.wso2.carbon.utils.CarbonUtils;
 import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Event stream data type holder
+ * Event stream data type holder. The stream attribute composites are kept in an immutable map which is replaced
+ * on every change, so that the event receiving threads look them up without any synchronization and see a
+ * consistent snapshot, while the rare stream definition changes pay for copying the map.
  */
 public class StreamTypeHolder {
     private int tenantId;
-    private Map<String, StreamAttributeComposite> attributeCompositeMap = new ConcurrentHashMap<String, StreamAttributeComposite>();
+    private volatile Map<String, StreamAttributeComposite> attributeCompositeMap =
+            Collections.<String, StreamAttributeComposite>emptyMap();
     private EventDispatcher eventDispatcherCallback;
 
     public StreamTypeHolder(int tenantId) {
@@ -49,6 +54,9 @@ public class StreamTypeHolder {
     }
 
 
+    /**
+     * @return an unmodifiable snapshot of the stream attribute composites, keyed by the stream id.
+     */
     public Map<String, StreamAttributeComposite> getAttributeCompositeMap() {
         return attributeCompositeMap;
     }
@@ -65,12 +73,54 @@ public class StreamTypeHolder {
         eventDispatcherCallback.reloadDomainNameStreamTypeHolderCache(tenantId);
     }
 
+    /**
+     * Loads the definition of a stream that is not known to the holder yet, which is cheaper than reloading
+     * all the definitions of the tenant, as the stream definition store caches the lookups including the ones
+     * of undefined streams.
+     *
+     * @param streamId the id of the stream to load.
+     */
+    public void reloadStreamTypeHolder(String streamId) {
+        eventDispatcherCallback.loadStreamDefinition(tenantId, streamId);
+    }
+
     public StreamAttributeComposite getAttributeComposite(String streamId) {
         return attributeCompositeMap.get(streamId);
     }
 
-    public void putStreamDefinition(StreamDefinition streamDefinition) {
-        this.attributeCompositeMap.put(streamDefinition.getStreamId(), new StreamAttributeComposite(streamDefinition));
+    public synchronized void putStreamDefinition(StreamDefinition streamDefinition) {
+        Map<String, StreamAttributeComposite> newAttributeCompositeMap =
+                new HashMap<String, StreamAttributeComposite>(attributeCompositeMap);
+        newAttributeCompositeMap.put(streamDefinition.getStreamId(), new StreamAttributeComposite(streamDefinition));
+        attributeCompositeMap = Collections.unmodifiableMap(newAttributeCompositeMap);
+    }
+
+    /**
+     * @param streamId the id of the stream to remove.
+     * @return the removed stream attribute composite, or null if the stream is not known to the holder.
+     */
+    public synchronized StreamAttributeComposite removeStreamDefinition(String streamId) {
+        if (!attributeCompositeMap.containsKey(streamId)) {
+            return null;
+        }
+        Map<String, StreamAttributeComposite> newAttributeCompositeMap =
+                new HashMap<String, StreamAttributeComposite>(attributeCompositeMap);
+        StreamAttributeComposite attributeComposite = newAttributeCompositeMap.remove(streamId);
+        attributeCompositeMap = Collections.unmodifiableMap(newAttributeCompositeMap);
+        return attributeComposite;
+    }
+
+    /**
+     * Removes the streams whose ids are not in the given collection.
+     *
+     * @param streamIds the ids of the streams to keep.
+     */
+    public synchronized void retainStreamDefinitions(Collection<String> streamIds) {
+        Map<String, StreamAttributeComposite> newAttributeCompositeMap =
+                new HashMap<String, StreamAttributeComposite>(attributeCompositeMap);
+        if (newAttributeCompositeMap.keySet().retainAll(streamIds)) {
+            attributeCompositeMap = Collections.unmodifiableMap(newAttributeCompositeMap);
+        }
     }
 
     public void setEventDispatcherCallback(EventDispatcher eventDispatcherCallback){
@@ -22,36 +22,61 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.databridge.commons.StreamDefinition;
 import org.wso2.carbon.databridge.commons.exception.DifferentStreamDefinitionAlreadyDefinedException;
+import org.wso2.carbon.databridge.commons.utils.DataBridgeCommonsUtils;
 import org.wso2.carbon.databridge.commons.utils.EventDefinitionConverterUtils;
 import org.wso2.carbon.databridge.core.exception.StreamDefinitionStoreException;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * The Event Stream Definition Store interface
- * Used to persist Event Stream Definitions at the Agent Server
+ * Base of the stream definition stores, which keeps a per tenant in memory index of the definitions in front of
+ * the backing store. The index is kept up to date with the definitions saved and deleted through the store, and
+ * the stores whose backing store can be changed externally need to call {@link #invalidateStreamDefinition} or
+ * {@link #invalidateCachedStreamDefinition} when that happens.
  */
 public abstract class AbstractStreamDefinitionStore implements StreamDefinitionStore {
 
     private Log log = LogFactory.getLog(AbstractStreamDefinitionStore.class);
     private List<StreamAddRemoveListener> streamAddRemoveListenerList = new ArrayList<StreamAddRemoveListener>();
+    private final ConcurrentHashMap<Integer, TenantStreamDefinitionCache> tenantCaches =
+            new ConcurrentHashMap<Integer, TenantStreamDefinitionCache>();
 
     public StreamDefinition getStreamDefinition(String name,
                                                 String version, int tenantId)
             throws StreamDefinitionStoreException {
-        return getStreamDefinitionFromStore(name, version, tenantId);
+        return getStreamDefinition(DataBridgeCommonsUtils.generateStreamId(name, version), tenantId);
     }
 
     public StreamDefinition getStreamDefinition(String streamId, int tenantId)
             throws StreamDefinitionStoreException {
-        return getStreamDefinitionFromStore(streamId, tenantId);
+        TenantStreamDefinitionCache tenantCache = getTenantCache(tenantId);
+        StreamDefinition streamDefinition = tenantCache.get(streamId);
+        if (streamDefinition != null || tenantCache.isKnownUnknown(streamId)) {
+            return streamDefinition;
+        }
+        long generation = tenantCache.getGeneration();
+        streamDefinition = getStreamDefinitionFromStore(streamId, tenantId);
+        tenantCache.loaded(streamId, streamDefinition, generation);
+        return streamDefinition;
     }
 
     public Collection<StreamDefinition> getAllStreamDefinitions(int tenantId) {
+        TenantStreamDefinitionCache tenantCache = getTenantCache(tenantId);
+        if (tenantCache.isFullyLoaded()) {
+            return tenantCache.getAll();
+        }
         try {
-            return getAllStreamDefinitionsFromStore(tenantId);
+            long generation = tenantCache.getGeneration();
+            Collection<StreamDefinition> allStreamDefinitions = getAllStreamDefinitionsFromStore(tenantId);
+            if (allStreamDefinitions == null) {
+                return new ArrayList<StreamDefinition>();
+            }
+            allStreamDefinitions = new ArrayList<StreamDefinition>(allStreamDefinitions);
+            tenantCache.loadedAll(allStreamDefinitions, generation);
+            return allStreamDefinitions;
         } catch (StreamDefinitionStoreException e) {
             log.error("Error occured when trying to retrieve definitions. Returning empty list.");
             return new ArrayList<StreamDefinition>();
@@ -65,6 +90,7 @@ public abstract class AbstractStreamDefinitionStore implements StreamDefinitionS
         existingDefinition = getStreamDefinition(streamDefinition.getName(), streamDefinition.getVersion(), tenantId);
         if (existingDefinition == null) {
             saveStreamDefinitionToStore(streamDefinition, tenantId);
+            getTenantCache(tenantId).put(streamDefinition);
             for (StreamAddRemoveListener streamAddRemoveListener : streamAddRemoveListenerList) {
                 streamAddRemoveListener.streamAdded(tenantId, streamDefinition.getStreamId());
             }
@@ -78,7 +104,9 @@ public abstract class AbstractStreamDefinitionStore implements StreamDefinitionS
     }
 
     public boolean deleteStreamDefinition(String streamName, String streamVersion, int tenantId) {
-        if (removeStreamDefinition(streamName, streamVersion, tenantId)) {
+        boolean removed = removeStreamDefinition(streamName, streamVersion, tenantId);
+        getTenantCache(tenantId).invalidate(DataBridgeCommonsUtils.generateStreamId(streamName, streamVersion));
+        if (removed) {
             for (StreamAddRemoveListener streamAddRemoveListener : streamAddRemoveListenerList) {
                 streamAddRemoveListener.streamRemoved(tenantId, streamName + ":" + streamVersion);
             }
@@ -101,12 +129,37 @@ public abstract class AbstractStreamDefinitionStore implements StreamDefinitionS
         }
     }
 
+    /**
+     * Drops the cached definition of a stream that was removed from the backing store externally, and notifies
+     * the listeners about the removal.
+     */
     public void invalidateStreamDefinition(String streamName, String streamVersion, int tenantId) {
+        invalidateCachedStreamDefinition(streamName, streamVersion, tenantId);
         for (StreamAddRemoveListener streamAddRemoveListener : streamAddRemoveListenerList) {
             streamAddRemoveListener.streamRemoved(tenantId, streamName + ":" + streamVersion);
         }
     }
 
+    /**
+     * Drops the cached state of a stream that was added or changed in the backing store externally, so that it's
+     * loaded from the backing store when it's looked up next.
+     */
+    public void invalidateCachedStreamDefinition(String streamName, String streamVersion, int tenantId) {
+        getTenantCache(tenantId).invalidate(DataBridgeCommonsUtils.generateStreamId(streamName, streamVersion));
+    }
+
+    private TenantStreamDefinitionCache getTenantCache(int tenantId) {
+        TenantStreamDefinitionCache tenantCache = tenantCaches.get(tenantId);
+        if (tenantCache == null) {
+            tenantCache = new TenantStreamDefinitionCache();
+            TenantStreamDefinitionCache existingCache = tenantCaches.putIfAbsent(tenantId, tenantCache);
+            if (existingCache != null) {
+                tenantCache = existingCache;
+            }
+        }
+        return tenantCache;
+    }
+
     public abstract StreamDefinition getStreamDefinitionFromStore(String name, String version, int tenantId)
             throws StreamDefinitionStoreException;
 
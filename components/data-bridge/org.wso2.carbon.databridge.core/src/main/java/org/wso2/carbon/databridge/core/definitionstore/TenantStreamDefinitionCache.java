@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.databridge.core.definitionstore;
+
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.core.internal.utils.DataBridgeConstants;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory index of the stream definitions of a tenant, which is kept by the {@link AbstractStreamDefinitionStore}
+ * in front of the backing store. The stream ids which are not found in the backing store are remembered for a
+ * while, so that events of undefined streams don't result in a store lookup each.
+ * <p>
+ * Every invalidation advances the generation of the cache, and the definitions loaded from the backing store
+ * are only cached if the generation didn't change while they were loaded, so that a load racing with an
+ * invalidation cannot bring back a stale definition. The cached definitions also expire, so that the changes
+ * of the backing store which are not notified to this node, e.g. the changes made by the other nodes of a
+ * cluster, are picked up within the expiry time.
+ */
+class TenantStreamDefinitionCache {
+    private final ConcurrentHashMap<String, CachedStreamDefinition> streamDefinitions =
+            new ConcurrentHashMap<String, CachedStreamDefinition>();
+    private final ConcurrentHashMap<String, Long> unknownStreamIds = new ConcurrentHashMap<String, Long>();
+    private final AtomicLong generation = new AtomicLong();
+    private final long streamDefinitionTimeout;
+    private final long unknownStreamIdTimeout;
+    private final int maxUnknownStreamIds;
+    private volatile long fullyLoadedExpiryTime;
+
+    TenantStreamDefinitionCache() {
+        this(DataBridgeConstants.STREAM_DEFINITION_CACHE_TIMEOUT_MS,
+                DataBridgeConstants.UNKNOWN_STREAM_ID_CACHE_TIMEOUT_MS,
+                DataBridgeConstants.MAX_UNKNOWN_STREAM_IDS_PER_TENANT);
+    }
+
+    TenantStreamDefinitionCache(long streamDefinitionTimeout, long unknownStreamIdTimeout, int maxUnknownStreamIds) {
+        this.streamDefinitionTimeout = streamDefinitionTimeout;
+        this.unknownStreamIdTimeout = unknownStreamIdTimeout;
+        this.maxUnknownStreamIds = maxUnknownStreamIds;
+    }
+
+    StreamDefinition get(String streamId) {
+        CachedStreamDefinition cachedStreamDefinition = streamDefinitions.get(streamId);
+        if (cachedStreamDefinition == null) {
+            return null;
+        }
+        if (cachedStreamDefinition.expiryTime < System.currentTimeMillis()) {
+            streamDefinitions.remove(streamId, cachedStreamDefinition);
+            return null;
+        }
+        return cachedStreamDefinition.streamDefinition;
+    }
+
+    /**
+     * @return true if the stream id was recently looked up and not found in the backing store.
+     */
+    boolean isKnownUnknown(String streamId) {
+        Long expiryTime = unknownStreamIds.get(streamId);
+        if (expiryTime == null) {
+            return false;
+        }
+        if (expiryTime < System.currentTimeMillis()) {
+            unknownStreamIds.remove(streamId, expiryTime);
+            return false;
+        }
+        return true;
+    }
+
+    boolean isFullyLoaded() {
+        return fullyLoadedExpiryTime >= System.currentTimeMillis();
+    }
+
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Caches the result of looking up a stream id in the backing store.
+     *
+     * @param streamId         the stream id that was looked up.
+     * @param streamDefinition the definition found, or null if the stream is not defined.
+     * @param loadGeneration   the generation of the cache when the lookup started.
+     */
+    synchronized void loaded(String streamId, StreamDefinition streamDefinition, long loadGeneration) {
+        if (loadGeneration != generation.get()) {
+            return;
+        }
+        if (streamDefinition != null) {
+            cache(streamDefinition);
+        } else {
+            if (unknownStreamIds.size() >= maxUnknownStreamIds) {
+                // Bounds the memory a publisher sending random stream ids can hold on to.
+                unknownStreamIds.clear();
+            }
+            unknownStreamIds.put(streamId, System.currentTimeMillis() + unknownStreamIdTimeout);
+        }
+    }
+
+    /**
+     * Replaces the cached definitions with all the definitions of the tenant found in the backing store.
+     */
+    synchronized void loadedAll(Collection<StreamDefinition> allStreamDefinitions, long loadGeneration) {
+        if (loadGeneration != generation.get()) {
+            return;
+        }
+        streamDefinitions.clear();
+        for (StreamDefinition streamDefinition : allStreamDefinitions) {
+            cache(streamDefinition);
+            unknownStreamIds.remove(streamDefinition.getStreamId());
+        }
+        fullyLoadedExpiryTime = System.currentTimeMillis() + streamDefinitionTimeout;
+    }
+
+    Collection<StreamDefinition> getAll() {
+        Collection<StreamDefinition> allStreamDefinitions = new ArrayList<StreamDefinition>(streamDefinitions.size());
+        for (CachedStreamDefinition cachedStreamDefinition : streamDefinitions.values()) {
+            allStreamDefinitions.add(cachedStreamDefinition.streamDefinition);
+        }
+        return allStreamDefinitions;
+    }
+
+    /**
+     * Caches a definition which was written to the backing store through the owning store.
+     */
+    synchronized void put(StreamDefinition streamDefinition) {
+        generation.incrementAndGet();
+        cache(streamDefinition);
+        unknownStreamIds.remove(streamDefinition.getStreamId());
+    }
+
+    /**
+     * Drops the cached state of the given stream, which was changed or removed in the backing store. As the
+     * change may have added the stream, the list of all the definitions needs to be loaded again as well.
+     */
+    synchronized void invalidate(String streamId) {
+        generation.incrementAndGet();
+        streamDefinitions.remove(streamId);
+        unknownStreamIds.remove(streamId);
+        fullyLoadedExpiryTime = 0;
+    }
+
+    private void cache(StreamDefinition streamDefinition) {
+        streamDefinitions.put(streamDefinition.getStreamId(),
+                new CachedStreamDefinition(streamDefinition, System.currentTimeMillis() + streamDefinitionTimeout));
+    }
+
+    private static class CachedStreamDefinition {
+        private final StreamDefinition streamDefinition;
+        private final long expiryTime;
+
+        private CachedStreamDefinition(StreamDefinition streamDefinition, long expiryTime) {
+            this.streamDefinition = streamDefinition;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
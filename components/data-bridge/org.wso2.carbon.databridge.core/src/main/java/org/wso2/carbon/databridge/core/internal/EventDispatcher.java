@@ -268,6 +268,39 @@ public class EventDispatcher {
         }
     }
 
+    /**
+     * Adds the definition of a stream that is not known to the stream type holder of the tenant yet, by looking
+     * it up in the stream definition store, instead of reloading all the definitions of the tenant.
+     *
+     * @param tenantId the tenant the stream belongs to.
+     * @param streamId the id of the stream.
+     */
+    public void loadStreamDefinition(int tenantId, String streamId) {
+        StreamDefinition streamDefinition;
+        try {
+            streamDefinition = streamDefinitionStore.getStreamDefinition(streamId, tenantId);
+        } catch (StreamDefinitionStoreException e) {
+            log.error("Error while loading the definition of stream " + streamId + " of tenant " + tenantId, e);
+            return;
+        }
+        if (streamDefinition != null) {
+            addStreamDefinitionToStreamTypeHolder(tenantId, streamDefinition);
+        }
+    }
+
+    private synchronized void addStreamDefinitionToStreamTypeHolder(int tenantId, StreamDefinition streamDefinition) {
+        StreamTypeHolder streamTypeHolder = getStreamDefinitionHolder(tenantId);
+        if (streamTypeHolder.getAttributeComposite(streamDefinition.getStreamId()) == null) {
+            streamTypeHolder.putStreamDefinition(streamDefinition);
+            for (AgentCallback agentCallback : subscribers) {
+                agentCallback.definedStream(streamDefinition, tenantId);
+            }
+            for (RawDataAgentCallback agentCallback : rawDataSubscribers) {
+                agentCallback.definedStream(streamDefinition, tenantId);
+            }
+        }
+    }
+
     private synchronized StreamTypeHolder initDomainNameStreamTypeHolderCache(int tenantId) {
         StreamTypeHolder streamTypeHolder = domainNameStreamTypeHolderCache.get(tenantId);
         if (null == streamTypeHolder) {
@@ -309,17 +342,11 @@ public class EventDispatcher {
                     }
                 }
 
-                List<String> streamIdList = new ArrayList<String>();
+                Set<String> streamIds = new HashSet<String>();
                 for (StreamDefinition streamDefinition : allStreamDefinitions) {
-                    streamIdList.add(streamDefinition.getStreamId());
-                }
-
-                Iterator<String> streamIdIterator = streamTypeHolder.getAttributeCompositeMap().keySet().iterator();
-                while (streamIdIterator.hasNext()) {
-                    if (!streamIdList.contains(streamIdIterator.next())) {
-                        streamIdIterator.remove();
-                    }
+                    streamIds.add(streamDefinition.getStreamId());
                 }
+                streamTypeHolder.retainStreamDefinitions(streamIds);
 
             }
             domainNameStreamTypeHolderCache.put(tenantId, streamTypeHolder);
@@ -341,11 +368,15 @@ public class EventDispatcher {
 
         int tenantId = agentSession.getCredentials().getTenantId();
 
-        //Updating the cache when calling the findStreamId to keep the sync between the stream manager and register with data publisher
-        //for CEP - need to review and fix
-        updateDomainNameStreamTypeHolderCache(tenantId);
+        String streamId = DataBridgeCommonsUtils.generateStreamId(streamName, streamVersion);
         StreamTypeHolder streamTypeHolder = getStreamDefinitionHolder(tenantId);
-        StreamAttributeComposite attributeComposite = streamTypeHolder.getAttributeComposite(DataBridgeCommonsUtils.generateStreamId(streamName, streamVersion));
+        StreamAttributeComposite attributeComposite = streamTypeHolder.getAttributeComposite(streamId);
+        if (attributeComposite == null) {
+            // The stream may have been defined through the stream manager rather than the data bridge, the
+            // stream definition store is kept in sync with such changes and caches the unknown stream ids.
+            loadStreamDefinition(tenantId, streamId);
+            attributeComposite = streamTypeHolder.getAttributeComposite(streamId);
+        }
         if (attributeComposite != null) {
             return attributeComposite.getStreamDefinition().getStreamId();
         }
@@ -374,7 +405,7 @@ public class EventDispatcher {
                                                                                      String streamId) {
         StreamTypeHolder streamTypeHolder = domainNameStreamTypeHolderCache.get(tenantId);
         if (streamTypeHolder != null) {
-            StreamAttributeComposite attributeComposite = streamTypeHolder.getAttributeCompositeMap().remove(streamId);
+            StreamAttributeComposite attributeComposite = streamTypeHolder.removeStreamDefinition(streamId);
             if (attributeComposite != null) {
                 return attributeComposite.getStreamDefinition();
             }
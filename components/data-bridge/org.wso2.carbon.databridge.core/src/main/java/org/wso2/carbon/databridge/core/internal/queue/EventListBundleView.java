@@ -0,0 +1,127 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.core.internal.queue;
+
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.core.EventBundleView;
+import org.wso2.carbon.databridge.core.StreamTypeHolder;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link EventBundleView} backed by an already converted event list, used for the transports which cannot
+ * expose the received event bundles as views.
+ */
+class EventListBundleView implements EventBundleView {
+    private final List<Event> events;
+    private final StreamTypeHolder streamTypeHolder;
+    private int index = -1;
+    private Event event;
+
+    EventListBundleView(List<Event> events, StreamTypeHolder streamTypeHolder) {
+        this.events = events;
+        this.streamTypeHolder = streamTypeHolder;
+    }
+
+    @Override
+    public int size() {
+        return events.size();
+    }
+
+    @Override
+    public boolean next() {
+        if (index + 1 < events.size()) {
+            event = events.get(++index);
+            return true;
+        }
+        event = null;
+        return false;
+    }
+
+    @Override
+    public String getStreamId() {
+        return event.getStreamId();
+    }
+
+    @Override
+    public long getTimeStamp() {
+        return event.getTimeStamp();
+    }
+
+    @Override
+    public AttributeType[] getAttributeTypes(int group) {
+        AttributeType[][] attributeTypes = streamTypeHolder.getDataType(event.getStreamId());
+        return attributeTypes == null ? null : attributeTypes[group];
+    }
+
+    @Override
+    public int getInt(int group, int index) {
+        return ((Number) getAttribute(group, index)).intValue();
+    }
+
+    @Override
+    public long getLong(int group, int index) {
+        return ((Number) getAttribute(group, index)).longValue();
+    }
+
+    @Override
+    public float getFloat(int group, int index) {
+        return ((Number) getAttribute(group, index)).floatValue();
+    }
+
+    @Override
+    public double getDouble(int group, int index) {
+        return ((Number) getAttribute(group, index)).doubleValue();
+    }
+
+    @Override
+    public boolean getBoolean(int group, int index) {
+        return (Boolean) getAttribute(group, index);
+    }
+
+    @Override
+    public String getString(int group, int index) {
+        return (String) getAttribute(group, index);
+    }
+
+    @Override
+    public Object getAttribute(int group, int index) {
+        switch (group) {
+            case META_DATA:
+                return event.getMetaData()[index];
+            case CORRELATION_DATA:
+                return event.getCorrelationData()[index];
+            case PAYLOAD_DATA:
+                return event.getPayloadData()[index];
+            default:
+                throw new IllegalArgumentException("Invalid attribute group " + group);
+        }
+    }
+
+    @Override
+    public Map<String, String> getArbitraryDataMap() {
+        return event.getArbitraryDataMap();
+    }
+
+    @Override
+    public Event toEvent() {
+        return event;
+    }
+}
@@ -17,57 +17,143 @@
 */
 package org.wso2.carbon.databridge.core.internal.queue;
 
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.IgnoreExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WorkerPool;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.databridge.commons.utils.DataBridgeThreadFactory;
 import org.wso2.carbon.databridge.core.AgentCallback;
 import org.wso2.carbon.databridge.core.RawDataAgentCallback;
+import org.wso2.carbon.databridge.core.Utils.DataBridgeUtils;
 import org.wso2.carbon.databridge.core.Utils.EventComposite;
 import org.wso2.carbon.databridge.core.conf.DataBridgeConfiguration;
 
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * The Event Queue class wraps a thread safe queue to,
- * queue and deque events in a scalable manner
+ * The Event Queue class wraps a multi producer ring buffer to,
+ * queue and deque events in a scalable manner.
+ * <p>
+ * The queue is bounded both by the number of event composites and by their total size in bytes. The size is
+ * accounted with an atomic counter, hence the receiver threads publishing the events are not serialized by a
+ * lock, and they only back off while the queue is over its byte capacity. The event composites are consumed by
+ * a fixed set of long lived {@link QueueWorker}s.
  */
 public class EventQueue {
 
     private static final Log log = LogFactory.getLog(EventQueue.class);
+    private static final long CAPACITY_WAIT_NANOS = 100000;
 
-    private BlockingQueue<EventComposite> eventQueue;
-
-    private ExecutorService executorService;
-    private List<AgentCallback> subscribers;
-    private List<RawDataAgentCallback> rawDataSubscribers;
+    private final RingBuffer<EventCompositeHolder> ringBuffer;
+    private final WorkerPool<EventCompositeHolder> workerPool;
+    private final ExecutorService executorService;
+    private final AtomicLong currentSize = new AtomicLong();
+    private final long maxSize;
 
     public EventQueue(List<AgentCallback> subscribers,
                       List<RawDataAgentCallback> rawDataSubscribers,
                       DataBridgeConfiguration dataBridgeConfiguration) {
-        this.subscribers = subscribers;
-        this.rawDataSubscribers = rawDataSubscribers;
-        // Note : Using a fixed worker thread pool and a bounded queue to prevent the server dying if load is too high
-        executorService = Executors.newFixedThreadPool(dataBridgeConfiguration.getWorkerThreads(), new DataBridgeThreadFactory("Core"));
-        eventQueue = new EventBlockingQueue(dataBridgeConfiguration.getEventBufferSize(),
-                dataBridgeConfiguration.getMaxEventBufferCapacity());
+        this.maxSize = dataBridgeConfiguration.getMaxEventBufferCapacity();
+        int workerThreads = dataBridgeConfiguration.getWorkerThreads();
+        QueueWorker[] queueWorkers = new QueueWorker[workerThreads];
+        for (int i = 0; i < workerThreads; i++) {
+            queueWorkers[i] = new QueueWorker(this, subscribers, rawDataSubscribers);
+        }
+        // Note : Using a fixed set of workers and a bounded queue to prevent the server dying if load is too high
+        executorService = Executors.newFixedThreadPool(workerThreads, new DataBridgeThreadFactory("Core"));
+        ringBuffer = RingBuffer.createMultiProducer(EventCompositeHolder.FACTORY,
+                getRingBufferSize(dataBridgeConfiguration.getEventBufferSize()), new BlockingWaitStrategy());
+        workerPool = new WorkerPool<>(ringBuffer, ringBuffer.newBarrier(), new IgnoreExceptionHandler(),
+                queueWorkers);
+        ringBuffer.addGatingSequences(workerPool.getWorkerSequences());
+        workerPool.start(executorService);
+    }
+
+    private static int getRingBufferSize(int eventBufferSize) {
+        int ringBufferSize = 1;
+        while (ringBufferSize < eventBufferSize) {
+            ringBufferSize <<= 1;
+        }
+        return ringBufferSize;
     }
 
     public void publish(EventComposite eventComposite) {
+        eventComposite.setSize(DataBridgeUtils.getSize(eventComposite));
+        reserveCapacity(eventComposite.getSize());
+        long sequence = ringBuffer.next();
         try {
-            eventQueue.put(eventComposite);
-        } catch (InterruptedException e) {
-            String logMessage = "Failure to insert event into queue";
-            log.warn(logMessage);
+            ringBuffer.get(sequence).eventComposite = eventComposite;
+        } finally {
+            ringBuffer.publish(sequence);
         }
-        executorService.submit(new QueueWorker(eventQueue, subscribers, rawDataSubscribers));
+        if (log.isDebugEnabled()) {
+            log.debug("current queue size in bytes : " + currentSize.get() + " , elements : " + size());
+        }
+    }
+
+    /**
+     * Waits till the queue can accept the given number of bytes and accounts them. An event composite is always
+     * accepted into an empty queue, so that a composite larger than the capacity doesn't block forever.
+     */
+    private void reserveCapacity(int size) {
+        while (true) {
+            long current = currentSize.get();
+            if (current == 0 || current + size <= maxSize) {
+                if (currentSize.compareAndSet(current, current + size)) {
+                    return;
+                }
+            } else {
+                LockSupport.parkNanos(CAPACITY_WAIT_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Takes the event composite out of the given ring buffer entry, and releases the bytes it accounted for.
+     */
+    EventComposite take(EventCompositeHolder eventCompositeHolder) {
+        EventComposite eventComposite = eventCompositeHolder.eventComposite;
+        eventCompositeHolder.eventComposite = null;
+        currentSize.addAndGet(-eventComposite.getSize());
+        return eventComposite;
+    }
+
+    int size() {
+        return (int) (ringBuffer.getBufferSize() - ringBuffer.remainingCapacity());
+    }
+
+    /**
+     * Stops the queue workers, the event composites which are not yet handled are dropped.
+     */
+    public void shutdown() {
+        workerPool.halt();
+        executorService.shutdown();
     }
 
     @Override
     protected void finalize() throws Throwable {
-        executorService.shutdown();
+        shutdown();
         super.finalize();
     }
+
+    /**
+     * Ring buffer entry holding a queued event composite.
+     */
+    static class EventCompositeHolder {
+        static final EventFactory<EventCompositeHolder> FACTORY = new EventFactory<EventCompositeHolder>() {
+            @Override
+            public EventCompositeHolder newInstance() {
+                return new EventCompositeHolder();
+            }
+        };
+
+        private EventComposite eventComposite;
+    }
 }
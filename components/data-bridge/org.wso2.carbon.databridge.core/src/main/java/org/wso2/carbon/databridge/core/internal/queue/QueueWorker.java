@@ -17,29 +17,33 @@
 */
 package org.wso2.carbon.databridge.core.internal.queue;
 
+import com.lmax.disruptor.WorkHandler;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.core.AgentCallback;
+import org.wso2.carbon.databridge.core.EventBundleView;
+import org.wso2.carbon.databridge.core.EventViewAgentCallback;
+import org.wso2.carbon.databridge.core.EventViewConverter;
 import org.wso2.carbon.databridge.core.RawDataAgentCallback;
 import org.wso2.carbon.databridge.core.Utils.EventComposite;
 import org.wso2.carbon.databridge.core.exception.EventConversionException;
 
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 
 /**
- * Will removes the events from queues and send then to the endpoints
+ * Will removes the events from queues and send then to the endpoints. The workers are long lived, and each
+ * event composite published to the {@link EventQueue} is handled by exactly one worker.
  */
-public class QueueWorker implements Runnable {
+public class QueueWorker implements WorkHandler<EventQueue.EventCompositeHolder> {
 
     private static final Log log = LogFactory.getLog(QueueWorker.class);
 
-    private BlockingQueue<EventComposite> eventQueue;
+    private EventQueue eventQueue;
     private List<AgentCallback> subscribers;
     private List<RawDataAgentCallback> rawDataSubscribers;
 
-    public QueueWorker(BlockingQueue<EventComposite> queue,
+    public QueueWorker(EventQueue queue,
                        List<AgentCallback> subscribers,
                        List<RawDataAgentCallback> rawDataSubscribers) {
         this.eventQueue = queue;
@@ -47,7 +51,8 @@ public class QueueWorker implements Runnable {
         this.rawDataSubscribers = rawDataSubscribers;
     }
 
-    public void run() {
+    @Override
+    public void onEvent(EventQueue.EventCompositeHolder eventCompositeHolder) {
         List<Event> eventList = null;
         try {
             if (log.isDebugEnabled()) {
@@ -57,7 +62,7 @@ public class QueueWorker implements Runnable {
                 log.debug(eventQueue.size() + " messages in queue before " +
                         Thread.currentThread().getName() + " worker has polled queue");
             }
-            EventComposite eventComposite = eventQueue.poll();
+            EventComposite eventComposite = eventQueue.take(eventCompositeHolder);
 
             if (rawDataSubscribers.size() > 0) {
                 for (RawDataAgentCallback agentCallback : rawDataSubscribers) {
@@ -70,17 +75,41 @@ public class QueueWorker implements Runnable {
             }
             if (subscribers.size() > 0) {
                 try {
-                    eventList = eventComposite.getEventConverter().toEventList(eventComposite.getEventBundle(),
-                            eventComposite.getStreamTypeHolder());
-
                     if (log.isDebugEnabled()) {
                         log.debug("Dispatching event to " + subscribers.size() + " subscriber(s)");
                     }
+                    // The event list is only converted if a subscriber needs it, the view subscribers read the
+                    // events directly from the bundle when the transport supports it.
                     for (AgentCallback agentCallback : subscribers) {
-                        try {
-                            agentCallback.receive(eventList, eventComposite.getAgentSession().getCredentials());
-                        } catch (Throwable e) {
-                            log.error("Error in passing event eventList " + eventList + " to subscriber " + agentCallback, e);
+                        if (agentCallback instanceof EventViewAgentCallback) {
+                            EventBundleView eventBundleView;
+                            if (eventList == null && eventComposite.getEventConverter() instanceof EventViewConverter) {
+                                eventBundleView = ((EventViewConverter) eventComposite.getEventConverter())
+                                        .toEventBundleView(eventComposite.getEventBundle(),
+                                                eventComposite.getStreamTypeHolder());
+                            } else {
+                                if (eventList == null) {
+                                    eventList = toEventList(eventComposite);
+                                }
+                                eventBundleView = new EventListBundleView(eventList,
+                                        eventComposite.getStreamTypeHolder());
+                            }
+                            try {
+                                ((EventViewAgentCallback) agentCallback).receive(eventBundleView,
+                                        eventComposite.getAgentSession().getCredentials());
+                            } catch (Throwable e) {
+                                log.error("Error in passing event composite " + eventComposite + " to subscriber " +
+                                        agentCallback, e);
+                            }
+                        } else {
+                            if (eventList == null) {
+                                eventList = toEventList(eventComposite);
+                            }
+                            try {
+                                agentCallback.receive(eventList, eventComposite.getAgentSession().getCredentials());
+                            } catch (Throwable e) {
+                                log.error("Error in passing event eventList " + eventList + " to subscriber " + agentCallback, e);
+                            }
                         }
                     }
                     if (log.isDebugEnabled()) {
@@ -97,5 +126,8 @@ public class QueueWorker implements Runnable {
         }
     }
 
-
+    private List<Event> toEventList(EventComposite eventComposite) {
+        return eventComposite.getEventConverter().toEventList(eventComposite.getEventBundle(),
+                eventComposite.getStreamTypeHolder());
+    }
 }
@@ -32,6 +32,9 @@ public final class DataBridgeConstants {
     public static final int NO_OF_WORKER_THREADS = 10;
     public static final int EVENT_BUFFER_CAPACITY = 10000;
     public static final int CLIENT_TIMEOUT_MS = 30000;
+    public static final int UNKNOWN_STREAM_ID_CACHE_TIMEOUT_MS = 30000;
+    public static final int STREAM_DEFINITION_CACHE_TIMEOUT_MS = 300000;
+    public static final int MAX_UNKNOWN_STREAM_IDS_PER_TENANT = 1000;
 
     public static final String STREAM_DEFINITIONS_XML = "stream-definitions.xml";
     public static final String DATA_BRIDGE_CONFIG_XML = "data-bridge-config.xml";
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.databridge.core.definitionstore;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TenantStreamDefinitionCacheTest {
+    private static final long TIMEOUT = 60000;
+
+    @Test
+    public void testLoadedDefinitionIsCached() throws Exception {
+        TenantStreamDefinitionCache cache = new TenantStreamDefinitionCache(TIMEOUT, TIMEOUT, 10);
+        StreamDefinition streamDefinition = new StreamDefinition("stock", "1.0.0");
+        cache.loaded(streamDefinition.getStreamId(), streamDefinition, cache.getGeneration());
+        Assert.assertSame(streamDefinition, cache.get(streamDefinition.getStreamId()));
+    }
+
+    @Test
+    public void testLoadRacingWithInvalidationIsNotCached() throws Exception {
+        TenantStreamDefinitionCache cache = new TenantStreamDefinitionCache(TIMEOUT, TIMEOUT, 10);
+        StreamDefinition streamDefinition = new StreamDefinition("stock", "1.0.0");
+        long generation = cache.getGeneration();
+        cache.invalidate(streamDefinition.getStreamId());
+        cache.loaded(streamDefinition.getStreamId(), streamDefinition, generation);
+        Assert.assertNull(cache.get(streamDefinition.getStreamId()));
+
+        generation = cache.getGeneration();
+        cache.invalidate("other:1.0.0");
+        cache.loadedAll(Collections.singletonList(streamDefinition), generation);
+        Assert.assertFalse(cache.isFullyLoaded());
+        Assert.assertNull(cache.get(streamDefinition.getStreamId()));
+    }
+
+    @Test
+    public void testInvalidationDropsDefinitionAndFullLoad() throws Exception {
+        TenantStreamDefinitionCache cache = new TenantStreamDefinitionCache(TIMEOUT, TIMEOUT, 10);
+        StreamDefinition stock = new StreamDefinition("stock", "1.0.0");
+        StreamDefinition quote = new StreamDefinition("quote", "1.0.0");
+        cache.loadedAll(Arrays.asList(stock, quote), cache.getGeneration());
+        Assert.assertTrue(cache.isFullyLoaded());
+        Assert.assertEquals(2, cache.getAll().size());
+        cache.invalidate(stock.getStreamId());
+        Assert.assertFalse(cache.isFullyLoaded());
+        Assert.assertNull(cache.get(stock.getStreamId()));
+        Assert.assertSame(quote, cache.get(quote.getStreamId()));
+    }
+
+    @Test
+    public void testUnknownStreamIdIsCached() throws Exception {
+        TenantStreamDefinitionCache cache = new TenantStreamDefinitionCache(TIMEOUT, TIMEOUT, 10);
+        cache.loaded("stock:1.0.0", null, cache.getGeneration());
+        Assert.assertTrue(cache.isKnownUnknown("stock:1.0.0"));
+        Assert.assertFalse(cache.isKnownUnknown("quote:1.0.0"));
+
+        StreamDefinition streamDefinition = new StreamDefinition("stock", "1.0.0");
+        cache.put(streamDefinition);
+        Assert.assertFalse(cache.isKnownUnknown("stock:1.0.0"));
+        Assert.assertSame(streamDefinition, cache.get("stock:1.0.0"));
+    }
+
+    @Test
+    public void testUnknownStreamIdExpires() throws Exception {
+        TenantStreamDefinitionCache cache = new TenantStreamDefinitionCache(TIMEOUT, 10, 10);
+        cache.loaded("stock:1.0.0", null, cache.getGeneration());
+        Assert.assertTrue(cache.isKnownUnknown("stock:1.0.0"));
+        Thread.sleep(50);
+        Assert.assertFalse(cache.isKnownUnknown("stock:1.0.0"));
+    }
+
+    @Test
+    public void testUnknownStreamIdsAreBounded() throws Exception {
+        TenantStreamDefinitionCache cache = new TenantStreamDefinitionCache(TIMEOUT, TIMEOUT, 10);
+        for (int i = 0; i < 10; i++) {
+            cache.loaded("stream" + i + ":1.0.0", null, cache.getGeneration());
+        }
+        Assert.assertTrue(cache.isKnownUnknown("stream0:1.0.0"));
+        cache.loaded("stream10:1.0.0", null, cache.getGeneration());
+        Assert.assertTrue(cache.isKnownUnknown("stream10:1.0.0"));
+        int knownUnknown = 0;
+        for (int i = 0; i < 10; i++) {
+            if (cache.isKnownUnknown("stream" + i + ":1.0.0")) {
+                knownUnknown++;
+            }
+        }
+        Assert.assertEquals(0, knownUnknown);
+    }
+
+    @Test
+    public void testCachedDefinitionExpires() throws Exception {
+        TenantStreamDefinitionCache cache = new TenantStreamDefinitionCache(10, TIMEOUT, 10);
+        StreamDefinition streamDefinition = new StreamDefinition("stock", "1.0.0");
+        cache.loadedAll(Collections.singletonList(streamDefinition), cache.getGeneration());
+        Assert.assertTrue(cache.isFullyLoaded());
+        Assert.assertSame(streamDefinition, cache.get(streamDefinition.getStreamId()));
+        Thread.sleep(50);
+        Assert.assertFalse(cache.isFullyLoaded());
+        Assert.assertNull(cache.get(streamDefinition.getStreamId()));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.core.internal.queue;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.core.EventBundleView;
+import org.wso2.carbon.databridge.core.StreamTypeHolder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class EventListBundleViewTest {
+
+    @Test
+    public void testViewMatchesEventList() throws Exception {
+        StreamDefinition stock = new StreamDefinition("stock", "1.0.0");
+        stock.addMetaData("host", AttributeType.STRING);
+        stock.addPayloadData("symbol", AttributeType.STRING);
+        stock.addPayloadData("price", AttributeType.DOUBLE);
+        stock.addPayloadData("volume", AttributeType.INT);
+        stock.addPayloadData("time", AttributeType.LONG);
+        stock.addPayloadData("ratio", AttributeType.FLOAT);
+        stock.addPayloadData("active", AttributeType.BOOL);
+        StreamTypeHolder streamTypeHolder = new StreamTypeHolder(-1234);
+        streamTypeHolder.putStreamDefinition(stock);
+
+        List<Event> events = Arrays.asList(
+                new Event(stock.getStreamId(), 1000L, new Object[]{"host1"}, null,
+                        new Object[]{"WSO2", 55.5, 100, 1000L, 0.5f, true}),
+                new Event(stock.getStreamId(), 2000L, new Object[]{"host2"}, null,
+                        new Object[]{null, 60.25, 200, 2000L, 1.5f, false},
+                        Collections.singletonMap("source", "test")));
+        EventBundleView view = new EventListBundleView(events, streamTypeHolder);
+        Assert.assertEquals(2, view.size());
+        for (Event event : events) {
+            Assert.assertTrue(view.next());
+            Assert.assertSame(event, view.toEvent());
+            Assert.assertEquals(event.getStreamId(), view.getStreamId());
+            Assert.assertEquals(event.getTimeStamp(), view.getTimeStamp());
+            Assert.assertEquals(event.getArbitraryDataMap(), view.getArbitraryDataMap());
+            Assert.assertSame(streamTypeHolder.getDataType(stock.getStreamId())[EventBundleView.PAYLOAD_DATA],
+                    view.getAttributeTypes(EventBundleView.PAYLOAD_DATA));
+            Assert.assertEquals(event.getMetaData()[0], view.getString(EventBundleView.META_DATA, 0));
+
+            Object[] payload = event.getPayloadData();
+            Assert.assertEquals(payload[0], view.getString(EventBundleView.PAYLOAD_DATA, 0));
+            Assert.assertEquals(payload[1], view.getDouble(EventBundleView.PAYLOAD_DATA, 1));
+            Assert.assertEquals(payload[2], view.getInt(EventBundleView.PAYLOAD_DATA, 2));
+            Assert.assertEquals(payload[3], view.getLong(EventBundleView.PAYLOAD_DATA, 3));
+            Assert.assertEquals(payload[4], view.getFloat(EventBundleView.PAYLOAD_DATA, 4));
+            Assert.assertEquals(payload[5], view.getBoolean(EventBundleView.PAYLOAD_DATA, 5));
+            for (int i = 0; i < payload.length; i++) {
+                Assert.assertEquals(payload[i], view.getAttribute(EventBundleView.PAYLOAD_DATA, i));
+            }
+        }
+        Assert.assertFalse(view.next());
+    }
+}
@@ -36,6 +36,18 @@ public class BinaryDataReceiverConstants {
     public static final String TCP_RECEIVER_PORT_CONFIG_NAME = "tcpPort";
     public static final String SSL_RECEIVER_THREAD_POOL_SIZE = "sslReceiverThreadPoolSize";
     public static final String TCP_RECEIVER_THREAD_POOL_SIZE = "tcpReceiverThreadPoolSize";
+    public static final String TCP_RECEIVER_IO_MODE = "tcpReceiverIOMode";
+    public static final String BLOCKING_IO_MODE = "blocking";
+    public static final String NIO_IO_MODE = "nio";
+    public static final String DEFAULT_TCP_RECEIVER_IO_MODE = BLOCKING_IO_MODE;
+    public static final String NIO_SELECTOR_THREAD_COUNT = "nioSelectorThreadCount";
+    public static final int DEFAULT_NIO_SELECTOR_THREAD_COUNT = 4;
+    public static final String NIO_READ_BUFFER_SIZE = "nioReadBufferSize";
+    public static final int DEFAULT_NIO_READ_BUFFER_SIZE = 64 * 1024;
+    public static final String NIO_WORKER_THREAD_COUNT = "nioWorkerThreadCount";
+    public static final int DEFAULT_NIO_WORKER_THREAD_COUNT = 10;
+    public static final String NIO_MAX_MESSAGE_SIZE = "nioMaxMessageSize";
+    public static final int DEFAULT_NIO_MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
     public static final String CARBON_CONFIG_PORT_OFFSET_NODE = "Ports.Offset";
     public static final String META_DATA_FIELD = "Meta Data";
     public static final String PAYLOAD_DATA_FIELD = "Payload Data";
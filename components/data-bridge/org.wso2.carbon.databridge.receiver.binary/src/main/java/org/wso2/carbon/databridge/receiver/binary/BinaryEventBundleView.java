@@ -0,0 +1,217 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.receiver.binary;
+
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil;
+import org.wso2.carbon.databridge.core.EventBundleView;
+import org.wso2.carbon.databridge.core.StreamTypeHolder;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * {@link EventBundleView} over a received Binary event bundle. The view reads the attributes directly from the
+ * received bytes using the compiled {@link BinaryEventLayout} of the stream, string attributes are decoded only
+ * when they are read, and the stream id is decoded only when it differs from the one of the previous event.
+ */
+class BinaryEventBundleView implements EventBundleView {
+    private final BinaryEventConverter converter;
+    private final ByteBuffer buffer;
+    private final StreamTypeHolder streamTypeHolder;
+    private final int size;
+    private int index = -1;
+    private int nextEventPosition;
+
+    private int eventStart;
+    private int eventEnd;
+    private String streamId;
+    private int streamIdPosition;
+    private int streamIdSize;
+    private BinaryEventLayout layout;
+    private int attributeStart;
+    private int[][] offsets;
+    private int arbitraryDataStart = -1;
+
+    BinaryEventBundleView(BinaryEventConverter converter, ByteBuffer buffer, int firstEventPosition, int size,
+                          StreamTypeHolder streamTypeHolder) {
+        this.converter = converter;
+        this.buffer = buffer;
+        this.nextEventPosition = firstEventPosition;
+        this.size = size;
+        this.streamTypeHolder = streamTypeHolder;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean next() {
+        if (index + 1 >= size) {
+            return false;
+        }
+        index++;
+        eventStart = nextEventPosition + 4;
+        eventEnd = eventStart + buffer.getInt(nextEventPosition);
+        nextEventPosition = eventEnd;
+
+        int idSize = buffer.getInt(eventStart + 8);
+        int idPosition = eventStart + 12;
+        if (streamId == null || !isSameStreamId(idPosition, idSize)) {
+            streamId = BinaryMessageConverterUtil.getString(buffer.array(), buffer.arrayOffset() + idPosition, idSize);
+            BinaryEventLayout eventLayout = converter.getLayout(streamId, streamTypeHolder);
+            if (eventLayout != layout) {
+                layout = eventLayout;
+                offsets = layout.newOffsets();
+            }
+        }
+        streamIdPosition = idPosition;
+        streamIdSize = idSize;
+        attributeStart = idPosition + idSize;
+        arbitraryDataStart = -1;
+        return true;
+    }
+
+    private boolean isSameStreamId(int idPosition, int idSize) {
+        if (idSize != streamIdSize) {
+            return false;
+        }
+        for (int i = 0; i < idSize; i++) {
+            if (buffer.get(idPosition + i) != buffer.get(streamIdPosition + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String getStreamId() {
+        return streamId;
+    }
+
+    @Override
+    public long getTimeStamp() {
+        return buffer.getLong(eventStart);
+    }
+
+    @Override
+    public AttributeType[] getAttributeTypes(int group) {
+        return layout.getAttributeTypes()[group];
+    }
+
+    @Override
+    public int getInt(int group, int index) {
+        return buffer.getInt(getPosition(group, index, AttributeType.INT));
+    }
+
+    @Override
+    public long getLong(int group, int index) {
+        return buffer.getLong(getPosition(group, index, AttributeType.LONG));
+    }
+
+    @Override
+    public float getFloat(int group, int index) {
+        return buffer.getFloat(getPosition(group, index, AttributeType.FLOAT));
+    }
+
+    @Override
+    public double getDouble(int group, int index) {
+        return buffer.getDouble(getPosition(group, index, AttributeType.DOUBLE));
+    }
+
+    @Override
+    public boolean getBoolean(int group, int index) {
+        return buffer.get(getPosition(group, index, AttributeType.BOOL)) == 1;
+    }
+
+    @Override
+    public String getString(int group, int index) {
+        int position = getPosition(group, index, AttributeType.STRING);
+        int stringSize = buffer.getInt(position);
+        if (stringSize == 0) {
+            return null;
+        }
+        return BinaryMessageConverterUtil.getString(buffer.array(), buffer.arrayOffset() + position + 4, stringSize);
+    }
+
+    @Override
+    public Object getAttribute(int group, int index) {
+        switch (getAttributeType(group, index)) {
+            case INT:
+                return getInt(group, index);
+            case LONG:
+                return getLong(group, index);
+            case FLOAT:
+                return getFloat(group, index);
+            case DOUBLE:
+                return getDouble(group, index);
+            case BOOL:
+                return getBoolean(group, index);
+            default:
+                return getString(group, index);
+        }
+    }
+
+    @Override
+    public Map<String, String> getArbitraryDataMap() {
+        return converter.toStringMap(slice(getArbitraryDataStart(), eventEnd));
+    }
+
+    @Override
+    public Event toEvent() {
+        return converter.getEvent(slice(eventStart, eventEnd), streamTypeHolder);
+    }
+
+    private AttributeType getAttributeType(int group, int index) {
+        AttributeType[] attributeTypes = layout.getAttributeTypes()[group];
+        if (attributeTypes == null || index >= attributeTypes.length) {
+            throw new IndexOutOfBoundsException("Stream " + streamId + " has no attribute " + index +
+                    " in attribute group " + group);
+        }
+        return attributeTypes[index];
+    }
+
+    private int getPosition(int group, int index, AttributeType attributeType) {
+        if (getAttributeType(group, index) != attributeType) {
+            throw new IllegalArgumentException("Attribute " + index + " in attribute group " + group + " of stream "
+                    + streamId + " is of type " + getAttributeType(group, index) + ", not " + attributeType);
+        }
+        if (offsets == null) {
+            return layout.getConstantPosition(attributeStart, group, index);
+        }
+        getArbitraryDataStart();
+        return offsets[group][index];
+    }
+
+    private int getArbitraryDataStart() {
+        if (arbitraryDataStart == -1) {
+            arbitraryDataStart = layout.locateAttributes(buffer, attributeStart, offsets);
+        }
+        return arbitraryDataStart;
+    }
+
+    private ByteBuffer slice(int position, int limit) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(limit);
+        slice.position(position);
+        return slice;
+    }
+}
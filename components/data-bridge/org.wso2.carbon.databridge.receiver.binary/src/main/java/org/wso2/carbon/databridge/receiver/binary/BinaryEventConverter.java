@@ -22,7 +22,10 @@ import org.wso2.carbon.databridge.commons.AttributeType;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil;
 import org.wso2.carbon.databridge.commons.exception.MalformedEventException;
+import org.wso2.carbon.databridge.core.EventBundleView;
 import org.wso2.carbon.databridge.core.EventConverter;
+import org.wso2.carbon.databridge.core.EventViewConverter;
+import org.wso2.carbon.databridge.core.StreamAttributeComposite;
 import org.wso2.carbon.databridge.core.StreamTypeHolder;
 import org.wso2.carbon.databridge.core.exception.EventConversionException;
 import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
@@ -32,13 +35,18 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class is a implementation EventConverter to create the event from the Binary message.
  * This is used within data bridge to create the event from the row message received.
+ * It also exposes the message as an {@link EventBundleView}, which decodes the events lazily using the
+ * compiled {@link BinaryEventLayout} of their streams.
  */
-public class BinaryEventConverter implements EventConverter {
+public class BinaryEventConverter implements EventConverter, EventViewConverter {
     private static BinaryEventConverter instance = new BinaryEventConverter();
+    // Compiled layouts of the streams per tenant, as each tenant can define the same stream id differently.
+    private final Map<Integer, TenantEventLayouts> eventLayouts = new ConcurrentHashMap<>();
 
     private BinaryEventConverter() {
     }
@@ -48,20 +56,31 @@ public class BinaryEventConverter implements EventConverter {
 
         ByteBuffer byteBuffer = ByteBuffer.wrap((byte[]) eventBundle);
         int sessionIdSize = byteBuffer.getInt();
-        byteBuffer.get(new byte[sessionIdSize]);
+        byteBuffer.position(byteBuffer.position() + sessionIdSize);
         int events = byteBuffer.getInt();
 
-        List<Event> eventList = new ArrayList<>();
+        List<Event> eventList = new ArrayList<>(events);
+        int bundleLimit = byteBuffer.limit();
         for (int i = 0; i < events; i++) {
             int eventSize = byteBuffer.getInt();
-            byte[] bytes= new byte[eventSize];
-            byteBuffer.get(bytes);
-            ByteBuffer eventByteBuffer = ByteBuffer.wrap(bytes);
-            eventList.add(getEvent(eventByteBuffer, streamTypeHolder));
+            int eventEnd = byteBuffer.position() + eventSize;
+            // Decode the event in place by limiting the buffer to the event slice, instead of copying it out.
+            byteBuffer.limit(eventEnd);
+            eventList.add(getEvent(byteBuffer, streamTypeHolder));
+            byteBuffer.limit(bundleLimit);
+            byteBuffer.position(eventEnd);
         }
         return eventList;
     }
 
+    @Override
+    public EventBundleView toEventBundleView(Object eventBundle, StreamTypeHolder streamTypeHolder) {
+        ByteBuffer byteBuffer = ByteBuffer.wrap((byte[]) eventBundle);
+        int sessionIdSize = byteBuffer.getInt();
+        int events = byteBuffer.getInt(4 + sessionIdSize);
+        return new BinaryEventBundleView(this, byteBuffer, 8 + sessionIdSize, events, streamTypeHolder);
+    }
+
     @Override
     public int getSize(Object eventBundle) {
         return ((byte[])eventBundle).length;
@@ -71,8 +90,7 @@ public class BinaryEventConverter implements EventConverter {
     public int getNumberOfEvents(Object eventBundle) {
         ByteBuffer byteBuffer = ByteBuffer.wrap((byte[]) eventBundle);
         int sessionIdSize = byteBuffer.getInt();
-        byteBuffer.get(new byte[sessionIdSize]);
-        return byteBuffer.getInt();
+        return byteBuffer.getInt(4 + sessionIdSize);
     }
 
     public Event getEvent(ByteBuffer byteBuffer, StreamTypeHolder streamTypeHolder) throws MalformedEventException {
@@ -84,29 +102,81 @@ public class BinaryEventConverter implements EventConverter {
         event.setStreamId(streamId);
         event.setTimeStamp(timeStamp);
 
-        AttributeType[][] attributeTypeOrder = streamTypeHolder.getDataType(event.getStreamId());
+        AttributeType[][] attributeTypeOrder = getAttributeTypes(streamId, streamTypeHolder);
+
+        event.setMetaData(this.toObjectArray(byteBuffer, attributeTypeOrder[0],
+                BinaryDataReceiverConstants.META_DATA_FIELD));
+        event.setCorrelationData(this.toObjectArray(byteBuffer, attributeTypeOrder[1],
+                BinaryDataReceiverConstants.CORRELATION_DATA_FIELD));
+        event.setPayloadData(this.toObjectArray(byteBuffer, attributeTypeOrder[2],
+                BinaryDataReceiverConstants.PAYLOAD_DATA_FIELD));
+        event.setArbitraryDataMap(this.toStringMap(byteBuffer));
+        return event;
+    }
+
+    /**
+     * Returns the compiled layout of the given stream of the tenant of the holder, which is recompiled if the
+     * stream is redefined.
+     */
+    BinaryEventLayout getLayout(String streamId, StreamTypeHolder streamTypeHolder) {
+        AttributeType[][] attributeTypeOrder = getAttributeTypes(streamId, streamTypeHolder);
+        Map<String, BinaryEventLayout> tenantEventLayouts = getTenantEventLayouts(streamTypeHolder);
+        BinaryEventLayout eventLayout = tenantEventLayouts.get(streamId);
+        if (eventLayout == null || eventLayout.getAttributeTypes() != attributeTypeOrder) {
+            eventLayout = new BinaryEventLayout(attributeTypeOrder);
+            tenantEventLayouts.put(streamId, eventLayout);
+        }
+        return eventLayout;
+    }
+
+    /**
+     * @return the cached layout of the given stream of the tenant, or null if there is none.
+     */
+    BinaryEventLayout getCachedLayout(int tenantId, String streamId) {
+        TenantEventLayouts tenantEventLayouts = eventLayouts.get(tenantId);
+        return tenantEventLayouts == null ? null : tenantEventLayouts.layouts.get(streamId);
+    }
+
+    /**
+     * Returns the layouts of the tenant of the holder. The holder replaces its map of streams whenever a stream is
+     * added, redefined or removed, hence once the map is replaced only the layouts of the streams which are still
+     * defined the same way are kept, so that the layouts of the removed streams are evicted.
+     */
+    private Map<String, BinaryEventLayout> getTenantEventLayouts(StreamTypeHolder streamTypeHolder) {
+        Map<String, StreamAttributeComposite> streams = streamTypeHolder.getAttributeCompositeMap();
+        TenantEventLayouts tenantEventLayouts = eventLayouts.get(streamTypeHolder.getTenantId());
+        if (tenantEventLayouts == null || tenantEventLayouts.streams != streams) {
+            TenantEventLayouts currentEventLayouts = new TenantEventLayouts(streams);
+            if (tenantEventLayouts != null) {
+                for (Map.Entry<String, BinaryEventLayout> entry : tenantEventLayouts.layouts.entrySet()) {
+                    StreamAttributeComposite stream = streams.get(entry.getKey());
+                    if (stream != null && stream.getAttributeTypes() == entry.getValue().getAttributeTypes()) {
+                        currentEventLayouts.layouts.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            eventLayouts.put(streamTypeHolder.getTenantId(), currentEventLayouts);
+            tenantEventLayouts = currentEventLayouts;
+        }
+        return tenantEventLayouts.layouts;
+    }
+
+    private AttributeType[][] getAttributeTypes(String streamId, StreamTypeHolder streamTypeHolder) {
+        AttributeType[][] attributeTypeOrder = streamTypeHolder.getDataType(streamId);
         if (attributeTypeOrder == null) {
             PrivilegedCarbonContext privilegedCarbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
             if (privilegedCarbonContext.getTenantDomain() == null) {
                 privilegedCarbonContext.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
                 privilegedCarbonContext.setTenantId(MultitenantConstants.SUPER_TENANT_ID);
             }
-            streamTypeHolder.reloadStreamTypeHolder();
-            attributeTypeOrder = streamTypeHolder.getDataType(event.getStreamId());
+            streamTypeHolder.reloadStreamTypeHolder(streamId);
+            attributeTypeOrder = streamTypeHolder.getDataType(streamId);
             if (attributeTypeOrder == null) {
-                throw new EventConversionException("No StreamDefinition for streamId " + event.getStreamId()
+                throw new EventConversionException("No StreamDefinition for streamId " + streamId
                         + " present in cache ");
             }
         }
-
-        event.setMetaData(this.toObjectArray(byteBuffer, attributeTypeOrder[0],
-                BinaryDataReceiverConstants.META_DATA_FIELD));
-        event.setCorrelationData(this.toObjectArray(byteBuffer, attributeTypeOrder[1],
-                BinaryDataReceiverConstants.CORRELATION_DATA_FIELD));
-        event.setPayloadData(this.toObjectArray(byteBuffer, attributeTypeOrder[2],
-                BinaryDataReceiverConstants.PAYLOAD_DATA_FIELD));
-        event.setArbitraryDataMap(this.toStringMap(byteBuffer));
-        return event;
+        return attributeTypeOrder;
     }
 
     public Object[] toObjectArray(ByteBuffer byteBuffer,
@@ -171,4 +241,16 @@ public class BinaryEventConverter implements EventConverter {
         return instance;
     }
 
+    /**
+     * Layouts of the streams of a tenant, compiled from the given snapshot of the streams of the tenant.
+     */
+    private static class TenantEventLayouts {
+        private final Map<String, StreamAttributeComposite> streams;
+        private final Map<String, BinaryEventLayout> layouts = new ConcurrentHashMap<>();
+
+        private TenantEventLayouts(Map<String, StreamAttributeComposite> streams) {
+            this.streams = streams;
+        }
+    }
+
 }
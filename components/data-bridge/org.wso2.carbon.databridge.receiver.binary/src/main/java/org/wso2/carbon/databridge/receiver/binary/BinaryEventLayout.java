@@ -0,0 +1,128 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.receiver.binary;
+
+import org.wso2.carbon.databridge.commons.AttributeType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of the attributes of a stream in a Binary event message, compiled from the attribute types of the
+ * stream. The size of each attribute is resolved once, hence locating the attributes of an event only needs
+ * the lengths of its string attributes to be read, and the attribute offsets of the streams without string
+ * attributes are constant.
+ */
+final class BinaryEventLayout {
+    private static final int STRING_SIZE = -1;
+
+    private final AttributeType[][] attributeTypes;
+    private final int[][] attributeSizes;
+    private final int[][] constantOffsets;
+    private final int constantLength;
+
+    BinaryEventLayout(AttributeType[][] attributeTypes) {
+        this.attributeTypes = attributeTypes;
+        this.attributeSizes = new int[attributeTypes.length][];
+        int[][] offsets = new int[attributeTypes.length][];
+        int offset = 0;
+        for (int group = 0; group < attributeTypes.length; group++) {
+            if (attributeTypes[group] == null) {
+                continue;
+            }
+            attributeSizes[group] = new int[attributeTypes[group].length];
+            offsets[group] = new int[attributeTypes[group].length];
+            for (int i = 0; i < attributeTypes[group].length; i++) {
+                attributeSizes[group][i] = getSize(attributeTypes[group][i]);
+                offsets[group][i] = offset;
+                if (offset != STRING_SIZE) {
+                    offset = attributeSizes[group][i] == STRING_SIZE ? STRING_SIZE : offset + attributeSizes[group][i];
+                }
+            }
+        }
+        this.constantLength = offset;
+        this.constantOffsets = offset == STRING_SIZE ? null : offsets;
+    }
+
+    private static int getSize(AttributeType attributeType) {
+        switch (attributeType) {
+            case INT:
+            case FLOAT:
+                return 4;
+            case LONG:
+            case DOUBLE:
+                return 8;
+            case BOOL:
+                return 1;
+            default:
+                return STRING_SIZE;
+        }
+    }
+
+    AttributeType[][] getAttributeTypes() {
+        return attributeTypes;
+    }
+
+    /**
+     * @return new array to hold the attribute offsets of an event, or null if the offsets are constant.
+     */
+    int[][] newOffsets() {
+        if (constantOffsets != null) {
+            return null;
+        }
+        int[][] offsets = new int[attributeSizes.length][];
+        for (int group = 0; group < attributeSizes.length; group++) {
+            if (attributeSizes[group] != null) {
+                offsets[group] = new int[attributeSizes[group].length];
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Locates the attributes of an event.
+     *
+     * @param buffer         buffer holding the event.
+     * @param attributeStart position of the first attribute of the event.
+     * @param offsets        array to hold the absolute attribute positions, or null if the offsets are constant.
+     * @return the position of the arbitrary data of the event.
+     */
+    int locateAttributes(ByteBuffer buffer, int attributeStart, int[][] offsets) {
+        if (constantOffsets != null) {
+            return attributeStart + constantLength;
+        }
+        int position = attributeStart;
+        for (int group = 0; group < attributeSizes.length; group++) {
+            int[] sizes = attributeSizes[group];
+            if (sizes == null) {
+                continue;
+            }
+            for (int i = 0; i < sizes.length; i++) {
+                offsets[group][i] = position;
+                position += sizes[i] == STRING_SIZE ? 4 + buffer.getInt(position) : sizes[i];
+            }
+        }
+        return position;
+    }
+
+    /**
+     * @return the absolute position of the attribute, when the attribute offsets are constant.
+     */
+    int getConstantPosition(int attributeStart, int group, int index) {
+        return attributeStart + constantOffsets[group][index];
+    }
+}
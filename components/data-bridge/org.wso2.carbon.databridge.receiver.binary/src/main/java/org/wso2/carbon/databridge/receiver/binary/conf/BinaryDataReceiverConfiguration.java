@@ -30,12 +30,22 @@ public class BinaryDataReceiverConfiguration {
     private int tcpPort;
     private int sizeOfSSLThreadPool;
     private int sizeOfTCPThreadPool;
+    private String tcpReceiverIOMode;
+    private int nioSelectorThreadCount;
+    private int nioReadBufferSize;
+    private int nioWorkerThreadCount;
+    private int nioMaxMessageSize;
 
     public BinaryDataReceiverConfiguration(int sslPort, int tcpPort) {
         this.sslPort = sslPort;
         this.tcpPort = tcpPort;
         this.sizeOfSSLThreadPool = BinaryDataReceiverConstants.DEFAULT_SSL_RECEIVER_THREAD_POOL_SIZE;
         this.sizeOfTCPThreadPool = BinaryDataReceiverConstants.DEFAULT_TCP_RECEIVER_THREAD_POOL_SIZE;
+        this.tcpReceiverIOMode = BinaryDataReceiverConstants.DEFAULT_TCP_RECEIVER_IO_MODE;
+        this.nioSelectorThreadCount = BinaryDataReceiverConstants.DEFAULT_NIO_SELECTOR_THREAD_COUNT;
+        this.nioReadBufferSize = BinaryDataReceiverConstants.DEFAULT_NIO_READ_BUFFER_SIZE;
+        this.nioWorkerThreadCount = BinaryDataReceiverConstants.DEFAULT_NIO_WORKER_THREAD_COUNT;
+        this.nioMaxMessageSize = BinaryDataReceiverConstants.DEFAULT_NIO_MAX_MESSAGE_SIZE;
     }
 
     public BinaryDataReceiverConfiguration(DataBridgeConfiguration dataBridgeConfiguration) {
@@ -51,6 +61,20 @@ public class BinaryDataReceiverConfiguration {
         this.sizeOfTCPThreadPool = Integer.parseInt(dataReceiver.getConfiguration(
                 BinaryDataReceiverConstants.TCP_RECEIVER_THREAD_POOL_SIZE,
                 BinaryDataReceiverConstants.DEFAULT_TCP_RECEIVER_THREAD_POOL_SIZE).toString());
+        this.tcpReceiverIOMode = dataReceiver.getConfiguration(BinaryDataReceiverConstants.TCP_RECEIVER_IO_MODE,
+                BinaryDataReceiverConstants.DEFAULT_TCP_RECEIVER_IO_MODE).toString().trim();
+        this.nioSelectorThreadCount = Integer.parseInt(dataReceiver.getConfiguration(
+                BinaryDataReceiverConstants.NIO_SELECTOR_THREAD_COUNT,
+                BinaryDataReceiverConstants.DEFAULT_NIO_SELECTOR_THREAD_COUNT).toString());
+        this.nioReadBufferSize = Integer.parseInt(dataReceiver.getConfiguration(
+                BinaryDataReceiverConstants.NIO_READ_BUFFER_SIZE,
+                BinaryDataReceiverConstants.DEFAULT_NIO_READ_BUFFER_SIZE).toString());
+        this.nioWorkerThreadCount = Integer.parseInt(dataReceiver.getConfiguration(
+                BinaryDataReceiverConstants.NIO_WORKER_THREAD_COUNT,
+                BinaryDataReceiverConstants.DEFAULT_NIO_WORKER_THREAD_COUNT).toString());
+        this.nioMaxMessageSize = Integer.parseInt(dataReceiver.getConfiguration(
+                BinaryDataReceiverConstants.NIO_MAX_MESSAGE_SIZE,
+                BinaryDataReceiverConstants.DEFAULT_NIO_MAX_MESSAGE_SIZE).toString());
     }
 
     public int getSSLPort() {
@@ -69,6 +93,57 @@ public class BinaryDataReceiverConfiguration {
         return sizeOfSSLThreadPool;
     }
 
+    public String getTCPReceiverIOMode() {
+        return tcpReceiverIOMode;
+    }
+
+    public void setTCPReceiverIOMode(String tcpReceiverIOMode) {
+        this.tcpReceiverIOMode = tcpReceiverIOMode;
+    }
+
+    /**
+     * @return true if the TCP port should be served by the selector based (NIO) server instead of the
+     * thread per connection blocking acceptor.
+     */
+    public boolean isNioEnabled() {
+        return BinaryDataReceiverConstants.NIO_IO_MODE.equalsIgnoreCase(tcpReceiverIOMode);
+    }
+
+    public int getNioSelectorThreadCount() {
+        return nioSelectorThreadCount;
+    }
+
+    public void setNioSelectorThreadCount(int nioSelectorThreadCount) {
+        this.nioSelectorThreadCount = nioSelectorThreadCount;
+    }
+
+    public int getNioReadBufferSize() {
+        return nioReadBufferSize;
+    }
+
+    public void setNioReadBufferSize(int nioReadBufferSize) {
+        this.nioReadBufferSize = nioReadBufferSize;
+    }
+
+    public int getNioWorkerThreadCount() {
+        return nioWorkerThreadCount;
+    }
+
+    public void setNioWorkerThreadCount(int nioWorkerThreadCount) {
+        this.nioWorkerThreadCount = nioWorkerThreadCount;
+    }
+
+    /**
+     * @return the largest message body the NIO server accepts, connections sending larger messages are closed.
+     */
+    public int getNioMaxMessageSize() {
+        return nioMaxMessageSize;
+    }
+
+    public void setNioMaxMessageSize(int nioMaxMessageSize) {
+        this.nioMaxMessageSize = nioMaxMessageSize;
+    }
+
     private static int getPortOffset() {
         return CarbonUtils.getPortFromServerConfig(BinaryDataReceiverConstants.CARBON_CONFIG_PORT_OFFSET_NODE)+1;
     }
@@ -47,6 +47,7 @@ public class BinaryDataReceiver {
     private BinaryDataReceiverConfiguration binaryDataReceiverConfiguration;
     private ExecutorService sslReceiverExecutorService;
     private ExecutorService tcpReceiverExecutorService;
+    private BinaryNioEventServer binaryNioEventServer;
 
     public BinaryDataReceiver(BinaryDataReceiverConfiguration binaryDataReceiverConfiguration,
                               DataBridgeReceiverService dataBridgeReceiverService) {
@@ -54,8 +55,11 @@ public class BinaryDataReceiver {
         this.binaryDataReceiverConfiguration = binaryDataReceiverConfiguration;
         this.sslReceiverExecutorService = new BinaryDataReceiverThreadPoolExecutor(binaryDataReceiverConfiguration.
                 getSizeOfSSLThreadPool(), "Receiver-Binary-SSL");
-        this.tcpReceiverExecutorService = new BinaryDataReceiverThreadPoolExecutor(binaryDataReceiverConfiguration.
-                getSizeOfTCPThreadPool(), "Receiver-Binary-TCP");
+        if (!binaryDataReceiverConfiguration.isNioEnabled()) {
+            // The NIO server serves the TCP connections with its own selector and worker threads
+            this.tcpReceiverExecutorService = new BinaryDataReceiverThreadPoolExecutor(binaryDataReceiverConfiguration.
+                    getSizeOfTCPThreadPool(), "Receiver-Binary-TCP");
+        }
     }
 
     public void start() throws IOException, DataBridgeException {
@@ -66,7 +70,12 @@ public class BinaryDataReceiver {
     public void stop() {
         log.info("Stopping Binary Server..");
         sslReceiverExecutorService.shutdown();
-        tcpReceiverExecutorService.shutdown();
+        if (tcpReceiverExecutorService != null) {
+            tcpReceiverExecutorService.shutdown();
+        }
+        if (binaryNioEventServer != null) {
+            binaryNioEventServer.stop();
+        }
     }
 
     private void startSecureTransmission() throws IOException, DataBridgeException {
@@ -99,6 +108,16 @@ public class BinaryDataReceiver {
 
 
     private void startEventTransmission() throws IOException {
+        if (binaryDataReceiverConfiguration.isNioEnabled()) {
+            binaryNioEventServer = new BinaryNioEventServer(this, binaryDataReceiverConfiguration.getTCPPort(),
+                    binaryDataReceiverConfiguration.getNioSelectorThreadCount(),
+                    binaryDataReceiverConfiguration.getNioReadBufferSize(),
+                    binaryDataReceiverConfiguration.getNioWorkerThreadCount(),
+                    binaryDataReceiverConfiguration.getNioMaxMessageSize());
+            binaryNioEventServer.start();
+            log.info("Started Binary TCP Transport (NIO) on port : " + binaryDataReceiverConfiguration.getTCPPort());
+            return;
+        }
         ServerSocketFactory serversocketfactory = ServerSocketFactory.getDefault();
         ServerSocket serversocket = serversocketfactory.createServerSocket(binaryDataReceiverConfiguration.getTCPPort());
         Thread thread = new Thread(new BinaryEventServerAcceptor(serversocket));
@@ -158,11 +177,16 @@ public class BinaryDataReceiver {
             try {
                 InputStream inputstream = new BufferedInputStream(socket.getInputStream());
                 OutputStream outputStream = new BufferedOutputStream((socket.getOutputStream()));
+                PendingAcknowledgement pendingAcknowledgement = new PendingAcknowledgement();
                 int messageType = inputstream.read();
                 while (messageType != -1) {
                     int messageSize = ByteBuffer.wrap(loadData(inputstream, new byte[4])).getInt();
                     byte[] message = loadData(inputstream, new byte[messageSize]);
-                    processMessage(messageType, message, outputStream);
+                    processMessage(messageType, message, outputStream, pendingAcknowledgement);
+                    if (inputstream.available() == 0) {
+                        // Acknowledge the processed sequenced messages before blocking for the next message.
+                        pendingAcknowledgement.send(outputStream);
+                    }
                     messageType = inputstream.read();
                 }
             } catch (IOException ex) {
@@ -172,7 +196,13 @@ public class BinaryDataReceiver {
     }
 
 
-    private String processMessage(int messageType, byte[] message, OutputStream outputStream) {
+    /**
+     * Processes a message received over a connection and writes its response. Sequenced publish messages are
+     * not responded to individually, they are recorded in the pending acknowledgement of the connection which
+     * the caller needs to send when there are no more received messages to process.
+     */
+    String processMessage(int messageType, byte[] message, OutputStream outputStream,
+                          PendingAcknowledgement pendingAcknowledgement) {
         ByteBuffer byteBuffer = ByteBuffer.wrap(message);
         int sessionIdLength;
         String sessionId;
@@ -184,12 +214,20 @@ public class BinaryDataReceiver {
 
                 String userName = new String(message, 8, userNameLength);
                 String password = new String(message, 8 + userNameLength, passwordLength);
+                int loginOptions = 0;
+                if (message.length >= 12 + userNameLength + passwordLength) {
+                    loginOptions = byteBuffer.getInt(8 + userNameLength + passwordLength);
+                }
 
                 try {
                     sessionId = dataBridgeReceiverService.login(userName, password);
 
                     ByteBuffer buffer = ByteBuffer.allocate(5 + sessionId.length());
-                    buffer.put((byte) 2);
+                    if ((loginOptions & BinaryMessageConstants.LOGIN_OPTION_PIPELINED_ACKS) != 0) {
+                        buffer.put((byte) BinaryMessageConstants.PIPELINED_LOGIN_OK_RESPONSE);
+                    } else {
+                        buffer.put((byte) 2);
+                    }
                     buffer.putInt(sessionId.length());
                     buffer.put(sessionId.getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
 
@@ -235,12 +273,37 @@ public class BinaryDataReceiver {
                     }
                 }
                 break;
+            case BinaryMessageConstants.SEQUENCED_PUBLISH_MESSAGE:
+                long sequence = byteBuffer.getLong(message.length - 8);
+                sessionIdLength = byteBuffer.getInt();
+                sessionId = new String(message, 4, sessionIdLength);
+                try {
+                    dataBridgeReceiverService.publish(message, sessionId, BinaryEventConverter.getConverter());
+                    pendingAcknowledgement.update(sequence);
+                } catch (Exception e) {
+                    // The error of a sequence implicitly acknowledges the sequences before it.
+                    pendingAcknowledgement.clear();
+                    try {
+                        sendSequencedError(sequence, e, outputStream);
+                    } catch (IOException e1) {
+                        log.error("Error while sending response for publish message: " + e1.getMessage(), e1);
+                    }
+                }
+                break;
             default:
                 log.error("Message Type " + messageType + " is not supported!");
         }
         return null;
     }
 
+    private void sendSequencedError(long sequence, Exception e, OutputStream outputStream) throws IOException {
+        ByteBuffer bbuf = ByteBuffer.wrap(new byte[9]);
+        bbuf.put((byte) BinaryMessageConstants.SEQUENCED_ERROR_RESPONSE);
+        bbuf.putLong(sequence);
+        outputStream.write(bbuf.array());
+        sendError(e, outputStream);
+    }
+
     private void sendError(Exception e, OutputStream outputStream) throws IOException {
 
         int errorClassNameLength = e.getClass().getCanonicalName().length();
@@ -0,0 +1,435 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.receiver.binary.internal;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.databridge.commons.utils.DataBridgeThreadFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selector based server for the Binary TCP transport. A single acceptor thread hands over the accepted
+ * connections to a fixed set of selector threads, which read the messages using pooled direct buffers.
+ * The messages are processed by a fixed set of worker threads, in the order they were received on each
+ * connection, so that a slow publish doesn't hold up the reads of the other connections. Hence the number
+ * of receiver threads doesn't grow with the number of connected agents.
+ */
+public class BinaryNioEventServer {
+    private static final Log log = LogFactory.getLog(BinaryNioEventServer.class);
+    private static final int MESSAGE_HEADER_SIZE = 5;
+    private static final int MAX_READS_PER_SELECTION = 16;
+    // Reads of a connection are paused once this many of its messages are waiting to be processed
+    private static final int MAX_QUEUED_MESSAGES_PER_CONNECTION = 64;
+
+    private final BinaryDataReceiver binaryDataReceiver;
+    private final int port;
+    private final DirectByteBufferPool bufferPool;
+    private final SelectorLoop[] selectorLoops;
+    private final AtomicInteger nextSelectorLoop = new AtomicInteger();
+    private final int workerThreadCount;
+    private final int maxMessageSize;
+    private ExecutorService workerExecutorService;
+    private ServerSocketChannel serverSocketChannel;
+    private volatile boolean running;
+
+    public BinaryNioEventServer(BinaryDataReceiver binaryDataReceiver, int port, int selectorThreadCount,
+                                int readBufferSize, int workerThreadCount, int maxMessageSize) {
+        this.binaryDataReceiver = binaryDataReceiver;
+        this.port = port;
+        this.selectorLoops = new SelectorLoop[selectorThreadCount];
+        this.bufferPool = new DirectByteBufferPool(selectorThreadCount, readBufferSize);
+        this.workerThreadCount = workerThreadCount;
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    public void start() throws IOException {
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.socket().setReuseAddress(true);
+        serverSocketChannel.socket().bind(new InetSocketAddress(port));
+        running = true;
+        workerExecutorService = Executors.newFixedThreadPool(workerThreadCount,
+                new DataBridgeThreadFactory("Receiver-Binary-NIO-Worker"));
+        ThreadFactory threadFactory = new DataBridgeThreadFactory("Receiver-Binary-NIO");
+        for (int i = 0; i < selectorLoops.length; i++) {
+            selectorLoops[i] = new SelectorLoop(Selector.open());
+            threadFactory.newThread(selectorLoops[i]).start();
+        }
+        threadFactory.newThread(new Acceptor()).start();
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocketChannel != null) {
+                serverSocketChannel.close();
+            }
+        } catch (IOException e) {
+            log.warn("Error while closing the Binary NIO server socket on port " + port, e);
+        }
+        for (SelectorLoop selectorLoop : selectorLoops) {
+            if (selectorLoop != null) {
+                selectorLoop.selector.wakeup();
+            }
+        }
+        if (workerExecutorService != null) {
+            workerExecutorService.shutdown();
+        }
+    }
+
+    /**
+     * Enables or disables the given interest operations of a key. The interest set is updated by the selector
+     * and the worker threads, hence it is only modified while holding the lock of the key.
+     */
+    private static void setInterest(SelectionKey key, int operations, boolean enable) {
+        synchronized (key) {
+            try {
+                int interestOps = key.interestOps();
+                int newInterestOps = enable ? interestOps | operations : interestOps & ~operations;
+                if (newInterestOps != interestOps) {
+                    key.interestOps(newInterestOps);
+                    if (enable) {
+                        key.selector().wakeup();
+                    }
+                }
+            } catch (CancelledKeyException ignored) {
+                // The connection is already closed
+            }
+        }
+    }
+
+    private class Acceptor implements Runnable {
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    SocketChannel socketChannel = serverSocketChannel.accept();
+                    socketChannel.configureBlocking(false);
+                    int index = (nextSelectorLoop.getAndIncrement() & Integer.MAX_VALUE) % selectorLoops.length;
+                    selectorLoops[index].register(socketChannel);
+                } catch (ClosedChannelException e) {
+                    if (running) {
+                        log.error("Binary NIO server socket closed unexpectedly on port " + port, e);
+                    }
+                    return;
+                } catch (IOException e) {
+                    log.error("Error while accepting the connection. ", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves the registered connections, all reads of a connection and the writes that could not be completed
+     * by the workers happen on the same selector thread.
+     */
+    private class SelectorLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pendingRegistrations = new ConcurrentLinkedQueue<>();
+
+        private SelectorLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        private void register(SocketChannel socketChannel) {
+            pendingRegistrations.add(socketChannel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    registerPendingConnections();
+                    Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                    while (keyIterator.hasNext()) {
+                        SelectionKey key = keyIterator.next();
+                        keyIterator.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isWritable()) {
+                                connection.outputStream.flush();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                connection.read();
+                            }
+                        } catch (CancelledKeyException e) {
+                            connection.close();
+                        } catch (IOException e) {
+                            log.error("Error while reading from the socket, closing the connection. ", e);
+                            connection.close();
+                        } catch (RuntimeException e) {
+                            // A misbehaving connection must not stop the selector serving the other connections
+                            log.error("Unexpected error while serving the connection, closing it. ", e);
+                            connection.close();
+                        }
+                    }
+                } catch (IOException e) {
+                    log.error("Error in Binary NIO selector loop. ", e);
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() != null) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.warn("Error while closing the Binary NIO selector. ", e);
+            }
+        }
+
+        private void registerPendingConnections() {
+            SocketChannel socketChannel;
+            while ((socketChannel = pendingRegistrations.poll()) != null) {
+                try {
+                    SelectionKey key = socketChannel.register(selector, SelectionKey.OP_READ);
+                    key.attach(new Connection(socketChannel, key));
+                } catch (ClosedChannelException e) {
+                    log.warn("Connection closed before it was registered with the selector. ", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A message read from a connection, which is waiting to be processed.
+     */
+    private static class Message {
+        private final int type;
+        private final byte[] body;
+
+        private Message(int type, byte[] body) {
+            this.type = type;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Per connection framing state. The 5 byte message header (type and size) is read first and then the
+     * message body is copied from the pooled read buffer into a message sized array, which is the only
+     * copy made before the message is handed over to the data bridge. The messages of a connection are
+     * processed one at a time by a worker, and sequenced publish messages are acknowledged once for all the
+     * messages processed by a run of the worker.
+     */
+    private class Connection implements Runnable {
+        private final SocketChannel socketChannel;
+        private final SelectionKey key;
+        private final ChannelOutputStream outputStream;
+        private final PendingAcknowledgement pendingAcknowledgement = new PendingAcknowledgement();
+        private final byte[] header = new byte[MESSAGE_HEADER_SIZE];
+        private final Queue<Message> messages = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queuedMessageCount = new AtomicInteger();
+        private final AtomicBoolean processing = new AtomicBoolean(false);
+        private final AtomicBoolean readsPaused = new AtomicBoolean(false);
+        private int headerPosition;
+        private int messageType;
+        private byte[] message;
+        private int messagePosition;
+
+        private Connection(SocketChannel socketChannel, SelectionKey key) {
+            this.socketChannel = socketChannel;
+            this.key = key;
+            this.outputStream = new ChannelOutputStream(socketChannel, key);
+        }
+
+        private void read() throws IOException {
+            ByteBuffer buffer = bufferPool.acquire();
+            try {
+                for (int i = 0; i < MAX_READS_PER_SELECTION && !readsPaused.get(); i++) {
+                    int readCount = socketChannel.read(buffer);
+                    if (readCount == -1) {
+                        close();
+                        return;
+                    } else if (readCount == 0) {
+                        break;
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        if (message == null) {
+                            readHeader(buffer);
+                        } else {
+                            readMessage(buffer);
+                        }
+                    }
+                    buffer.clear();
+                }
+            } finally {
+                bufferPool.release(buffer);
+            }
+        }
+
+        private void readHeader(ByteBuffer buffer) throws IOException {
+            int length = Math.min(MESSAGE_HEADER_SIZE - headerPosition, buffer.remaining());
+            buffer.get(header, headerPosition, length);
+            headerPosition += length;
+            if (headerPosition == MESSAGE_HEADER_SIZE) {
+                headerPosition = 0;
+                messageType = header[0] & 0xFF;
+                int messageSize = ((header[1] & 0xFF) << 24) | ((header[2] & 0xFF) << 16) |
+                        ((header[3] & 0xFF) << 8) | (header[4] & 0xFF);
+                if (messageSize < 0 || messageSize > maxMessageSize) {
+                    throw new IOException("Invalid message size " + messageSize + " of message type " + messageType
+                            + " received from " + socketChannel.socket().getRemoteSocketAddress()
+                            + ", the maximum message size is " + maxMessageSize);
+                }
+                message = new byte[messageSize];
+                messagePosition = 0;
+                if (messageSize == 0) {
+                    dispatchMessage();
+                }
+            }
+        }
+
+        private void readMessage(ByteBuffer buffer) {
+            int length = Math.min(message.length - messagePosition, buffer.remaining());
+            buffer.get(message, messagePosition, length);
+            messagePosition += length;
+            if (messagePosition == message.length) {
+                dispatchMessage();
+            }
+        }
+
+        private void dispatchMessage() {
+            messages.add(new Message(messageType, message));
+            message = null;
+            if (queuedMessageCount.incrementAndGet() >= MAX_QUEUED_MESSAGES_PER_CONNECTION
+                    && readsPaused.compareAndSet(false, true)) {
+                setInterest(key, SelectionKey.OP_READ, false);
+            }
+            scheduleProcessing();
+        }
+
+        private void scheduleProcessing() {
+            if (processing.compareAndSet(false, true)) {
+                try {
+                    workerExecutorService.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // The server is stopping
+                    processing.set(false);
+                }
+            }
+        }
+
+        /**
+         * Processes the queued messages of the connection on a worker thread.
+         */
+        @Override
+        public void run() {
+            try {
+                Message queuedMessage;
+                while ((queuedMessage = messages.poll()) != null) {
+                    queuedMessageCount.decrementAndGet();
+                    binaryDataReceiver.processMessage(queuedMessage.type, queuedMessage.body, outputStream,
+                            pendingAcknowledgement);
+                }
+                pendingAcknowledgement.send(outputStream);
+                if (readsPaused.compareAndSet(true, false)) {
+                    setInterest(key, SelectionKey.OP_READ, true);
+                }
+            } catch (IOException e) {
+                log.error("Error while responding to the connection, closing it. ", e);
+                close();
+            } catch (RuntimeException e) {
+                log.error("Unexpected error while processing a message, closing the connection. ", e);
+                close();
+            } finally {
+                processing.set(false);
+            }
+            if (!messages.isEmpty() && socketChannel.isOpen()) {
+                scheduleProcessing();
+            }
+        }
+
+        private void close() {
+            key.cancel();
+            messages.clear();
+            try {
+                socketChannel.close();
+            } catch (IOException e) {
+                log.warn("Error while closing the connection. ", e);
+            }
+        }
+    }
+
+    /**
+     * Output stream used for the responses of a non blocking connection. The written bytes are buffered
+     * and written to the channel on flush, and any bytes the channel doesn't accept immediately are written
+     * by the selector thread when the channel becomes writable again.
+     */
+    private static class ChannelOutputStream extends OutputStream {
+        private final SocketChannel socketChannel;
+        private final SelectionKey key;
+        private ByteBuffer pending = ByteBuffer.allocate(256);
+
+        private ChannelOutputStream(SocketChannel socketChannel, SelectionKey key) {
+            this.socketChannel = socketChannel;
+            this.key = key;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            ensureCapacity(1);
+            pending.put((byte) b);
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            pending.put(bytes, offset, length);
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            pending.flip();
+            socketChannel.write(pending);
+            pending.compact();
+            setInterest(key, SelectionKey.OP_WRITE, pending.position() > 0);
+        }
+
+        private void ensureCapacity(int length) {
+            if (pending.remaining() < length) {
+                ByteBuffer expanded = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + length));
+                pending.flip();
+                expanded.put(pending);
+                pending = expanded;
+            }
+        }
+    }
+}
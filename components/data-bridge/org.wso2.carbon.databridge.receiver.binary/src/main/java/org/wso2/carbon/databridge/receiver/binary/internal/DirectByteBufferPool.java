@@ -0,0 +1,53 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.receiver.binary.internal;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded pool of direct byte buffers used by the NIO Binary receiver for socket reads. Buffers are
+ * allocated lazily, and at most the configured number of buffers are retained once they are released.
+ */
+public class DirectByteBufferPool {
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final int bufferSize;
+
+    public DirectByteBufferPool(int maxPooledBuffers, int bufferSize) {
+        this.buffers = new ArrayBlockingQueue<>(maxPooledBuffers);
+        this.bufferSize = bufferSize;
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
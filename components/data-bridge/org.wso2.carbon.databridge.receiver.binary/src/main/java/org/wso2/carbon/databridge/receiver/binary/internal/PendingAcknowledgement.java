@@ -0,0 +1,61 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.receiver.binary.internal;
+
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageConstants;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Cumulative acknowledgement of the sequenced publish messages received over a connection. The sequence of
+ * each processed message is recorded, and a single acknowledgement for the latest sequence is written once the
+ * connection has no more received messages to process, instead of responding to each message.
+ */
+public class PendingAcknowledgement {
+    private static final long NO_SEQUENCE = -1;
+
+    private final ByteBuffer response = ByteBuffer.allocate(9);
+    private long sequence = NO_SEQUENCE;
+
+    public void update(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public void clear() {
+        this.sequence = NO_SEQUENCE;
+    }
+
+    /**
+     * Writes the acknowledgement for the latest processed sequence, if there is one that is not acknowledged yet.
+     *
+     * @param outputStream output stream of the connection.
+     * @throws IOException if the acknowledgement cannot be written.
+     */
+    public void send(OutputStream outputStream) throws IOException {
+        if (sequence != NO_SEQUENCE) {
+            response.clear();
+            response.put((byte) BinaryMessageConstants.ACK_RESPONSE);
+            response.putLong(sequence);
+            sequence = NO_SEQUENCE;
+            outputStream.write(response.array());
+            outputStream.flush();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.receiver.binary;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil;
+import org.wso2.carbon.databridge.core.EventBundleView;
+import org.wso2.carbon.databridge.core.StreamTypeHolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BinaryEventConverterTest {
+    private static final String SESSION_ID = "session";
+
+    private final BinaryEventConverter converter = BinaryEventConverter.getConverter();
+
+    @Test
+    public void testViewMatchesEventList() throws Exception {
+        StreamDefinition stock = new StreamDefinition("stock", "1.0.0");
+        stock.addMetaData("host", AttributeType.STRING);
+        stock.addCorrelationData("id", AttributeType.LONG);
+        stock.addPayloadData("symbol", AttributeType.STRING);
+        stock.addPayloadData("price", AttributeType.DOUBLE);
+        stock.addPayloadData("volume", AttributeType.INT);
+        stock.addPayloadData("ratio", AttributeType.FLOAT);
+        stock.addPayloadData("active", AttributeType.BOOL);
+        StreamDefinition tick = new StreamDefinition("tick", "1.0.0");
+        tick.addPayloadData("count", AttributeType.INT);
+        tick.addPayloadData("time", AttributeType.LONG);
+        StreamTypeHolder streamTypeHolder = createStreamTypeHolder(-1234, stock, tick);
+
+        Map<String, String> arbitraryData = new HashMap<String, String>();
+        arbitraryData.put("source", "test");
+        List<Event> events = Arrays.asList(
+                new Event(stock.getStreamId(), 1000L, new Object[]{"host1"}, new Object[]{1L},
+                        new Object[]{"WSO2", 55.5, 100, 0.5f, true}),
+                new Event(stock.getStreamId(), 2000L, new Object[]{"h\u00f6st2"}, new Object[]{2L},
+                        new Object[]{null, 60.25, 200, 1.5f, false}, arbitraryData),
+                new Event(tick.getStreamId(), 3000L, null, null, new Object[]{7, 3000L}),
+                new Event(stock.getStreamId(), 4000L, new Object[]{"host3"}, new Object[]{3L},
+                        new Object[]{"IBM", 10.0, 300, 2.5f, true}));
+        byte[] bundle = encode(events);
+
+        List<Event> eventList = converter.toEventList(bundle, streamTypeHolder);
+        EventBundleView view = converter.toEventBundleView(bundle, streamTypeHolder);
+        Assert.assertEquals(events.size(), view.size());
+        for (Event event : eventList) {
+            Assert.assertTrue(view.next());
+            Assert.assertEquals(event.getStreamId(), view.getStreamId());
+            Assert.assertEquals(event.getTimeStamp(), view.getTimeStamp());
+            assertAttributes(event.getMetaData(), view, EventBundleView.META_DATA);
+            assertAttributes(event.getCorrelationData(), view, EventBundleView.CORRELATION_DATA);
+            assertAttributes(event.getPayloadData(), view, EventBundleView.PAYLOAD_DATA);
+            Assert.assertEquals(event.getArbitraryDataMap(), view.getArbitraryDataMap());
+            Assert.assertEquals(event, view.toEvent());
+        }
+        Assert.assertFalse(view.next());
+
+        EventBundleView typedView = converter.toEventBundleView(bundle, streamTypeHolder);
+        Assert.assertTrue(typedView.next());
+        Assert.assertEquals("WSO2", typedView.getString(EventBundleView.PAYLOAD_DATA, 0));
+        Assert.assertEquals(55.5, typedView.getDouble(EventBundleView.PAYLOAD_DATA, 1));
+        Assert.assertEquals(100, typedView.getInt(EventBundleView.PAYLOAD_DATA, 2));
+        Assert.assertEquals(0.5f, typedView.getFloat(EventBundleView.PAYLOAD_DATA, 3));
+        Assert.assertTrue(typedView.getBoolean(EventBundleView.PAYLOAD_DATA, 4));
+        Assert.assertEquals(1L, typedView.getLong(EventBundleView.CORRELATION_DATA, 0));
+    }
+
+    @Test
+    public void testLayoutsAreKeptPerTenant() throws Exception {
+        StreamDefinition intQuote = new StreamDefinition("quote", "1.0.0");
+        intQuote.addPayloadData("price", AttributeType.INT);
+        intQuote.addPayloadData("symbol", AttributeType.STRING);
+        StreamDefinition longQuote = new StreamDefinition("quote", "1.0.0");
+        longQuote.addPayloadData("price", AttributeType.LONG);
+        longQuote.addPayloadData("symbol", AttributeType.STRING);
+        StreamTypeHolder firstTenant = createStreamTypeHolder(1, intQuote);
+        StreamTypeHolder secondTenant = createStreamTypeHolder(2, longQuote);
+
+        byte[] firstBundle = encode(Collections.singletonList(
+                new Event(intQuote.getStreamId(), 1000L, null, null, new Object[]{10, "WSO2"})));
+        byte[] secondBundle = encode(Collections.singletonList(
+                new Event(longQuote.getStreamId(), 1000L, null, null, new Object[]{20L, "IBM"})));
+        // the views of the tenants are interleaved, so that a layout shared by the tenants would misread the events
+        for (int i = 0; i < 2; i++) {
+            EventBundleView firstView = converter.toEventBundleView(firstBundle, firstTenant);
+            Assert.assertTrue(firstView.next());
+            Assert.assertEquals(10, firstView.getInt(EventBundleView.PAYLOAD_DATA, 0));
+            Assert.assertEquals("WSO2", firstView.getString(EventBundleView.PAYLOAD_DATA, 1));
+            EventBundleView secondView = converter.toEventBundleView(secondBundle, secondTenant);
+            Assert.assertTrue(secondView.next());
+            Assert.assertEquals(20L, secondView.getLong(EventBundleView.PAYLOAD_DATA, 0));
+            Assert.assertEquals("IBM", secondView.getString(EventBundleView.PAYLOAD_DATA, 1));
+        }
+        Assert.assertSame(converter.getLayout(intQuote.getStreamId(), firstTenant),
+                converter.getCachedLayout(1, intQuote.getStreamId()));
+        Assert.assertNotSame(converter.getCachedLayout(1, intQuote.getStreamId()),
+                converter.getCachedLayout(2, longQuote.getStreamId()));
+    }
+
+    @Test
+    public void testLayoutsOfRemovedStreamsAreEvicted() throws Exception {
+        StreamDefinition quote = new StreamDefinition("quote", "1.0.0");
+        quote.addPayloadData("price", AttributeType.DOUBLE);
+        StreamDefinition trade = new StreamDefinition("trade", "1.0.0");
+        trade.addPayloadData("volume", AttributeType.INT);
+        StreamTypeHolder streamTypeHolder = createStreamTypeHolder(3, quote, trade);
+
+        BinaryEventLayout quoteLayout = converter.getLayout(quote.getStreamId(), streamTypeHolder);
+        Assert.assertNotNull(converter.getLayout(trade.getStreamId(), streamTypeHolder));
+        Assert.assertSame(quoteLayout, converter.getLayout(quote.getStreamId(), streamTypeHolder));
+
+        streamTypeHolder.removeStreamDefinition(trade.getStreamId());
+        Assert.assertSame(quoteLayout, converter.getLayout(quote.getStreamId(), streamTypeHolder));
+        Assert.assertNull(converter.getCachedLayout(3, trade.getStreamId()));
+
+        // a redefined stream gets a new layout
+        StreamDefinition redefinedQuote = new StreamDefinition("quote", "1.0.0");
+        redefinedQuote.addPayloadData("price", AttributeType.FLOAT);
+        streamTypeHolder.putStreamDefinition(redefinedQuote);
+        BinaryEventLayout redefinedQuoteLayout = converter.getLayout(quote.getStreamId(), streamTypeHolder);
+        Assert.assertNotSame(quoteLayout, redefinedQuoteLayout);
+        Assert.assertEquals(AttributeType.FLOAT, redefinedQuoteLayout.getAttributeTypes()[2][0]);
+    }
+
+    private static void assertAttributes(Object[] expected, EventBundleView view, int group) {
+        if (expected == null) {
+            Assert.assertNull(view.getAttributeTypes(group));
+            return;
+        }
+        Assert.assertEquals(expected.length, view.getAttributeTypes(group).length);
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], view.getAttribute(group, i));
+        }
+    }
+
+    private static StreamTypeHolder createStreamTypeHolder(int tenantId, StreamDefinition... streamDefinitions) {
+        StreamTypeHolder streamTypeHolder = new StreamTypeHolder(tenantId);
+        for (StreamDefinition streamDefinition : streamDefinitions) {
+            streamTypeHolder.putStreamDefinition(streamDefinition);
+        }
+        return streamTypeHolder;
+    }
+
+    /**
+     * Encodes the events the same way the Binary publisher does, without the message type and size header.
+     */
+    private static byte[] encode(List<Event> events) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        buffer.putInt(BinaryMessageConverterUtil.getStringSize(SESSION_ID));
+        BinaryMessageConverterUtil.putString(buffer, SESSION_ID);
+        buffer.putInt(events.size());
+        for (Event event : events) {
+            int sizePosition = buffer.position();
+            buffer.putInt(0);
+            buffer.putLong(event.getTimeStamp());
+            buffer.putInt(BinaryMessageConverterUtil.getStringSize(event.getStreamId()));
+            BinaryMessageConverterUtil.putString(buffer, event.getStreamId());
+            for (Object[] data : new Object[][]{event.getMetaData(), event.getCorrelationData(),
+                    event.getPayloadData()}) {
+                if (data != null) {
+                    for (Object value : data) {
+                        BinaryMessageConverterUtil.assignData(value, buffer);
+                    }
+                }
+            }
+            if (event.getArbitraryDataMap() != null) {
+                for (Map.Entry<String, String> entry : event.getArbitraryDataMap().entrySet()) {
+                    BinaryMessageConverterUtil.assignData(entry.getKey(), buffer);
+                    BinaryMessageConverterUtil.assignData(entry.getValue(), buffer);
+                }
+            }
+            buffer.putInt(sizePosition, buffer.position() - sizePosition - 4);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.receiver.binary.internal;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.databridge.receiver.binary.conf.BinaryDataReceiverConfiguration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class BinaryNioEventServerTest {
+    private static final int MAX_MESSAGE_SIZE = 1024;
+    private static final int FAILING_MESSAGE_TYPE = 99;
+
+    private final BlockingQueue<byte[]> receivedMessages = new LinkedBlockingQueue<>();
+    private BinaryNioEventServer server;
+    private int port;
+
+    @Before
+    public void startServer() throws IOException {
+        ServerSocket serverSocket = new ServerSocket(0);
+        port = serverSocket.getLocalPort();
+        serverSocket.close();
+        BinaryDataReceiverConfiguration configuration = new BinaryDataReceiverConfiguration(port + 1, port);
+        BinaryDataReceiver receiver = new BinaryDataReceiver(configuration, null) {
+            @Override
+            String processMessage(int messageType, byte[] message, OutputStream outputStream,
+                                  PendingAcknowledgement pendingAcknowledgement) {
+                if (messageType == FAILING_MESSAGE_TYPE) {
+                    throw new IllegalStateException("Failing message");
+                }
+                receivedMessages.add(message);
+                return null;
+            }
+        };
+        server = new BinaryNioEventServer(receiver, port, 2, 16, 2, MAX_MESSAGE_SIZE);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void testMessageSplitAcrossReads() throws Exception {
+        Socket socket = new Socket("localhost", port);
+        byte[] frame = frame(1, "split across reads".getBytes());
+        OutputStream outputStream = socket.getOutputStream();
+        for (byte b : frame) {
+            outputStream.write(b);
+            outputStream.flush();
+            Thread.sleep(1);
+        }
+        Assert.assertEquals("split across reads", new String(poll()));
+        socket.close();
+    }
+
+    @Test
+    public void testMessagesInSingleRead() throws Exception {
+        Socket socket = new Socket("localhost", port);
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        for (int i = 0; i < 5; i++) {
+            buffer.put(frame(1, ("message" + i).getBytes()));
+        }
+        socket.getOutputStream().write(buffer.array(), 0, buffer.position());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("message" + i, new String(poll()));
+        }
+        socket.close();
+    }
+
+    @Test
+    public void testZeroLengthMessage() throws Exception {
+        Socket socket = new Socket("localhost", port);
+        socket.getOutputStream().write(frame(1, new byte[0]));
+        socket.getOutputStream().write(frame(1, "next".getBytes()));
+        Assert.assertEquals(0, poll().length);
+        Assert.assertEquals("next", new String(poll()));
+        socket.close();
+    }
+
+    @Test
+    public void testNegativeMessageSizeClosesOnlyThatConnection() throws Exception {
+        assertConnectionClosedOnHeader(-1);
+    }
+
+    @Test
+    public void testOversizedMessageClosesOnlyThatConnection() throws Exception {
+        assertConnectionClosedOnHeader(MAX_MESSAGE_SIZE + 1);
+    }
+
+    @Test
+    public void testProcessingFailureClosesOnlyThatConnection() throws Exception {
+        Socket failing = new Socket("localhost", port);
+        Socket healthy = new Socket("localhost", port);
+        failing.getOutputStream().write(frame(FAILING_MESSAGE_TYPE, "fail".getBytes()));
+        assertClosed(failing);
+        healthy.getOutputStream().write(frame(1, "healthy".getBytes()));
+        Assert.assertEquals("healthy", new String(poll()));
+        healthy.close();
+    }
+
+    private void assertConnectionClosedOnHeader(int messageSize) throws Exception {
+        Socket malformed = new Socket("localhost", port);
+        Socket healthy = new Socket("localhost", port);
+        malformed.getOutputStream().write(ByteBuffer.allocate(5).put((byte) 1).putInt(messageSize).array());
+        assertClosed(malformed);
+        healthy.getOutputStream().write(frame(1, "healthy".getBytes()));
+        Assert.assertEquals("healthy", new String(poll()));
+        healthy.close();
+        Assert.assertTrue(receivedMessages.isEmpty());
+    }
+
+    private void assertClosed(Socket socket) throws IOException {
+        socket.setSoTimeout(5000);
+        InputStream inputStream = socket.getInputStream();
+        try {
+            Assert.assertEquals(-1, inputStream.read());
+        } catch (IOException ignored) {
+            // Connection reset by the server
+        }
+        socket.close();
+    }
+
+    private byte[] poll() throws InterruptedException {
+        byte[] message = receivedMessages.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull("Message was not received", message);
+        return message;
+    }
+
+    private static byte[] frame(int messageType, byte[] message) {
+        return ByteBuffer.allocate(5 + message.length).put((byte) messageType).putInt(message.length).put(message)
+                .array();
+    }
+}
@@ -21,8 +21,12 @@ package org.wso2.carbon.databridge.receiver.thrift;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.server.THsHaServer;
 import org.apache.thrift.server.TServer;
 import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadedSelectorServer;
+import org.apache.thrift.transport.TNonblockingServerSocket;
 import org.apache.thrift.transport.TSSLTransportFactory;
 import org.apache.thrift.transport.TServerSocket;
 import org.apache.thrift.transport.TTransportException;
@@ -31,16 +35,20 @@ import org.wso2.carbon.databridge.commons.exception.TransportException;
 import org.wso2.carbon.databridge.commons.thrift.service.general.ThriftEventTransmissionService;
 import org.wso2.carbon.databridge.commons.thrift.service.secure.ThriftSecureEventTransmissionService;
 import org.wso2.carbon.databridge.commons.thrift.utils.CommonThriftConstants;
+import org.wso2.carbon.databridge.commons.utils.DataBridgeThreadFactory;
 import org.wso2.carbon.databridge.core.DataBridgeReceiverService;
 import org.wso2.carbon.databridge.core.exception.DataBridgeException;
 import org.wso2.carbon.databridge.core.internal.utils.DataBridgeConstants;
 import org.wso2.carbon.databridge.receiver.thrift.conf.ThriftDataReceiverConfiguration;
+import org.wso2.carbon.databridge.receiver.thrift.internal.utils.ThriftDataReceiverConstants;
 import org.wso2.carbon.databridge.receiver.thrift.service.ThriftEventTransmissionServiceImpl;
 import org.wso2.carbon.databridge.receiver.thrift.service.ThriftSecureEventTransmissionServiceImpl;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Carbon based implementation of the agent server
@@ -163,16 +171,27 @@ public class ThriftDataReceiver {
     protected void startEventTransmission(String hostName, int port,
                                           DataBridgeReceiverService dataBridgeReceiverService)
             throws DataBridgeException {
+        ThriftEventTransmissionService.Processor<ThriftEventTransmissionServiceImpl> processor =
+                new ThriftEventTransmissionService.Processor<ThriftEventTransmissionServiceImpl>(
+                        new ThriftEventTransmissionServiceImpl(dataBridgeReceiverService));
         try {
-            TServerSocket serverTransport = new TServerSocket(
-                    new InetSocketAddress(hostName, port));
-            ThriftEventTransmissionService.Processor<ThriftEventTransmissionServiceImpl> processor =
-                    new ThriftEventTransmissionService.Processor<ThriftEventTransmissionServiceImpl>(
-                            new ThriftEventTransmissionServiceImpl(dataBridgeReceiverService));
-            dataReceiverServer = new TThreadPoolServer(
-                    new TThreadPoolServer.Args(serverTransport).processor(processor));
+            if (thriftDataReceiverConfiguration.isNonBlockingServerMode()) {
+                dataReceiverServer = createNonBlockingServer(hostName, port, processor);
+            } else if (ThriftDataReceiverConstants.THREAD_POOL_SERVER_MODE.equalsIgnoreCase(
+                    thriftDataReceiverConfiguration.getServerMode())) {
+                TServerSocket serverTransport = new TServerSocket(
+                        new InetSocketAddress(hostName, port));
+                dataReceiverServer = new TThreadPoolServer(
+                        new TThreadPoolServer.Args(serverTransport).processor(processor));
+            } else {
+                throw new DataBridgeException("Unknown Thrift server mode " +
+                                              thriftDataReceiverConfiguration.getServerMode() + ", expected one of " +
+                                              ThriftDataReceiverConstants.THREAD_POOL_SERVER_MODE + ", " +
+                                              ThriftDataReceiverConstants.HSHA_SERVER_MODE + " or " +
+                                              ThriftDataReceiverConstants.THREADED_SELECTOR_SERVER_MODE);
+            }
             Thread thread = new Thread(new ServerThread(dataReceiverServer));
-            log.info("Thrift port : " + port);
+            log.info("Thrift port : " + port + ", server mode : " + thriftDataReceiverConfiguration.getServerMode());
             thread.start();
         } catch (TTransportException e) {
             throw new DataBridgeException("Cannot start Thrift server on port " + port +
@@ -180,6 +199,29 @@ public class ThriftDataReceiver {
         }
     }
 
+    /**
+     * Creates a selector based server for the TCP port, where the connections are served by selector threads
+     * and the requests are processed by a fixed worker pool. Hence the number of threads doesn't grow with the
+     * number of connected agents. These servers only accept the framed transport.
+     */
+    private TServer createNonBlockingServer(String hostName, int port, TProcessor processor)
+            throws TTransportException {
+        TNonblockingServerSocket serverTransport = new TNonblockingServerSocket(
+                new InetSocketAddress(hostName, port), DataBridgeConstants.CLIENT_TIMEOUT_MS);
+        ExecutorService workerPool = Executors.newFixedThreadPool(thriftDataReceiverConfiguration.getWorkerThreadCount(),
+                new DataBridgeThreadFactory("Receiver-Thrift-Worker"));
+        if (ThriftDataReceiverConstants.HSHA_SERVER_MODE.equalsIgnoreCase(thriftDataReceiverConfiguration.getServerMode())) {
+            THsHaServer.Args args = new THsHaServer.Args(serverTransport).executorService(workerPool);
+            args.maxReadBufferBytes = thriftDataReceiverConfiguration.getMaxReadBufferSize();
+            return new THsHaServer(args.processor(processor));
+        }
+        TThreadedSelectorServer.Args args = new TThreadedSelectorServer.Args(serverTransport)
+                .selectorThreads(thriftDataReceiverConfiguration.getSelectorThreadCount())
+                .executorService(workerPool);
+        args.maxReadBufferBytes = thriftDataReceiverConfiguration.getMaxReadBufferSize();
+        return new TThreadedSelectorServer(args.processor(processor));
+    }
+
     /**
      * To stop the server
      */
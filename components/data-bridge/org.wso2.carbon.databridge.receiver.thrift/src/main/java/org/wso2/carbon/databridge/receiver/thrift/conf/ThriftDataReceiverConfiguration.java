@@ -32,6 +32,10 @@ public class ThriftDataReceiverConfiguration {
     private int secureDataReceiverPort;
     private int dataReceiverPort;
     private String receiverHostName;
+    private String serverMode = ThriftDataReceiverConstants.DEFAULT_SERVER_MODE;
+    private int workerThreadCount = ThriftDataReceiverConstants.DEFAULT_WORKER_THREAD_COUNT;
+    private int selectorThreadCount = ThriftDataReceiverConstants.DEFAULT_SELECTOR_THREAD_COUNT;
+    private long maxReadBufferSize = ThriftDataReceiverConstants.DEFAULT_MAX_READ_BUFFER_SIZE;
 
     public ThriftDataReceiverConfiguration(int defaultSslPort, int defaultPort) {
         secureDataReceiverPort = defaultSslPort;
@@ -48,6 +52,14 @@ public class ThriftDataReceiverConfiguration {
                 CommonThriftConstants.DEFAULT_RECEIVER_PORT).toString()) + portOffset;
         receiverHostName = dataReceiver.getConfiguration(ThriftDataReceiverConstants.RECEIVER_HOST_NAME,
                 ThriftDataReceiverConstants.DEFAULT_HOSTNAME).toString();
+        serverMode = dataReceiver.getConfiguration(ThriftDataReceiverConstants.SERVER_MODE,
+                ThriftDataReceiverConstants.DEFAULT_SERVER_MODE).toString().trim();
+        workerThreadCount = Integer.parseInt(dataReceiver.getConfiguration(ThriftDataReceiverConstants.WORKER_THREAD_COUNT,
+                ThriftDataReceiverConstants.DEFAULT_WORKER_THREAD_COUNT).toString().trim());
+        selectorThreadCount = Integer.parseInt(dataReceiver.getConfiguration(ThriftDataReceiverConstants.SELECTOR_THREAD_COUNT,
+                ThriftDataReceiverConstants.DEFAULT_SELECTOR_THREAD_COUNT).toString().trim());
+        maxReadBufferSize = Long.parseLong(dataReceiver.getConfiguration(ThriftDataReceiverConstants.MAX_READ_BUFFER_SIZE,
+                ThriftDataReceiverConstants.DEFAULT_MAX_READ_BUFFER_SIZE).toString().trim());
     }
 
     public ThriftDataReceiverConfiguration(int defaultSslPort, int defaultPort,
@@ -82,6 +94,52 @@ public class ThriftDataReceiverConfiguration {
         this.receiverHostName = receiverHostName;
     }
 
+    /**
+     * @return the server serving the TCP port, one of threadPool (a thread per connection), hsha (a selector
+     * thread with a worker pool) or threadedSelector (a set of selector threads with a worker pool). The
+     * selector based servers use the framed transport.
+     */
+    public String getServerMode() {
+        return serverMode;
+    }
+
+    public void setServerMode(String serverMode) {
+        this.serverMode = serverMode;
+    }
+
+    /**
+     * @return true if the TCP port is served by a selector based server, which makes the number of threads
+     * independent of the number of connections.
+     */
+    public boolean isNonBlockingServerMode() {
+        return ThriftDataReceiverConstants.HSHA_SERVER_MODE.equalsIgnoreCase(serverMode) ||
+                ThriftDataReceiverConstants.THREADED_SELECTOR_SERVER_MODE.equalsIgnoreCase(serverMode);
+    }
+
+    public int getWorkerThreadCount() {
+        return workerThreadCount;
+    }
+
+    public void setWorkerThreadCount(int workerThreadCount) {
+        this.workerThreadCount = workerThreadCount;
+    }
+
+    public int getSelectorThreadCount() {
+        return selectorThreadCount;
+    }
+
+    public void setSelectorThreadCount(int selectorThreadCount) {
+        this.selectorThreadCount = selectorThreadCount;
+    }
+
+    public long getMaxReadBufferSize() {
+        return maxReadBufferSize;
+    }
+
+    public void setMaxReadBufferSize(long maxReadBufferSize) {
+        this.maxReadBufferSize = maxReadBufferSize;
+    }
+
     public int getPortOffset() {
         return CarbonUtils.
                 getPortFromServerConfig(ThriftDataReceiverConstants.CARBON_CONFIG_PORT_OFFSET_NODE) + 1;
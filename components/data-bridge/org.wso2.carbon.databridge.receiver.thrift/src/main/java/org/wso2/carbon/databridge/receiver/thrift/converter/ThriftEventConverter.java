@@ -160,7 +160,7 @@ public final class ThriftEventConverter implements EventConverter {
                         privilegedCarbonContext.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
                         privilegedCarbonContext.setTenantId(MultitenantConstants.SUPER_TENANT_ID);
                     }
-                    streamTypeHolder.reloadStreamTypeHolder();
+                    streamTypeHolder.reloadStreamTypeHolder(streamId);
                     attributeTypeOrder = streamTypeHolder.getDataType(streamId);
                     if (attributeTypeOrder == null) {
                         throw new EventConversionException("No StreamDefinition for streamId " + streamId + " present in cache ");
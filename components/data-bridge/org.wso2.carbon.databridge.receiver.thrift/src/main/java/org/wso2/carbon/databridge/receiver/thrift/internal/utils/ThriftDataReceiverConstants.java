@@ -32,4 +32,15 @@ public final class ThriftDataReceiverConstants {
     public static final String RECEIVER_HOST_NAME = "hostName";
     public static final String DEFAULT_HOSTNAME = "0.0.0.0";
     public static final String DATA_BRIDGE_RECEIVER_NAME = "Thrift";
+    public static final String SERVER_MODE = "serverMode";
+    public static final String THREAD_POOL_SERVER_MODE = "threadPool";
+    public static final String HSHA_SERVER_MODE = "hsha";
+    public static final String THREADED_SELECTOR_SERVER_MODE = "threadedSelector";
+    public static final String DEFAULT_SERVER_MODE = THREAD_POOL_SERVER_MODE;
+    public static final String WORKER_THREAD_COUNT = "workerThreadCount";
+    public static final int DEFAULT_WORKER_THREAD_COUNT = 20;
+    public static final String SELECTOR_THREAD_COUNT = "selectorThreadCount";
+    public static final int DEFAULT_SELECTOR_THREAD_COUNT = 4;
+    public static final String MAX_READ_BUFFER_SIZE = "maxReadBufferSize";
+    public static final long DEFAULT_MAX_READ_BUFFER_SIZE = 256L * 1024 * 1024;
 }
@@ -28,6 +28,6 @@ public class EventStreamListenerImpl implements EventStreamListener {
 
     @Override
     public void addedEventStream(int tenantId, String streamName, String streamVersion) {
-
+        ServiceHolder.getStreamDefinitionStore().invalidateCachedStreamDefinition(streamName, streamVersion, tenantId);
     }
 }
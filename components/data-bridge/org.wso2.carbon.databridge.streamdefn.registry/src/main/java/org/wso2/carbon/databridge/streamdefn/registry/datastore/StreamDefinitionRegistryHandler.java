@@ -0,0 +1,101 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.streamdefn.registry.datastore;
+
+import org.wso2.carbon.databridge.core.definitionstore.AbstractStreamDefinitionStore;
+import org.wso2.carbon.databridge.streamdefn.registry.util.RegistryStreamDefinitionStoreUtil;
+import org.wso2.carbon.registry.core.RegistryConstants;
+import org.wso2.carbon.registry.core.exceptions.RegistryException;
+import org.wso2.carbon.registry.core.jdbc.handlers.Handler;
+import org.wso2.carbon.registry.core.jdbc.handlers.RequestContext;
+import org.wso2.carbon.registry.core.session.CurrentSession;
+
+/**
+ * Registry handler engaged on the stream definition collection, which keeps the stream definition cache of the
+ * {@link AbstractStreamDefinitionStore} in sync with the stream definitions changed directly in the registry,
+ * rather than through the data bridge. The handler is engaged both before the change is written to the registry
+ * and once it's committed, as invalidating the cache only before the write lets a lookup made during the write
+ * cache the definition being replaced. The listeners of a removed stream are notified once it's committed.
+ */
+public class StreamDefinitionRegistryHandler extends Handler {
+    private final AbstractStreamDefinitionStore streamDefinitionStore;
+    private final boolean commitPhase;
+
+    /**
+     * @param streamDefinitionStore the store whose cache is kept in sync.
+     * @param commitPhase           whether the handler is engaged once the change is committed.
+     */
+    public StreamDefinitionRegistryHandler(AbstractStreamDefinitionStore streamDefinitionStore,
+                                           boolean commitPhase) {
+        this.streamDefinitionStore = streamDefinitionStore;
+        this.commitPhase = commitPhase;
+    }
+
+    /**
+     * @return the regular expression matching the registry paths of the stream definitions.
+     */
+    public static String getPathPattern() {
+        return ".*" + RegistryStreamDefinitionStoreUtil.getStreamDefinitionStorePath() + "/.*";
+    }
+
+    @Override
+    public void put(RequestContext requestContext) throws RegistryException {
+        String[] streamNameAndVersion = getStreamNameAndVersion(requestContext);
+        if (streamNameAndVersion != null) {
+            streamDefinitionStore.invalidateCachedStreamDefinition(streamNameAndVersion[0], streamNameAndVersion[1],
+                    CurrentSession.getTenantId());
+        }
+    }
+
+    @Override
+    public void delete(RequestContext requestContext) throws RegistryException {
+        String[] streamNameAndVersion = getStreamNameAndVersion(requestContext);
+        if (streamNameAndVersion != null) {
+            if (commitPhase) {
+                streamDefinitionStore.invalidateStreamDefinition(streamNameAndVersion[0], streamNameAndVersion[1],
+                        CurrentSession.getTenantId());
+            } else {
+                streamDefinitionStore.invalidateCachedStreamDefinition(streamNameAndVersion[0],
+                        streamNameAndVersion[1], CurrentSession.getTenantId());
+            }
+        }
+    }
+
+    /**
+     * @return the stream name and version of a path of the form .../StreamDefinitions/name/version, or null
+     * if the path is not of a stream definition.
+     */
+    private static String[] getStreamNameAndVersion(RequestContext requestContext) {
+        if (requestContext.getResourcePath() == null) {
+            return null;
+        }
+        String path = requestContext.getResourcePath().getPath();
+        String storePath = RegistryStreamDefinitionStoreUtil.getStreamDefinitionStorePath() +
+                RegistryConstants.PATH_SEPARATOR;
+        int storePathIndex = path.lastIndexOf(storePath);
+        if (storePathIndex < 0) {
+            return null;
+        }
+        String[] streamNameAndVersion = path.substring(storePathIndex + storePath.length())
+                .split(RegistryConstants.PATH_SEPARATOR);
+        if (streamNameAndVersion.length != 2) {
+            return null;
+        }
+        return streamNameAndVersion;
+    }
+}
@@ -22,7 +22,12 @@ import org.apache.commons.logging.LogFactory;
 import org.osgi.service.component.ComponentContext;
 import org.wso2.carbon.databridge.core.definitionstore.AbstractStreamDefinitionStore;
 import org.wso2.carbon.databridge.streamdefn.registry.datastore.RegistryStreamDefinitionStore;
+import org.wso2.carbon.databridge.streamdefn.registry.datastore.StreamDefinitionRegistryHandler;
+import org.wso2.carbon.registry.core.config.RegistryContext;
 import org.wso2.carbon.registry.core.exceptions.RegistryException;
+import org.wso2.carbon.registry.core.jdbc.handlers.HandlerLifecycleManager;
+import org.wso2.carbon.registry.core.jdbc.handlers.filters.Filter;
+import org.wso2.carbon.registry.core.jdbc.handlers.filters.URLMatcher;
 import org.wso2.carbon.registry.core.service.RegistryService;
 
 /**
@@ -35,6 +40,21 @@ public class RegistryStreamDefnStoreDS {
 
     protected void activate(ComponentContext componentContext) {
         AbstractStreamDefinitionStore abstractStreamDefinitionStore = new RegistryStreamDefinitionStore();
+        RegistryContext registryContext = RegistryContext.getBaseInstance();
+        if (registryContext != null) {
+            URLMatcher urlMatcher = new URLMatcher();
+            urlMatcher.setPattern(StreamDefinitionRegistryHandler.getPathPattern());
+            // Engaged both before the change is written and once it's committed, so that a lookup racing with
+            // the write cannot cache the definition being replaced
+            registryContext.getHandlerManager().addHandler(new String[]{Filter.PUT, Filter.DELETE}, urlMatcher,
+                    new StreamDefinitionRegistryHandler(abstractStreamDefinitionStore, false));
+            registryContext.getHandlerManager().addHandler(new String[]{Filter.PUT, Filter.DELETE}, urlMatcher,
+                    new StreamDefinitionRegistryHandler(abstractStreamDefinitionStore, true),
+                    HandlerLifecycleManager.COMMIT_HANDLER_PHASE);
+        } else {
+            log.warn("Registry context is not available, hence the data bridge will not be notified of the stream " +
+                    "definitions changed directly in the registry");
+        }
         componentContext.getBundleContext().registerService(AbstractStreamDefinitionStore.class.getName(), abstractStreamDefinitionStore, null);
         if (log.isDebugEnabled()) {
             log.debug("Started the Data bridge Registry stream definition store component");
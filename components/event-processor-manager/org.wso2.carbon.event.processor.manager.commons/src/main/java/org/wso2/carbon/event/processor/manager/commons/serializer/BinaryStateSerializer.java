@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.commons.serializer;
+
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Default {@link StateSerializer}, which writes a compact tagged binary format. The attribute types of the events
+ * (int, long, float, double, bool and string), strings, byte arrays, object arrays, {@link HashMap}s,
+ * {@link ArrayList}s and the {@link Event}s are written by hand, without the class descriptors and the object headers
+ * written by Java serialization. Any other {@link Serializable} object is embedded using Java serialization.
+ * <p/>
+ * States serialized with Java serialization, by earlier versions, are still deserialized, as a Java serialization
+ * stream cannot be mistaken for this format.
+ */
+public class BinaryStateSerializer implements StateSerializer {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte FORMAT_HEADER = (byte) 0xCE;
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte JAVA_SERIALIZATION_HEADER = (byte) 0xAC;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INTEGER = 3;
+    private static final byte LONG = 4;
+    private static final byte FLOAT = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte STRING = 7;
+    private static final byte BYTES = 8;
+    private static final byte OBJECT_ARRAY = 9;
+    private static final byte HASH_MAP = 10;
+    private static final byte ARRAY_LIST = 11;
+    private static final byte EVENT = 12;
+    private static final byte EVENT_ARRAY = 13;
+    private static final byte SERIALIZABLE = 14;
+
+    private final JavaStateSerializer javaStateSerializer = new JavaStateSerializer();
+
+    @Override
+    public byte[] serialize(Object state) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(byteArrayOutputStream);
+        out.writeByte(FORMAT_HEADER);
+        out.writeByte(FORMAT_VERSION);
+        writeObject(out, state);
+        out.flush();
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws IOException {
+        if (bytes.length > 0 && bytes[0] == JAVA_SERIALIZATION_HEADER) {
+            return javaStateSerializer.deserialize(bytes);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            if (in.readByte() != FORMAT_HEADER) {
+                throw new IOException("Unknown state serialization format");
+            }
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported state serialization format version " + version);
+            }
+            return readObject(in);
+        } catch (EOFException e) {
+            throw new IOException("Truncated serialized state", e);
+        }
+    }
+
+    private void writeObject(DataOutputStream out, Object object) throws IOException {
+        if (object == null) {
+            out.writeByte(NULL);
+        } else if (object instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) object);
+        } else if (object instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) object);
+        } else if (object instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) object);
+        } else if (object instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) object);
+        } else if (object instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) object);
+        } else if (object instanceof Boolean) {
+            out.writeByte((Boolean) object ? TRUE : FALSE);
+        } else if (object instanceof byte[]) {
+            byte[] bytes = (byte[]) object;
+            out.writeByte(BYTES);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (object instanceof Event) {
+            out.writeByte(EVENT);
+            writeEvent(out, (Event) object);
+        } else if (object.getClass() == Event[].class) {
+            Event[] events = (Event[]) object;
+            out.writeByte(EVENT_ARRAY);
+            out.writeInt(events.length);
+            for (Event event : events) {
+                if (event == null) {
+                    out.writeBoolean(false);
+                } else {
+                    out.writeBoolean(true);
+                    writeEvent(out, event);
+                }
+            }
+        } else if (object.getClass() == Object[].class) {
+            out.writeByte(OBJECT_ARRAY);
+            writeArray(out, (Object[]) object);
+        } else if (object.getClass() == HashMap.class) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            out.writeByte(HASH_MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeObject(out, entry.getKey());
+                writeObject(out, entry.getValue());
+            }
+        } else if (object.getClass() == ArrayList.class) {
+            List<?> list = (List<?>) object;
+            out.writeByte(ARRAY_LIST);
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeObject(out, element);
+            }
+        } else if (object instanceof Serializable) {
+            byte[] bytes = javaStateSerializer.serialize(object);
+            out.writeByte(SERIALIZABLE);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else {
+            throw new NotSerializableException(object.getClass().getName());
+        }
+    }
+
+    private Object readObject(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BYTES:
+                return readBytes(in);
+            case EVENT:
+                return readEvent(in);
+            case EVENT_ARRAY: {
+                Event[] events = new Event[readLength(in)];
+                for (int i = 0; i < events.length; i++) {
+                    if (in.readBoolean()) {
+                        events[i] = readEvent(in);
+                    }
+                }
+                return events;
+            }
+            case OBJECT_ARRAY:
+                return readArray(in);
+            case HASH_MAP: {
+                int size = readLength(in);
+                HashMap<Object, Object> map = new HashMap<Object, Object>(Math.max((int) (size / .75f) + 1, 16));
+                for (int i = 0; i < size; i++) {
+                    map.put(readObject(in), readObject(in));
+                }
+                return map;
+            }
+            case ARRAY_LIST: {
+                int size = readLength(in);
+                ArrayList<Object> list = new ArrayList<Object>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readObject(in));
+                }
+                return list;
+            }
+            case SERIALIZABLE:
+                return javaStateSerializer.deserialize(readBytes(in));
+            default:
+                throw new IOException("Unknown type " + type + " in serialized state");
+        }
+    }
+
+    private void writeEvent(DataOutputStream out, Event event) throws IOException {
+        writeNullableString(out, event.getStreamId());
+        out.writeLong(event.getTimeStamp());
+        writeArray(out, event.getMetaData());
+        writeArray(out, event.getCorrelationData());
+        writeArray(out, event.getPayloadData());
+        Map<String, String> arbitraryDataMap = event.getArbitraryDataMap();
+        if (arbitraryDataMap == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(arbitraryDataMap.size());
+            for (Map.Entry<String, String> entry : arbitraryDataMap.entrySet()) {
+                writeNullableString(out, entry.getKey());
+                writeNullableString(out, entry.getValue());
+            }
+        }
+    }
+
+    private Event readEvent(DataInputStream in) throws IOException {
+        Event event = new Event();
+        event.setStreamId(readNullableString(in));
+        event.setTimeStamp(in.readLong());
+        event.setMetaData(readArray(in));
+        event.setCorrelationData(readArray(in));
+        event.setPayloadData(readArray(in));
+        int size = in.readInt();
+        if (size >= 0) {
+            checkLength(in, size);
+            Map<String, String> arbitraryDataMap = new HashMap<String, String>(Math.max((int) (size / .75f) + 1, 16));
+            for (int i = 0; i < size; i++) {
+                arbitraryDataMap.put(readNullableString(in), readNullableString(in));
+            }
+            event.setArbitraryDataMap(arbitraryDataMap);
+        }
+        return event;
+    }
+
+    private void writeArray(DataOutputStream out, Object[] array) throws IOException {
+        if (array == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(array.length);
+            for (Object element : array) {
+                writeObject(out, element);
+            }
+        }
+    }
+
+    private Object[] readArray(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        Object[] array = new Object[checkLength(in, length)];
+        for (int i = 0; i < length; i++) {
+            array[i] = readObject(in);
+        }
+        return array;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), UTF_8);
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            writeString(out, value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[checkLength(in, length)];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid length " + length + " in serialized state");
+        }
+        return checkLength(in, length);
+    }
+
+    /**
+     * Rejects lengths that exceed the remaining bytes, as every element takes at least a byte, so that a corrupted
+     * length doesn't allocate a huge array.
+     */
+    private static int checkLength(DataInputStream in, int length) throws IOException {
+        if (length > in.available()) {
+            throw new IOException("Length " + length + " exceeds the remaining bytes of the serialized state");
+        }
+        return length;
+    }
+}
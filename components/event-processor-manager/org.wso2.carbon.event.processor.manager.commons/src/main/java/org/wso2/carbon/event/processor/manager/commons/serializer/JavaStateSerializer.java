@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.commons.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * {@link StateSerializer} based on Java serialization, which was used for all the states before the
+ * {@link BinaryStateSerializer}.
+ */
+public class JavaStateSerializer implements StateSerializer {
+
+    @Override
+    public byte[] serialize(Object state) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+        objectOutputStream.writeObject(state);
+        objectOutputStream.close();
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws IOException {
+        ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return objectInputStream.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Cannot find the class of the serialized state, " + e.getMessage(), e);
+        } finally {
+            objectInputStream.close();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.commons.serializer;
+
+import java.io.IOException;
+
+/**
+ * Serializes the states which are synced between the HA members and persisted, such as the snapshots of the event
+ * processor and the queued events of the event receivers. Implementations are plugged in through the stateSerializer
+ * element of event-processor.xml and need to have a public no-arg constructor.
+ */
+public interface StateSerializer {
+
+    /**
+     * Serialize the given state
+     *
+     * @param state the object to serialize, can be null
+     * @return the serialized state
+     * @throws IOException if the state or any object it refers to cannot be serialized
+     */
+    byte[] serialize(Object state) throws IOException;
+
+    /**
+     * Deserialize a state serialized by {@link #serialize(Object)}
+     *
+     * @param bytes the serialized state
+     * @return the deserialized state
+     * @throws IOException if the bytes are not a valid serialized state
+     */
+    Object deserialize(byte[] bytes) throws IOException;
+}
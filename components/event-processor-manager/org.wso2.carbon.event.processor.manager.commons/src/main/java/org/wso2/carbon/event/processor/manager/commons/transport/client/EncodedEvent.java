@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.commons.transport.client;
+
+/**
+ * An event encoded once by {@link TCPEventPublisher#encodeEvent(String, long, Object[], java.util.Map)}, to be sent
+ * through any number of publishers with the same stream definition and charset. The encoded bytes are immutable,
+ * hence the event can be shared by the publishers without copying it for each of them.
+ */
+public final class EncodedEvent {
+    private final String streamId;
+    private final byte[] body;
+
+    EncodedEvent(String streamId, byte[] body) {
+        this.streamId = streamId;
+        this.body = body;
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * @return the encoded event following the header identifying the stream, which is written by each publisher.
+     */
+    byte[] getBody() {
+        return body;
+    }
+}
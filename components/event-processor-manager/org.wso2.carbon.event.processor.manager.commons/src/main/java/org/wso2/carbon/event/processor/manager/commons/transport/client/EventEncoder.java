@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.commons.transport.client;
+
+import org.wso2.carbon.event.processor.manager.commons.transport.common.StreamRuntimeInfo;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+/**
+ * Encodes events to the wire format read by the TCPEventServer, straight into the given buffer. The buffer is sized
+ * from an upper bound of the encoded size and the sizes of the variable length attributes are filled in once they are
+ * written, hence an event is encoded in a single pass without any intermediate arrays when the charset is UTF-8.
+ */
+final class EventEncoder {
+    private final Charset charset;
+    private final boolean utf8;
+    private final int maxBytesPerChar;
+    private final boolean internStreamIds;
+
+    EventEncoder(String charsetName, boolean internStreamIds) {
+        this.internStreamIds = internStreamIds;
+        this.charset = Charset.forName(charsetName);
+        this.utf8 = charset.equals(Charset.forName("UTF-8"));
+        this.maxBytesPerChar = (int) Math.ceil(charset.newEncoder().maxBytesPerChar());
+    }
+
+    byte[] encodeStreamId(String streamId) {
+        return streamId.getBytes(charset);
+    }
+
+    /**
+     * @return the maximum number of bytes the event can be encoded to.
+     */
+    int getMaxEventSize(StreamRuntimeInfo streamRuntimeInfo, Object[] eventData, Map<String, String> arbitraryMap) {
+        int size = 16 + streamRuntimeInfo.getEncodedStreamId().length + streamRuntimeInfo.getFixedMessageSize();
+        int stringLength = 0;
+        Attribute.Type[] types = streamRuntimeInfo.getAttributeTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == Attribute.Type.STRING && eventData[i] != null) {
+                stringLength += ((String) eventData[i]).length();
+            }
+        }
+        if (arbitraryMap != null) {
+            for (Map.Entry<String, String> entry : arbitraryMap.entrySet()) {
+                size += 8;
+                stringLength += entry.getKey().length() + entry.getValue().length();
+            }
+        }
+        return size + stringLength * maxBytesPerChar;
+    }
+
+    /**
+     * Encodes the event at the position of the buffer, which needs to have the capacity returned by
+     * {@link #getMaxEventSize(StreamRuntimeInfo, Object[], Map)}.
+     */
+    void encode(ByteBuffer buffer, StreamRuntimeInfo streamRuntimeInfo, long timestamp, Object[] eventData,
+                Map<String, String> arbitraryMap) {
+        encodeHeader(buffer, streamRuntimeInfo);
+        encodeBody(buffer, streamRuntimeInfo, timestamp, eventData, arbitraryMap);
+    }
+
+    /**
+     * @return the number of bytes of the header identifying the stream of the event.
+     */
+    int getHeaderSize(StreamRuntimeInfo streamRuntimeInfo) {
+        return internStreamIds ? 4 : 4 + streamRuntimeInfo.getEncodedStreamId().length;
+    }
+
+    /**
+     * Encodes the header identifying the stream of the event.
+     */
+    void encodeHeader(ByteBuffer buffer, StreamRuntimeInfo streamRuntimeInfo) {
+        if (internStreamIds) {
+            buffer.putInt(TCPEventPublisher.INTERNED_STREAM_HEADER_BASE + streamRuntimeInfo.getInternedStreamId());
+        } else {
+            byte[] streamId = streamRuntimeInfo.getEncodedStreamId();
+            buffer.putInt(streamId.length);
+            buffer.put(streamId);
+        }
+    }
+
+    /**
+     * Encodes the rest of the event following the header, which does not depend on the connection the event is sent
+     * over.
+     */
+    void encodeBody(ByteBuffer buffer, StreamRuntimeInfo streamRuntimeInfo, long timestamp, Object[] eventData,
+                    Map<String, String> arbitraryMap) {
+        buffer.putLong(timestamp);
+        int arbitraryMapSizePosition = buffer.position();
+        buffer.putInt(0);
+
+        int fixedMessageStart = buffer.position();
+        Attribute.Type[] types = streamRuntimeInfo.getAttributeTypes();
+        for (int i = 0, typesLength = types.length; i < typesLength; i++) {
+            switch (types[i]) {
+                case INT:
+                    buffer.putInt((Integer) eventData[i]);
+                    continue;
+                case LONG:
+                    buffer.putLong((Long) eventData[i]);
+                    continue;
+                case BOOL:
+                    buffer.put((byte) (((Boolean) eventData[i]) ? 1 : 0));
+                    continue;
+                case FLOAT:
+                    buffer.putFloat((Float) eventData[i]);
+                    continue;
+                case DOUBLE:
+                    buffer.putDouble((Double) eventData[i]);
+                    continue;
+                case STRING:
+                    // the size is filled in when the string is written after the fixed size attributes
+                    buffer.putInt(eventData[i] == null ? -1 : 0);
+            }
+        }
+
+        int sizePosition = fixedMessageStart;
+        for (int i = 0, typesLength = types.length; i < typesLength; i++) {
+            switch (types[i]) {
+                case LONG:
+                case DOUBLE:
+                    sizePosition += 8;
+                    continue;
+                case BOOL:
+                    sizePosition += 1;
+                    continue;
+                case STRING:
+                    if (eventData[i] != null) {
+                        buffer.putInt(sizePosition, putString(buffer, (String) eventData[i]));
+                    }
+                    sizePosition += 4;
+                    continue;
+                default:
+                    sizePosition += 4;
+            }
+        }
+
+        if (arbitraryMap != null) {
+            int arbitraryMapStart = buffer.position();
+            for (Map.Entry<String, String> entry : arbitraryMap.entrySet()) {
+                putSizedString(buffer, entry.getKey());
+                putSizedString(buffer, entry.getValue());
+            }
+            buffer.putInt(arbitraryMapSizePosition, buffer.position() - arbitraryMapStart);
+        }
+    }
+
+    /**
+     * @return the number of bytes of the frame declaring the interned id of the stream.
+     */
+    int getStreamDeclarationSize(StreamRuntimeInfo streamRuntimeInfo) {
+        return 12 + streamRuntimeInfo.getEncodedStreamId().length;
+    }
+
+    /**
+     * Encodes the frame declaring the interned id of the stream, which needs to precede the first event of the
+     * stream sent over a connection.
+     */
+    void encodeStreamDeclaration(ByteBuffer buffer, StreamRuntimeInfo streamRuntimeInfo) {
+        byte[] streamId = streamRuntimeInfo.getEncodedStreamId();
+        buffer.putInt(TCPEventPublisher.STREAM_DECLARATION_HEADER_VALUE);
+        buffer.putInt(streamRuntimeInfo.getInternedStreamId());
+        buffer.putInt(streamId.length);
+        buffer.put(streamId);
+    }
+
+    private void putSizedString(ByteBuffer buffer, String value) {
+        int sizePosition = buffer.position();
+        buffer.putInt(0);
+        buffer.putInt(sizePosition, putString(buffer, value));
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    private int putString(ByteBuffer buffer, String value) {
+        if (!utf8) {
+            byte[] bytes = value.getBytes(charset);
+            buffer.put(bytes);
+            return bytes.length;
+        }
+        int start = buffer.position();
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogates are replaced with '?' as done by String.getBytes()
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        return buffer.position() - start;
+    }
+}
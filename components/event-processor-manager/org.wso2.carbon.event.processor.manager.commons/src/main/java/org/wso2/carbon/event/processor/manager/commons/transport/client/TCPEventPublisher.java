@@ -19,47 +19,96 @@
 package org.wso2.carbon.event.processor.manager.commons.transport.client;
 
 import com.lmax.disruptor.EventFactory;
-import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventPoller;
 import com.lmax.disruptor.RingBuffer;
-import com.lmax.disruptor.dsl.Disruptor;
 import org.apache.log4j.Logger;
+import org.wso2.carbon.event.processor.manager.commons.transport.common.EventLoop;
+import org.wso2.carbon.event.processor.manager.commons.transport.common.EventLoopGroup;
 import org.wso2.carbon.event.processor.manager.commons.transport.common.EventServerUtils;
+import org.wso2.carbon.event.processor.manager.commons.transport.common.LZ4BlockCodec;
 import org.wso2.carbon.event.processor.manager.commons.transport.common.StreamRuntimeInfo;
 import org.wso2.carbon.event.processor.manager.commons.transport.server.ConnectionCallback;
-import org.wso2.siddhi.query.api.definition.Attribute;
 import org.wso2.siddhi.query.api.definition.StreamDefinition;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TCPEventPublisher {
     public static final int PING_HEADER_VALUE = -99;
+    /**
+     * Header of a frame holding an LZ4 compressed batch of event frames, followed by the decompressed and the
+     * compressed sizes of the batch.
+     */
+    public static final int COMPRESSED_BATCH_HEADER_VALUE = -98;
+    /**
+     * Header of a frame declaring the interned id of a stream on the connection, followed by the interned id and the
+     * size and bytes of the stream id.
+     */
+    public static final int STREAM_DECLARATION_HEADER_VALUE = -97;
+    /**
+     * The header of an event frame of an interned stream is this base plus the interned id of the stream, in place of
+     * the size and bytes of the stream id.
+     */
+    public static final int INTERNED_STREAM_HEADER_BASE = Integer.MIN_VALUE;
+    public static final int MAX_INTERNED_STREAMS = 1 << 30;
+
+    /**
+     * System property to set the number of event loop threads shared by the asynchronous publishers.
+     */
+    public static final String EVENT_LOOP_THREAD_COUNT = "tcpEventPublisher.eventLoopThreadCount";
+
+    private static final long SHUTDOWN_TIMEOUT = 30000;
+    private static final ThreadLocal<ByteBuffer> ENCODING_BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(1024);
+        }
+    };
+    private static EventLoopGroup eventLoopGroup;
 
     private static Logger log = Logger.getLogger(TCPEventPublisher.class);
     private final String hostUrl;
-    private Disruptor<ByteArrayHolder> disruptor;
-    private RingBuffer<ByteArrayHolder> ringBuffer;
+    private final InetSocketAddress address;
+    private RingBuffer<EventHolder> ringBuffer;
+    private EventPoller<EventHolder> eventPoller;
     private Map<String, StreamRuntimeInfo> streamRuntimeInfoMap;
-    private OutputStream outputStream;
-    private Socket clientSocket;
+    private SocketChannel socketChannel;
+    private ByteBuffer writeBuffer;
     private TCPEventPublisherConfig publisherConfig;
+    private final EventEncoder eventEncoder;
+    private final boolean internStreamIds;
+    private final AtomicInteger internedStreamIdGenerator = new AtomicInteger();
+    private final Map<Integer, StreamRuntimeInfo> internedStreamMap = new ConcurrentHashMap<>();
+    /**
+     * The interned streams declared on the current connection.
+     */
+    private final BitSet declaredStreams = new BitSet();
     public String defaultCharset;
     private Timer connectionStatusCheckTimer;
+    private volatile boolean terminated;
 
     /**
-     * Indicate synchronous or asynchronous mode. In asynchronous mode Disruptor pattern is used and in synchronous mode sendEvent call
-     * returns only after writing the event to the socket.
+     * Indicate synchronous or asynchronous mode. In asynchronous mode the events are queued in a ring buffer, which
+     * is drained to a non blocking socket by an event loop thread shared with other publishers, and in synchronous
+     * mode sendEvent call returns only after writing the event to the socket.
      */
     private boolean isSynchronous;
+    private AsyncConnection asyncConnection;
     private ConnectionCallback connectionCallback;
     /**
      * Callback to handle when the connection fails in middle
@@ -76,41 +125,49 @@ public class TCPEventPublisher {
     public TCPEventPublisher(String hostUrl, TCPEventPublisherConfig publisherConfig, boolean isSynchronous, ConnectionCallback connectionCallback)
             throws IOException {
         this.hostUrl = hostUrl;
+        String[] hp = hostUrl.split(":");
+        this.address = new InetSocketAddress(hp[0], Integer.parseInt(hp[1]));
         this.publisherConfig = publisherConfig;
         this.defaultCharset = publisherConfig.getCharset();
+        this.internStreamIds = publisherConfig.isStreamIdInterningEnabled();
+        this.eventEncoder = new EventEncoder(defaultCharset, internStreamIds);
         this.streamRuntimeInfoMap = new ConcurrentHashMap<String, StreamRuntimeInfo>();
         this.isSynchronous = isSynchronous;
         this.connectionCallback = connectionCallback;
+        this.writeBuffer = ByteBuffer.allocate(publisherConfig.getBatchMaxBytes());
 
         if (!isSynchronous) {
-            try {
-                connect(hostUrl);
-            } catch (IOException e) {
-                log.error("Error connection to " + hostUrl, e);
-            }
-            initializeDisruptor(publisherConfig);
+            initializeRingBuffer(publisherConfig);
+            asyncConnection = new AsyncConnection(getEventLoopGroup().next());
+            asyncConnection.connect();
         } else {
-            connect(hostUrl);
+            connect();
         }
+        connectionStatusCheckTimer = new Timer();
+        connectionStatusCheckTimer.schedule(new ConnectionStatusCheckTask(), publisherConfig.getConnectionStatusCheckInterval(), publisherConfig.getConnectionStatusCheckInterval());
     }
 
-    private synchronized void connect(String hostUrl) throws IOException {
-        String[] hp = hostUrl.split(":");
-        String host = hp[0];
-        int port = Integer.parseInt(hp[1]);
-
-        this.clientSocket = new Socket(host, port);
-        this.clientSocket.setKeepAlive(true);
-        this.clientSocket.setTcpNoDelay(true);
-        this.clientSocket.setSendBufferSize(publisherConfig.getTcpSendBufferSize());
-        this.outputStream = new BufferedOutputStream(this.clientSocket.getOutputStream());
+    private static synchronized EventLoopGroup getEventLoopGroup() throws IOException {
+        if (eventLoopGroup == null) {
+            eventLoopGroup = new EventLoopGroup("TCPEventPublisher", Integer.getInteger(EVENT_LOOP_THREAD_COUNT,
+                    Math.max(1, Runtime.getRuntime().availableProcessors() / 2)), true);
+        }
+        return eventLoopGroup;
+    }
+
+    private synchronized void connect() throws IOException {
+        this.socketChannel = SocketChannel.open(address);
+        configureSocket(socketChannel.socket());
         log.info("Connecting to " + hostUrl);
         if (connectionCallback != null) {
             connectionCallback.onCepReceiverConnect();
         }
+    }
 
-        connectionStatusCheckTimer = new Timer();
-        connectionStatusCheckTimer.schedule(new ConnectionStatusCheckTask(), publisherConfig.getConnectionStatusCheckInterval(), publisherConfig.getConnectionStatusCheckInterval());
+    private void configureSocket(Socket socket) throws IOException {
+        socket.setKeepAlive(true);
+        socket.setTcpNoDelay(true);
+        socket.setSendBufferSize(publisherConfig.getTcpSendBufferSize());
     }
 
     public TCPEventPublisher(String hostUrl, boolean isSynchronous, ConnectionCallback connectionCallback) throws IOException {
@@ -118,10 +175,22 @@ public class TCPEventPublisher {
     }
 
     public void addStreamDefinition(StreamDefinition streamDefinition) {
-        streamRuntimeInfoMap.put(streamDefinition.getId(), EventServerUtils.createStreamRuntimeInfo(streamDefinition));
+        StreamRuntimeInfo streamRuntimeInfo = EventServerUtils.createStreamRuntimeInfo(streamDefinition);
+        streamRuntimeInfo.setEncodedStreamId(eventEncoder.encodeStreamId(streamDefinition.getId()));
+        if (internStreamIds) {
+            // a new id is assigned on every addition, as the definition may have changed since an earlier addition
+            int internedStreamId = internedStreamIdGenerator.getAndIncrement();
+            if (internedStreamId >= MAX_INTERNED_STREAMS) {
+                throw new IllegalStateException("Cannot intern more than " + MAX_INTERNED_STREAMS + " streams");
+            }
+            streamRuntimeInfo.setInternedStreamId(internedStreamId);
+            internedStreamMap.put(internedStreamId, streamRuntimeInfo);
+        }
+        streamRuntimeInfoMap.put(streamDefinition.getId(), streamRuntimeInfo);
     }
 
     public void removeStreamDefinition(StreamDefinition streamDefinition) {
+        // the interned id of the stream is kept, as events of the stream may still be queued to be sent
         streamRuntimeInfoMap.remove(streamDefinition.getId());
     }
 
@@ -131,7 +200,7 @@ public class TCPEventPublisher {
 
     /**
      * Send Events to the remote server. In synchronous mode this method call returns only after writing data to the socket
-     * in asynchronous mode disruptor pattern is used
+     * in asynchronous mode the event is queued in a ring buffer
      *
      * @param streamId  ID of the stream
      * @param timestamp timestamp of the event
@@ -145,7 +214,7 @@ public class TCPEventPublisher {
 
     /**
      * Send Events to the remote server. In synchronous mode this method call returns only after writing data to the socket
-     * in asynchronous mode disruptor pattern is used
+     * in asynchronous mode the event is queued in a ring buffer
      *
      * @param streamId  ID of the stream
      * @param timestamp timestamp of the event
@@ -154,177 +223,225 @@ public class TCPEventPublisher {
      */
     public void sendEvent(String streamId, long timestamp, Object[] eventData, Map<String, String> arbitraryMap, boolean flush) throws IOException {
         StreamRuntimeInfo streamRuntimeInfo = streamRuntimeInfoMap.get(streamId);
-
-        ByteArrayOutputStream arrayOutputStream = new ByteArrayOutputStream();
-        boolean hasArbitraryAttributes = arbitraryMap != null;
-
-        int streamIdSize = (streamRuntimeInfo.getStreamId()).getBytes(defaultCharset).length;
-        int arbitraryMapSize = 0;
-        if (hasArbitraryAttributes) {
-            for (Map.Entry<String, String> entry : arbitraryMap.entrySet()) {
-                arbitraryMapSize += 4 + entry.getKey().length();
-                arbitraryMapSize += 4 + entry.getValue().length();
-            }
-        }
-        ByteBuffer buf = ByteBuffer.allocate(streamRuntimeInfo.getFixedMessageSize() + streamIdSize + 16);
-        buf.putInt(streamIdSize);
-        buf.put((streamRuntimeInfo.getStreamId()).getBytes(defaultCharset));
-        buf.putLong(timestamp);
-        buf.putInt(arbitraryMapSize);
-
-        int[] stringDataIndex = new int[streamRuntimeInfo.getNoOfStringAttributes()];
-        int stringIndex = 0;
-        int stringSize = 0;
-        Attribute.Type[] types = streamRuntimeInfo.getAttributeTypes();
-        for (int i = 0, typesLength = types.length; i < typesLength; i++) {
-            Attribute.Type type = types[i];
-            switch (type) {
-                case INT:
-                    buf.putInt((Integer) eventData[i]);
-                    continue;
-                case LONG:
-                    buf.putLong((Long) eventData[i]);
-                    continue;
-                case BOOL:
-                    buf.put((byte) (((Boolean) eventData[i]) ? 1 : 0));
-                    continue;
-                case FLOAT:
-                    buf.putFloat((Float) eventData[i]);
-                    continue;
-                case DOUBLE:
-                    buf.putDouble((Double) eventData[i]);
-                    continue;
-                case STRING:
-                    if (eventData[i] == null) {
-                        buf.putInt(-1);
-                    } else {
-                        int length = ((String) eventData[i]).getBytes(defaultCharset).length;
-                        buf.putInt(length);
-                        stringSize += length;
-                    }
-                    stringDataIndex[stringIndex] = i;
-                    stringIndex++;
-            }
+        int maxEventSize = eventEncoder.getMaxEventSize(streamRuntimeInfo, eventData, arbitraryMap);
+        if (!isSynchronous) {
+            publishToRingBuffer(streamRuntimeInfo, timestamp, eventData, arbitraryMap, maxEventSize);
+        } else {
+            publishEvent(streamRuntimeInfo, timestamp, eventData, arbitraryMap, maxEventSize, flush);
         }
-        arrayOutputStream.write(buf.array());
+    }
 
-        buf = ByteBuffer.allocate(stringSize);
-        for (int aStringIndex : stringDataIndex) {
-            Object data = eventData[aStringIndex];
-            if (data != null) {
-                buf.put(((String) eventData[aStringIndex]).getBytes(defaultCharset));
-            }
+    /**
+     * Encodes the event once, so that it can be sent through several publishers by
+     * {@link #sendEvent(EncodedEvent, boolean)} without encoding it again for each of them. The publishers need to
+     * have the same definition of the stream and the same charset as this publisher.
+     *
+     * @param streamId  ID of the stream
+     * @param timestamp timestamp of the event
+     * @param eventData data to send
+     * @return the encoded event
+     */
+    public EncodedEvent encodeEvent(String streamId, long timestamp, Object[] eventData, Map<String, String> arbitraryMap) {
+        StreamRuntimeInfo streamRuntimeInfo = streamRuntimeInfoMap.get(streamId);
+        int maxEventSize = eventEncoder.getMaxEventSize(streamRuntimeInfo, eventData, arbitraryMap);
+        ByteBuffer buffer = ENCODING_BUFFER.get();
+        if (buffer.capacity() < maxEventSize) {
+            buffer = ByteBuffer.allocate(Math.max(maxEventSize, buffer.capacity() * 2));
+            ENCODING_BUFFER.set(buffer);
         }
-        arrayOutputStream.write(buf.array());
+        buffer.clear();
+        eventEncoder.encodeBody(buffer, streamRuntimeInfo, timestamp, eventData, arbitraryMap);
+        return new EncodedEvent(streamId, Arrays.copyOf(buffer.array(), buffer.position()));
+    }
 
-        if (arbitraryMapSize > 0) {
-            buf = ByteBuffer.allocate(arbitraryMapSize);
-            for (Map.Entry<String, String> entry : arbitraryMap.entrySet()) {
-                buf.putInt(entry.getKey().length());
-                buf.put(entry.getKey().getBytes(defaultCharset));
-                buf.putInt(entry.getValue().length());
-                buf.put(entry.getValue().getBytes(defaultCharset));
-            }
-            arrayOutputStream.write(buf.array());
+    /**
+     * Send an event encoded by {@link #encodeEvent(String, long, Object[], Map)} to the remote server. In synchronous
+     * mode this method call returns only after writing data to the socket in asynchronous mode the event is queued in
+     * a ring buffer
+     *
+     * @param encodedEvent the encoded event
+     * @param flush        whether to flush the output stream in synchronous mode
+     * @throws IOException
+     */
+    public void sendEvent(EncodedEvent encodedEvent, boolean flush) throws IOException {
+        StreamRuntimeInfo streamRuntimeInfo = streamRuntimeInfoMap.get(encodedEvent.getStreamId());
+        if (!isSynchronous) {
+            publishToRingBuffer(streamRuntimeInfo, encodedEvent.getBody());
+        } else {
+            publishEvent(streamRuntimeInfo, encodedEvent.getBody(), flush);
         }
+    }
 
+    /**
+     * Encodes the event straight into the buffer of a claimed ring buffer slot, the producers claim the slots without
+     * any locking.
+     */
+    private void publishToRingBuffer(StreamRuntimeInfo streamRuntimeInfo, long timestamp, Object[] eventData,
+                                     Map<String, String> arbitraryMap, int maxEventSize) {
+        if (terminated) {
+            return;
+        }
+        long sequenceNo = ringBuffer.next();
+        EventHolder eventHolder = ringBuffer.get(sequenceNo);
+        try {
+            ByteBuffer buffer = eventHolder.getBuffer(maxEventSize);
+            eventEncoder.encode(buffer, streamRuntimeInfo, timestamp, eventData, arbitraryMap);
+            buffer.flip();
+        } catch (RuntimeException e) {
+            // the slot still needs to be published, it is published empty so that it is skipped
+            eventHolder.buffer.clear().limit(0);
+            throw e;
+        } finally {
+            ringBuffer.publish(sequenceNo);
+        }
+        asyncConnection.scheduleFlush();
+    }
 
-        if (!isSynchronous) {
-            publishToDisruptor(arrayOutputStream.toByteArray());
-        } else {
-            publishEvent(arrayOutputStream.toByteArray(), flush);
+    private void publishToRingBuffer(StreamRuntimeInfo streamRuntimeInfo, byte[] eventBody) {
+        if (terminated) {
+            return;
         }
+        long sequenceNo = ringBuffer.next();
+        try {
+            ByteBuffer buffer = ringBuffer.get(sequenceNo).getBuffer(eventEncoder.getHeaderSize(streamRuntimeInfo) +
+                    eventBody.length);
+            eventEncoder.encodeHeader(buffer, streamRuntimeInfo);
+            buffer.put(eventBody);
+            buffer.flip();
+        } finally {
+            ringBuffer.publish(sequenceNo);
+        }
+        asyncConnection.scheduleFlush();
     }
 
-    private void publishToDisruptor(byte[] byteArray) {
+    private void publishPingToRingBuffer() {
+        if (terminated) {
+            return;
+        }
         long sequenceNo = ringBuffer.next();
         try {
-            ByteArrayHolder existingHolder = ringBuffer.get(sequenceNo);
-            existingHolder.bytes = byteArray;
+            ByteBuffer buffer = ringBuffer.get(sequenceNo).getBuffer(4);
+            buffer.putInt(PING_HEADER_VALUE);
+            buffer.flip();
         } finally {
             ringBuffer.publish(sequenceNo);
         }
+        asyncConnection.scheduleFlush();
     }
 
-    private synchronized void publishEvent(byte[] data, boolean flush) throws IOException {
-        outputStream.write(data);
+    /**
+     * Encodes the event in synchronous mode, the events are buffered until a flush is requested or the buffer is full.
+     */
+    private synchronized void publishEvent(StreamRuntimeInfo streamRuntimeInfo, long timestamp, Object[] eventData,
+                                           Map<String, String> arbitraryMap, int maxEventSize, boolean flush)
+            throws IOException {
+        prepareWriteBuffer(streamRuntimeInfo, maxEventSize);
+        int eventStart = writeBuffer.position();
+        try {
+            eventEncoder.encode(writeBuffer, streamRuntimeInfo, timestamp, eventData, arbitraryMap);
+        } catch (RuntimeException e) {
+            writeBuffer.position(eventStart);
+            throw e;
+        }
         if (flush) {
-            outputStream.flush();
+            writeBufferedData();
         }
     }
 
-    private synchronized void publishEventAsync(byte[] data, boolean flush) throws IOException {
-        if (outputStream != null) {
-            try {
-                outputStream.write(data);
-                if (flush) {
-                    outputStream.flush();
-                }
-
-            } catch (IOException e) {
-                try {
-                    log.error("Error on sending to " + hostUrl, e);
-                    log.info("Reconnecting to " + hostUrl);
-                    disconnect();
-                    connect(hostUrl);
-                    outputStream.write(data);
-                    if (flush) {
-                        outputStream.flush();
-                    }
-                } catch (IOException ex) {
-                    log.error("Error on reconnection to " + hostUrl, ex);
-                }
-            }
+    private synchronized void publishEvent(StreamRuntimeInfo streamRuntimeInfo, byte[] eventBody, boolean flush)
+            throws IOException {
+        prepareWriteBuffer(streamRuntimeInfo, eventEncoder.getHeaderSize(streamRuntimeInfo) + eventBody.length);
+        eventEncoder.encodeHeader(writeBuffer, streamRuntimeInfo);
+        writeBuffer.put(eventBody);
+        if (flush) {
+            writeBufferedData();
+        }
+    }
 
-        } else {
-            try {
-                log.info("Reconnecting to " + hostUrl);
-                disconnect();
-                connect(hostUrl);
-                outputStream.write(data);
-                if (flush) {
-                    outputStream.flush();
-                }
-            } catch (IOException ex) {
-                log.error("Error on reconnection to " + hostUrl, ex);
+    /**
+     * Makes room for an event of the given size in the write buffer, preceded by the declaration of its stream if the
+     * stream is not declared on the connection yet.
+     */
+    private void prepareWriteBuffer(StreamRuntimeInfo streamRuntimeInfo, int maxEventSize) throws IOException {
+        boolean declareStream = internStreamIds && !declaredStreams.get(streamRuntimeInfo.getInternedStreamId());
+        if (declareStream) {
+            maxEventSize += eventEncoder.getStreamDeclarationSize(streamRuntimeInfo);
+        }
+        if (writeBuffer.remaining() < maxEventSize) {
+            writeBufferedData();
+            if (writeBuffer.capacity() < maxEventSize) {
+                writeBuffer = ByteBuffer.allocate(maxEventSize);
             }
-
         }
+        if (declareStream) {
+            eventEncoder.encodeStreamDeclaration(writeBuffer, streamRuntimeInfo);
+            declaredStreams.set(streamRuntimeInfo.getInternedStreamId());
+        }
+    }
 
+    private synchronized void publishPing() throws IOException {
+        if (writeBuffer.remaining() < 4) {
+            writeBufferedData();
+        }
+        writeBuffer.putInt(PING_HEADER_VALUE);
+        writeBufferedData();
     }
 
-    private void initializeDisruptor(TCPEventPublisherConfig publisherConfig) {
-        this.disruptor = new Disruptor<ByteArrayHolder>(new EventFactory<ByteArrayHolder>() {
-            @Override
-            public ByteArrayHolder newInstance() {
-                return new ByteArrayHolder();
-            }
-        }, publisherConfig.getBufferSize(), Executors.newCachedThreadPool());
+    private void writeBufferedData() throws IOException {
+        writeBuffer.flip();
+        try {
+            writeFully(writeBuffer);
+        } finally {
+            writeBuffer.clear();
+        }
+    }
 
-        this.ringBuffer = disruptor.getRingBuffer();
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        if (socketChannel == null) {
+            throw new IOException("Connection to " + hostUrl + " is closed");
+        }
+        while (buffer.hasRemaining()) {
+            socketChannel.write(buffer);
+        }
+    }
 
-        this.disruptor.handleEventsWith(new EventHandler<ByteArrayHolder>() {
+    private void initializeRingBuffer(TCPEventPublisherConfig publisherConfig) {
+        this.ringBuffer = RingBuffer.createMultiProducer(new EventFactory<EventHolder>() {
             @Override
-            public void onEvent(ByteArrayHolder byteArrayHolder, long sequence, boolean endOfBatch) throws IOException {
-                publishEventAsync(byteArrayHolder.bytes, endOfBatch);
+            public EventHolder newInstance() {
+                return new EventHolder();
             }
-        });
-
-        disruptor.start();
+        }, publisherConfig.getBufferSize());
+        this.eventPoller = ringBuffer.newPoller();
+        this.ringBuffer.addGatingSequences(eventPoller.getSequence());
     }
 
 
     /**
      * Gracefully shutdown the TCPEventPublisher and flush the data in output buffer.
-     * When this method is used already consumer threads of disruptor will try to publishToDisruptor the queued messages in the RingBuffer.
+     * In asynchronous mode the events already queued in the ring buffer are written to the socket before closing it.
      */
     public void shutdown() {
-        try {
-            outputStream.flush();
-        } catch (IOException e) {
-            log.warn("Error while flushing output stream to " + hostUrl + " : " + e.getMessage(), e);
-        } finally {
-            terminate();
+        if (isSynchronous) {
+            try {
+                synchronized (this) {
+                    writeBufferedData();
+                }
+            } catch (IOException e) {
+                log.warn("Error while flushing output stream to " + hostUrl + " : " + e.getMessage(), e);
+            } finally {
+                terminate();
+            }
+        } else {
+            try {
+                if (!asyncConnection.drain().await(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    log.warn("Timed out while flushing the events to " + hostUrl);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                terminate();
+            }
         }
     }
 
@@ -332,29 +449,20 @@ public class TCPEventPublisher {
      * Immediately shutdown the TCPEventPublisher and discard the data in output buffer.
      */
     public void terminate() {
+        terminated = true;
         connectionStatusCheckTimer.cancel();
-        if (!isSynchronous) {
-            disruptor.shutdown();
+        if (isSynchronous) {
+            disconnect();
+        } else {
+            asyncConnection.terminate();
         }
-        disconnect();
     }
 
-    private void disconnect() {
-        if (connectionStatusCheckTimer != null) {
-            connectionStatusCheckTimer.cancel();
-        }
-        try {
-            if (outputStream != null) {
-                outputStream.close();
-                outputStream = null;
-            }
-        } catch (IOException e) {
-            log.debug("Error while disconnecting to " + hostUrl + " : " + e.getMessage(), e);
-        }
+    private synchronized void disconnect() {
         try {
-            if (clientSocket != null) {
-                clientSocket.close();
-                clientSocket = null;
+            if (socketChannel != null) {
+                socketChannel.close();
+                socketChannel = null;
             }
         } catch (IOException e) {
             log.debug("Error while closing socket to " + hostUrl + " : " + e.getMessage(), e);
@@ -365,32 +473,414 @@ public class TCPEventPublisher {
         }
     }
 
-    class ByteArrayHolder {
-        byte[] bytes;
+    /**
+     * A ring buffer slot, holding the buffer the event is encoded to. The buffer is reused by all the events
+     * published through the slot.
+     */
+    static class EventHolder {
+        private static final int INITIAL_BUFFER_SIZE = 256;
+        private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+        /**
+         * @return the cleared buffer of the slot, with at least the given capacity.
+         */
+        ByteBuffer getBuffer(int capacity) {
+            if (buffer.capacity() < capacity) {
+                buffer = ByteBuffer.allocate(Math.max(capacity, buffer.capacity() * 2));
+            }
+            buffer.clear();
+            return buffer;
+        }
     }
 
     public String getHostUrl() {
         return hostUrl;
     }
 
+    /**
+     * The connection of an asynchronous publisher, served by an event loop. The events queued in the ring buffer are
+     * coalesced into the write buffer and written with a single write, and when the socket doesn't accept all the
+     * bytes, the rest is written once the socket becomes writable, before any further events are taken from the ring
+     * buffer. All the state is confined to the event loop thread.
+     */
+    private class AsyncConnection implements EventLoop.SelectionHandler, EventPoller.Handler<EventHolder> {
+        private final EventLoop eventLoop;
+        private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+        private final Runnable flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+        private final Runnable lingerTask = new Runnable() {
+            @Override
+            public void run() {
+                lingerScheduled = false;
+                flush();
+            }
+        };
+        private final LZ4BlockCodec lz4BlockCodec;
+        private SelectionKey key;
+        private boolean connecting;
+        private boolean writePending;
+        private CountDownLatch drainLatch;
+        private ByteBuffer batchBuffer;
+        private int batchEventCount;
+        private long batchStartTime;
+        private boolean lingerScheduled;
+
+        private AsyncConnection(EventLoop eventLoop) {
+            this.eventLoop = eventLoop;
+            this.batchBuffer = ByteBuffer.allocate(publisherConfig.getBatchMaxBytes());
+            this.lz4BlockCodec = publisherConfig.isBatchCompressionEnabled() ? new LZ4BlockCodec() : null;
+        }
+
+        private void scheduleFlush() {
+            if (flushScheduled.compareAndSet(false, true)) {
+                eventLoop.execute(flushTask);
+            }
+        }
 
-    class ConnectionStatusCheckTask extends TimerTask {
+        private void connect() {
+            eventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    startConnecting();
+                }
+            });
+        }
+
+        /**
+         * Flushes the queued events and closes the connection.
+         *
+         * @return latch released once the events are flushed, or discarded when they cannot be written.
+         */
+        private CountDownLatch drain() {
+            final CountDownLatch latch = new CountDownLatch(1);
+            eventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    drainLatch = latch;
+                    flush();
+                }
+            });
+            return latch;
+        }
+
+        private void terminate() {
+            eventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    close();
+                    discardEvents();
+                }
+            });
+        }
+
+        private void flush() {
+            flushScheduled.set(false);
+            if (socketChannel == null) {
+                if (drainLatch != null || terminated) {
+                    discardEvents();
+                    releaseDrainLatch();
+                } else if (!connecting && ringBuffer.getCursor() > eventPoller.getSequence().get()) {
+                    startConnecting();
+                }
+                return;
+            }
+            if (connecting || writePending) {
+                return;
+            }
+            try {
+                while (true) {
+                    if (writeBuffer.position() == 0) {
+                        eventPoller.poll(this);
+                        if (!isBatchReady()) {
+                            break;
+                        }
+                        completeBatch();
+                    }
+                    writeBuffer.flip();
+                    socketChannel.write(writeBuffer);
+                    if (writeBuffer.hasRemaining()) {
+                        writeBuffer.compact();
+                        writePending = true;
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    writeBuffer.clear();
+                }
+            } catch (Exception e) {
+                log.error("Error on sending to " + hostUrl, e);
+                close();
+                if (failureHandler != null) {
+                    failureHandler.onConnectionFail(e);
+                }
+                if (drainLatch == null && !terminated) {
+                    log.info("Reconnecting to " + hostUrl);
+                    scheduleFlush();
+                    return;
+                }
+            }
+            releaseDrainLatch();
+        }
+
+        @Override
+        public boolean onEvent(EventHolder eventHolder, long sequence, boolean endOfBatch) {
+            ByteBuffer eventBuffer = eventHolder.buffer;
+            if (!eventBuffer.hasRemaining()) {
+                // the slot of an event that failed to encode
+                return true;
+            }
+            if (internStreamIds) {
+                declareStream(eventBuffer.getInt(eventBuffer.position()));
+            }
+            ensureBatchCapacity(eventBuffer.remaining());
+            if (batchEventCount == 0) {
+                batchStartTime = System.currentTimeMillis();
+            }
+            batchBuffer.put(eventBuffer);
+            batchEventCount++;
+            return !isBatchFull();
+        }
+
+        /**
+         * Adds the declaration of the interned stream of the event to the batch, if the stream is not declared on the
+         * connection yet.
+         */
+        private void declareStream(int header) {
+            if (header >= INTERNED_STREAM_HEADER_BASE + MAX_INTERNED_STREAMS) {
+                // a ping
+                return;
+            }
+            int internedStreamId = header - INTERNED_STREAM_HEADER_BASE;
+            if (!declaredStreams.get(internedStreamId)) {
+                StreamRuntimeInfo streamRuntimeInfo = internedStreamMap.get(internedStreamId);
+                ensureBatchCapacity(eventEncoder.getStreamDeclarationSize(streamRuntimeInfo));
+                eventEncoder.encodeStreamDeclaration(batchBuffer, streamRuntimeInfo);
+                declaredStreams.set(internedStreamId);
+            }
+        }
+
+        private void ensureBatchCapacity(int length) {
+            if (batchBuffer.remaining() < length) {
+                ByteBuffer expandedBuffer = ByteBuffer.allocate(batchBuffer.position() + length);
+                batchBuffer.flip();
+                expandedBuffer.put(batchBuffer);
+                batchBuffer = expandedBuffer;
+            }
+        }
+
+        private boolean isBatchFull() {
+            return batchEventCount >= publisherConfig.getBatchMaxEvents() ||
+                    batchBuffer.position() >= publisherConfig.getBatchMaxBytes();
+        }
+
+        /**
+         * @return true if the batch needs to be sent, a batch that is not full is held back for more events until the
+         * linger time passes, unless the publisher is shutting down.
+         */
+        private boolean isBatchReady() {
+            if (batchEventCount == 0) {
+                return false;
+            }
+            if (isBatchFull() || drainLatch != null || terminated) {
+                return true;
+            }
+            long lingerTime = publisherConfig.getBatchMaxLingerTime() - (System.currentTimeMillis() - batchStartTime);
+            if (lingerTime <= 0) {
+                return true;
+            }
+            if (!lingerScheduled) {
+                lingerScheduled = true;
+                eventLoop.schedule(lingerTask, lingerTime);
+            }
+            return false;
+        }
+
+        /**
+         * Moves the batch to the empty write buffer, compressing it when batch compression is enabled.
+         */
+        private void completeBatch() {
+            if (lz4BlockCodec != null && batchEventCount > 1 && compressBatch()) {
+                batchBuffer.clear();
+            } else {
+                ByteBuffer emptyBuffer = writeBuffer;
+                writeBuffer = batchBuffer;
+                batchBuffer = emptyBuffer;
+            }
+            batchEventCount = 0;
+        }
+
+        /**
+         * @return false if the batch is not compressible, in which case it is sent as it is.
+         */
+        private boolean compressBatch() {
+            int length = batchBuffer.position();
+            int maxFrameSize = 12 + LZ4BlockCodec.maxCompressedLength(length);
+            if (writeBuffer.capacity() < maxFrameSize) {
+                writeBuffer = ByteBuffer.allocate(maxFrameSize);
+            }
+            int compressedLength = lz4BlockCodec.compress(batchBuffer.array(), batchBuffer.arrayOffset(), length,
+                    writeBuffer.array(), writeBuffer.arrayOffset() + 12);
+            if (compressedLength + 12 >= length) {
+                return false;
+            }
+            writeBuffer.putInt(COMPRESSED_BATCH_HEADER_VALUE);
+            writeBuffer.putInt(length);
+            writeBuffer.putInt(compressedLength);
+            writeBuffer.position(12 + compressedLength);
+            return true;
+        }
+
+        private void startConnecting() {
+            if (terminated) {
+                return;
+            }
+            try {
+                socketChannel = SocketChannel.open();
+                socketChannel.configureBlocking(false);
+                configureSocket(socketChannel.socket());
+                connecting = true;
+                log.info("Connecting to " + hostUrl);
+                if (socketChannel.connect(address)) {
+                    onConnect();
+                } else {
+                    key = eventLoop.register(socketChannel, SelectionKey.OP_CONNECT, this);
+                }
+            } catch (IOException e) {
+                onConnectionFailure(e);
+            }
+        }
+
+        private void onConnect() throws IOException {
+            connecting = false;
+            if (key == null) {
+                key = eventLoop.register(socketChannel, SelectionKey.OP_READ, this);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+            if (connectionCallback != null) {
+                connectionCallback.onCepReceiverConnect();
+            }
+            flush();
+        }
+
+        private void onConnectionFailure(IOException e) {
+            log.error("Error connection to " + hostUrl, e);
+            connecting = false;
+            if (key != null) {
+                key.cancel();
+                key = null;
+            }
+            try {
+                socketChannel.close();
+            } catch (IOException ignored) {
+            }
+            socketChannel = null;
+            discardEvents();
+            releaseDrainLatch();
+        }
+
+        @Override
+        public void onSelect(SelectionKey key) {
+            if (connecting) {
+                try {
+                    if (key.isConnectable() && socketChannel.finishConnect()) {
+                        onConnect();
+                    }
+                } catch (IOException e) {
+                    onConnectionFailure(e);
+                }
+                return;
+            }
+            try {
+                if (key.isReadable()) {
+                    // The server never responds, hence a read only notices the connection being closed
+                    if (socketChannel.read(eventLoop.getIoBuffer(1024)) == -1) {
+                        throw new EOFException("Connection closed from remote end.");
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Error on sending to " + hostUrl, e);
+                close();
+                if (failureHandler != null) {
+                    failureHandler.onConnectionFail(e);
+                }
+                return;
+            }
+            if (key.isValid() && key.isWritable()) {
+                writePending = false;
+                key.interestOps(SelectionKey.OP_READ);
+                flush();
+            }
+        }
+
+        /**
+         * Drops the queued events, as they cannot be written to the socket.
+         */
+        private void discardEvents() {
+            final int[] discardedEvents = new int[1];
+            try {
+                eventPoller.poll(new EventPoller.Handler<EventHolder>() {
+                    @Override
+                    public boolean onEvent(EventHolder eventHolder, long sequence, boolean endOfBatch) {
+                        ByteBuffer eventBuffer = eventHolder.buffer;
+                        if (eventBuffer.remaining() > 4 || eventBuffer.remaining() == 4 &&
+                                eventBuffer.getInt(eventBuffer.position()) != PING_HEADER_VALUE) {
+                            discardedEvents[0]++;
+                        }
+                        return true;
+                    }
+                });
+            } catch (Exception e) {
+                log.error("Error while discarding the events to " + hostUrl, e);
+            }
+            if (discardedEvents[0] > 0) {
+                log.error("Dropped " + discardedEvents[0] + " events as they cannot be sent to " + hostUrl);
+            }
+        }
+
+        private void releaseDrainLatch() {
+            if (drainLatch != null) {
+                close();
+                drainLatch.countDown();
+                drainLatch = null;
+            }
+        }
 
-        private byte[] createPing() throws IOException {
-            ByteBuffer buffer = ByteBuffer.allocate(4);
-            buffer.putInt(TCPEventPublisher.PING_HEADER_VALUE);
-            ByteArrayOutputStream arrayOutputStream = new ByteArrayOutputStream();
-            arrayOutputStream.write(buffer.array());
-            return arrayOutputStream.toByteArray();
+        @Override
+        public void close() {
+            if (key != null) {
+                key.cancel();
+                key = null;
+            }
+            writeBuffer.clear();
+            batchBuffer.clear();
+            batchEventCount = 0;
+            declaredStreams.clear();
+            writePending = false;
+            connecting = false;
+            if (socketChannel != null) {
+                disconnect();
+            }
         }
+    }
+
+    class ConnectionStatusCheckTask extends TimerTask {
 
         /**
          * The action to be performed by this timer task.
          */
         @Override
         public void run() {
+            if (!isSynchronous) {
+                // The ping goes through the ring buffer, a failure is noticed when it is written by the event loop
+                publishPingToRingBuffer();
+                return;
+            }
             try {
-                publishEvent(createPing(), true);
+                publishPing();
             } catch (IOException e) {
                 log.warn("Ping failed to " + getHostUrl() + " with error: " + e.getMessage());
                 connectionStatusCheckTimer.cancel();
@@ -24,6 +24,11 @@ public class TCPEventPublisherConfig {
     private String charset = "UTF-8";
     private int tcpSendBufferSize = 5242880;
     private long connectionStatusCheckInterval = 30 * 1000;
+    private int batchMaxEvents = 1000;
+    private int batchMaxBytes = 65536;
+    private long batchMaxLingerTime = 0;
+    private boolean batchCompressionEnabled = false;
+    private boolean streamIdInterningEnabled = false;
 
     public int getBufferSize() {
         return bufferSize;
@@ -56,4 +61,62 @@ public class TCPEventPublisherConfig {
     public void setConnectionStatusCheckInterval(long connectionStatusCheckInterval) {
         this.connectionStatusCheckInterval = connectionStatusCheckInterval;
     }
+
+    /**
+     * @return the maximum number of events sent together in a single socket write, or compressed frame.
+     */
+    public int getBatchMaxEvents() {
+        return batchMaxEvents;
+    }
+
+    public void setBatchMaxEvents(int batchMaxEvents) {
+        this.batchMaxEvents = batchMaxEvents;
+    }
+
+    /**
+     * @return the number of bytes of events after which a batch is sent.
+     */
+    public int getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    public void setBatchMaxBytes(int batchMaxBytes) {
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    /**
+     * @return the time in milliseconds a batch that is not full waits for more events before it is sent in
+     * asynchronous mode. With the default of 0 the queued events are sent as soon as the connection is writable.
+     */
+    public long getBatchMaxLingerTime() {
+        return batchMaxLingerTime;
+    }
+
+    public void setBatchMaxLingerTime(long batchMaxLingerTime) {
+        this.batchMaxLingerTime = batchMaxLingerTime;
+    }
+
+    /**
+     * @return whether the batches of more than one event are sent as LZ4 compressed frames in asynchronous mode,
+     * which are only understood by servers that support compressed frames.
+     */
+    public boolean isBatchCompressionEnabled() {
+        return batchCompressionEnabled;
+    }
+
+    public void setBatchCompressionEnabled(boolean batchCompressionEnabled) {
+        this.batchCompressionEnabled = batchCompressionEnabled;
+    }
+
+    /**
+     * @return whether the events carry a compact id, declared once per connection, instead of the stream id. The
+     * interned ids are only understood by servers that support them.
+     */
+    public boolean isStreamIdInterningEnabled() {
+        return streamIdInterningEnabled;
+    }
+
+    public void setStreamIdInterningEnabled(boolean streamIdInterningEnabled) {
+        this.streamIdInterningEnabled = streamIdInterningEnabled;
+    }
 }
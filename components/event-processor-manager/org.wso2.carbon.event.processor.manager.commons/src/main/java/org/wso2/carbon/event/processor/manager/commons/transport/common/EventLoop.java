@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.commons.transport.common;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A thread serving a set of non blocking channels through a selector. The channels are registered along with a
+ * {@link SelectionHandler} which is notified on the loop thread whenever the channel is selected, and tasks can be
+ * handed to the loop, to be run on the loop thread, from any thread.
+ */
+public class EventLoop implements Runnable {
+    private static Logger log = Logger.getLogger(EventLoop.class);
+    private static final long MIN_ERROR_BACKOFF_MILLIS = 10;
+    private static final long MAX_ERROR_BACKOFF_MILLIS = 1000;
+
+    private final String name;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<ScheduledTask> scheduledTasks = new PriorityQueue<>();
+    private ByteBuffer ioBuffer;
+    private volatile Thread thread;
+    private volatile boolean running;
+
+    public EventLoop(String name) throws IOException {
+        this.name = name;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Handles the selection of a channel registered with the loop, all the calls happen on the loop thread.
+     */
+    public interface SelectionHandler {
+
+        /**
+         * @param key the selection key of the channel, with its ready operations.
+         */
+        void onSelect(SelectionKey key);
+
+        /**
+         * Invoked when the loop is shutdown while the channel is still registered.
+         */
+        void close();
+    }
+
+    public void start(boolean daemon) {
+        running = true;
+        Thread loopThread = new Thread(this, name);
+        loopThread.setDaemon(daemon);
+        thread = loopThread;
+        loopThread.start();
+    }
+
+    public void shutdown() {
+        running = false;
+        if (thread == null) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.warn("Error while closing the selector of " + name + ": " + e.getMessage(), e);
+            }
+        } else {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * @return true if the calling thread is the thread of the loop.
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Runs the task on the loop thread.
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (!inEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Runs the task on the loop thread, once the given delay has elapsed.
+     */
+    public void schedule(final Runnable task, final long delayMillis) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                scheduledTasks.add(new ScheduledTask(System.currentTimeMillis() + delayMillis, task));
+            }
+        });
+    }
+
+    /**
+     * Registers the channel with the selector of the loop, needs to be called on the loop thread.
+     */
+    public SelectionKey register(SelectableChannel channel, int interestOps, SelectionHandler handler)
+            throws ClosedChannelException {
+        return channel.register(selector, interestOps, handler);
+    }
+
+    /**
+     * Returns the I/O buffer of the loop, which is shared by all the channels of the loop and hence can only be used
+     * on the loop thread, without holding on to it across selections.
+     *
+     * @param capacity the minimum capacity of the buffer.
+     * @return the cleared buffer.
+     */
+    public ByteBuffer getIoBuffer(int capacity) {
+        if (ioBuffer == null || ioBuffer.capacity() < capacity) {
+            ioBuffer = ByteBuffer.allocate(capacity);
+        }
+        ioBuffer.clear();
+        return ioBuffer;
+    }
+
+    /**
+     * Serves the channels and runs the tasks until the loop is shutdown. When the loop itself keeps failing, e.g.
+     * as the process runs out of file descriptors or memory, it backs off exponentially between the attempts
+     * rather than spinning on the error.
+     */
+    @Override
+    public void run() {
+        long errorBackoff = 0;
+        while (running) {
+            try {
+                ScheduledTask nextTask = scheduledTasks.peek();
+                if (!tasks.isEmpty()) {
+                    selector.selectNow();
+                } else if (nextTask != null) {
+                    selector.select(Math.max(1, nextTask.time - System.currentTimeMillis()));
+                } else {
+                    selector.select();
+                }
+                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+                    try {
+                        ((SelectionHandler) key.attachment()).onSelect(key);
+                    } catch (Throwable t) {
+                        log.error("Error while serving the channel of " + name + ": " + t.getMessage(), t);
+                    }
+                }
+                runTasks();
+                errorBackoff = 0;
+            } catch (Throwable t) {
+                log.error("Error in " + name + ": " + t.getMessage(), t);
+                errorBackoff = Math.min(MAX_ERROR_BACKOFF_MILLIS, Math.max(MIN_ERROR_BACKOFF_MILLIS, errorBackoff * 2));
+                try {
+                    Thread.sleep(errorBackoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            ((SelectionHandler) key.attachment()).close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.warn("Error while closing the selector of " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            runTask(task);
+        }
+        long now = System.currentTimeMillis();
+        while (!scheduledTasks.isEmpty() && scheduledTasks.peek().time <= now) {
+            runTask(scheduledTasks.poll().task);
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            log.error("Error while running a task of " + name + ": " + t.getMessage(), t);
+        }
+    }
+
+    private static class ScheduledTask implements Comparable<ScheduledTask> {
+        private final long time;
+        private final Runnable task;
+
+        private ScheduledTask(long time, Runnable task) {
+            this.time = time;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(ScheduledTask other) {
+            return Long.compare(time, other.time);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.commons.transport.common;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of {@link EventLoop}s, the channels are spread across the loops in round robin order.
+ */
+public class EventLoopGroup {
+    private final EventLoop[] eventLoops;
+    private final AtomicInteger nextEventLoop = new AtomicInteger();
+
+    public EventLoopGroup(String name, int threadCount, boolean daemon) throws IOException {
+        eventLoops = new EventLoop[threadCount];
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                eventLoops[i] = new EventLoop(name + "-" + i);
+            }
+        } catch (IOException e) {
+            shutdown();
+            throw e;
+        }
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.start(daemon);
+        }
+    }
+
+    public EventLoop next() {
+        return eventLoops[(nextEventLoop.getAndIncrement() & Integer.MAX_VALUE) % eventLoops.length];
+    }
+
+    public void shutdown() {
+        for (EventLoop eventLoop : eventLoops) {
+            if (eventLoop != null) {
+                eventLoop.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.commons.transport.common;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compresses and decompresses data in the LZ4 block format. The compressor does a single greedy pass with a small
+ * hash table, trading some compression ratio for speed, which suits the small batches of events with repetitive
+ * string attributes sent by the event publishers.
+ * <p>
+ * A codec instance holds the hash table of the compressor and hence is not thread safe.
+ */
+public class LZ4BlockCodec {
+    private static final int MIN_MATCH = 4;
+    private static final int HASH_LOG = 12;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int LAST_LITERALS = 5;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int SKIP_TRIGGER = 6;
+    private static final int RUN_MASK = 15;
+
+    private final int[] hashTable = new int[1 << HASH_LOG];
+
+    /**
+     * @return the maximum number of bytes the given number of bytes can be compressed to.
+     */
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses the source bytes to the destination array, which needs to have at least
+     * {@link #maxCompressedLength(int)} bytes from the given offset.
+     *
+     * @return the number of bytes written to the destination array.
+     */
+    public int compress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset) {
+        int srcEnd = srcOffset + srcLength;
+        int destPosition = destOffset;
+        int anchor = srcOffset;
+
+        if (srcLength > MATCH_FIND_LIMIT) {
+            Arrays.fill(hashTable, -1);
+            int matchLimit = srcEnd - LAST_LITERALS;
+            int matchFindLimit = srcEnd - MATCH_FIND_LIMIT;
+            int position = srcOffset;
+            int searchCount = 1 << SKIP_TRIGGER;
+            while (position < matchFindLimit) {
+                int sequence = readInt(src, position);
+                int hash = hash(sequence);
+                int reference = hashTable[hash];
+                hashTable[hash] = position;
+                if (reference < 0 || position - reference > MAX_DISTANCE || readInt(src, reference) != sequence) {
+                    // skip faster over the data that does not compress
+                    position += searchCount++ >>> SKIP_TRIGGER;
+                    continue;
+                }
+                searchCount = 1 << SKIP_TRIGGER;
+
+                while (position > anchor && reference > srcOffset && src[position - 1] == src[reference - 1]) {
+                    position--;
+                    reference--;
+                }
+                int matchLength = MIN_MATCH;
+                while (position + matchLength < matchLimit && src[position + matchLength] == src[reference + matchLength]) {
+                    matchLength++;
+                }
+
+                int literalLength = position - anchor;
+                int tokenPosition = destPosition++;
+                int token;
+                if (literalLength >= RUN_MASK) {
+                    token = RUN_MASK << 4;
+                    destPosition = writeLength(literalLength - RUN_MASK, dest, destPosition);
+                } else {
+                    token = literalLength << 4;
+                }
+                System.arraycopy(src, anchor, dest, destPosition, literalLength);
+                destPosition += literalLength;
+
+                int distance = position - reference;
+                dest[destPosition++] = (byte) distance;
+                dest[destPosition++] = (byte) (distance >>> 8);
+                if (matchLength - MIN_MATCH >= RUN_MASK) {
+                    token |= RUN_MASK;
+                    destPosition = writeLength(matchLength - MIN_MATCH - RUN_MASK, dest, destPosition);
+                } else {
+                    token |= matchLength - MIN_MATCH;
+                }
+                dest[tokenPosition] = (byte) token;
+
+                position += matchLength;
+                anchor = position;
+                if (position < matchFindLimit) {
+                    hashTable[hash(readInt(src, position - 2))] = position - 2;
+                }
+            }
+        }
+
+        int literalLength = srcEnd - anchor;
+        if (literalLength >= RUN_MASK) {
+            dest[destPosition++] = (byte) (RUN_MASK << 4);
+            destPosition = writeLength(literalLength - RUN_MASK, dest, destPosition);
+        } else {
+            dest[destPosition++] = (byte) (literalLength << 4);
+        }
+        System.arraycopy(src, anchor, dest, destPosition, literalLength);
+        destPosition += literalLength;
+        return destPosition - destOffset;
+    }
+
+    /**
+     * Decompresses the source bytes to the destination array.
+     *
+     * @param destLength the exact number of bytes the source bytes decompress to.
+     * @throws IOException if the source bytes are not a valid LZ4 block of the given decompressed length.
+     */
+    public static void decompress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int destLength)
+            throws IOException {
+        int srcPosition = srcOffset;
+        int srcEnd = srcOffset + srcLength;
+        int destPosition = destOffset;
+        int destEnd = destOffset + destLength;
+        while (true) {
+            if (srcPosition >= srcEnd) {
+                throw new IOException("Malformed LZ4 block, unexpected end of the block");
+            }
+            int token = src[srcPosition++] & 0xFF;
+
+            int literalLength = token >>> 4;
+            if (literalLength == RUN_MASK) {
+                int lengthByte;
+                do {
+                    if (srcPosition >= srcEnd) {
+                        throw new IOException("Malformed LZ4 block, unexpected end of the literal length");
+                    }
+                    lengthByte = src[srcPosition++] & 0xFF;
+                    literalLength += lengthByte;
+                } while (lengthByte == 255);
+            }
+            if (literalLength > srcEnd - srcPosition || literalLength > destEnd - destPosition) {
+                throw new IOException("Malformed LZ4 block, literals exceed the block");
+            }
+            System.arraycopy(src, srcPosition, dest, destPosition, literalLength);
+            srcPosition += literalLength;
+            destPosition += literalLength;
+            if (srcPosition == srcEnd) {
+                break;
+            }
+
+            if (srcEnd - srcPosition < 2) {
+                throw new IOException("Malformed LZ4 block, unexpected end of the match offset");
+            }
+            int distance = (src[srcPosition] & 0xFF) | ((src[srcPosition + 1] & 0xFF) << 8);
+            srcPosition += 2;
+            int matchLength = token & RUN_MASK;
+            if (matchLength == RUN_MASK) {
+                int lengthByte;
+                do {
+                    if (srcPosition >= srcEnd) {
+                        throw new IOException("Malformed LZ4 block, unexpected end of the match length");
+                    }
+                    lengthByte = src[srcPosition++] & 0xFF;
+                    matchLength += lengthByte;
+                } while (lengthByte == 255);
+            }
+            matchLength += MIN_MATCH;
+            int reference = destPosition - distance;
+            if (distance == 0 || reference < destOffset || matchLength > destEnd - destPosition) {
+                throw new IOException("Malformed LZ4 block, invalid match");
+            }
+            if (distance >= matchLength) {
+                System.arraycopy(dest, reference, dest, destPosition, matchLength);
+                destPosition += matchLength;
+            } else {
+                // the match overlaps the bytes being written, hence it is copied byte by byte
+                for (int i = 0; i < matchLength; i++) {
+                    dest[destPosition++] = dest[reference++];
+                }
+            }
+        }
+        if (destPosition != destEnd) {
+            throw new IOException("Malformed LZ4 block, decompressed " + (destPosition - destOffset) +
+                    " bytes instead of " + destLength);
+        }
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | ((bytes[offset + 1] & 0xFF) << 8) | ((bytes[offset + 2] & 0xFF) << 16) |
+                ((bytes[offset + 3] & 0xFF) << 24);
+    }
+
+    private static int writeLength(int length, byte[] dest, int destPosition) {
+        while (length >= 255) {
+            dest[destPosition++] = (byte) 255;
+            length -= 255;
+        }
+        dest[destPosition++] = (byte) length;
+        return destPosition;
+    }
+}
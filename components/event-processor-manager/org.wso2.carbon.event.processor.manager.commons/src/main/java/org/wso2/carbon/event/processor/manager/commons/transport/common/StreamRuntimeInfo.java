@@ -23,6 +23,8 @@ import org.wso2.siddhi.query.api.definition.Attribute;
 public class StreamRuntimeInfo {
 
     private String streamId;
+    private byte[] encodedStreamId;
+    private int internedStreamId = -1;
     private int fixedMessageSize;
     private int noOfStringAttributes;
     private int noOfAttributes;
@@ -36,6 +38,25 @@ public class StreamRuntimeInfo {
         return streamId;
     }
 
+    public byte[] getEncodedStreamId() {
+        return encodedStreamId;
+    }
+
+    public void setEncodedStreamId(byte[] encodedStreamId) {
+        this.encodedStreamId = encodedStreamId;
+    }
+
+    /**
+     * @return the compact id sent in place of the stream id when stream id interning is enabled, or -1.
+     */
+    public int getInternedStreamId() {
+        return internedStreamId;
+    }
+
+    public void setInternedStreamId(int internedStreamId) {
+        this.internedStreamId = internedStreamId;
+    }
+
     public int getFixedMessageSize() {
         return fixedMessageSize;
     }
@@ -20,264 +20,639 @@ package org.wso2.carbon.event.processor.manager.commons.transport.server;
 
 import org.apache.log4j.Logger;
 import org.wso2.carbon.event.processor.manager.commons.transport.client.TCPEventPublisher;
+import org.wso2.carbon.event.processor.manager.commons.transport.common.EventLoop;
+import org.wso2.carbon.event.processor.manager.commons.transport.common.EventLoopGroup;
 import org.wso2.carbon.event.processor.manager.commons.transport.common.EventServerUtils;
+import org.wso2.carbon.event.processor.manager.commons.transport.common.LZ4BlockCodec;
 import org.wso2.carbon.event.processor.manager.commons.transport.common.StreamRuntimeInfo;
 import org.wso2.siddhi.query.api.definition.Attribute;
 import org.wso2.siddhi.query.api.definition.StreamDefinition;
 
-import java.io.BufferedInputStream;
-import java.io.EOFException;
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Receives the events sent by {@link TCPEventPublisher}s. The connections are served by a fixed set of event loop
+ * threads, which read the incoming bytes to a buffer shared by all the connections of the loop and decode the events
+ * straight from it. Only the bytes of an incomplete event are kept with the connection until the rest arrives.
+ * <p>
+ * Besides the single event frames, LZ4 compressed batches of event frames sent by the publishers with batch
+ * compression enabled are accepted on the same connection, as well as events carrying the interned id of their stream
+ * in place of the stream id, which are resolved through the stream declarations received on the connection.
+ */
 public class TCPEventServer {
     private static Logger log = Logger.getLogger(TCPEventServer.class);
+    private static final int MAX_READS_PER_SELECTION = 16;
+    private static final int COMPRESSED_BATCH_HEADER_SIZE = 12;
+    private static final int FRAME_PROCESSED = 0;
+    private static final int FRAME_INCOMPLETE = 1;
+    private static final int FRAME_PARKED = 2;
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
     private TCPEventServerConfig tcpEventServerConfig = new TCPEventServerConfig("0.0.0.0", 7211);
-    private ExecutorService executorService;
     private StreamCallback streamCallback;
     private ConnectionCallback connectionCallback;
-    private ServerWorker serverWorker;
     private Map<String, StreamRuntimeInfo> streamRuntimeInfoMap = new ConcurrentHashMap<>();
+    /**
+     * Incremented on every stream definition change, to refresh the definitions cached for the interned streams.
+     */
+    private final AtomicInteger streamDefinitionVersion = new AtomicInteger();
+    /**
+     * The connections which stopped reading until the definition of a stream is added, by the stream id.
+     */
+    private final Map<String, List<Connection>> connectionsWaitingForStreams = new HashMap<>();
+    private ServerSocketChannel serverSocketChannel;
+    private EventLoopGroup eventLoopGroup;
+    private volatile boolean isRunning = false;
 
     public TCPEventServer(TCPEventServerConfig tcpeventserverconfig, StreamCallback streamCallback, ConnectionCallback connectionCallback) {
         this.tcpEventServerConfig = tcpeventserverconfig;
         this.streamCallback = streamCallback;
         this.connectionCallback = connectionCallback;
-        this.serverWorker = new ServerWorker();
-        this.executorService = Executors.newCachedThreadPool();
     }
 
     public void addStreamDefinition(StreamDefinition streamDefinition) {
         String streamId = streamDefinition.getId();
         this.streamRuntimeInfoMap.put(streamId, EventServerUtils.createStreamRuntimeInfo(streamDefinition));
+        streamDefinitionVersion.incrementAndGet();
+        List<Connection> waitingConnections;
+        synchronized (connectionsWaitingForStreams) {
+            waitingConnections = connectionsWaitingForStreams.remove(streamId);
+        }
+        if (waitingConnections != null) {
+            for (Connection connection : waitingConnections) {
+                connection.resume();
+            }
+        }
     }
 
     public void removeStreamDefinition(String streamId) {
         this.streamRuntimeInfoMap.remove(streamId);
+        streamDefinitionVersion.incrementAndGet();
     }
 
     public synchronized void start() throws IOException {
-        if (!serverWorker.isRunning()) {
-            serverWorker.startServerWorker();
-            new Thread(serverWorker).start();
+        if (!isRunning) {
+            InetAddress inetAddress = InetAddress.getByName(tcpEventServerConfig.getHostName());
+            log.info("EventServer starting event listener on " + inetAddress.getHostAddress() + ":" + tcpEventServerConfig.getPort());
+            serverSocketChannel = ServerSocketChannel.open();
+            try {
+                serverSocketChannel.socket().setReuseAddress(true);
+                serverSocketChannel.socket().bind(new InetSocketAddress(inetAddress, tcpEventServerConfig.getPort()), 50);
+                serverSocketChannel.configureBlocking(false);
+                eventLoopGroup = new EventLoopGroup("TCPEventServer-" + tcpEventServerConfig.getPort(),
+                        tcpEventServerConfig.getEventLoopThreadCount(), false);
+            } catch (IOException e) {
+                serverSocketChannel.close();
+                throw e;
+            }
+            isRunning = true;
+            final EventLoop acceptorLoop = eventLoopGroup.next();
+            acceptorLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        acceptorLoop.register(serverSocketChannel, SelectionKey.OP_ACCEPT, new Acceptor());
+                    } catch (IOException e) {
+                        log.error("Error while the server was listening for events: " + e.getMessage(), e);
+                    }
+                }
+            });
         }
     }
 
     public synchronized void shutdown() {
-        serverWorker.shutdownServerWorker();
+        if (isRunning) {
+            isRunning = false;
+            try {
+                serverSocketChannel.close();
+            } catch (IOException e) {
+                log.error("Error occurred while trying to shutdown socket: " + e.getMessage(), e);
+            }
+            eventLoopGroup.shutdown();
+            log.info("EventServer stopped listening for socket connections on port " + tcpEventServerConfig.getPort());
+        }
     }
 
-    private class ServerWorker implements Runnable {
-        private ServerSocket receiverSocket;
-        private boolean isRunning = false;
-
-        public boolean isRunning() {
-            return isRunning;
-        }
+    /**
+     * Accepts the connections and hands them over to the event loops.
+     */
+    private class Acceptor implements EventLoop.SelectionHandler {
 
-        public void startServerWorker() throws IOException {
-            InetAddress inetAddress = InetAddress.getByName(tcpEventServerConfig.getHostName());
-            log.info("EventServer starting event listener on " + inetAddress.getHostAddress() + ":" + tcpEventServerConfig.getPort());
-            receiverSocket = new ServerSocket(tcpEventServerConfig.getPort(), 50, inetAddress);
-            isRunning = true;
-            receiverSocket.setReuseAddress(true);
+        @Override
+        public void onSelect(SelectionKey key) {
+            try {
+                SocketChannel socketChannel;
+                while ((socketChannel = serverSocketChannel.accept()) != null) {
+                    socketChannel.configureBlocking(false);
+                    socketChannel.socket().setKeepAlive(true);
+                    final SocketChannel acceptedChannel = socketChannel;
+                    final EventLoop eventLoop = eventLoopGroup.next();
+                    eventLoop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            Connection connection = new Connection(acceptedChannel, eventLoop);
+                            try {
+                                connection.key = eventLoop.register(acceptedChannel, SelectionKey.OP_READ, connection);
+                            } catch (IOException e) {
+                                log.error("Error while registering the connection: " + e.getMessage(), e);
+                                connection.close();
+                            }
+                        }
+                    });
+                }
+            } catch (IOException e) {
+                if (isRunning) {
+                    log.error("Error while the server was listening for events: " + e.getMessage(), e);
+                }
+            }
         }
 
-        public void shutdownServerWorker() {
-            isRunning = false;
+        @Override
+        public void close() {
             try {
-                if (receiverSocket != null) {
-                    receiverSocket.close();
-                }
+                serverSocketChannel.close();
             } catch (IOException e) {
                 log.error("Error occurred while trying to shutdown socket: " + e.getMessage(), e);
             }
         }
+    }
+
+    /**
+     * A publisher connection, served by a single event loop.
+     */
+    private class Connection implements EventLoop.SelectionHandler {
+        private final SocketChannel socketChannel;
+        private final EventLoop eventLoop;
+        private SelectionKey key;
+        private ByteBuffer pendingBuffer;
+        private ByteBuffer batchBuffer;
+        private boolean batchPending;
+        private final Map<Integer, InternedStream> internedStreams = new HashMap<>();
+        private String awaitedStreamId;
+        private final Runnable resumeTask = new Runnable() {
+            @Override
+            public void run() {
+                processPendingEvents();
+            }
+        };
+        private boolean closed;
+
+        private Connection(SocketChannel socketChannel, EventLoop eventLoop) {
+            this.socketChannel = socketChannel;
+            this.eventLoop = eventLoop;
+            if (connectionCallback != null) {
+                connectionCallback.onPublisherBoltConnect();
+            }
+        }
 
         @Override
-        public void run() {
+        public void onSelect(SelectionKey key) {
             try {
+                if (key.isValid() && key.isReadable()) {
+                    read();
+                }
+            } catch (IOException e) {
+                log.error("Error reading data from receiver socket:" + e.getMessage(), e);
+                close();
+            } catch (Throwable t) {
+                log.error("Error :" + t.getMessage(), t);
+                close();
+            }
+        }
 
-                while (isRunning) {
-                    final Socket connectionSocket = receiverSocket.accept();
-                    connectionSocket.setKeepAlive(true);
-                    executorService.execute(new ListenerProcessor(connectionSocket));
+        /**
+         * Reads the available bytes and processes the complete events among them. The bytes are read to the buffer
+         * of the event loop, unless an incomplete event is pending, in which case they are appended to it.
+         */
+        private void read() throws IOException {
+            for (int i = 0; i < MAX_READS_PER_SELECTION; i++) {
+                ByteBuffer buffer;
+                if (pendingBuffer == null) {
+                    buffer = eventLoop.getIoBuffer(tcpEventServerConfig.getReceiveBufferSize());
+                } else {
+                    if (!pendingBuffer.hasRemaining()) {
+                        int maxBufferSize = tcpEventServerConfig.getMaxFrameSize() + COMPRESSED_BATCH_HEADER_SIZE;
+                        if (pendingBuffer.capacity() >= maxBufferSize) {
+                            throw new IOException("Received a frame larger than the maximum frame size of " +
+                                    tcpEventServerConfig.getMaxFrameSize() + " bytes");
+                        }
+                        ByteBuffer expandedBuffer = ByteBuffer.allocate((int) Math.min(maxBufferSize,
+                                pendingBuffer.capacity() * 2L));
+                        pendingBuffer.flip();
+                        expandedBuffer.put(pendingBuffer);
+                        pendingBuffer = expandedBuffer;
+                    }
+                    buffer = pendingBuffer;
                 }
-            } catch (Throwable e) {
-                if (isRunning) {
-                    log.error("Error while the server was listening for events: " + e.getMessage(), e);
+                int readCount = socketChannel.read(buffer);
+                if (readCount == -1) {
+                    log.info("Closing listener socket. Connection closed from remote end.");
+                    close();
+                    return;
+                } else if (readCount == 0) {
+                    return;
+                }
+                boolean moreAvailable = !buffer.hasRemaining();
+                buffer.flip();
+                boolean parked = processEvents(buffer);
+                if (buffer.hasRemaining()) {
+                    if (buffer == pendingBuffer) {
+                        buffer.compact();
+                    } else {
+                        pendingBuffer = ByteBuffer.allocate(Math.max(buffer.remaining() * 2,
+                                tcpEventServerConfig.getReceiveBufferSize()));
+                        pendingBuffer.put(buffer);
+                    }
                 } else {
-                    // Server shutdown has been triggered with a call to socket.close().
-                    // socket.accept() is expected to throw SocketException
-                    log.info("EventServer stopped listening for socket connections, " + e.getMessage());
-                    if (log.isDebugEnabled()) {
-                        log.debug("EventServer stopped listening for socket connections", e);
+                    pendingBuffer = null;
+                }
+                if (parked) {
+                    waitForStreamDefinition();
+                    return;
+                }
+                if (!moreAvailable) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Decodes and delivers the complete events in the buffer, leaving the buffer positioned at the first byte of
+         * the incomplete frame, if any. The frames are either single events or LZ4 compressed batches of events.
+         *
+         * @return true if the processing stopped as the definition of the next event's stream is not known yet.
+         */
+        private boolean processEvents(ByteBuffer buffer) throws IOException {
+            if (batchPending) {
+                // the rest of a batch that was waiting for a stream definition is delivered first
+                if (processBatch()) {
+                    return true;
+                }
+            }
+            while (buffer.remaining() >= 4) {
+                int start = buffer.position();
+                if (buffer.getInt(start) == TCPEventPublisher.COMPRESSED_BATCH_HEADER_VALUE) {
+                    if (buffer.remaining() < COMPRESSED_BATCH_HEADER_SIZE) {
+                        return false;
+                    }
+                    int length = buffer.getInt(start + 4);
+                    int compressedLength = buffer.getInt(start + 8);
+                    int maxFrameSize = tcpEventServerConfig.getMaxFrameSize();
+                    if (length < 0 || compressedLength < 0 || length > maxFrameSize
+                            || compressedLength > maxFrameSize) {
+                        throw new IOException("Invalid compressed batch of " + compressedLength + " bytes, " +
+                                "decompressing to " + length + " bytes");
+                    }
+                    if (buffer.remaining() < COMPRESSED_BATCH_HEADER_SIZE + compressedLength) {
+                        return false;
+                    }
+                    decompressBatch(buffer, start + COMPRESSED_BATCH_HEADER_SIZE, compressedLength, length);
+                    buffer.position(start + COMPRESSED_BATCH_HEADER_SIZE + compressedLength);
+                    if (processBatch()) {
+                        return true;
                     }
+                    continue;
+                }
+                int status = processFrame(buffer);
+                if (status != FRAME_PROCESSED) {
+                    return status == FRAME_PARKED;
                 }
-            } finally {
-                isRunning = false;
             }
+            return false;
         }
 
-        private class ListenerProcessor implements Runnable {
+        private void decompressBatch(ByteBuffer buffer, int position, int compressedLength, int length)
+                throws IOException {
+            if (batchBuffer == null || batchBuffer.capacity() < length) {
+                batchBuffer = ByteBuffer.allocate(Math.max(length, tcpEventServerConfig.getReceiveBufferSize()));
+            }
+            batchBuffer.clear();
+            LZ4BlockCodec.decompress(buffer.array(), buffer.arrayOffset() + position, compressedLength,
+                    batchBuffer.array(), batchBuffer.arrayOffset(), length);
+            batchBuffer.limit(length);
+            batchPending = true;
+        }
 
-            private final Socket connectionSocket;
+        /**
+         * Delivers the events of the decompressed batch.
+         *
+         * @return true if the processing stopped as the definition of the next event's stream is not known yet.
+         */
+        private boolean processBatch() throws IOException {
+            while (batchBuffer.hasRemaining()) {
+                int status = processFrame(batchBuffer);
+                if (status == FRAME_PARKED) {
+                    return true;
+                } else if (status == FRAME_INCOMPLETE) {
+                    batchPending = false;
+                    throw new IOException("Invalid compressed batch, ends with an incomplete event");
+                }
+            }
+            batchPending = false;
+            return false;
+        }
 
-            public ListenerProcessor(Socket connectionSocket) {
-                this.connectionSocket = connectionSocket;
+        /**
+         * Decodes and delivers the event frame at the position of the buffer, the buffer is positioned after the
+         * frame only if it is processed.
+         */
+        private int processFrame(ByteBuffer buffer) throws IOException {
+            if (buffer.remaining() < 4) {
+                return FRAME_INCOMPLETE;
+            }
+            int start = buffer.position();
+            int header = buffer.getInt(start);
+            if (header == TCPEventPublisher.PING_HEADER_VALUE) {
+                buffer.position(start + 4);
+                return FRAME_PROCESSED;
+            } else if (header == TCPEventPublisher.STREAM_DECLARATION_HEADER_VALUE) {
+                return processStreamDeclaration(buffer);
+            }
+            String streamId;
+            StreamRuntimeInfo streamRuntimeInfo;
+            int fixedMessageStart;
+            if (header < TCPEventPublisher.INTERNED_STREAM_HEADER_BASE + TCPEventPublisher.MAX_INTERNED_STREAMS) {
+                InternedStream internedStream = getInternedStream(header - TCPEventPublisher.INTERNED_STREAM_HEADER_BASE);
+                streamId = internedStream.streamId;
+                streamRuntimeInfo = internedStream.getStreamRuntimeInfo();
+                fixedMessageStart = start + 4;
+            } else {
+                if (header > tcpEventServerConfig.getMaxFrameSize()) {
+                    throw new IOException("Invalid stream id size " + header);
+                }
+                if (buffer.remaining() < 4 + header) {
+                    return FRAME_INCOMPLETE;
+                }
+                streamId = new String(buffer.array(), buffer.arrayOffset() + start + 4, header);
+                streamRuntimeInfo = streamRuntimeInfoMap.get(streamId);
+                fixedMessageStart = start + 4 + header;
+            }
+            if (streamRuntimeInfo == null) {
+                awaitedStreamId = streamId;
+                return FRAME_PARKED;
+            }
+            int stringDataStart = fixedMessageStart + 12 + streamRuntimeInfo.getFixedMessageSize();
+            if (buffer.limit() < stringDataStart) {
+                return FRAME_INCOMPLETE;
+            }
+            Attribute.Type[] attributeTypes = streamRuntimeInfo.getAttributeTypes();
+            long stringDataSize = 0;
+            int position = fixedMessageStart + 12;
+            for (Attribute.Type type : attributeTypes) {
+                position += getAttributeSize(type);
+                if (type == Attribute.Type.STRING) {
+                    stringDataSize += Math.max(0, buffer.getInt(position - 4));
+                }
+            }
+            int arbitraryMapSize = buffer.getInt(fixedMessageStart + 8);
+            long frameSize = stringDataStart - start + stringDataSize + Math.max(0, arbitraryMapSize);
+            if (frameSize > tcpEventServerConfig.getMaxFrameSize()) {
+                throw new IOException("Received an event of stream " + streamId + " of " + frameSize +
+                        " bytes, which is larger than the maximum frame size of " +
+                        tcpEventServerConfig.getMaxFrameSize() + " bytes");
+            }
+            int eventEnd = (int) (start + frameSize);
+            if (buffer.limit() < eventEnd) {
+                return FRAME_INCOMPLETE;
             }
+            buffer.position(fixedMessageStart);
+            decodeEvent(buffer, streamId, streamRuntimeInfo, stringDataStart, arbitraryMapSize);
+            buffer.position(eventEnd);
+            return FRAME_PROCESSED;
+        }
 
-            @Override
-            public void run() {
-                try {
-                    if (connectionCallback != null) {
-                        connectionCallback.onPublisherBoltConnect();
-                    }
-                    BufferedInputStream in = new BufferedInputStream(connectionSocket.getInputStream());
-                    while (true) {
-
-                        byte[] streamNameByteSize = loadData(in, new byte[4]);
-                        ByteBuffer sizeBuf = ByteBuffer.wrap(streamNameByteSize);
-                        int streamNameSize = sizeBuf.getInt();
-                        if (streamNameSize == TCPEventPublisher.PING_HEADER_VALUE) {
-                            continue;
-                        }
-                        byte[] streamNameData = loadData(in, new byte[streamNameSize]);
-                        String streamId = new String(streamNameData, 0, streamNameData.length);
-                        StreamRuntimeInfo streamRuntimeInfo = streamRuntimeInfoMap.get(streamId);
-                        while (streamRuntimeInfo == null) {
-                            Thread.sleep(1000);
-                            log.warn("TCP server on port :'" + tcpEventServerConfig.getPort() + "' waiting for streamId:'" + streamId + "' to process incoming events");
-                            streamRuntimeInfo = streamRuntimeInfoMap.get(streamId);
-                        }
-                        Object[] eventData = new Object[streamRuntimeInfo.getNoOfAttributes()];
-                        byte[] fixedMessageData = loadData(in, new byte[12 + streamRuntimeInfo.getFixedMessageSize()]);
-
-                        ByteBuffer bbuf = ByteBuffer.wrap(fixedMessageData, 0, fixedMessageData.length);
-                        long timestamp = bbuf.getLong();
-                        int arbitraryMapSize = bbuf.getInt();
-
-                        List<Integer> stringValueSizes = new ArrayList<>();
-                        Attribute.Type[] attributeTypes = streamRuntimeInfo.getAttributeTypes();
-                        for (int i = 0; i < attributeTypes.length; i++) {
-                            Attribute.Type type = attributeTypes[i];
-                            switch (type) {
-                                case INT:
-                                    eventData[i] = bbuf.getInt();
-                                    continue;
-                                case LONG:
-                                    eventData[i] = bbuf.getLong();
-                                    continue;
-                                case BOOL:
-                                    eventData[i] = bbuf.get() == 1;
-                                    continue;
-                                case FLOAT:
-                                    eventData[i] = bbuf.getFloat();
-                                    continue;
-                                case DOUBLE:
-                                    eventData[i] = bbuf.getDouble();
-                                    continue;
-                                case STRING:
-                                    int size = bbuf.getInt();
-                                    stringValueSizes.add(size);
-                            }
-                        }
+        private int processStreamDeclaration(ByteBuffer buffer) throws IOException {
+            if (buffer.remaining() < 12) {
+                return FRAME_INCOMPLETE;
+            }
+            int start = buffer.position();
+            int internedStreamId = buffer.getInt(start + 4);
+            int streamIdSize = buffer.getInt(start + 8);
+            if (internedStreamId < 0 || internedStreamId >= TCPEventPublisher.MAX_INTERNED_STREAMS || streamIdSize < 0
+                    || streamIdSize > tcpEventServerConfig.getMaxFrameSize()) {
+                throw new IOException("Invalid declaration of interned stream " + internedStreamId);
+            }
+            if (buffer.remaining() < 12 + streamIdSize) {
+                return FRAME_INCOMPLETE;
+            }
+            String streamId = new String(buffer.array(), buffer.arrayOffset() + start + 12, streamIdSize);
+            if (internedStreams.size() >= tcpEventServerConfig.getMaxInternedStreamsPerConnection()
+                    && !internedStreams.containsKey(internedStreamId)) {
+                throw new IOException("Cannot declare interned stream " + internedStreamId + " of stream " + streamId
+                        + ", as " + internedStreams.size() + " streams are already declared on the connection");
+            }
+            internedStreams.put(internedStreamId, new InternedStream(streamId));
+            buffer.position(start + 12 + streamIdSize);
+            return FRAME_PROCESSED;
+        }
 
-                        int stringSizePosition = 0;
-                        for (int i = 0; i < attributeTypes.length; i++) {
-                            Attribute.Type type = attributeTypes[i];
-                            if (Attribute.Type.STRING == type) {
-                                int size = stringValueSizes.get(stringSizePosition);
-                                if (size == -1) {
-                                    eventData[i] = null;
-                                } else {
-                                    byte[] stringData = loadData(in, new byte[size]);
-                                    eventData[i] = new String(stringData, 0, stringData.length);
-                                }
-                                stringSizePosition++;
-                            }
-                        }
+        private InternedStream getInternedStream(int internedStreamId) throws IOException {
+            InternedStream internedStream = internedStreams.get(internedStreamId);
+            if (internedStream == null) {
+                throw new IOException("Received an event of interned stream " + internedStreamId +
+                        ", which is not declared on the connection");
+            }
+            return internedStream;
+        }
 
-                        Map<String, String> arbitraryMap = null;
-                        if (arbitraryMapSize > 0) {
-                            arbitraryMap = new HashMap<>();
-                            int arbitraryMapBytesRead = 0;
-                            int keyStringSize, valueStringSize;
-                            //TODO Consider loading all the attributes at once for better performance
-                            byte[] arbitraryMapAttributeSizeData;
-                            ByteBuffer arbitraryMapAttributeSizeByteBuf;
-                            while (arbitraryMapBytesRead < arbitraryMapSize) {
-                                arbitraryMapAttributeSizeData = loadData(in, new byte[4]);
-                                arbitraryMapAttributeSizeByteBuf = ByteBuffer.wrap(arbitraryMapAttributeSizeData);
-                                keyStringSize = arbitraryMapAttributeSizeByteBuf.getInt();
-                                byte[] keyStringData = loadData(in, new byte[keyStringSize]);
-                                arbitraryMapBytesRead += 4 + keyStringSize;
-                                arbitraryMapAttributeSizeData = loadData(in, new byte[4]);
-                                arbitraryMapAttributeSizeByteBuf = ByteBuffer.wrap(arbitraryMapAttributeSizeData);
-                                valueStringSize = arbitraryMapAttributeSizeByteBuf.getInt();
-                                byte[] valueStringData = loadData(in, new byte[valueStringSize]);
-                                arbitraryMapBytesRead += 4 + valueStringSize;
-                                arbitraryMap.put(new String(keyStringData), new String(valueStringData));
-                            }
+        private void decodeEvent(ByteBuffer buffer, String streamId, StreamRuntimeInfo streamRuntimeInfo,
+                                 int stringDataStart, int arbitraryMapSize) {
+            long timestamp = buffer.getLong();
+            buffer.getInt();
+            Attribute.Type[] attributeTypes = streamRuntimeInfo.getAttributeTypes();
+            Object[] eventData = new Object[streamRuntimeInfo.getNoOfAttributes()];
+            byte[] array = buffer.array();
+            int arrayOffset = buffer.arrayOffset();
+            int stringPosition = stringDataStart;
+            for (int i = 0; i < attributeTypes.length; i++) {
+                switch (attributeTypes[i]) {
+                    case INT:
+                        eventData[i] = buffer.getInt();
+                        continue;
+                    case LONG:
+                        eventData[i] = buffer.getLong();
+                        continue;
+                    case BOOL:
+                        eventData[i] = buffer.get() == 1;
+                        continue;
+                    case FLOAT:
+                        eventData[i] = buffer.getFloat();
+                        continue;
+                    case DOUBLE:
+                        eventData[i] = buffer.getDouble();
+                        continue;
+                    case STRING:
+                        int size = buffer.getInt();
+                        if (size == -1) {
+                            eventData[i] = null;
+                        } else {
+                            eventData[i] = new String(array, arrayOffset + stringPosition, size);
+                            stringPosition += size;
                         }
+                }
+            }
 
-                        streamCallback.receive(streamId, timestamp, eventData, arbitraryMap);
-                    }
-                } catch (EOFException e) {
-                    log.info("Closing listener socket. " + e.getMessage());
-                } catch (IOException e) {
-                    log.error("Error reading data from receiver socket:" + e.getMessage(), e);
-                } catch (Throwable t) {
-                    log.error("Error :" + t.getMessage(), t);
-                } finally {
-                    if (connectionCallback != null) {
-                        connectionCallback.onPublisherBoltDisconnect();
-                    }
+            Map<String, String> arbitraryMap = null;
+            if (arbitraryMapSize > 0) {
+                // the entries are size prefixed strings within the size prefixed map, decoded straight from the array
+                arbitraryMap = new HashMap<>();
+                int position = stringPosition;
+                int arbitraryMapEnd = stringPosition + arbitraryMapSize;
+                while (position < arbitraryMapEnd) {
+                    int keyStringSize = buffer.getInt(position);
+                    String key = new String(array, arrayOffset + position + 4, keyStringSize);
+                    position += 4 + keyStringSize;
+                    int valueStringSize = buffer.getInt(position);
+                    String value = new String(array, arrayOffset + position + 4, valueStringSize);
+                    position += 4 + valueStringSize;
+                    arbitraryMap.put(key, value);
                 }
             }
 
-            /**
-             * Returns the number of bytes that were read by the stream.
-             * This method does not return if the stream is closed from remote end.
-             *
-             * @param in the input stream to be read
-             * @return the number of bytes read
-             * @throws java.io.IOException
-             */
-            private int loadData(BufferedInputStream in) throws IOException {
-                int byteData = in.read();
-                if (byteData != -1) {
-                    return byteData;
-                } else {
-                    throw new EOFException("Connection closed from remote end.");
+            streamCallback.receive(streamId, timestamp, eventData, arbitraryMap);
+        }
+
+        private int getAttributeSize(Attribute.Type type) {
+            switch (type) {
+                case LONG:
+                case DOUBLE:
+                    return 8;
+                case BOOL:
+                    return 1;
+                default:
+                    return 4;
+            }
+        }
+
+        /**
+         * Stops reading from the connection until the definition of the stream of the pending event is added, the
+         * other connections of the event loop keep being served meanwhile. The connection is resumed as soon as the
+         * definition is added.
+         */
+        private void waitForStreamDefinition() {
+            String streamId = awaitedStreamId;
+            log.warn("TCP server on port :'" + tcpEventServerConfig.getPort() + "' waiting for streamId:'" + streamId + "' to process incoming events");
+            key.interestOps(0);
+            synchronized (connectionsWaitingForStreams) {
+                List<Connection> waitingConnections = connectionsWaitingForStreams.get(streamId);
+                if (waitingConnections == null) {
+                    waitingConnections = new ArrayList<>();
+                    connectionsWaitingForStreams.put(streamId, waitingConnections);
                 }
+                waitingConnections.add(this);
+            }
+            // the definition may have been added before the connection was registered as waiting for it
+            if (streamRuntimeInfoMap.containsKey(streamId)) {
+                resume();
             }
+        }
 
-            private byte[] loadData(BufferedInputStream in, byte[] dataArray) throws IOException {
+        private void resume() {
+            eventLoop.execute(resumeTask);
+        }
 
-                int start = 0;
-                while (true) {
-                    int readCount = in.read(dataArray, start, dataArray.length - start);
-                    if (readCount != -1) {
-                        start += readCount;
-                        if (start == dataArray.length) {
-                            return dataArray;
-                        }
+        /**
+         * Processes the events left pending while waiting for a stream definition, and starts reading from the
+         * connection again unless the definition of another stream is needed.
+         */
+        private void processPendingEvents() {
+            if (closed || awaitedStreamId == null || !streamRuntimeInfoMap.containsKey(awaitedStreamId)) {
+                return;
+            }
+            stopWaiting();
+            boolean parked;
+            try {
+                if (pendingBuffer == null) {
+                    parked = processEvents(EMPTY_BUFFER);
+                } else {
+                    pendingBuffer.flip();
+                    parked = processEvents(pendingBuffer);
+                    if (pendingBuffer.hasRemaining()) {
+                        pendingBuffer.compact();
                     } else {
-                        throw new EOFException("Connection closed from remote end.");
+                        pendingBuffer = null;
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Error reading data from receiver socket:" + e.getMessage(), e);
+                close();
+                return;
+            }
+            if (parked) {
+                waitForStreamDefinition();
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void stopWaiting() {
+            synchronized (connectionsWaitingForStreams) {
+                List<Connection> waitingConnections = connectionsWaitingForStreams.get(awaitedStreamId);
+                if (waitingConnections != null) {
+                    waitingConnections.remove(this);
+                    if (waitingConnections.isEmpty()) {
+                        connectionsWaitingForStreams.remove(awaitedStreamId);
                     }
                 }
             }
+            awaitedStreamId = null;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (awaitedStreamId != null) {
+                stopWaiting();
+            }
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                socketChannel.close();
+            } catch (IOException e) {
+                log.error("Error while closing the connection: " + e.getMessage(), e);
+            }
+            if (connectionCallback != null) {
+                connectionCallback.onPublisherBoltDisconnect();
+            }
+        }
+    }
+
+    /**
+     * A stream declared on a connection with an interned id, along with its definition, which is looked up again only
+     * when the stream definitions of the server change.
+     */
+    private class InternedStream {
+        private final String streamId;
+        private StreamRuntimeInfo streamRuntimeInfo;
+        private int version = -1;
+
+        private InternedStream(String streamId) {
+            this.streamId = streamId;
+        }
+
+        private StreamRuntimeInfo getStreamRuntimeInfo() {
+            int currentVersion = streamDefinitionVersion.get();
+            if (version != currentVersion) {
+                streamRuntimeInfo = streamRuntimeInfoMap.get(streamId);
+                version = currentVersion;
+            }
+            return streamRuntimeInfo;
         }
     }
 }
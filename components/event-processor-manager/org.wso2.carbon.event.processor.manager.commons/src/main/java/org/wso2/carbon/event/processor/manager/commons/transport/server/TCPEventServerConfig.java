@@ -22,6 +22,10 @@ public class TCPEventServerConfig {
 
     private String hostName;
     private int port;
+    private int eventLoopThreadCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int receiveBufferSize = 65536;
+    private int maxFrameSize = 64 * 1024 * 1024;
+    private int maxInternedStreamsPerConnection = 65536;
 
     public TCPEventServerConfig(String hostName, int port) {
         this.hostName = hostName;
@@ -35,4 +39,50 @@ public class TCPEventServerConfig {
     public String getHostName() {
         return hostName;
     }
+
+    /**
+     * @return the number of threads serving the connections of the server.
+     */
+    public int getEventLoopThreadCount() {
+        return eventLoopThreadCount;
+    }
+
+    public void setEventLoopThreadCount(int eventLoopThreadCount) {
+        this.eventLoopThreadCount = eventLoopThreadCount;
+    }
+
+    /**
+     * @return the size of the buffer each server thread reads the incoming events to.
+     */
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    /**
+     * @return the maximum size of a frame accepted from a publisher, the connections sending larger frames are
+     * closed.
+     */
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    public void setMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * @return the maximum number of interned streams a publisher can declare on a connection, the connections
+     * declaring more streams are closed.
+     */
+    public int getMaxInternedStreamsPerConnection() {
+        return maxInternedStreamsPerConnection;
+    }
+
+    public void setMaxInternedStreamsPerConnection(int maxInternedStreamsPerConnection) {
+        this.maxInternedStreamsPerConnection = maxInternedStreamsPerConnection;
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.commons.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary delta encoding of a byte array against a base byte array. The target is encoded as a sequence of copies of
+ * ranges of the base and literal ranges, where the copies are found by looking up the blocks of the base with a
+ * rolling hash over the target. Hence the ranges of the base which are shifted in the target, such as the remaining
+ * elements of a queue after the head of the queue is consumed, are still encoded as copies.
+ * <p/>
+ * Delta format: [int targetLength] followed by the instructions, where each instruction is either
+ * [COPY][int baseOffset][int length] or [LITERAL][int length][bytes].
+ */
+public class BinaryDelta {
+    private static final int BLOCK_SIZE = 32;
+    private static final int HASH_MULTIPLIER = 31;
+    private static final byte COPY = 0;
+    private static final byte LITERAL = 1;
+
+    private BinaryDelta() {
+    }
+
+    /**
+     * Encodes the target as a delta of the base.
+     *
+     * @param base   the base the delta is applied to
+     * @param target the bytes to encode
+     * @return the delta, which reproduces the target when applied to the base by {@link #apply(byte[], byte[])}
+     */
+    public static byte[] encode(byte[] base, byte[] target) {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(Math.min(target.length, 1024) + 4);
+        DataOutputStream out = new DataOutputStream(byteArrayOutputStream);
+        try {
+            out.writeInt(target.length);
+            int literalStart = 0;
+            if (base.length >= BLOCK_SIZE && target.length >= BLOCK_SIZE) {
+                int[] blockTable = indexBlocks(base);
+                int mask = blockTable.length - 1;
+                int removedMultiplier = 1;
+                for (int i = 0; i < BLOCK_SIZE; i++) {
+                    removedMultiplier *= HASH_MULTIPLIER;
+                }
+                int position = 0;
+                int hash = hash(target, 0);
+                while (true) {
+                    int baseOffset = blockTable[hash & mask] - 1;
+                    if (baseOffset >= 0 && regionMatches(base, baseOffset, target, position, BLOCK_SIZE)) {
+                        int start = position;
+                        while (start > literalStart && baseOffset > 0 && base[baseOffset - 1] == target[start - 1]) {
+                            start--;
+                            baseOffset--;
+                        }
+                        int end = position + BLOCK_SIZE;
+                        int baseEnd = baseOffset + (end - start);
+                        while (end < target.length && baseEnd < base.length && base[baseEnd] == target[end]) {
+                            end++;
+                            baseEnd++;
+                        }
+                        writeLiteral(out, target, literalStart, start);
+                        out.writeByte(COPY);
+                        out.writeInt(baseOffset);
+                        out.writeInt(end - start);
+                        literalStart = end;
+                        position = end;
+                        if (position + BLOCK_SIZE > target.length) {
+                            break;
+                        }
+                        hash = hash(target, position);
+                    } else {
+                        if (position + BLOCK_SIZE >= target.length) {
+                            break;
+                        }
+                        hash = hash * HASH_MULTIPLIER + target[position + BLOCK_SIZE]
+                                - removedMultiplier * target[position];
+                        position++;
+                    }
+                }
+            }
+            writeLiteral(out, target, literalStart, target.length);
+            out.flush();
+        } catch (IOException e) {
+            // Not thrown when writing to a byte array
+            throw new IllegalStateException(e);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Applies a delta created by {@link #encode(byte[], byte[])} to the base it was created against.
+     *
+     * @param base  the base of the delta
+     * @param delta the delta
+     * @return the target encoded in the delta
+     * @throws IOException if the delta is malformed or doesn't fit the base
+     */
+    public static byte[] apply(byte[] base, byte[] delta) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(delta);
+        try {
+            byte[] target = new byte[in.getInt()];
+            int position = 0;
+            while (in.hasRemaining()) {
+                byte instruction = in.get();
+                if (instruction == COPY) {
+                    int baseOffset = in.getInt();
+                    int length = in.getInt();
+                    if (baseOffset < 0 || length < 0 || baseOffset > base.length - length) {
+                        throw new IOException("Delta copies a range outside of the base of " + base.length + " bytes");
+                    }
+                    System.arraycopy(base, baseOffset, target, position, length);
+                    position += length;
+                } else if (instruction == LITERAL) {
+                    int length = in.getInt();
+                    in.get(target, position, length);
+                    position += length;
+                } else {
+                    throw new IOException("Unknown delta instruction " + instruction);
+                }
+            }
+            if (position != target.length) {
+                throw new IOException("Delta produced " + position + " bytes instead of " + target.length);
+            }
+            return target;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated delta", e);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Delta exceeds its target length", e);
+        } catch (NegativeArraySizeException e) {
+            throw new IOException("Invalid delta target length", e);
+        }
+    }
+
+    /**
+     * Indexes the non overlapping blocks of the base by their hash, the table holds the block offset plus one so that
+     * empty slots are zero. Colliding blocks overwrite each other, which only loses some matches.
+     */
+    private static int[] indexBlocks(byte[] base) {
+        int blockCount = base.length / BLOCK_SIZE;
+        int[] blockTable = new int[Integer.highestOneBit(blockCount * 2 - 1) << 1];
+        int mask = blockTable.length - 1;
+        for (int offset = (blockCount - 1) * BLOCK_SIZE; offset >= 0; offset -= BLOCK_SIZE) {
+            blockTable[hash(base, offset) & mask] = offset + 1;
+        }
+        return blockTable;
+    }
+
+    private static int hash(byte[] bytes, int offset) {
+        int hash = 0;
+        for (int i = offset; i < offset + BLOCK_SIZE; i++) {
+            hash = hash * HASH_MULTIPLIER + bytes[i];
+        }
+        return hash;
+    }
+
+    private static boolean regionMatches(byte[] base, int baseOffset, byte[] target, int targetOffset, int length) {
+        if (baseOffset + length > base.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (base[baseOffset + i] != target[targetOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeLiteral(DataOutputStream out, byte[] target, int start, int end) throws IOException {
+        if (end > start) {
+            out.writeByte(LITERAL);
+            out.writeInt(end - start);
+            out.write(target, start, end - start);
+        }
+    }
+}
@@ -18,24 +18,36 @@
 package org.wso2.carbon.event.processor.manager.commons.utils;
 
 import org.apache.log4j.Logger;
+import org.wso2.carbon.event.processor.manager.commons.serializer.BinaryStateSerializer;
+import org.wso2.carbon.event.processor.manager.commons.serializer.StateSerializer;
 
-import java.io.*;
+import java.io.IOException;
 
 
 public class ByteSerializer {
     private static final Logger log = Logger.getLogger(ByteSerializer.class);
+    private static volatile StateSerializer stateSerializer = new BinaryStateSerializer();
+
+    public static StateSerializer getStateSerializer() {
+        return stateSerializer;
+    }
+
+    /**
+     * Set the serializer used for all the states, the serializer needs to be able to deserialize the states
+     * serialized by the earlier serializers, such as the persisted states.
+     */
+    public static void setStateSerializer(StateSerializer stateSerializer) {
+        ByteSerializer.stateSerializer = stateSerializer;
+    }
 
     static public byte[] OToB(Object obj) {
         long start = System.currentTimeMillis();
         byte[] out = null;
         if (obj != null) {
             try {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                ObjectOutputStream oos = new ObjectOutputStream(baos);
-                oos.writeObject(obj);
-                out = baos.toByteArray();
+                out = stateSerializer.serialize(obj);
             } catch (IOException e) {
-                e.printStackTrace();
+                log.error("Error when serializing the state", e);
                 return null;
             }
         }
@@ -51,14 +63,9 @@ public class ByteSerializer {
         Object out = null;
         if (bytes != null) {
             try {
-                ByteArrayInputStream bios = new ByteArrayInputStream(bytes);
-                ObjectInputStream ois = new ObjectInputStream(bios);
-                out = ois.readObject();
+                out = stateSerializer.deserialize(bytes);
             } catch (IOException e) {
-                e.printStackTrace();
-                return null;
-            } catch (ClassNotFoundException e) {
-                e.printStackTrace();
+                log.error("Error when deserializing the state", e);
                 return null;
             }
         }
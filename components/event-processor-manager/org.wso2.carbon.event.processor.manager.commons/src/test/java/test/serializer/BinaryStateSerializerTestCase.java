@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package test.serializer;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.event.processor.manager.commons.serializer.BinaryStateSerializer;
+import org.wso2.carbon.event.processor.manager.commons.serializer.JavaStateSerializer;
+import org.wso2.carbon.event.processor.manager.commons.serializer.StateSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class BinaryStateSerializerTestCase {
+    private final StateSerializer stateSerializer = new BinaryStateSerializer();
+
+    @Test
+    public void testAttributeTypesRoundTrip() throws IOException {
+        Object[] state = new Object[]{1, 2L, 3.5f, 4.25d, true, false, "abc", "\u00e9\u4e2d\ud83d\ude00", "", null,
+                new byte[]{1, 2, 3}, new Object[]{"nested", 5}};
+        Object[] result = (Object[]) stateSerializer.deserialize(stateSerializer.serialize(state));
+        Assert.assertTrue(Arrays.deepEquals(state, result));
+        Assert.assertNull(stateSerializer.deserialize(stateSerializer.serialize(null)));
+    }
+
+    @Test
+    public void testCollectionsRoundTrip() throws IOException {
+        HashMap<Integer, HashMap<String, byte[]>> receiverState = new HashMap<Integer, HashMap<String, byte[]>>();
+        HashMap<String, byte[]> tenantState = new HashMap<String, byte[]>();
+        tenantState.put("receiver1", new byte[]{1, 2, 3});
+        tenantState.put("receiver2", new byte[0]);
+        receiverState.put(-1234, tenantState);
+        receiverState.put(1, new HashMap<String, byte[]>());
+
+        HashMap<Integer, HashMap<String, byte[]>> result = (HashMap<Integer, HashMap<String, byte[]>>)
+                stateSerializer.deserialize(stateSerializer.serialize(receiverState));
+        Assert.assertEquals(receiverState.keySet(), result.keySet());
+        Assert.assertTrue(result.get(1).isEmpty());
+        Assert.assertTrue(Arrays.equals(new byte[]{1, 2, 3}, result.get(-1234).get("receiver1")));
+        Assert.assertEquals(0, result.get(-1234).get("receiver2").length);
+
+        List<Object> list = new ArrayList<Object>(Arrays.asList("a", 1, null));
+        Assert.assertEquals(list, stateSerializer.deserialize(stateSerializer.serialize(list)));
+    }
+
+    @Test
+    public void testEventsRoundTrip() throws IOException {
+        Event[] events = createEvents(100);
+        events[10] = null;
+        events[20] = new Event();
+        Event[] result = (Event[]) stateSerializer.deserialize(stateSerializer.serialize(events));
+        Assert.assertTrue(Arrays.equals(events, result));
+
+        Event event = events[5];
+        Assert.assertEquals(event, stateSerializer.deserialize(stateSerializer.serialize(event)));
+    }
+
+    @Test
+    public void testOtherSerializableObjectsRoundTrip() throws IOException {
+        TreeMap<String, Object> state = new TreeMap<String, Object>();
+        state.put("date", new Date(1000));
+        state.put("values", new int[]{1, 2});
+        HashMap<String, Object> wrapper = new HashMap<String, Object>();
+        wrapper.put("state", state);
+
+        HashMap<String, Object> result = (HashMap<String, Object>)
+                stateSerializer.deserialize(stateSerializer.serialize(wrapper));
+        TreeMap<String, Object> resultState = (TreeMap<String, Object>) result.get("state");
+        Assert.assertEquals(new Date(1000), resultState.get("date"));
+        Assert.assertTrue(Arrays.equals(new int[]{1, 2}, (int[]) resultState.get("values")));
+    }
+
+    @Test
+    public void testNonSerializableObjectIsRejected() {
+        try {
+            stateSerializer.serialize(new Object[]{new Object()});
+            Assert.fail("Serialized an object which is not serializable");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testStatesSerializedWithJavaSerializationAreDeserialized() throws IOException {
+        // States persisted or synced before the binary serializer were written with an ObjectOutputStream
+        HashMap<Integer, HashMap<String, byte[]>> receiverState = new HashMap<Integer, HashMap<String, byte[]>>();
+        HashMap<String, byte[]> tenantState = new HashMap<String, byte[]>();
+        tenantState.put("receiver", new byte[]{4, 5, 6});
+        receiverState.put(-1234, tenantState);
+        Object[] processorState = new Object[]{"executionPlan", 10L, new TreeMap<String, Integer>()};
+
+        for (Object state : new Object[]{receiverState, processorState}) {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+            objectOutputStream.writeObject(state);
+            objectOutputStream.close();
+            byte[] legacyState = byteArrayOutputStream.toByteArray();
+
+            Assert.assertTrue(Arrays.equals(legacyState, new JavaStateSerializer().serialize(state)));
+            Object result = stateSerializer.deserialize(legacyState);
+            if (state instanceof Object[]) {
+                Assert.assertTrue(Arrays.deepEquals((Object[]) state, (Object[]) result));
+            } else {
+                Assert.assertTrue(Arrays.equals(new byte[]{4, 5, 6},
+                        ((HashMap<Integer, HashMap<String, byte[]>>) result).get(-1234).get("receiver")));
+            }
+        }
+    }
+
+    @Test
+    public void testEventsAreSmallerThanWithJavaSerialization() throws IOException {
+        ArrayList<Object[]> events = new ArrayList<Object[]>();
+        for (Event event : createEvents(1000)) {
+            events.add(event.getPayloadData());
+        }
+        int binarySize = stateSerializer.serialize(events).length;
+        int javaSize = new JavaStateSerializer().serialize(events).length;
+        Assert.assertTrue("Binary size " + binarySize + " is not smaller than " + javaSize, binarySize < javaSize);
+    }
+
+    @Test
+    public void testCorruptedStateIsRejected() throws IOException {
+        byte[] bytes = stateSerializer.serialize(createEvents(10));
+        try {
+            stateSerializer.deserialize(Arrays.copyOf(bytes, bytes.length - 3));
+            Assert.fail("Deserialized a truncated state");
+        } catch (IOException expected) {
+        }
+        bytes[2] = 99;
+        try {
+            stateSerializer.deserialize(bytes);
+            Assert.fail("Deserialized a state of an unknown type");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static Event[] createEvents(int count) {
+        Event[] events = new Event[count];
+        for (int i = 0; i < count; i++) {
+            Map<String, String> arbitraryDataMap = null;
+            if (i % 2 == 0) {
+                arbitraryDataMap = new HashMap<String, String>();
+                arbitraryDataMap.put("key" + i, "value" + i);
+            }
+            events[i] = new Event("TestStream:1.0.0", i, new Object[]{"host" + i}, null,
+                    new Object[]{i, (long) i, (float) i, (double) i, i % 3 == 0, "payload" + i, null},
+                    arbitraryDataMap);
+        }
+        return events;
+    }
+}
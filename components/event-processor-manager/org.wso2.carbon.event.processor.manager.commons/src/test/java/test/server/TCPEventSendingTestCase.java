@@ -23,7 +23,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.Before;
 import org.junit.Test;
+import org.wso2.carbon.event.processor.manager.commons.transport.client.EncodedEvent;
 import org.wso2.carbon.event.processor.manager.commons.transport.client.TCPEventPublisher;
+import org.wso2.carbon.event.processor.manager.commons.transport.client.TCPEventPublisherConfig;
 import org.wso2.carbon.event.processor.manager.commons.transport.server.StreamCallback;
 import org.wso2.carbon.event.processor.manager.commons.transport.server.TCPEventServer;
 import org.wso2.carbon.event.processor.manager.commons.transport.server.TCPEventServerConfig;
@@ -35,6 +37,9 @@ import test.util.SimpleDataProvider;
 
 import java.io.IOException;
 import java.net.BindException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
@@ -285,6 +290,271 @@ public class TCPEventSendingTestCase {
         }
     }
 
+    @Test
+    public void testBatchedAndCompressedEventSendingToServer() throws InterruptedException, IOException {
+        String hostname = "0.0.0.0";
+        int port = 7658;
+
+        StreamDefinition streamDefinition = StreamDefinition.id("analyticsStats")
+                .attribute("meta_ipAdd", Attribute.Type.STRING)
+                .attribute("meta_index", Attribute.Type.LONG)
+                .attribute("meta_timestamp", Attribute.Type.LONG)
+                .attribute("meta_nanoTime", Attribute.Type.LONG)
+                .attribute("userID", Attribute.Type.STRING)
+                .attribute("searchTerms", Attribute.Type.STRING);
+
+        TestStreamCallback streamCallback = new TestStreamCallback();
+        TCPEventServer tcpEventServer = new TCPEventServer(new TCPEventServerConfig(hostname, port), streamCallback, null);
+        try {
+            tcpEventServer.addStreamDefinition(streamDefinition);
+            tcpEventServer.start();
+            Thread.sleep(1000);
+
+            TCPEventPublisherConfig publisherConfig = new TCPEventPublisherConfig();
+            publisherConfig.setBatchMaxEvents(50);
+            publisherConfig.setBatchMaxLingerTime(100);
+            publisherConfig.setBatchCompressionEnabled(true);
+            TCPEventPublisher tcpEventPublisher = new TCPEventPublisher(hostname + ":" + port, publisherConfig, false, null);
+            try {
+                tcpEventPublisher.addStreamDefinition(streamDefinition);
+                DataProvider dataProvider = new AnalyticStatDataProvider();
+                for (int i = 0; i < 1000; i++) {
+                    tcpEventPublisher.sendEvent(streamDefinition.getId(), System.currentTimeMillis(), dataProvider.getEvent(),
+                            dataProvider.getArbitraryAttributeMap(), false);
+                }
+                // a batch that is not full is sent once the linger time passes
+                tcpEventPublisher.sendEvent(streamDefinition.getId(), System.currentTimeMillis(), dataProvider.getEvent(), false);
+                Thread.sleep(1000);
+                Assert.assertEquals(1001, streamCallback.getEventCount());
+            } finally {
+                tcpEventPublisher.shutdown();
+            }
+        } finally {
+            log.info("Shutting down server...");
+            tcpEventServer.shutdown();
+        }
+    }
+
+    @Test
+    public void testEventSendingWithInternedStreamIdsToServer() throws InterruptedException, IOException {
+        String hostname = "0.0.0.0";
+        int port = 7659;
+
+        StreamDefinition streamDefinition = StreamDefinition.id("TestStream")
+                .attribute("att1", Attribute.Type.INT)
+                .attribute("att2", Attribute.Type.FLOAT)
+                .attribute("att3", Attribute.Type.STRING)
+                .attribute("att4", Attribute.Type.INT);
+        StreamDefinition anotherStreamDefinition = StreamDefinition.id("AnotherTestStream")
+                .attribute("att1", Attribute.Type.STRING);
+
+        TestStreamCallback streamCallback = new TestStreamCallback();
+        TCPEventServer tcpEventServer = new TCPEventServer(new TCPEventServerConfig(hostname, port), streamCallback, null);
+        try {
+            tcpEventServer.addStreamDefinition(streamDefinition);
+            tcpEventServer.addStreamDefinition(anotherStreamDefinition);
+            tcpEventServer.start();
+            Thread.sleep(1000);
+
+            TCPEventPublisherConfig publisherConfig = new TCPEventPublisherConfig();
+            publisherConfig.setStreamIdInterningEnabled(true);
+            TCPEventPublisher tcpEventPublisher = new TCPEventPublisher(hostname + ":" + port, publisherConfig, true, null);
+            try {
+                tcpEventPublisher.addStreamDefinition(streamDefinition);
+                DataProvider dataProvider = new SimpleDataProvider();
+                for (int i = 0; i < 100; i++) {
+                    tcpEventPublisher.sendEvent(streamDefinition.getId(), System.currentTimeMillis(), dataProvider.getEvent(),
+                            dataProvider.getArbitraryAttributeMap(), i % 10 == 0);
+                }
+                // a stream added after the connection is established gets declared along with its first event
+                tcpEventPublisher.addStreamDefinition(anotherStreamDefinition);
+                for (int i = 0; i < 100; i++) {
+                    tcpEventPublisher.sendEvent(anotherStreamDefinition.getId(), System.currentTimeMillis(),
+                            new Object[]{"Abcdefghijklmnop" + i}, true);
+                }
+                Thread.sleep(1000);
+                Assert.assertEquals(200, streamCallback.getEventCount());
+            } finally {
+                tcpEventPublisher.shutdown();
+            }
+        } finally {
+            log.info("Shutting down server...");
+            tcpEventServer.shutdown();
+        }
+    }
+
+    @Test
+    public void testEncodedEventSendingThroughMultiplePublishersToServer() throws InterruptedException, IOException {
+        String hostname = "0.0.0.0";
+        int port = 7661;
+
+        StreamDefinition streamDefinition = StreamDefinition.id("TestStream")
+                .attribute("att1", Attribute.Type.INT)
+                .attribute("att2", Attribute.Type.FLOAT)
+                .attribute("att3", Attribute.Type.STRING)
+                .attribute("att4", Attribute.Type.INT);
+
+        TestStreamCallback streamCallback = new TestStreamCallback();
+        TCPEventServer tcpEventServer = new TCPEventServer(new TCPEventServerConfig(hostname, port), streamCallback, null);
+        try {
+            tcpEventServer.addStreamDefinition(streamDefinition);
+            tcpEventServer.start();
+            Thread.sleep(1000);
+
+            TCPEventPublisherConfig publisherConfig = new TCPEventPublisherConfig();
+            publisherConfig.setStreamIdInterningEnabled(true);
+            TCPEventPublisher tcpEventPublisher = new TCPEventPublisher(hostname + ":" + port, false, null);
+            TCPEventPublisher anotherTcpEventPublisher = new TCPEventPublisher(hostname + ":" + port, publisherConfig, true, null);
+            try {
+                tcpEventPublisher.addStreamDefinition(streamDefinition);
+                anotherTcpEventPublisher.addStreamDefinition(streamDefinition);
+                DataProvider dataProvider = new SimpleDataProvider();
+                for (int i = 0; i < 100; i++) {
+                    EncodedEvent encodedEvent = tcpEventPublisher.encodeEvent(streamDefinition.getId(),
+                            System.currentTimeMillis(), dataProvider.getEvent(), dataProvider.getArbitraryAttributeMap());
+                    tcpEventPublisher.sendEvent(encodedEvent, true);
+                    anotherTcpEventPublisher.sendEvent(encodedEvent, true);
+                }
+                Thread.sleep(1000);
+                Assert.assertEquals(200, streamCallback.getEventCount());
+            } finally {
+                tcpEventPublisher.shutdown();
+                anotherTcpEventPublisher.shutdown();
+            }
+        } finally {
+            log.info("Shutting down server...");
+            tcpEventServer.shutdown();
+        }
+    }
+
+    @Test
+    public void testEventSendingBeforeStreamDefinitionIsAddedToServer() throws InterruptedException, IOException {
+        String hostname = "0.0.0.0";
+        int port = 7660;
+
+        StreamDefinition streamDefinition = StreamDefinition.id("TestStream")
+                .attribute("att1", Attribute.Type.INT)
+                .attribute("att2", Attribute.Type.FLOAT)
+                .attribute("att3", Attribute.Type.STRING)
+                .attribute("att4", Attribute.Type.INT);
+
+        TestStreamCallback streamCallback = new TestStreamCallback();
+        TCPEventServer tcpEventServer = new TCPEventServer(new TCPEventServerConfig(hostname, port), streamCallback, null);
+        try {
+            tcpEventServer.start();
+            Thread.sleep(1000);
+
+            TCPEventPublisher tcpEventPublisher = new TCPEventPublisher(hostname + ":" + port, true, null);
+            try {
+                tcpEventPublisher.addStreamDefinition(streamDefinition);
+                DataProvider dataProvider = new SimpleDataProvider();
+                for (int i = 0; i < 100; i++) {
+                    tcpEventPublisher.sendEvent(streamDefinition.getId(), System.currentTimeMillis(), dataProvider.getEvent(), true);
+                }
+                Thread.sleep(500);
+                Assert.assertEquals(0, streamCallback.getEventCount());
+                // the waiting connection resumes as soon as the definition is added
+                tcpEventServer.addStreamDefinition(streamDefinition);
+                Thread.sleep(200);
+                Assert.assertEquals(100, streamCallback.getEventCount());
+            } finally {
+                tcpEventPublisher.shutdown();
+            }
+        } finally {
+            log.info("Shutting down server...");
+            tcpEventServer.shutdown();
+        }
+    }
+
+    @Test
+    public void testOversizedFramesAreRejectedByServer() throws InterruptedException, IOException {
+        String hostname = "0.0.0.0";
+        int port = 7661;
+
+        StreamDefinition streamDefinition = StreamDefinition.id("TestStream")
+                .attribute("att1", Attribute.Type.STRING);
+
+        TestStreamCallback streamCallback = new TestStreamCallback();
+        TCPEventServerConfig tcpEventServerConfig = new TCPEventServerConfig(hostname, port);
+        tcpEventServerConfig.setMaxFrameSize(1024);
+        TCPEventServer tcpEventServer = new TCPEventServer(tcpEventServerConfig, streamCallback, null);
+        try {
+            tcpEventServer.addStreamDefinition(streamDefinition);
+            tcpEventServer.start();
+            Thread.sleep(1000);
+
+            // a stream id larger than the maximum frame size
+            assertConnectionClosed(port, ByteBuffer.allocate(4).putInt(2048).array());
+
+            // an event whose string attribute makes it larger than the maximum frame size
+            byte[] streamId = streamDefinition.getId().getBytes();
+            ByteBuffer frame = ByteBuffer.allocate(4 + streamId.length + 16);
+            frame.putInt(streamId.length).put(streamId).putLong(System.currentTimeMillis()).putInt(0).putInt(4096);
+            assertConnectionClosed(port, frame.array());
+
+            // compressed batches decompressing to, or compressed to, more than the maximum frame size
+            assertConnectionClosed(port, ByteBuffer.allocate(12).putInt(TCPEventPublisher.COMPRESSED_BATCH_HEADER_VALUE)
+                    .putInt(Integer.MAX_VALUE).putInt(16).array());
+            assertConnectionClosed(port, ByteBuffer.allocate(12).putInt(TCPEventPublisher.COMPRESSED_BATCH_HEADER_VALUE)
+                    .putInt(16).putInt(4096).array());
+
+            // an event within the maximum frame size is still accepted
+            TCPEventPublisher tcpEventPublisher = new TCPEventPublisher(hostname + ":" + port, true, null);
+            try {
+                tcpEventPublisher.addStreamDefinition(streamDefinition);
+                tcpEventPublisher.sendEvent(streamDefinition.getId(), System.currentTimeMillis(),
+                        new Object[]{new String(new char[512])}, true);
+                Thread.sleep(500);
+                Assert.assertEquals(1, streamCallback.getEventCount());
+            } finally {
+                tcpEventPublisher.shutdown();
+            }
+        } finally {
+            tcpEventServer.shutdown();
+        }
+    }
+
+    @Test
+    public void testInternedStreamsPerConnectionAreBoundedByServer() throws InterruptedException, IOException {
+        String hostname = "0.0.0.0";
+        int port = 7662;
+
+        TCPEventServerConfig tcpEventServerConfig = new TCPEventServerConfig(hostname, port);
+        tcpEventServerConfig.setMaxInternedStreamsPerConnection(2);
+        TCPEventServer tcpEventServer = new TCPEventServer(tcpEventServerConfig, new TestStreamCallback(), null);
+        try {
+            tcpEventServer.start();
+            Thread.sleep(1000);
+
+            byte[] streamId = "TestStream:1.0.0".getBytes();
+            ByteBuffer declarations = ByteBuffer.allocate(3 * (12 + streamId.length));
+            for (int i = 0; i < 3; i++) {
+                // the ids are far apart, which must not grow the table of the connection with them
+                declarations.putInt(TCPEventPublisher.STREAM_DECLARATION_HEADER_VALUE).putInt(i * 100000000)
+                        .putInt(streamId.length).put(streamId);
+            }
+            assertConnectionClosed(port, declarations.array());
+        } finally {
+            tcpEventServer.shutdown();
+        }
+    }
+
+    static void assertConnectionClosed(int port, byte[] bytes) throws IOException {
+        Socket socket = new Socket("localhost", port);
+        try {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(bytes);
+            socket.getOutputStream().flush();
+            try {
+                Assert.assertEquals(-1, socket.getInputStream().read());
+            } catch (SocketException ignored) {
+                // connection reset by the server
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
     private static class TestStreamCallback implements StreamCallback {
         AtomicInteger eventCount = new AtomicInteger(0);
 
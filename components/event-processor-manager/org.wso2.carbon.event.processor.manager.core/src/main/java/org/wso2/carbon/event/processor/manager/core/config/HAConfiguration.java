@@ -47,6 +47,11 @@ public class HAConfiguration implements Serializable {
     private int eventSyncPublisherQueueSize = 1000000;
     private int eventSyncReceiverMaxQueueSizeInMb = 50;
     private int eventSyncPublisherMaxQueueSizeInMb = 50;
+    private int eventSyncPublisherBatchMaxEvents = 1000;
+    private int eventSyncPublisherBatchMaxBytes = 65536;
+    private long eventSyncPublisherBatchMaxLingerTime = 0;
+    private boolean eventSyncPublisherBatchCompressionEnabled = false;
+    private boolean eventSyncPublisherStreamIdInterningEnabled = false;
 
     //presentation
     private int presentationPublisherTcpSendBufferSize = 5242880;
@@ -224,6 +229,11 @@ public class HAConfiguration implements Serializable {
         tcpEventPublisherConfig.setConnectionStatusCheckInterval(getEventSyncPublisherConnectionStatusCheckInterval());
         tcpEventPublisherConfig.setCharset(getEventSyncPublisherCharSet());
         tcpEventPublisherConfig.setTcpSendBufferSize(getEventSyncPublisherTcpSendBufferSize());
+        tcpEventPublisherConfig.setBatchMaxEvents(getEventSyncPublisherBatchMaxEvents());
+        tcpEventPublisherConfig.setBatchMaxBytes(getEventSyncPublisherBatchMaxBytes());
+        tcpEventPublisherConfig.setBatchMaxLingerTime(getEventSyncPublisherBatchMaxLingerTime());
+        tcpEventPublisherConfig.setBatchCompressionEnabled(isEventSyncPublisherBatchCompressionEnabled());
+        tcpEventPublisherConfig.setStreamIdInterningEnabled(isEventSyncPublisherStreamIdInterningEnabled());
         return tcpEventPublisherConfig;
     }
 
@@ -268,4 +278,44 @@ public class HAConfiguration implements Serializable {
     public void setEventSyncPublisherMaxQueueSizeInMb(int eventSyncPublisherMaxQueueSizeInMb) {
         this.eventSyncPublisherMaxQueueSizeInMb = eventSyncPublisherMaxQueueSizeInMb;
     }
+
+    public int getEventSyncPublisherBatchMaxEvents() {
+        return eventSyncPublisherBatchMaxEvents;
+    }
+
+    public void setEventSyncPublisherBatchMaxEvents(int eventSyncPublisherBatchMaxEvents) {
+        this.eventSyncPublisherBatchMaxEvents = eventSyncPublisherBatchMaxEvents;
+    }
+
+    public int getEventSyncPublisherBatchMaxBytes() {
+        return eventSyncPublisherBatchMaxBytes;
+    }
+
+    public void setEventSyncPublisherBatchMaxBytes(int eventSyncPublisherBatchMaxBytes) {
+        this.eventSyncPublisherBatchMaxBytes = eventSyncPublisherBatchMaxBytes;
+    }
+
+    public long getEventSyncPublisherBatchMaxLingerTime() {
+        return eventSyncPublisherBatchMaxLingerTime;
+    }
+
+    public void setEventSyncPublisherBatchMaxLingerTime(long eventSyncPublisherBatchMaxLingerTime) {
+        this.eventSyncPublisherBatchMaxLingerTime = eventSyncPublisherBatchMaxLingerTime;
+    }
+
+    public boolean isEventSyncPublisherBatchCompressionEnabled() {
+        return eventSyncPublisherBatchCompressionEnabled;
+    }
+
+    public void setEventSyncPublisherBatchCompressionEnabled(boolean eventSyncPublisherBatchCompressionEnabled) {
+        this.eventSyncPublisherBatchCompressionEnabled = eventSyncPublisherBatchCompressionEnabled;
+    }
+
+    public boolean isEventSyncPublisherStreamIdInterningEnabled() {
+        return eventSyncPublisherStreamIdInterningEnabled;
+    }
+
+    public void setEventSyncPublisherStreamIdInterningEnabled(boolean eventSyncPublisherStreamIdInterningEnabled) {
+        this.eventSyncPublisherStreamIdInterningEnabled = eventSyncPublisherStreamIdInterningEnabled;
+    }
 }
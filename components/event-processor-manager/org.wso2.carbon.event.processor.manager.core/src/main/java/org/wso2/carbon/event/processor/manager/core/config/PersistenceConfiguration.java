@@ -28,6 +28,10 @@ public class PersistenceConfiguration implements Serializable {
     private long persistenceTimeInterval;
     private Map propertiesMap = new HashMap();
     private boolean isPersistenceEnabled;
+    private boolean isIncrementalPersistenceEnabled;
+    private String checkpointLocation;
+    private int fullCheckpointInterval;
+    private int retainedFullCheckpoints;
 
     public PersistenceConfiguration(String persistenceClass, long persistenceTimeInterval, int threadPoolSize, Map propertiesMap, boolean isPersistenceEnabled) {
         this.persistenceClass = persistenceClass;
@@ -57,4 +61,43 @@ public class PersistenceConfiguration implements Serializable {
         return isPersistenceEnabled;
     }
 
+    public boolean isIncrementalPersistenceEnabled() {
+        return isIncrementalPersistenceEnabled;
+    }
+
+    public void setIncrementalPersistenceEnabled(boolean isIncrementalPersistenceEnabled) {
+        this.isIncrementalPersistenceEnabled = isIncrementalPersistenceEnabled;
+    }
+
+    public String getCheckpointLocation() {
+        return checkpointLocation;
+    }
+
+    public void setCheckpointLocation(String checkpointLocation) {
+        this.checkpointLocation = checkpointLocation;
+    }
+
+    /**
+     * @return the number of checkpoints taken from one full checkpoint to the next, the checkpoints in between
+     * only hold the state changed since the previous checkpoint
+     */
+    public int getFullCheckpointInterval() {
+        return fullCheckpointInterval;
+    }
+
+    public void setFullCheckpointInterval(int fullCheckpointInterval) {
+        this.fullCheckpointInterval = fullCheckpointInterval;
+    }
+
+    /**
+     * @return the number of full checkpoints retained along with their incremental checkpoints
+     */
+    public int getRetainedFullCheckpoints() {
+        return retainedFullCheckpoints;
+    }
+
+    public void setRetainedFullCheckpoints(int retainedFullCheckpoints) {
+        this.retainedFullCheckpoints = retainedFullCheckpoints;
+    }
+
 }
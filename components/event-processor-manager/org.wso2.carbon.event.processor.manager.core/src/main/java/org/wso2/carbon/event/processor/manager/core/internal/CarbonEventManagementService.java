@@ -66,7 +66,9 @@ public class CarbonEventManagementService implements EventManagementService {
     private ScheduledExecutorService executorService = new ScheduledThreadPoolExecutor(3);
 
     private HAManager haManager = null;
-    private IMap<String, Long> haEventPublisherTimeSyncMap = null;
+    private final EventPublisherTimeSync eventPublisherTimeSync = new EventPublisherTimeSync();
+    // Difference between the hazelcast cluster time and the local clock.
+    private volatile long clusterTimeOffset = 0;
 
     private PersistenceManager persistenceManager = null;
 
@@ -98,7 +100,8 @@ public class CarbonEventManagementService implements EventManagementService {
                             .newScheduledThreadPool(persistConfig.getThreadPoolSize());
                     long persistenceTimeInterval = persistConfig.getPersistenceTimeInterval();
                     if (persistenceTimeInterval > 0) {
-                        persistenceManager = new PersistenceManager(scheduledExecutorService, persistenceTimeInterval);
+                        persistenceManager = new PersistenceManager(scheduledExecutorService,
+                                persistenceTimeInterval, persistConfig);
                     }
                 }
                 receiverEventHandler.startServer(haConfiguration.getEventSyncConfig());
@@ -132,6 +135,14 @@ public class CarbonEventManagementService implements EventManagementService {
     }
 
     public void init(HazelcastInstance hazelcastInstance) {
+        syncClusterTimeOffset();
+        executorService.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                syncClusterTimeOffset();
+            }
+        }, ConfigurationConstants.CLUSTER_TIME_SYNC_INTERVAL_IN_MILLISECONDS,
+                ConfigurationConstants.CLUSTER_TIME_SYNC_INTERVAL_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
         if (mode == Mode.HA) {
             HAConfiguration haConfiguration = managementModeInfo.getHaConfiguration();
             if (isWorkerNode) {
@@ -139,9 +150,7 @@ public class CarbonEventManagementService implements EventManagementService {
                         haConfiguration.constructEventSyncPublisherConfig(), isWorkerNode);
                 haManager = new HAManager(hazelcastInstance, haConfiguration, executorService, receiverEventHandler, presenterEventHandler);
                 haManager.init();
-                if (haEventPublisherTimeSyncMap == null) {
-                    haEventPublisherTimeSyncMap = EventManagementServiceValueHolder.getHazelcastInstance().getMap(ConfigurationConstants.HA_EVENT_PUBLISHER_TIME_SYNC_MAP);
-                }
+                initEventPublisherTimeSync();
             }
             presenterEventHandler.init(ConfigurationConstants.PRESENTERS, haConfiguration.getLocalPresenterConfig(),
                     haConfiguration.constructPresenterPublisherConfig(), isPresenterNode && !isWorkerNode);
@@ -242,6 +251,9 @@ public class CarbonEventManagementService implements EventManagementService {
         if (haManager != null) {
             haManager.shutdown();
         }
+        if (eventPublisherTimeSync.isStarted()) {
+            eventPublisherTimeSync.flush();
+        }
         if (executorService != null) {
             executorService.shutdown();
         }
@@ -252,10 +264,10 @@ public class CarbonEventManagementService implements EventManagementService {
         presenterEventHandler.shutdown();
     }
 
-    public byte[] getState() {
+    public byte[] getState(long baseVersion) {
         if (mode == Mode.HA) {
             if (isWorkerNode) {
-                return haManager.getState();
+                return haManager.getState(baseVersion);
             }
         }
         return null;
@@ -338,27 +350,57 @@ public class CarbonEventManagementService implements EventManagementService {
     }
 
 
+    /**
+     * Starts listening to the event sent times published by the other members and schedules writing the
+     * locally updated event sent times to the time sync map. Hence publishers neither write to nor read from
+     * the cluster per event, and the times seen by the passive node lag by at most one sync interval.
+     */
+    private synchronized void initEventPublisherTimeSync() {
+        if (eventPublisherTimeSync.isStarted()) {
+            return;
+        }
+        IMap<String, Long> haEventPublisherTimeSyncMap = EventManagementServiceValueHolder.getHazelcastInstance()
+                .getMap(ConfigurationConstants.HA_EVENT_PUBLISHER_TIME_SYNC_MAP);
+        eventPublisherTimeSync.start(haEventPublisherTimeSyncMap);
+        executorService.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    eventPublisherTimeSync.flush();
+                } catch (Exception e) {
+                    log.error("Error while syncing the latest event sent times of the event publishers", e);
+                }
+            }
+        }, ConfigurationConstants.HA_EVENT_PUBLISHER_TIME_SYNC_INTERVAL_IN_MILLISECONDS,
+                ConfigurationConstants.HA_EVENT_PUBLISHER_TIME_SYNC_INTERVAL_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+    }
+
+    private void syncClusterTimeOffset() {
+        HazelcastInstance hazelcastInstance = EventManagementServiceValueHolder.getHazelcastInstance();
+        if (hazelcastInstance != null) {
+            clusterTimeOffset = hazelcastInstance.getCluster().getClusterTime() - System.currentTimeMillis();
+        }
+    }
+
     @Override
     public void updateLatestEventSentTime(String publisherName, int tenantId, long timestamp) {
-        haEventPublisherTimeSyncMap.putAsync(tenantId + "-" + publisherName, EventManagementServiceValueHolder.getHazelcastInstance().getCluster().getClusterTime());
+        eventPublisherTimeSync.update(tenantId + "-" + publisherName, timestamp);
     }
 
     @Override
     public long getLatestEventSentTime(String publisherName, int tenantId) {
-        if (haEventPublisherTimeSyncMap == null) {
-            haEventPublisherTimeSyncMap = EventManagementServiceValueHolder.getHazelcastInstance()
-                    .getMap(ConfigurationConstants.HA_EVENT_PUBLISHER_TIME_SYNC_MAP);
-        }
-        Long latestTimePublished = haEventPublisherTimeSyncMap.get(tenantId + "-" + publisherName);
+        String key = tenantId + "-" + publisherName;
+        Long latestTimePublished = eventPublisherTimeSync.getLocal(key);
         if (latestTimePublished != null) {
             return latestTimePublished;
         }
-        return 0;
+        initEventPublisherTimeSync();
+        return eventPublisherTimeSync.lookup(key);
     }
 
     @Override
     public long getClusterTimeInMillis() {
-        return EventManagementServiceValueHolder.getHazelcastInstance().getCluster().getClusterTime();
+        return System.currentTimeMillis() + clusterTimeOffset;
     }
 
     public void initPersistence() {
@@ -372,4 +414,12 @@ public class CarbonEventManagementService implements EventManagementService {
             persistenceManager.shutdown();
         }
     }
+
+    public void restoreLastState() {
+        if (persistenceManager != null) {
+            persistenceManager.restoreLastState();
+        } else if (processorManager != null) {
+            processorManager.restoreLastState();
+        }
+    }
 }
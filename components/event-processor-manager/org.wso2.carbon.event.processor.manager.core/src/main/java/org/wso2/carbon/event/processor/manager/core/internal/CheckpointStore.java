@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.event.processor.manager.core.internal;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.processor.manager.core.exception.EventManagementException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * File system store of the checkpoints taken by the {@link PersistenceManager}. Each checkpoint is a
+ * {@link StateSnapshot} stored in its own file named after the snapshot version, which is either a full snapshot
+ * or a delta of the checkpoint before it, as told by the file extension. A checkpoint is written to a temporary
+ * file first, so that a partially written checkpoint is never restored.
+ */
+class CheckpointStore {
+    private static final Log log = LogFactory.getLog(CheckpointStore.class);
+    private static final String FULL_SUFFIX = ".full";
+    private static final String DELTA_SUFFIX = ".delta";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+
+    CheckpointStore(String location) {
+        this.directory = new File(location);
+    }
+
+    /**
+     * @return the version of the latest checkpoint in the store, or {@link StateSnapshot#NO_VERSION} if there is none
+     */
+    synchronized long getLastVersion() {
+        long[] versions = getVersions(false);
+        return versions.length > 0 ? versions[versions.length - 1] : StateSnapshot.NO_VERSION;
+    }
+
+    synchronized void save(long version, boolean full, byte[] checkpoint) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create checkpoint directory " + directory.getAbsolutePath());
+        }
+        String fileName = version + (full ? FULL_SUFFIX : DELTA_SUFFIX);
+        File tempFile = new File(directory, fileName + TEMP_SUFFIX);
+        OutputStream out = new FileOutputStream(tempFile);
+        try {
+            out.write(checkpoint);
+        } finally {
+            out.close();
+        }
+        File file = new File(directory, fileName);
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Cannot move checkpoint " + version + " to " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Restores the latest snapshot that can be rebuilt from the stored checkpoints, by applying the deltas on top
+     * of the last full checkpoint preceding them. Checkpoints that cannot be read or applied are skipped, along with
+     * the deltas depending on them.
+     *
+     * @return the latest restorable snapshot, or null if there is none
+     */
+    synchronized StateSnapshot restore() {
+        StateSnapshot snapshot = null;
+        for (long version : getVersions(false)) {
+            try {
+                snapshot = StateSnapshot.decode(read(version), snapshot);
+            } catch (IOException e) {
+                log.warn("Skipping checkpoint " + version + ", " + e.getMessage());
+            } catch (EventManagementException e) {
+                log.warn("Skipping checkpoint " + version + ", " + e.getMessage());
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Deletes the checkpoints preceding the oldest of the given number of latest full checkpoints.
+     */
+    synchronized void purge(int retainedFullCheckpoints) {
+        long[] fullVersions = getVersions(true);
+        if (fullVersions.length <= retainedFullCheckpoints) {
+            return;
+        }
+        long oldestRetainedVersion = fullVersions[fullVersions.length - retainedFullCheckpoints];
+        for (long version : getVersions(false)) {
+            if (version >= oldestRetainedVersion) {
+                return;
+            }
+            File file = getFile(version);
+            if (file != null && !file.delete()) {
+                log.warn("Cannot delete checkpoint " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    private byte[] read(long version) throws IOException {
+        File file = getFile(version);
+        if (file == null) {
+            throw new IOException("Checkpoint file removed while reading");
+        }
+        byte[] checkpoint = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < checkpoint.length) {
+                int readCount = in.read(checkpoint, offset, checkpoint.length - offset);
+                if (readCount == -1) {
+                    throw new IOException("Checkpoint file " + file.getName() + " truncated while reading");
+                }
+                offset += readCount;
+            }
+        } finally {
+            in.close();
+        }
+        return checkpoint;
+    }
+
+    private File getFile(long version) {
+        File file = new File(directory, version + FULL_SUFFIX);
+        if (file.exists()) {
+            return file;
+        }
+        file = new File(directory, version + DELTA_SUFFIX);
+        return file.exists() ? file : null;
+    }
+
+    /**
+     * @param fullOnly whether only the versions of the full checkpoints are needed
+     * @return the sorted versions of the stored checkpoints
+     */
+    private long[] getVersions(final boolean fullOnly) {
+        String[] fileNames = directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(FULL_SUFFIX) || (!fullOnly && name.endsWith(DELTA_SUFFIX));
+            }
+        });
+        if (fileNames == null) {
+            return new long[0];
+        }
+        List<Long> versions = new ArrayList<Long>(fileNames.length);
+        for (String fileName : fileNames) {
+            try {
+                versions.add(Long.parseLong(fileName.substring(0, fileName.lastIndexOf('.'))));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring unknown file " + fileName + " in " + directory.getAbsolutePath());
+            }
+        }
+        long[] sortedVersions = new long[versions.size()];
+        for (int i = 0; i < sortedVersions.length; i++) {
+            sortedVersions[i] = versions.get(i);
+        }
+        Arrays.sort(sortedVersions);
+        return sortedVersions;
+    }
+}
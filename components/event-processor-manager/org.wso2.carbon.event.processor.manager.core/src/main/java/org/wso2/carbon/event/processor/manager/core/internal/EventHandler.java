@@ -20,10 +20,10 @@ package org.wso2.carbon.event.processor.manager.core.internal;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
 import com.hazelcast.core.Member;
-import org.apache.commons.lang.ArrayUtils;
 import org.apache.log4j.Logger;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.event.processor.manager.commons.transport.client.EncodedEvent;
 import org.wso2.carbon.event.processor.manager.commons.transport.client.TCPEventPublisher;
 import org.wso2.carbon.event.processor.manager.commons.transport.client.TCPEventPublisherConfig;
 import org.wso2.carbon.event.processor.manager.commons.transport.server.StreamCallback;
@@ -92,11 +92,16 @@ public class EventHandler {
 
     public void syncEvent(String syncId, Event event) {
         if (allowEventSync) {
+            // the event is encoded once by the first publisher and the encoded event is shared by all the publishers
+            EncodedEvent encodedEvent = null;
             for (TCPEventPublisher publisher : tcpEventPublisherPool.values()) {
                 if (publisher != null) {
                     try {
-                        Object[] eventData = ArrayUtils.addAll(ArrayUtils.addAll(event.getMetaData(), event.getCorrelationData()), event.getPayloadData());
-                        publisher.sendEvent(syncId, event.getTimeStamp(), eventData, event.getArbitraryDataMap(), true);
+                        if (encodedEvent == null) {
+                            encodedEvent = publisher.encodeEvent(syncId, event.getTimeStamp(), getEventData(event),
+                                    event.getArbitraryDataMap());
+                        }
+                        publisher.sendEvent(encodedEvent, true);
                     } catch (IOException e) {
                         log.error("Error sending sync events to " + syncId, e);
                     }
@@ -105,6 +110,26 @@ public class EventHandler {
         }
     }
 
+    private static Object[] getEventData(Event event) {
+        Object[] metaData = event.getMetaData();
+        Object[] correlationData = event.getCorrelationData();
+        Object[] payloadData = event.getPayloadData();
+        int metaDataLength = metaData != null ? metaData.length : 0;
+        int correlationDataLength = correlationData != null ? correlationData.length : 0;
+        int payloadDataLength = payloadData != null ? payloadData.length : 0;
+        Object[] eventData = new Object[metaDataLength + correlationDataLength + payloadDataLength];
+        if (metaDataLength > 0) {
+            System.arraycopy(metaData, 0, eventData, 0, metaDataLength);
+        }
+        if (correlationDataLength > 0) {
+            System.arraycopy(correlationData, 0, eventData, metaDataLength, correlationDataLength);
+        }
+        if (payloadDataLength > 0) {
+            System.arraycopy(payloadData, 0, eventData, metaDataLength + correlationDataLength, payloadDataLength);
+        }
+        return eventData;
+    }
+
 
     public synchronized void registerEventSync(EventSync eventSync) {
         if(allowContinueProcess){
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.core.internal;
+
+import com.hazelcast.core.EntryAdapter;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.IMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latest event sent times of the event publishers, which are shared with the other members through the time
+ * sync map. The times are served from a local map, which is kept up to date by a listener on the time sync map,
+ * and the locally updated times are written to the time sync map when flushed, instead of on every event.
+ */
+class EventPublisherTimeSync {
+    // Latest event sent times known to this node, kept up to date by the listener on the time sync map.
+    private final ConcurrentHashMap<String, Long> latestEventSentTimes = new ConcurrentHashMap<>();
+    // Event sent times updated locally, which are yet to be written to the time sync map.
+    private final ConcurrentHashMap<String, Long> pendingEventSentTimes = new ConcurrentHashMap<>();
+    private volatile IMap<String, Long> timeSyncMap = null;
+
+    /**
+     * Starts listening to the event sent times published by the other members.
+     *
+     * @param timeSyncMap the time sync map of the cluster.
+     * @return false if the time sync was already started.
+     */
+    synchronized boolean start(IMap<String, Long> timeSyncMap) {
+        if (this.timeSyncMap != null) {
+            return false;
+        }
+        timeSyncMap.addEntryListener(new EntryAdapter<String, Long>() {
+            @Override
+            public void entryAdded(EntryEvent<String, Long> event) {
+                updateLocal(event.getKey(), event.getValue());
+            }
+
+            @Override
+            public void entryUpdated(EntryEvent<String, Long> event) {
+                updateLocal(event.getKey(), event.getValue());
+            }
+        }, true);
+        this.timeSyncMap = timeSyncMap;
+        return true;
+    }
+
+    boolean isStarted() {
+        return timeSyncMap != null;
+    }
+
+    void update(String key, long timestamp) {
+        if (updateLocal(key, timestamp)) {
+            pendingEventSentTimes.put(key, latestEventSentTimes.get(key));
+        }
+    }
+
+    /**
+     * @return the latest event sent time known to this node, or null if the publisher has not been looked up yet.
+     */
+    Long getLocal(String key) {
+        return latestEventSentTimes.get(key);
+    }
+
+    /**
+     * Looks up the latest event sent time of a publisher that has not been seen yet from the time sync map, later
+     * updates arrive through the listener. Publishers unknown to the cluster are cached as 0 as well, so that they
+     * are not looked up again.
+     */
+    long lookup(String key) {
+        Long latestTimePublished = latestEventSentTimes.get(key);
+        if (latestTimePublished != null) {
+            return latestTimePublished;
+        }
+        latestTimePublished = timeSyncMap.get(key);
+        updateLocal(key, latestTimePublished != null ? latestTimePublished : 0L);
+        return latestEventSentTimes.get(key);
+    }
+
+    void flush() {
+        for (Map.Entry<String, Long> entry : pendingEventSentTimes.entrySet()) {
+            // Only the latest time of a publisher is written, a time updated meanwhile is written on the next sync.
+            if (pendingEventSentTimes.remove(entry.getKey(), entry.getValue())) {
+                timeSyncMap.putAsync(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private boolean updateLocal(String key, Long timestamp) {
+        if (timestamp == null) {
+            return false;
+        }
+        while (true) {
+            Long currentTimestamp = latestEventSentTimes.putIfAbsent(key, timestamp);
+            if (currentTimestamp == null) {
+                return true;
+            } else if (currentTimestamp >= timestamp) {
+                return false;
+            } else if (latestEventSentTimes.replace(key, currentTimestamp, timestamp)) {
+                return true;
+            }
+        }
+    }
+}
@@ -24,7 +24,6 @@ import org.apache.thrift.server.TServer;
 import org.apache.thrift.server.TThreadPoolServer;
 import org.apache.thrift.transport.TServerSocket;
 import org.apache.thrift.transport.TTransportException;
-import org.wso2.carbon.event.processor.manager.commons.utils.ByteSerializer;
 import org.wso2.carbon.event.processor.manager.commons.utils.HostAndPort;
 import org.wso2.carbon.event.processor.manager.core.EventProcessorManagementService;
 import org.wso2.carbon.event.processor.manager.core.EventPublisherManagementService;
@@ -40,8 +39,9 @@ import org.wso2.carbon.event.processor.manager.core.internal.thrift.service.Mana
 import org.wso2.carbon.event.processor.manager.core.internal.util.ConfigurationConstants;
 
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -65,6 +65,11 @@ public class HAManager {
     private String passiveId;
 
     private HAConfiguration otherMember;
+    private long snapshotVersion = new Random().nextLong();
+    // last snapshot sent by the active member and last snapshot received by the passive member, which are the bases
+    // of the snapshot deltas
+    private StateSnapshot lastSnapshot;
+    private StateSnapshot syncedSnapshot;
 
     public HAManager(HazelcastInstance hazelcastInstance, HAConfiguration haConfiguration,
                      ScheduledExecutorService executorService,
@@ -162,7 +167,7 @@ public class HAManager {
         haConfiguration.setActive(activeLockAcquired);
     }
 
-    public byte[] getState() {
+    public synchronized byte[] getState(long baseVersion) {
         CarbonEventManagementService eventManagementService = EventManagementServiceValueHolder
                 .getCarbonEventManagementService();
         EventReceiverManagementService eventReceiverManagementService = eventManagementService
@@ -171,7 +176,7 @@ public class HAManager {
                 .getEventProcessorManagementService();
         HAConfiguration passiveMember = roleToMembershipMap.get(passiveId);
         otherMember = passiveMember;
-        HashMap<Manager.ManagerType, byte[]> stateMap = new HashMap<Manager.ManagerType, byte[]>();
+        EnumMap<Manager.ManagerType, byte[]> stateMap = new EnumMap<Manager.ManagerType, byte[]>(Manager.ManagerType.class);
 
         receiverEventHandler.addEventPublisher(passiveMember.getEventSyncConfig());
 
@@ -182,16 +187,18 @@ public class HAManager {
         if (eventReceiverManagementService != null) {
             eventReceiverManagementService.pause();
             byte[] receiverState = eventReceiverManagementService.getState();
-            stateMap.put(Manager.ManagerType.Receiver, receiverState);
+            if (receiverState != null) {
+                stateMap.put(Manager.ManagerType.Receiver, receiverState);
+            }
         }
 
         if (eventProcessorManagementService != null) {
             byte[] processorState = eventProcessorManagementService.getState();
-            stateMap.put(Manager.ManagerType.Processor, processorState);
+            if (processorState != null) {
+                stateMap.put(Manager.ManagerType.Processor, processorState);
+            }
         }
 
-        byte[] state = ByteSerializer.OToB(stateMap);
-
         if (eventProcessorManagementService != null) {
             eventProcessorManagementService.resume();
         }
@@ -199,6 +206,26 @@ public class HAManager {
             eventReceiverManagementService.resume();
         }
 
+        // The snapshot is encoded after resuming, as the delta encoding doesn't need the managers to be paused
+        do {
+            ++snapshotVersion;
+        } while (!StateSnapshot.isSnapshotVersion(snapshotVersion));
+        StateSnapshot snapshot = new StateSnapshot(snapshotVersion, stateMap);
+        if (baseVersion == StateSnapshot.NO_VERSION) {
+            // Requested by a member of an earlier version, which only understands the legacy format
+            lastSnapshot = null;
+            return snapshot.encodeLegacy();
+        }
+        StateSnapshot base = null;
+        if (lastSnapshot != null && baseVersion == lastSnapshot.getVersion()) {
+            base = lastSnapshot;
+        }
+        lastSnapshot = snapshot;
+        byte[] state = snapshot.encode(base);
+        if (log.isDebugEnabled()) {
+            log.debug("Encoded " + (base != null ? "delta of snapshot " + base.getVersion() : "full snapshot")
+                    + " as snapshot " + snapshot.getVersion() + " in " + state.length + " bytes");
+        }
         return state;
     }
 
@@ -227,15 +254,14 @@ public class HAManager {
                 .getEventReceiverManagementService();
         List<EventPublisherManagementService> eventPublisherManagementService = eventManagementService
                 .getEventPublisherManagementService();
-        EventProcessorManagementService eventProcessorManagementService = eventManagementService
-                .getEventProcessorManagementService();
 
         roleToMembershipMap.set(activeId, haConfiguration);
         otherMember = null;
+        syncedSnapshot = null;
         PersistenceConfiguration persistenceConfiguration = eventManagementService.getManagementModeInfo().getPersistenceConfiguration();
         if (!synced && (persistenceConfiguration != null && persistenceConfiguration.isPersistenceEnabled())) {
             // If not already synced, restore to last known state.
-            eventProcessorManagementService.restoreLastState();
+            eventManagementService.restoreLastState();
             log.info("Restored to Last Known State.");
         }
 
@@ -323,20 +349,30 @@ public class HAManager {
             }
         }
         ManagementServiceClient client = new ManagementServiceClientThriftImpl();
+        long baseVersion = syncedSnapshot != null && StateSnapshot.isSnapshotVersion(syncedSnapshot.getVersion()) ?
+                syncedSnapshot.getVersion() : StateSnapshot.NO_BASE_VERSION;
         byte[] state = null;
         try {
-            state = client.getSnapshot(activeMember.getManagementConfig());
+            state = client.getSnapshot(activeMember.getManagementConfig(), baseVersion);
         } catch (Throwable e) {
             log.error(e);
         }
-        HashMap<Manager.ManagerType, byte[]> stateMap = (HashMap<Manager.ManagerType, byte[]>) ByteSerializer.BToO(state);
         // Synchronize the duplicate events with active member.
         try {
+            StateSnapshot snapshot;
+            try {
+                snapshot = StateSnapshot.decode(state, syncedSnapshot);
+            } catch (EventManagementException e) {
+                // Request the full snapshot on the next attempt
+                syncedSnapshot = null;
+                throw e;
+            }
+            syncedSnapshot = snapshot;
             if (eventProcessorManagementService != null) {
-                eventProcessorManagementService.restoreState(stateMap.get(Manager.ManagerType.Processor));
+                eventProcessorManagementService.restoreState(snapshot.getState(Manager.ManagerType.Processor));
             }
             if (eventReceiverManagementService != null) {
-                eventReceiverManagementService.syncState(stateMap.get(Manager.ManagerType.Receiver));
+                eventReceiverManagementService.syncState(snapshot.getState(Manager.ManagerType.Receiver));
             }
             synced = true;
         } finally {
@@ -21,5 +21,12 @@ package org.wso2.carbon.event.processor.manager.core.internal;
 import org.wso2.carbon.event.processor.manager.commons.utils.HostAndPort;
 
 public interface ManagementServiceClient {
-    public byte[] getSnapshot(HostAndPort activeMember);
+    /**
+     * Get the snapshot of the state of the active member
+     * @param activeMember management endpoint of the active member
+     * @param baseVersion version of the snapshot held by this member, which the returned snapshot can be a delta of,
+     *                    or 0 to get the full snapshot
+     * @return the encoded snapshot
+     */
+    public byte[] getSnapshot(HostAndPort activeMember, long baseVersion);
 }
@@ -15,22 +15,76 @@
  */
 package org.wso2.carbon.event.processor.manager.core.internal;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.event.processor.manager.core.EventProcessorManagementService;
+import org.wso2.carbon.event.processor.manager.core.Manager;
+import org.wso2.carbon.event.processor.manager.core.config.PersistenceConfiguration;
 import org.wso2.carbon.event.processor.manager.core.internal.ds.EventManagementServiceValueHolder;
 
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Periodically persists the state of the event processor. By default the event processor persists its execution
+ * plans through its own persistence store. When incremental persistence is enabled, the processing is only paused
+ * while the state is captured, and the state is written in the background to a {@link CheckpointStore}, where
+ * each checkpoint holds only the state changed since the previous checkpoint except for every
+ * fullCheckpointInterval-th checkpoint, which holds the full state.
+ * <p>
+ * The state is captured through {@link EventProcessorManagementService#getState()}, which serializes the full
+ * state of the processor, hence the processing is still paused for as long as the full state takes to serialize.
+ * Only the computation of the changes and the writing of the checkpoint are taken off the paused section.
+ * <p>
+ * The checkpoints are only restored by the members that can read the checkpoint location. The event processor still
+ * persists its execution plans through its persistence store after every full checkpoint and at shutdown, so that
+ * the persistence store, which the restore falls back to, does not fall behind the checkpoints.
+ */
 public class PersistenceManager implements Runnable {
+    private static final Log log = LogFactory.getLog(PersistenceManager.class);
+    private static final long CHECKPOINT_WRITER_SHUTDOWN_TIMEOUT_IN_MINUTES = 1;
 
     private final ScheduledExecutorService scheduledExecutorService;
     private final long interval;
     private ScheduledFuture<?> scheduledFuture = null;
 
+    private final CheckpointStore checkpointStore;
+    private final ExecutorService checkpointWriter;
+    private final AtomicBoolean checkpointPending = new AtomicBoolean(false);
+    private final int fullCheckpointInterval;
+    private final int retainedFullCheckpoints;
+    private long lastCheckpointVersion;
+    private StateSnapshot lastCheckpoint = null;
+    private int incrementalCheckpoints = 0;
+
     public PersistenceManager(ScheduledExecutorService scheduledExecutorService, long interval) {
+        this(scheduledExecutorService, interval, null);
+    }
+
+    public PersistenceManager(ScheduledExecutorService scheduledExecutorService, long interval,
+                              PersistenceConfiguration persistenceConfiguration) {
         this.scheduledExecutorService = scheduledExecutorService;
         this.interval = interval;
+        if (persistenceConfiguration != null && persistenceConfiguration.isIncrementalPersistenceEnabled()) {
+            this.checkpointStore = new CheckpointStore(persistenceConfiguration.getCheckpointLocation());
+            this.checkpointWriter = Executors.newSingleThreadExecutor();
+            this.fullCheckpointInterval = persistenceConfiguration.getFullCheckpointInterval();
+            this.retainedFullCheckpoints = persistenceConfiguration.getRetainedFullCheckpoints();
+            this.lastCheckpointVersion = checkpointStore.getLastVersion();
+        } else {
+            this.checkpointStore = null;
+            this.checkpointWriter = null;
+            this.fullCheckpointInterval = 0;
+            this.retainedFullCheckpoints = 0;
+        }
     }
 
     public void init() {
@@ -43,13 +97,62 @@ public class PersistenceManager implements Runnable {
         if (scheduledFuture != null) {
             scheduledFuture.cancel(false);
         }
-        persist();
+        if (checkpointStore == null) {
+            persist();
+        } else {
+            // Let the pending checkpoint complete, and write the final checkpoint from this thread
+            checkpointWriter.shutdown();
+            try {
+                if (!checkpointWriter.awaitTermination(CHECKPOINT_WRITER_SHUTDOWN_TIMEOUT_IN_MINUTES, TimeUnit.MINUTES)) {
+                    log.warn("Timed out waiting for the pending checkpoint to be written");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Map<Manager.ManagerType, byte[]> states = captureState();
+            if (states != null) {
+                writeCheckpoint(states);
+            }
+            persist();
+        }
         scheduledExecutorService.shutdown();
     }
 
     @Override
     public void run() {
-        persist();
+        try {
+            if (checkpointStore == null) {
+                persist();
+            } else {
+                checkpoint();
+            }
+        } catch (RuntimeException e) {
+            log.error("Error while persisting the event processor state", e);
+        }
+    }
+
+    /**
+     * Restores the state of the event processor from the latest checkpoint, or from the persistence store of the
+     * event processor when incremental persistence is not enabled or no checkpoint can be restored.
+     */
+    public void restoreLastState() {
+        EventProcessorManagementService eventProcessorManagementService = EventManagementServiceValueHolder
+                .getCarbonEventManagementService().getEventProcessorManagementService();
+        if (checkpointStore != null) {
+            StateSnapshot snapshot = checkpointStore.restore();
+            synchronized (this) {
+                // The next checkpoint is a full one, as the state moves on from the restored checkpoint
+                lastCheckpoint = null;
+                lastCheckpointVersion = Math.max(lastCheckpointVersion, checkpointStore.getLastVersion());
+            }
+            if (snapshot != null && snapshot.getState(Manager.ManagerType.Processor) != null) {
+                eventProcessorManagementService.restoreState(snapshot.getState(Manager.ManagerType.Processor));
+                log.info("Restored event processor state from checkpoint " + snapshot.getVersion());
+                return;
+            }
+            log.info("No checkpoint found to restore, restoring from the event processor persistence store");
+        }
+        eventProcessorManagementService.restoreLastState();
     }
 
     private void persist() {
@@ -57,4 +160,98 @@ public class PersistenceManager implements Runnable {
         eventProcessorManagementService.persist();
     }
 
+    private void checkpoint() {
+        if (!checkpointPending.compareAndSet(false, true)) {
+            log.warn("Skipping checkpoint as the previous checkpoint is still being written");
+            return;
+        }
+        try {
+            final Map<Manager.ManagerType, byte[]> states = captureState();
+            if (states == null) {
+                checkpointPending.set(false);
+                return;
+            }
+            checkpointWriter.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (writeCheckpoint(states)) {
+                            persist();
+                        }
+                    } catch (RuntimeException e) {
+                        log.error("Error while persisting the event processor state", e);
+                    } finally {
+                        checkpointPending.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the final checkpoint is written by shutdown()
+            checkpointPending.set(false);
+        } catch (RuntimeException e) {
+            checkpointPending.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Captures the state of the event processor. The processing is paused while the processor serializes its full
+     * state, the changes since the previous checkpoint are computed afterwards by the checkpoint writer.
+     *
+     * @return the captured states, or null if there is no state to persist
+     */
+    private Map<Manager.ManagerType, byte[]> captureState() {
+        EventProcessorManagementService eventProcessorManagementService = EventManagementServiceValueHolder
+                .getCarbonEventManagementService().getEventProcessorManagementService();
+        if (eventProcessorManagementService == null) {
+            return null;
+        }
+        byte[] processorState;
+        eventProcessorManagementService.pause();
+        try {
+            processorState = eventProcessorManagementService.getState();
+        } finally {
+            eventProcessorManagementService.resume();
+        }
+        if (processorState == null) {
+            return null;
+        }
+        Map<Manager.ManagerType, byte[]> states = new EnumMap<Manager.ManagerType, byte[]>(Manager.ManagerType.class);
+        states.put(Manager.ManagerType.Processor, processorState);
+        return states;
+    }
+
+    /**
+     * Writes a checkpoint of the captured states, which holds only the changes since the previous checkpoint unless
+     * a full checkpoint is due.
+     *
+     * @return true if a full checkpoint is written
+     */
+    private synchronized boolean writeCheckpoint(Map<Manager.ManagerType, byte[]> states) {
+        StateSnapshot snapshot = new StateSnapshot(++lastCheckpointVersion, states);
+        boolean full = lastCheckpoint == null || incrementalCheckpoints >= fullCheckpointInterval - 1;
+        long startTime = System.currentTimeMillis();
+        byte[] checkpoint = snapshot.encode(full ? null : lastCheckpoint);
+        try {
+            checkpointStore.save(snapshot.getVersion(), full, checkpoint);
+        } catch (IOException e) {
+            log.error("Error while writing checkpoint " + snapshot.getVersion(), e);
+            // The next checkpoint cannot be a delta of a checkpoint that is not stored
+            lastCheckpoint = null;
+            return false;
+        }
+        lastCheckpoint = snapshot;
+        if (full) {
+            incrementalCheckpoints = 0;
+            checkpointStore.purge(retainedFullCheckpoints);
+        } else {
+            incrementalCheckpoints++;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Wrote " + (full ? "full" : "incremental") + " checkpoint " + snapshot.getVersion() + " of "
+                    + checkpoint.length + " bytes in " + (System.currentTimeMillis() - startTime) + " ms");
+        }
+        return full;
+    }
+
 }
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.core.internal;
+
+import org.wso2.carbon.event.processor.manager.commons.serializer.JavaStateSerializer;
+import org.wso2.carbon.event.processor.manager.commons.utils.BinaryDelta;
+import org.wso2.carbon.event.processor.manager.core.Manager;
+import org.wso2.carbon.event.processor.manager.core.exception.EventManagementException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned snapshot of the states of the managers of a member, which is shipped from the active member to the
+ * passive member when syncing the HA state. Once the passive member holds a snapshot, the later snapshots are shipped
+ * as deltas of it, where the unchanged states are left out and the changed states are sent as binary deltas.
+ * <p/>
+ * Format: [int MAGIC][long version][long baseVersion, 0 when not a delta][int stateCount] followed by the states,
+ * each as [byte managerType][byte encoding][int crc32 of the state] and [int length][bytes] of the full state or of
+ * the delta of the state, except for unchanged states.
+ * <p/>
+ * Members of earlier versions request snapshots without a base version, and get and send the states as a Java
+ * serialized {@link HashMap} of the manager states, hence such snapshots are encoded and decoded in that legacy
+ * format, so that the members can be upgraded one at a time. The members of this version request the snapshots with
+ * {@link #NO_BASE_VERSION} when they don't hold a snapshot.
+ */
+class StateSnapshot {
+    /**
+     * Version of the snapshots of the legacy format, which is also the base version requested by earlier versions.
+     */
+    static final long NO_VERSION = 0;
+    /**
+     * Base version requested by the members which don't hold a snapshot yet.
+     */
+    static final long NO_BASE_VERSION = -1;
+    private static final int MAGIC = 0x43455053;
+    private static final short JAVA_SERIALIZATION_MAGIC = (short) 0xACED;
+    private static final byte FULL = 0;
+    private static final byte DELTA = 1;
+    private static final byte UNCHANGED = 2;
+
+    private final long version;
+    private final Map<Manager.ManagerType, byte[]> states;
+
+    StateSnapshot(long version, Map<Manager.ManagerType, byte[]> states) {
+        this.version = version;
+        this.states = states;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    byte[] getState(Manager.ManagerType managerType) {
+        return states.get(managerType);
+    }
+
+    /**
+     * Encodes the snapshot, as a delta of the given base snapshot if it is not null.
+     *
+     * @param base the snapshot held by the receiving member or null to encode the full snapshot
+     * @return the encoded snapshot
+     */
+    byte[] encode(StateSnapshot base) {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(byteArrayOutputStream);
+        try {
+            out.writeInt(MAGIC);
+            out.writeLong(version);
+            out.writeLong(base != null ? base.version : NO_VERSION);
+            out.writeInt(states.size());
+            for (Map.Entry<Manager.ManagerType, byte[]> entry : states.entrySet()) {
+                byte[] state = entry.getValue();
+                byte[] baseState = base != null ? base.states.get(entry.getKey()) : null;
+                out.writeByte(entry.getKey().ordinal());
+                if (baseState == null) {
+                    writeState(out, FULL, state, state);
+                } else if (Arrays.equals(baseState, state)) {
+                    writeState(out, UNCHANGED, state, null);
+                } else {
+                    byte[] delta = BinaryDelta.encode(baseState, state);
+                    if (delta.length < state.length) {
+                        writeState(out, DELTA, state, delta);
+                    } else {
+                        writeState(out, FULL, state, state);
+                    }
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Not thrown when writing to a byte array
+            throw new IllegalStateException(e);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Encodes the full snapshot in the legacy format, which is understood by the members of earlier versions.
+     *
+     * @return the encoded snapshot
+     */
+    byte[] encodeLegacy() {
+        try {
+            return new JavaStateSerializer().serialize(new HashMap<Manager.ManagerType, byte[]>(states));
+        } catch (IOException e) {
+            // Not thrown when writing to a byte array
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return true if the version is one of the versions assigned to the snapshots of this format.
+     */
+    static boolean isSnapshotVersion(long version) {
+        return version != NO_VERSION && version != NO_BASE_VERSION;
+    }
+
+    /**
+     * Decodes a snapshot encoded by {@link #encode(StateSnapshot)} or {@link #encodeLegacy()}.
+     *
+     * @param bytes the encoded snapshot
+     * @param base  the snapshot held by this member, which is used when the encoded snapshot is a delta
+     * @return the decoded snapshot
+     * @throws EventManagementException if the snapshot is malformed or is a delta of a snapshot other than the base
+     */
+    static StateSnapshot decode(byte[] bytes, StateSnapshot base) {
+        if (bytes == null) {
+            throw new EventManagementException("No snapshot received");
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (bytes.length >= 2 && in.getShort(0) == JAVA_SERIALIZATION_MAGIC) {
+            return decodeLegacy(bytes);
+        }
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new EventManagementException("Unknown snapshot format");
+            }
+            long version = in.getLong();
+            long baseVersion = in.getLong();
+            if (baseVersion != NO_VERSION && (base == null || base.version != baseVersion)) {
+                throw new EventManagementException("Snapshot " + version + " is a delta of snapshot " + baseVersion
+                        + ", which is not held by this member");
+            }
+            Manager.ManagerType[] managerTypes = Manager.ManagerType.values();
+            Map<Manager.ManagerType, byte[]> states = new EnumMap<Manager.ManagerType, byte[]>(Manager.ManagerType.class);
+            int stateCount = in.getInt();
+            for (int i = 0; i < stateCount; i++) {
+                Manager.ManagerType managerType = managerTypes[in.get()];
+                byte encoding = in.get();
+                int checksum = in.getInt();
+                byte[] state;
+                if (encoding == UNCHANGED) {
+                    state = getBaseState(base, managerType);
+                } else {
+                    byte[] data = new byte[in.getInt()];
+                    in.get(data);
+                    if (encoding == FULL) {
+                        state = data;
+                    } else if (encoding == DELTA) {
+                        state = BinaryDelta.apply(getBaseState(base, managerType), data);
+                    } else {
+                        throw new EventManagementException("Unknown encoding " + encoding + " of " + managerType
+                                + " state");
+                    }
+                }
+                if (checksum(state) != checksum) {
+                    throw new EventManagementException("Checksum mismatch in " + managerType + " state of snapshot "
+                            + version);
+                }
+                states.put(managerType, state);
+            }
+            return new StateSnapshot(version, states);
+        } catch (IOException e) {
+            throw new EventManagementException("Invalid delta in snapshot, " + e.getMessage(), e);
+        } catch (BufferUnderflowException e) {
+            throw new EventManagementException("Truncated snapshot", e);
+        } catch (RuntimeException e) {
+            if (e instanceof EventManagementException) {
+                throw e;
+            }
+            throw new EventManagementException("Malformed snapshot", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StateSnapshot decodeLegacy(byte[] bytes) {
+        Map<Manager.ManagerType, byte[]> states = new EnumMap<Manager.ManagerType, byte[]>(Manager.ManagerType.class);
+        try {
+            Map<Manager.ManagerType, byte[]> legacyStates =
+                    (Map<Manager.ManagerType, byte[]>) new JavaStateSerializer().deserialize(bytes);
+            for (Map.Entry<Manager.ManagerType, byte[]> entry : legacyStates.entrySet()) {
+                if (entry.getValue() != null) {
+                    states.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (IOException e) {
+            throw new EventManagementException("Malformed legacy snapshot, " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            throw new EventManagementException("Malformed legacy snapshot", e);
+        }
+        return new StateSnapshot(NO_VERSION, states);
+    }
+
+    private static byte[] getBaseState(StateSnapshot base, Manager.ManagerType managerType) {
+        byte[] baseState = base != null ? base.states.get(managerType) : null;
+        if (baseState == null) {
+            throw new EventManagementException("Base snapshot has no " + managerType + " state");
+        }
+        return baseState;
+    }
+
+    private static void writeState(DataOutputStream out, byte encoding, byte[] state, byte[] data) throws IOException {
+        out.writeByte(encoding);
+        out.writeInt(checksum(state));
+        if (data != null) {
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+
+    private static int checksum(byte[] state) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(state, 0, state.length);
+        return (int) crc32.getValue();
+    }
+}
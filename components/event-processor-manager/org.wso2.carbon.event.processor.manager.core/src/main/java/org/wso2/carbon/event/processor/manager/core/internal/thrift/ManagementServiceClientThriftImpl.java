@@ -36,7 +36,7 @@ public class ManagementServiceClientThriftImpl implements ManagementServiceClien
     private static final Log log = LogFactory.getLog(ManagementServiceClientThriftImpl.class);
 
     @Override
-    public byte[] getSnapshot(HostAndPort activeMember) {
+    public byte[] getSnapshot(HostAndPort activeMember, long baseVersion) {
 
         TTransport receiverTransport;
         receiverTransport = new TSocket((activeMember.getHostName()), activeMember.getPort());
@@ -51,7 +51,7 @@ public class ManagementServiceClientThriftImpl implements ManagementServiceClien
         try {
             log.info("Requesting snapshot from " + activeMember.getHostName() + ":" + activeMember.getPort());
 
-            org.wso2.carbon.event.processor.manager.core.internal.thrift.data.SnapshotData snapshotDataIn = client.takeSnapshot();
+            org.wso2.carbon.event.processor.manager.core.internal.thrift.data.SnapshotData snapshotDataIn = client.takeSnapshot(baseVersion);
             log.info("Snapshot received.");
 
             return snapshotDataIn.getState();
@@ -30,9 +30,9 @@ public class ManagementServiceImpl implements ManagementService.Iface {
     private static final Logger log = Logger.getLogger(ManagementServiceImpl.class);
 
     @Override
-    public SnapshotData takeSnapshot() throws InternalServerException {
+    public SnapshotData takeSnapshot(long baseVersion) throws InternalServerException {
         try {
-            byte[] state = EventManagementServiceValueHolder.getCarbonEventManagementService().getState();
+            byte[] state = EventManagementServiceValueHolder.getCarbonEventManagementService().getState(baseVersion);
             SnapshotData snapshotData = new SnapshotData();
             snapshotData.setState(state);
             return snapshotData;
@@ -36,13 +36,13 @@ public class ManagementService {
 
   public interface Iface {
 
-    public org.wso2.carbon.event.processor.manager.core.internal.thrift.data.SnapshotData takeSnapshot() throws org.wso2.carbon.event.processor.manager.core.internal.thrift.exception.InternalServerException, TException;
+    public org.wso2.carbon.event.processor.manager.core.internal.thrift.data.SnapshotData takeSnapshot(long baseVersion) throws org.wso2.carbon.event.processor.manager.core.internal.thrift.exception.InternalServerException, TException;
 
   }
 
   public interface AsyncIface {
 
-    public void takeSnapshot(AsyncMethodCallback resultHandler) throws TException;
+    public void takeSnapshot(long baseVersion, AsyncMethodCallback resultHandler) throws TException;
 
   }
 
@@ -66,15 +66,16 @@ public class ManagementService {
       super(iprot, oprot);
     }
 
-    public org.wso2.carbon.event.processor.manager.core.internal.thrift.data.SnapshotData takeSnapshot() throws org.wso2.carbon.event.processor.manager.core.internal.thrift.exception.InternalServerException, TException
+    public org.wso2.carbon.event.processor.manager.core.internal.thrift.data.SnapshotData takeSnapshot(long baseVersion) throws org.wso2.carbon.event.processor.manager.core.internal.thrift.exception.InternalServerException, TException
     {
-      send_takeSnapshot();
+      send_takeSnapshot(baseVersion);
       return recv_takeSnapshot();
     }
 
-    public void send_takeSnapshot() throws TException
+    public void send_takeSnapshot(long baseVersion) throws TException
     {
       takeSnapshot_args args = new takeSnapshot_args();
+      args.setBaseVersion(baseVersion);
       sendBase("takeSnapshot", args);
     }
 
@@ -109,21 +110,24 @@ public class ManagementService {
       super(protocolFactory, clientManager, transport);
     }
 
-    public void takeSnapshot(AsyncMethodCallback resultHandler) throws TException {
+    public void takeSnapshot(long baseVersion, AsyncMethodCallback resultHandler) throws TException {
       checkReady();
-      takeSnapshot_call method_call = new takeSnapshot_call(resultHandler, this, ___protocolFactory, ___transport);
+      takeSnapshot_call method_call = new takeSnapshot_call(baseVersion, resultHandler, this, ___protocolFactory, ___transport);
       this.___currentMethod = method_call;
       ___manager.call(method_call);
     }
 
     public static class takeSnapshot_call extends org.apache.thrift.async.TAsyncMethodCall {
-      public takeSnapshot_call(AsyncMethodCallback resultHandler, org.apache.thrift.async.TAsyncClient client, org.apache.thrift.protocol.TProtocolFactory protocolFactory, org.apache.thrift.transport.TNonblockingTransport transport) throws TException {
+      private long baseVersion;
+      public takeSnapshot_call(long baseVersion, AsyncMethodCallback resultHandler, org.apache.thrift.async.TAsyncClient client, org.apache.thrift.protocol.TProtocolFactory protocolFactory, org.apache.thrift.transport.TNonblockingTransport transport) throws TException {
         super(client, protocolFactory, transport, resultHandler, false);
+        this.baseVersion = baseVersion;
       }
 
       public void write_args(org.apache.thrift.protocol.TProtocol prot) throws TException {
         prot.writeMessageBegin(new org.apache.thrift.protocol.TMessage("takeSnapshot", org.apache.thrift.protocol.TMessageType.CALL, 0));
         takeSnapshot_args args = new takeSnapshot_args();
+        args.setBaseVersion(baseVersion);
         args.write(prot);
         prot.writeMessageEnd();
       }
@@ -171,7 +175,7 @@ public class ManagementService {
       public takeSnapshot_result getResult(I iface, takeSnapshot_args args) throws TException {
         takeSnapshot_result result = new takeSnapshot_result();
         try {
-          result.success = iface.takeSnapshot();
+          result.success = iface.takeSnapshot(args.baseVersion);
         } catch (org.wso2.carbon.event.processor.manager.core.internal.thrift.exception.InternalServerException ise) {
           result.ise = ise;
         }
@@ -249,7 +253,7 @@ public class ManagementService {
       }
 
       public void start(I iface, takeSnapshot_args args, AsyncMethodCallback<org.wso2.carbon.event.processor.manager.core.internal.thrift.data.SnapshotData> resultHandler) throws TException {
-        iface.takeSnapshot(resultHandler);
+        iface.takeSnapshot(args.baseVersion,resultHandler);
       }
     }
 
@@ -258,6 +262,7 @@ public class ManagementService {
   public static class takeSnapshot_args implements org.apache.thrift.TBase<takeSnapshot_args, takeSnapshot_args._Fields>, java.io.Serializable, Cloneable, Comparable<takeSnapshot_args>   {
     private static final org.apache.thrift.protocol.TStruct STRUCT_DESC = new org.apache.thrift.protocol.TStruct("takeSnapshot_args");
 
+    private static final org.apache.thrift.protocol.TField BASE_VERSION_FIELD_DESC = new org.apache.thrift.protocol.TField("baseVersion", org.apache.thrift.protocol.TType.I64, (short)1);
 
     private static final Map<Class<? extends IScheme>, SchemeFactory> schemes = new HashMap<Class<? extends IScheme>, SchemeFactory>();
     static {
@@ -265,10 +270,11 @@ public class ManagementService {
       schemes.put(TupleScheme.class, new takeSnapshot_argsTupleSchemeFactory());
     }
 
+    public long baseVersion; // optional
 
     /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
     public enum _Fields implements org.apache.thrift.TFieldIdEnum {
-;
+      BASE_VERSION((short)1, "baseVersion");
 
       private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
 
@@ -283,6 +289,8 @@ public class ManagementService {
        */
       public static _Fields findByThriftId(int fieldId) {
         switch(fieldId) {
+          case 1: // BASE_VERSION
+            return BASE_VERSION;
           default:
             return null;
         }
@@ -321,9 +329,16 @@ public class ManagementService {
         return _fieldName;
       }
     }
+
+    // isset id assignments
+    private static final int __BASEVERSION_ISSET_ID = 0;
+    private byte __isset_bitfield = 0;
+    private _Fields optionals[] = {_Fields.BASE_VERSION};
     public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
     static {
       Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
+      tmpMap.put(_Fields.BASE_VERSION, new org.apache.thrift.meta_data.FieldMetaData("baseVersion", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+          new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64)));
       metaDataMap = Collections.unmodifiableMap(tmpMap);
       org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(takeSnapshot_args.class, metaDataMap);
     }
@@ -335,6 +350,8 @@ public class ManagementService {
      * Performs a deep copy on <i>other</i>.
      */
     public takeSnapshot_args(takeSnapshot_args other) {
+      __isset_bitfield = other.__isset_bitfield;
+      this.baseVersion = other.baseVersion;
     }
 
     public takeSnapshot_args deepCopy() {
@@ -343,15 +360,51 @@ public class ManagementService {
 
     @Override
     public void clear() {
+      setBaseVersionIsSet(false);
+      this.baseVersion = 0;
+    }
+
+    public long getBaseVersion() {
+      return this.baseVersion;
+    }
+
+    public takeSnapshot_args setBaseVersion(long baseVersion) {
+      this.baseVersion = baseVersion;
+      setBaseVersionIsSet(true);
+      return this;
+    }
+
+    public void unsetBaseVersion() {
+      __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __BASEVERSION_ISSET_ID);
+    }
+
+    /** Returns true if field baseVersion is set (has been assigned a value) and false otherwise */
+    public boolean isSetBaseVersion() {
+      return EncodingUtils.testBit(__isset_bitfield, __BASEVERSION_ISSET_ID);
+    }
+
+    public void setBaseVersionIsSet(boolean value) {
+      __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __BASEVERSION_ISSET_ID, value);
     }
 
     public void setFieldValue(_Fields field, Object value) {
       switch (field) {
+      case BASE_VERSION:
+        if (value == null) {
+          unsetBaseVersion();
+        } else {
+          setBaseVersion((Long)value);
+        }
+        break;
+
       }
     }
 
     public Object getFieldValue(_Fields field) {
       switch (field) {
+      case BASE_VERSION:
+        return Long.valueOf(getBaseVersion());
+
       }
       throw new IllegalStateException();
     }
@@ -363,6 +416,8 @@ public class ManagementService {
       }
 
       switch (field) {
+      case BASE_VERSION:
+        return isSetBaseVersion();
       }
       throw new IllegalStateException();
     }
@@ -380,6 +435,15 @@ public class ManagementService {
       if (that == null)
         return false;
 
+      boolean this_present_baseVersion = true && this.isSetBaseVersion();
+      boolean that_present_baseVersion = true && that.isSetBaseVersion();
+      if (this_present_baseVersion || that_present_baseVersion) {
+        if (!(this_present_baseVersion && that_present_baseVersion))
+          return false;
+        if (this.baseVersion != that.baseVersion)
+          return false;
+      }
+
       return true;
     }
 
@@ -396,6 +460,16 @@ public class ManagementService {
 
       int lastComparison = 0;
 
+      lastComparison = Boolean.valueOf(isSetBaseVersion()).compareTo(other.isSetBaseVersion());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetBaseVersion()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.baseVersion, other.baseVersion);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
       return 0;
     }
 
@@ -416,6 +490,11 @@ public class ManagementService {
       StringBuilder sb = new StringBuilder("takeSnapshot_args(");
       boolean first = true;
 
+      if (isSetBaseVersion()) {
+        sb.append("baseVersion:");
+        sb.append(this.baseVersion);
+        first = false;
+      }
       sb.append(")");
       return sb.toString();
     }
@@ -435,6 +514,8 @@ public class ManagementService {
 
     private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
       try {
+        // it doesn't seem like you should have to do this, but java serialization is wacky, and doesn't call the default constructor.
+        __isset_bitfield = 0;
         read(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(in)));
       } catch (TException te) {
         throw new java.io.IOException(te);
@@ -459,6 +540,14 @@ public class ManagementService {
             break;
           }
           switch (schemeField.id) {
+            case 1: // BASE_VERSION
+              if (schemeField.type == org.apache.thrift.protocol.TType.I64) {
+                struct.baseVersion = iprot.readI64();
+                struct.setBaseVersionIsSet(true);
+              } else { 
+                org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+              }
+              break;
             default:
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
           }
@@ -474,6 +563,11 @@ public class ManagementService {
         struct.validate();
 
         oprot.writeStructBegin(STRUCT_DESC);
+        if (struct.isSetBaseVersion()) {
+          oprot.writeFieldBegin(BASE_VERSION_FIELD_DESC);
+          oprot.writeI64(struct.baseVersion);
+          oprot.writeFieldEnd();
+        }
         oprot.writeFieldStop();
         oprot.writeStructEnd();
       }
@@ -491,11 +585,24 @@ public class ManagementService {
       @Override
       public void write(org.apache.thrift.protocol.TProtocol prot, takeSnapshot_args struct) throws TException {
         TTupleProtocol oprot = (TTupleProtocol) prot;
+        BitSet optionals = new BitSet();
+        if (struct.isSetBaseVersion()) {
+          optionals.set(0);
+        }
+        oprot.writeBitSet(optionals, 1);
+        if (struct.isSetBaseVersion()) {
+          oprot.writeI64(struct.baseVersion);
+        }
       }
 
       @Override
       public void read(org.apache.thrift.protocol.TProtocol prot, takeSnapshot_args struct) throws TException {
         TTupleProtocol iprot = (TTupleProtocol) prot;
+        BitSet incoming = iprot.readBitSet(1);
+        if (incoming.get(0)) {
+          struct.baseVersion = iprot.readI64();
+          struct.setBaseVersionIsSet(true);
+        }
       }
     }
 
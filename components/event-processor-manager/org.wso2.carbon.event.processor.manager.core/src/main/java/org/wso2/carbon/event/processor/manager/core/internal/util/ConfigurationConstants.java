@@ -56,11 +56,18 @@ public final class ConfigurationConstants {
     public static final String HA_NODE_CONFIG_RECEIVER_QUEUE_MAX_SIZE_MB = "receiverQueueMaxSizeMb";
     public static final String HA_NODE_CONFIG_PUBLISHER_QUEUE_SIZE = "publisherQueueSize";
     public static final String HA_NODE_CONFIG_PUBLISHER_QUEUE_MAX_SIZE_MB = "publisherQueueMaxSizeMb";
+    public static final String HA_NODE_CONFIG_PUBLISHER_BATCH_MAX_EVENTS = "publisherBatchMaxEvents";
+    public static final String HA_NODE_CONFIG_PUBLISHER_BATCH_MAX_BYTES = "publisherBatchMaxBytes";
+    public static final String HA_NODE_CONFIG_PUBLISHER_BATCH_MAX_LINGER_TIME = "publisherBatchMaxLingerTime";
+    public static final String HA_NODE_CONFIG_PUBLISHER_BATCH_COMPRESSION = "publisherBatchCompression";
+    public static final String HA_NODE_CONFIG_PUBLISHER_STREAM_ID_INTERNING = "publisherStreamIdInterning";
     public static final String HA_NODE_CONFIG_MANAGEMENT_STATE_RETRY_INTERVAL = "stateSyncRetryInterval";
     public static final String HA_NODE_CONFIG_MANAGEMENT_TRY_STATE_CHANGE_INTERVAL = "tryStateChangeInterval";
     public static final String HA_NODE_CONFIG_CHECK_MEMBER_UPDATE_INTERVAL = "checkMemberUpdateInterval";
 
     public static final String PROCESSING_MODE_SN = "SingleNode";
+    public static final String STATE_SERIALIZER_ELEMENT = "stateSerializer";
+    public static final String STATE_SERIALIZER_CLASS_ATTRIBUTE = "class";
     public static final String SN_PERSISTENCE_ELEMENT = "persistence";
     public static final String SN_PERSISTENCE_PERSIST_CLASS_ELEMENT = "persister";
     public static final String SN_PERSISTENCE_CLASS_ATTRIBUTE = "class";
@@ -72,6 +79,12 @@ public final class ConfigurationConstants {
             "org.wso2.carbon.event.processor.core.internal.persistence.FileSystemPersistenceStore";
     public static final long SN_DEFAULT_PERSISTENCE_INTERVAL = 15;
     public static final int SN_DEFAULT_PERSISTENCE_THREAD_POOL_SIZE = 10;
+    public static final String SN_PERSISTENCE_INCREMENTAL_ELEMENT = "incrementalPersistence";
+    public static final String SN_PERSISTENCE_CHECKPOINT_LOCATION_ELEMENT = "checkpointLocation";
+    public static final String SN_PERSISTENCE_FULL_CHECKPOINT_INTERVAL_ELEMENT = "fullCheckpointInterval";
+    public static final String SN_PERSISTENCE_RETAINED_FULL_CHECKPOINTS_ELEMENT = "retainedFullCheckpoints";
+    public static final int SN_DEFAULT_FULL_CHECKPOINT_INTERVAL = 10;
+    public static final int SN_DEFAULT_RETAINED_FULL_CHECKPOINTS = 2;
 
     public static final String PROCESSING_MODE_DISTRIBUTED = "Distributed";
     public static final String DISTRIBUTED_NODE_CONFIG_ELEMENT = "nodeType";
@@ -108,6 +121,8 @@ public final class ConfigurationConstants {
     public static enum HAMode {Active, Passive, Backup}
 
     public static final String HA_EVENT_PUBLISHER_TIME_SYNC_MAP = "haEventPublisherTimeSyncMap";
+    public static final long HA_EVENT_PUBLISHER_TIME_SYNC_INTERVAL_IN_MILLISECONDS = 1000;
+    public static final long CLUSTER_TIME_SYNC_INTERVAL_IN_MILLISECONDS = 10000;
     public static final String PROPERTY_META_PREFIX = "meta_";
     public static final String PROPERTY_CORRELATION_PREFIX = "correlation_";
 }
@@ -24,6 +24,8 @@ import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.impl.builder.StAXOMBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.processor.manager.commons.serializer.StateSerializer;
+import org.wso2.carbon.event.processor.manager.commons.utils.ByteSerializer;
 import org.wso2.carbon.event.processor.manager.commons.utils.Utils;
 import org.wso2.carbon.event.processor.manager.core.config.*;
 import org.wso2.carbon.event.processor.manager.core.exception.ManagementConfigurationException;
@@ -48,6 +50,12 @@ public class ManagementModeConfigurationLoader {
         ManagementModeInfo managementModeInfo = new ManagementModeInfo();
         OMElement omElement = ManagementModeConfigurationLoader.loadConfigXML();
 
+        OMElement stateSerializerElement = omElement
+                .getFirstChildWithName(new QName(ConfigurationConstants.STATE_SERIALIZER_ELEMENT));
+        if (stateSerializerElement != null) {
+            ByteSerializer.setStateSerializer(getStateSerializer(stateSerializerElement));
+        }
+
         Iterator<OMElement> iterator = omElement.getChildrenWithName(new QName(ConfigurationConstants.MODE_ELEMENT));
 
         while (iterator.hasNext()) {
@@ -132,6 +140,26 @@ public class ManagementModeConfigurationLoader {
         }
     }
 
+    private static StateSerializer getStateSerializer(OMElement stateSerializerElement)
+            throws ManagementConfigurationException {
+        OMAttribute classAttribute = stateSerializerElement
+                .getAttribute(new QName(ConfigurationConstants.STATE_SERIALIZER_CLASS_ATTRIBUTE));
+        if (classAttribute == null) {
+            throw new ManagementConfigurationException("Invalid XML. No attribute with name " +
+                    ConfigurationConstants.STATE_SERIALIZER_CLASS_ATTRIBUTE + " found in element " +
+                    ConfigurationConstants.STATE_SERIALIZER_ELEMENT + " of file " + ConfigurationConstants.CEP_MANAGEMENT_XML);
+        }
+        String className = classAttribute.getAttributeValue();
+        try {
+            StateSerializer stateSerializer = (StateSerializer) Class.forName(className).newInstance();
+            log.info("Using state serializer " + className);
+            return stateSerializer;
+        } catch (Exception e) {
+            throw new ManagementConfigurationException("Cannot create the state serializer " + className +
+                    " configured in " + ConfigurationConstants.CEP_MANAGEMENT_XML, e);
+        }
+    }
+
     private static boolean nodeType(String elementName, OMElement element)
             throws ManagementConfigurationException {
         OMAttribute attribute = element.getAttribute(new QName(elementName));
@@ -142,7 +170,8 @@ public class ManagementModeConfigurationLoader {
         }
     }
 
-    private static PersistenceConfiguration getPersistConfigurations(OMElement persistence, boolean isPersistenceEnabled) {
+    private static PersistenceConfiguration getPersistConfigurations(OMElement persistence, boolean isPersistenceEnabled)
+            throws ManagementConfigurationException {
         OMElement classElement = persistence.getFirstChildWithName(new QName(ConfigurationConstants.SN_PERSISTENCE_PERSIST_CLASS_ELEMENT));
         Map propertiesMap = new HashMap();
         String className;
@@ -185,10 +214,55 @@ public class ManagementModeConfigurationLoader {
                 poolSize = ConfigurationConstants.SN_DEFAULT_PERSISTENCE_THREAD_POOL_SIZE;
             }
         }
-        return new PersistenceConfiguration(className, timeInterval, poolSize, propertiesMap, isPersistenceEnabled);
+        PersistenceConfiguration persistenceConfiguration = new PersistenceConfiguration(className, timeInterval,
+                poolSize, propertiesMap, isPersistenceEnabled);
+
+        OMElement incrementalElement = persistence.getFirstChildWithName(
+                new QName(ConfigurationConstants.SN_PERSISTENCE_INCREMENTAL_ELEMENT));
+        if (incrementalElement != null) {
+            OMAttribute enableAttribute = incrementalElement.getAttribute(
+                    new QName(ConfigurationConstants.ENABLE_ATTRIBUTE));
+            persistenceConfiguration.setIncrementalPersistenceEnabled(enableAttribute == null
+                    || enableAttribute.getAttributeValue().equalsIgnoreCase("true"));
+            OMElement locationElement = incrementalElement.getFirstChildWithName(
+                    new QName(ConfigurationConstants.SN_PERSISTENCE_CHECKPOINT_LOCATION_ELEMENT));
+            String checkpointLocation = locationElement == null ? "" : locationElement.getText().trim();
+            // The member that becomes active restores the checkpoints written by the other member, hence they need
+            // to be on storage shared by the HA members, which a location relative to the server is not.
+            if (persistenceConfiguration.isIncrementalPersistenceEnabled() && !new File(checkpointLocation).isAbsolute()) {
+                throw new ManagementConfigurationException("Invalid XML. Incremental persistence in HA mode requires "
+                        + "the " + ConfigurationConstants.SN_PERSISTENCE_CHECKPOINT_LOCATION_ELEMENT + " to be an "
+                        + "absolute path shared by the HA members, but found '" + checkpointLocation + "' in file "
+                        + ConfigurationConstants.CEP_MANAGEMENT_XML);
+            }
+            persistenceConfiguration.setCheckpointLocation(checkpointLocation);
+            persistenceConfiguration.setFullCheckpointInterval(getPositiveInt(incrementalElement,
+                    ConfigurationConstants.SN_PERSISTENCE_FULL_CHECKPOINT_INTERVAL_ELEMENT,
+                    ConfigurationConstants.SN_DEFAULT_FULL_CHECKPOINT_INTERVAL));
+            persistenceConfiguration.setRetainedFullCheckpoints(getPositiveInt(incrementalElement,
+                    ConfigurationConstants.SN_PERSISTENCE_RETAINED_FULL_CHECKPOINTS_ELEMENT,
+                    ConfigurationConstants.SN_DEFAULT_RETAINED_FULL_CHECKPOINTS));
+        }
+        return persistenceConfiguration;
 
     }
 
+    private static int getPositiveInt(OMElement parent, String elementName, int defaultValue) {
+        OMElement element = parent.getFirstChildWithName(new QName(elementName));
+        if (element == null) {
+            return defaultValue;
+        }
+        try {
+            int value = Integer.parseInt(element.getText().trim());
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        log.warn("Invalid " + elementName + ". Using default " + elementName + " " + defaultValue);
+        return defaultValue;
+    }
+
     private static DistributedConfiguration getDistributedConfiguration(
             OMElement processingElement) {
 
@@ -474,6 +548,26 @@ public class ManagementModeConfigurationLoader {
                     .HA_NODE_CONFIG_PUBLISHER_QUEUE_SIZE)));
             haConfiguration.setEventSyncPublisherMaxQueueSizeInMb(Integer.parseInt(readOMElementValue(eventSync, ConfigurationConstants
                     .HA_NODE_CONFIG_PUBLISHER_QUEUE_MAX_SIZE_MB)));
+            if (eventSync.getFirstChildWithName(new QName(ConfigurationConstants.HA_NODE_CONFIG_PUBLISHER_BATCH_MAX_EVENTS)) != null) {
+                haConfiguration.setEventSyncPublisherBatchMaxEvents(Integer.parseInt(readOMElementValue(eventSync,
+                        ConfigurationConstants.HA_NODE_CONFIG_PUBLISHER_BATCH_MAX_EVENTS)));
+            }
+            if (eventSync.getFirstChildWithName(new QName(ConfigurationConstants.HA_NODE_CONFIG_PUBLISHER_BATCH_MAX_BYTES)) != null) {
+                haConfiguration.setEventSyncPublisherBatchMaxBytes(Integer.parseInt(readOMElementValue(eventSync,
+                        ConfigurationConstants.HA_NODE_CONFIG_PUBLISHER_BATCH_MAX_BYTES)));
+            }
+            if (eventSync.getFirstChildWithName(new QName(ConfigurationConstants.HA_NODE_CONFIG_PUBLISHER_BATCH_MAX_LINGER_TIME)) != null) {
+                haConfiguration.setEventSyncPublisherBatchMaxLingerTime(Long.parseLong(readOMElementValue(eventSync,
+                        ConfigurationConstants.HA_NODE_CONFIG_PUBLISHER_BATCH_MAX_LINGER_TIME)));
+            }
+            if (eventSync.getFirstChildWithName(new QName(ConfigurationConstants.HA_NODE_CONFIG_PUBLISHER_BATCH_COMPRESSION)) != null) {
+                haConfiguration.setEventSyncPublisherBatchCompressionEnabled(Boolean.parseBoolean(readOMElementValue(eventSync,
+                        ConfigurationConstants.HA_NODE_CONFIG_PUBLISHER_BATCH_COMPRESSION)));
+            }
+            if (eventSync.getFirstChildWithName(new QName(ConfigurationConstants.HA_NODE_CONFIG_PUBLISHER_STREAM_ID_INTERNING)) != null) {
+                haConfiguration.setEventSyncPublisherStreamIdInterningEnabled(Boolean.parseBoolean(readOMElementValue(eventSync,
+                        ConfigurationConstants.HA_NODE_CONFIG_PUBLISHER_STREAM_ID_INTERNING)));
+            }
         }
         if (isPresenterEnabled.equalsIgnoreCase("true")) {
             haConfiguration.setPresenterNode(true);
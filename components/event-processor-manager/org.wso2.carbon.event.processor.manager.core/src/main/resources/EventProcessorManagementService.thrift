@@ -21,6 +21,6 @@ include "Exception.thrift"
 include "Data.thrift"
 
 service ManagementService {
-    Data.SnapshotData takeSnapshot() throws  (1:Exception.InternalServerException ise)
+    Data.SnapshotData takeSnapshot(1: optional i64 baseVersion) throws  (1:Exception.InternalServerException ise)
 
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.core.internal;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.manager.core.Manager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class CheckpointStoreTest {
+    private final Random random = new Random(42);
+    private File directory;
+    private CheckpointStore checkpointStore;
+
+    @Before
+    public void createStore() throws IOException {
+        directory = File.createTempFile("checkpoints", "");
+        Assert.assertTrue(directory.delete());
+        checkpointStore = new CheckpointStore(directory.getAbsolutePath());
+    }
+
+    @After
+    public void deleteStore() {
+        deleteRecursively(directory);
+    }
+
+    @Test
+    public void testEmptyStore() {
+        Assert.assertEquals(StateSnapshot.NO_VERSION, checkpointStore.getLastVersion());
+        Assert.assertNull(checkpointStore.restore());
+    }
+
+    @Test
+    public void testDeltaChainIsRestored() throws IOException {
+        StateSnapshot full = createSnapshot(1, randomBytes(1000));
+        StateSnapshot firstDelta = createSnapshot(2, changeBytes(full));
+        StateSnapshot secondDelta = createSnapshot(3, changeBytes(firstDelta));
+        checkpointStore.save(1, true, full.encode(null));
+        checkpointStore.save(2, false, firstDelta.encode(full));
+        checkpointStore.save(3, false, secondDelta.encode(firstDelta));
+
+        Assert.assertEquals(3, checkpointStore.getLastVersion());
+        assertRestored(secondDelta);
+    }
+
+    @Test
+    public void testPurgeRetainsLatestFullCheckpoints() throws IOException {
+        StateSnapshot previous = null;
+        for (int version = 1; version <= 6; version++) {
+            boolean full = version % 2 == 1;
+            StateSnapshot snapshot = createSnapshot(version,
+                    previous == null ? randomBytes(1000) : changeBytes(previous));
+            checkpointStore.save(version, full, snapshot.encode(full ? null : previous));
+            previous = snapshot;
+        }
+        checkpointStore.purge(2);
+
+        Assert.assertEquals(Arrays.asList("3.full", "4.delta", "5.full", "6.delta"), listFiles());
+        assertRestored(previous);
+        // purging again with the same retention keeps the retained checkpoints
+        checkpointStore.purge(2);
+        Assert.assertEquals(4, listFiles().size());
+    }
+
+    @Test
+    public void testCorruptDeltaIsSkippedWithItsDependents() throws IOException {
+        StateSnapshot full = createSnapshot(1, randomBytes(1000));
+        StateSnapshot firstDelta = createSnapshot(2, changeBytes(full));
+        StateSnapshot secondDelta = createSnapshot(3, changeBytes(firstDelta));
+        checkpointStore.save(1, true, full.encode(null));
+        byte[] corruptDelta = firstDelta.encode(full);
+        corruptDelta[corruptDelta.length - 1] ^= 1;
+        checkpointStore.save(2, false, corruptDelta);
+        checkpointStore.save(3, false, secondDelta.encode(firstDelta));
+
+        // the second delta cannot be applied without the corrupt one, hence the full checkpoint is restored
+        assertRestored(full);
+
+        StateSnapshot nextFull = createSnapshot(4, randomBytes(1000));
+        checkpointStore.save(4, true, nextFull.encode(null));
+        assertRestored(nextFull);
+    }
+
+    @Test
+    public void testPartiallyWrittenCheckpointIsIgnored() throws IOException {
+        StateSnapshot full = createSnapshot(1, randomBytes(1000));
+        checkpointStore.save(1, true, full.encode(null));
+        // a checkpoint whose write was interrupted before it was moved in place
+        FileOutputStream out = new FileOutputStream(new File(directory, "2.delta.tmp"));
+        try {
+            out.write(randomBytes(10));
+        } finally {
+            out.close();
+        }
+
+        Assert.assertEquals(1, checkpointStore.getLastVersion());
+        assertRestored(full);
+    }
+
+    @Test
+    public void testFailedSaveDoesNotLeaveCheckpoint() throws IOException {
+        Assert.assertTrue(directory.createNewFile());
+        try {
+            checkpointStore.save(1, true, createSnapshot(1, randomBytes(100)).encode(null));
+            Assert.fail("Checkpoint saved without a checkpoint directory");
+        } catch (IOException expected) {
+        }
+        Assert.assertTrue(directory.delete());
+
+        StateSnapshot full = createSnapshot(2, randomBytes(100));
+        checkpointStore.save(2, true, full.encode(null));
+        Assert.assertEquals(2, checkpointStore.getLastVersion());
+        assertRestored(full);
+    }
+
+    private void assertRestored(StateSnapshot expected) {
+        StateSnapshot restored = checkpointStore.restore();
+        Assert.assertNotNull(restored);
+        Assert.assertEquals(expected.getVersion(), restored.getVersion());
+        Assert.assertTrue(Arrays.equals(expected.getState(Manager.ManagerType.Processor),
+                restored.getState(Manager.ManagerType.Processor)));
+    }
+
+    private List<String> listFiles() {
+        String[] fileNames = directory.list();
+        Arrays.sort(fileNames);
+        return Arrays.asList(fileNames);
+    }
+
+    private StateSnapshot createSnapshot(long version, byte[] processorState) {
+        Map<Manager.ManagerType, byte[]> states = new EnumMap<Manager.ManagerType, byte[]>(Manager.ManagerType.class);
+        states.put(Manager.ManagerType.Processor, processorState);
+        return new StateSnapshot(version, states);
+    }
+
+    private byte[] changeBytes(StateSnapshot snapshot) {
+        byte[] state = snapshot.getState(Manager.ManagerType.Processor).clone();
+        for (int i = 0; i < 10; i++) {
+            state[random.nextInt(state.length)] ^= 1;
+        }
+        return state;
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
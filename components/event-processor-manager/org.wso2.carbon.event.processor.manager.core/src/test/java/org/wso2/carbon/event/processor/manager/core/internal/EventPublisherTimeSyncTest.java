@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.core.internal;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.EntryEventType;
+import com.hazelcast.core.EntryListener;
+import com.hazelcast.core.IMap;
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+public class EventPublisherTimeSyncTest {
+    private static final String KEY = "-1234-publisher";
+
+    private final Map<String, Long> remoteTimes = new HashMap<String, Long>();
+    private final Map<String, Long> writtenTimes = new HashMap<String, Long>();
+    private int remoteGets;
+    private EntryListener<String, Long> listener;
+    private EventPublisherTimeSync timeSync;
+
+    @Before
+    public void startTimeSync() {
+        timeSync = new EventPublisherTimeSync();
+        Assert.assertTrue(timeSync.start(createTimeSyncMap()));
+        Assert.assertFalse(timeSync.start(createTimeSyncMap()));
+        Assert.assertNotNull(listener);
+    }
+
+    @Test
+    public void testUnknownPublisherIsLookedUpOnce() {
+        Assert.assertNull(timeSync.getLocal(KEY));
+        Assert.assertEquals(0, timeSync.lookup(KEY));
+        Assert.assertEquals(Long.valueOf(0), timeSync.getLocal(KEY));
+        Assert.assertEquals(0, timeSync.lookup(KEY));
+        Assert.assertEquals(1, remoteGets);
+    }
+
+    @Test
+    public void testKnownPublisherIsLookedUpOnce() {
+        remoteTimes.put(KEY, 1000L);
+        Assert.assertEquals(1000, timeSync.lookup(KEY));
+        Assert.assertEquals(Long.valueOf(1000), timeSync.getLocal(KEY));
+        Assert.assertEquals(1, remoteGets);
+    }
+
+    @Test
+    public void testListenerUpdatesCachedTimes() {
+        Assert.assertEquals(0, timeSync.lookup(KEY));
+        listener.entryAdded(createEvent(EntryEventType.ADDED, 1000L));
+        Assert.assertEquals(Long.valueOf(1000), timeSync.getLocal(KEY));
+        listener.entryUpdated(createEvent(EntryEventType.UPDATED, 2000L));
+        Assert.assertEquals(Long.valueOf(2000), timeSync.getLocal(KEY));
+        // Updates arriving out of order don't move the time backwards
+        listener.entryUpdated(createEvent(EntryEventType.UPDATED, 1500L));
+        Assert.assertEquals(Long.valueOf(2000), timeSync.getLocal(KEY));
+        Assert.assertEquals(1, remoteGets);
+    }
+
+    @Test
+    public void testOnlyLatestLocalUpdateIsFlushed() {
+        timeSync.update(KEY, 1000L);
+        timeSync.update(KEY, 3000L);
+        timeSync.update(KEY, 2000L);
+        Assert.assertEquals(Long.valueOf(3000), timeSync.getLocal(KEY));
+        Assert.assertTrue(writtenTimes.isEmpty());
+        timeSync.flush();
+        Assert.assertEquals(Long.valueOf(3000), writtenTimes.get(KEY));
+        writtenTimes.clear();
+        timeSync.flush();
+        Assert.assertTrue(writtenTimes.isEmpty());
+        Assert.assertEquals(0, remoteGets);
+    }
+
+    private EntryEvent<String, Long> createEvent(EntryEventType eventType, long timestamp) {
+        return new EntryEvent<String, Long>("timeSyncMap", null, eventType.getType(), KEY, timestamp);
+    }
+
+    @SuppressWarnings("unchecked")
+    private IMap<String, Long> createTimeSyncMap() {
+        return (IMap<String, Long>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{IMap.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("get")) {
+                            remoteGets++;
+                            return remoteTimes.get(args[0]);
+                        } else if (method.getName().equals("putAsync")) {
+                            writtenTimes.put((String) args[0], (Long) args[1]);
+                            return null;
+                        } else if (method.getName().equals("addEntryListener")) {
+                            listener = (EntryListener<String, Long>) args[0];
+                            return "listener";
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.core.internal;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.manager.core.EventProcessorManagementService;
+import org.wso2.carbon.event.processor.manager.core.config.ManagementModeInfo;
+import org.wso2.carbon.event.processor.manager.core.config.PersistenceConfiguration;
+import org.wso2.carbon.event.processor.manager.core.internal.ds.EventManagementServiceValueHolder;
+import org.wso2.carbon.event.processor.manager.core.internal.util.ConfigurationConstants;
+import org.wso2.carbon.utils.ServerConstants;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+public class PersistenceManagerTest {
+    private static final long TIMEOUT = 5000;
+
+    private File configDirectory;
+    private File checkpointDirectory;
+    private RecordingProcessorManagementService processorManagementService;
+    private PersistenceManager persistenceManager;
+
+    @Before
+    public void createEventManagementService() throws IOException {
+        configDirectory = createTempDirectory("conf");
+        FileWriter writer = new FileWriter(new File(configDirectory, ConfigurationConstants.CEP_MANAGEMENT_XML));
+        try {
+            writer.write("<eventProcessorConfig/>");
+        } finally {
+            writer.close();
+        }
+        System.setProperty(ServerConstants.CARBON_CONFIG_DIR_PATH, configDirectory.getAbsolutePath());
+        CarbonEventManagementService eventManagementService = new CarbonEventManagementService();
+        processorManagementService = new RecordingProcessorManagementService();
+        eventManagementService.subscribe(processorManagementService);
+        EventManagementServiceValueHolder.setCarbonEventManagementService(eventManagementService);
+
+        checkpointDirectory = createTempDirectory("checkpoints");
+    }
+
+    @After
+    public void shutdown() {
+        if (persistenceManager != null) {
+            persistenceManager.shutdown();
+        }
+        EventManagementServiceValueHolder.setCarbonEventManagementService(null);
+        System.clearProperty(ServerConstants.CARBON_CONFIG_DIR_PATH);
+        CheckpointStoreTest.deleteRecursively(configDirectory);
+        CheckpointStoreTest.deleteRecursively(checkpointDirectory);
+    }
+
+    @Test
+    public void testStateIsRestoredFromCheckpoints() throws InterruptedException {
+        persistenceManager = createPersistenceManager(3);
+        for (int i = 1; i <= 5; i++) {
+            processorManagementService.state = new byte[]{(byte) i, 1, 2, 3};
+            persistenceManager.run();
+            awaitCheckpoint(i);
+        }
+        // the state is captured while the processing is paused
+        Assert.assertEquals(Arrays.asList("pause", "getState", "resume"), processorManagementService.calls.subList(0, 3));
+        Assert.assertEquals(Arrays.asList("1.full", "2.delta", "3.delta", "4.full", "5.delta"), listCheckpoints());
+
+        persistenceManager.restoreLastState();
+        Assert.assertTrue(Arrays.equals(new byte[]{5, 1, 2, 3}, processorManagementService.restoredState));
+        Assert.assertFalse(processorManagementService.calls.contains("restoreLastState"));
+
+        // the first checkpoint after a restore is a full one
+        processorManagementService.state = new byte[]{6, 1, 2, 3};
+        persistenceManager.run();
+        awaitCheckpoint(6);
+        Assert.assertTrue(listCheckpoints().contains("6.full"));
+    }
+
+    @Test
+    public void testPersistenceStoreIsUpdatedWithFullCheckpoints() throws InterruptedException {
+        persistenceManager = createPersistenceManager(2);
+        for (int i = 1; i <= 3; i++) {
+            processorManagementService.state = new byte[]{(byte) i, 1, 2, 3};
+            persistenceManager.run();
+            awaitCheckpoint(i);
+        }
+        Assert.assertEquals(Arrays.asList("1.full", "2.delta", "3.full"), listCheckpoints());
+        awaitPersists(2);
+
+        // the final checkpoint is a delta, the persistence store is updated at shutdown regardless
+        processorManagementService.state = new byte[]{4, 1, 2, 3};
+        persistenceManager.shutdown();
+        persistenceManager = null;
+        Assert.assertTrue(listCheckpoints().contains("4.delta"));
+        Assert.assertEquals(3, Collections.frequency(processorManagementService.calls, "persist"));
+    }
+
+    @Test
+    public void testRestoreFallsBackToPersistenceStore() {
+        persistenceManager = createPersistenceManager(3);
+        persistenceManager.restoreLastState();
+        Assert.assertNull(processorManagementService.restoredState);
+        Assert.assertEquals(Collections.singletonList("restoreLastState"), processorManagementService.calls);
+    }
+
+    @Test
+    public void testPersistenceStoreIsUsedWithoutIncrementalPersistence() {
+        persistenceManager = new PersistenceManager(Executors.newSingleThreadScheduledExecutor(), 1);
+        persistenceManager.run();
+        persistenceManager.restoreLastState();
+        Assert.assertEquals(Arrays.asList("persist", "restoreLastState"), processorManagementService.calls);
+        Assert.assertTrue(listCheckpoints().isEmpty());
+    }
+
+    @Test
+    public void testFullCheckpointIsWrittenAfterFailedWrite() throws IOException, InterruptedException {
+        persistenceManager = createPersistenceManager(3);
+        processorManagementService.state = new byte[]{1, 1, 2, 3};
+        persistenceManager.run();
+        awaitCheckpoint(1);
+
+        // make the checkpoint directory unusable, so that the next checkpoint cannot be written
+        CheckpointStoreTest.deleteRecursively(checkpointDirectory);
+        Assert.assertTrue(checkpointDirectory.createNewFile());
+        processorManagementService.state = new byte[]{2, 1, 2, 3};
+        persistenceManager.run();
+        Thread.sleep(200);
+        Assert.assertTrue(checkpointDirectory.delete());
+
+        processorManagementService.state = new byte[]{3, 1, 2, 3};
+        persistenceManager.run();
+        // the failed checkpoint used version 2, the next one cannot be a delta of it
+        awaitCheckpoint(3);
+        Assert.assertEquals(Collections.singletonList("3.full"), listCheckpoints());
+
+        persistenceManager.restoreLastState();
+        Assert.assertTrue(Arrays.equals(new byte[]{3, 1, 2, 3}, processorManagementService.restoredState));
+    }
+
+    private PersistenceManager createPersistenceManager(int fullCheckpointInterval) {
+        PersistenceConfiguration persistenceConfiguration = new PersistenceConfiguration(null, 1, 1,
+                new HashMap(), true);
+        persistenceConfiguration.setIncrementalPersistenceEnabled(true);
+        persistenceConfiguration.setCheckpointLocation(checkpointDirectory.getAbsolutePath());
+        persistenceConfiguration.setFullCheckpointInterval(fullCheckpointInterval);
+        persistenceConfiguration.setRetainedFullCheckpoints(2);
+        return new PersistenceManager(Executors.newSingleThreadScheduledExecutor(), 1, persistenceConfiguration);
+    }
+
+    private void awaitCheckpoint(long version) throws InterruptedException {
+        CheckpointStore checkpointStore = new CheckpointStore(checkpointDirectory.getAbsolutePath());
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (checkpointStore.getLastVersion() < version && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(version, checkpointStore.getLastVersion());
+        // let the writer finish the checkpoint, so that the next one is not skipped
+        Thread.sleep(50);
+    }
+
+    private void awaitPersists(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (Collections.frequency(processorManagementService.calls, "persist") < count
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, Collections.frequency(processorManagementService.calls, "persist"));
+    }
+
+    private List<String> listCheckpoints() {
+        String[] fileNames = checkpointDirectory.list();
+        if (fileNames == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(fileNames);
+        return Arrays.asList(fileNames);
+    }
+
+    private static File createTempDirectory(String prefix) throws IOException {
+        File directory = File.createTempFile(prefix, "");
+        Assert.assertTrue(directory.delete());
+        Assert.assertTrue(directory.mkdir());
+        return directory;
+    }
+
+    private static class RecordingProcessorManagementService extends EventProcessorManagementService {
+        private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+        private volatile byte[] state;
+        private volatile byte[] restoredState;
+
+        @Override
+        public byte[] getState() {
+            calls.add("getState");
+            return state == null ? null : state.clone();
+        }
+
+        @Override
+        public void restoreState(byte[] bytes) {
+            calls.add("restoreState");
+            restoredState = bytes;
+        }
+
+        @Override
+        public void pause() {
+            calls.add("pause");
+        }
+
+        @Override
+        public void resume() {
+            calls.add("resume");
+        }
+
+        @Override
+        public void persist() {
+            calls.add("persist");
+        }
+
+        @Override
+        public ManagementModeInfo getManagementModeInfo() {
+            return null;
+        }
+
+        @Override
+        public void restoreLastState() {
+            calls.add("restoreLastState");
+        }
+    }
+}
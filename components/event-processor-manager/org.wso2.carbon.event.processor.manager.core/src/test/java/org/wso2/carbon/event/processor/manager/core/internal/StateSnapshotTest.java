@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.processor.manager.core.internal;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.manager.commons.serializer.JavaStateSerializer;
+import org.wso2.carbon.event.processor.manager.core.Manager;
+import org.wso2.carbon.event.processor.manager.core.exception.EventManagementException;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class StateSnapshotTest {
+    private final Random random = new Random(42);
+
+    @Test
+    public void testFullSnapshotRoundTrip() {
+        StateSnapshot snapshot = createSnapshot(1, randomBytes(10000), randomBytes(500));
+        StateSnapshot decoded = StateSnapshot.decode(snapshot.encode(null), null);
+        assertSameStates(snapshot, decoded);
+        Assert.assertEquals(1, decoded.getVersion());
+    }
+
+    @Test
+    public void testDeltaSnapshotRoundTrip() {
+        byte[] processorState = randomBytes(10000);
+        StateSnapshot base = createSnapshot(1, processorState, randomBytes(500));
+        byte[] changedProcessorState = Arrays.copyOfRange(processorState, 100, processorState.length + 50);
+        StateSnapshot snapshot = createSnapshot(2, changedProcessorState, randomBytes(500));
+        byte[] delta = snapshot.encode(base);
+        Assert.assertTrue(delta.length < snapshot.encode(null).length);
+        StateSnapshot decoded = StateSnapshot.decode(delta, base);
+        assertSameStates(snapshot, decoded);
+        Assert.assertEquals(2, decoded.getVersion());
+    }
+
+    @Test
+    public void testUnchangedSnapshotRoundTrip() {
+        byte[] processorState = randomBytes(10000);
+        byte[] receiverState = randomBytes(500);
+        StateSnapshot base = createSnapshot(1, processorState, receiverState);
+        StateSnapshot snapshot = createSnapshot(2, processorState.clone(), receiverState.clone());
+        byte[] delta = snapshot.encode(base);
+        Assert.assertTrue(delta.length < 100);
+        assertSameStates(snapshot, StateSnapshot.decode(delta, base));
+    }
+
+    @Test
+    public void testDeltaOfOtherBaseIsRejected() {
+        StateSnapshot base = createSnapshot(1, randomBytes(1000), randomBytes(100));
+        StateSnapshot snapshot = createSnapshot(2, randomBytes(1000), randomBytes(100));
+        byte[] delta = snapshot.encode(base);
+        try {
+            StateSnapshot.decode(delta, createSnapshot(3, randomBytes(1000), randomBytes(100)));
+            Assert.fail("Delta of another base was decoded");
+        } catch (EventManagementException expected) {
+        }
+        try {
+            StateSnapshot.decode(delta, null);
+            Assert.fail("Delta was decoded without a base");
+        } catch (EventManagementException expected) {
+        }
+    }
+
+    @Test
+    public void testTruncatedSnapshotIsRejected() {
+        byte[] processorState = randomBytes(1000);
+        StateSnapshot base = createSnapshot(1, processorState, randomBytes(100));
+        StateSnapshot snapshot = createSnapshot(2, Arrays.copyOf(processorState, 1200), randomBytes(100));
+        byte[][] encodings = {snapshot.encode(null), snapshot.encode(base)};
+        for (byte[] encoded : encodings) {
+            for (int length : new int[]{0, 3, 10, encoded.length / 2, encoded.length - 1}) {
+                try {
+                    StateSnapshot.decode(Arrays.copyOf(encoded, length), base);
+                    Assert.fail("Snapshot truncated to " + length + " of " + encoded.length + " bytes was decoded");
+                } catch (EventManagementException expected) {
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCorruptedStateIsRejected() {
+        StateSnapshot snapshot = createSnapshot(1, randomBytes(1000), randomBytes(100));
+        byte[] encoded = snapshot.encode(null);
+        encoded[encoded.length - 1] ^= 1;
+        try {
+            StateSnapshot.decode(encoded, null);
+            Assert.fail("Corrupted snapshot was decoded");
+        } catch (EventManagementException expected) {
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLegacySnapshotRoundTrip() throws Exception {
+        StateSnapshot snapshot = createSnapshot(1, randomBytes(1000), randomBytes(100));
+        byte[] encoded = snapshot.encodeLegacy();
+        // Members of earlier versions decode the snapshots as a Java serialized map of the states
+        Map<Manager.ManagerType, byte[]> legacyStates =
+                (Map<Manager.ManagerType, byte[]>) new JavaStateSerializer().deserialize(encoded);
+        Assert.assertTrue(legacyStates instanceof HashMap);
+        Assert.assertTrue(Arrays.equals(snapshot.getState(Manager.ManagerType.Processor),
+                legacyStates.get(Manager.ManagerType.Processor)));
+
+        StateSnapshot decoded = StateSnapshot.decode(encoded, null);
+        assertSameStates(snapshot, decoded);
+        Assert.assertEquals(StateSnapshot.NO_VERSION, decoded.getVersion());
+        Assert.assertFalse(StateSnapshot.isSnapshotVersion(decoded.getVersion()));
+    }
+
+    private StateSnapshot createSnapshot(long version, byte[] processorState, byte[] receiverState) {
+        Map<Manager.ManagerType, byte[]> states = new EnumMap<Manager.ManagerType, byte[]>(Manager.ManagerType.class);
+        states.put(Manager.ManagerType.Processor, processorState);
+        states.put(Manager.ManagerType.Receiver, receiverState);
+        return new StateSnapshot(version, states);
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void assertSameStates(StateSnapshot expected, StateSnapshot actual) {
+        for (Manager.ManagerType managerType : Manager.ManagerType.values()) {
+            Assert.assertTrue(managerType + " state differs",
+                    Arrays.equals(expected.getState(managerType), actual.getState(managerType)));
+        }
+    }
+}
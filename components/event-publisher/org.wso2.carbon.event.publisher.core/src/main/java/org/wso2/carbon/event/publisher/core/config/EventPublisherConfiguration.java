@@ -15,6 +15,7 @@
 package org.wso2.carbon.event.publisher.core.config;
 
 import org.wso2.carbon.event.output.adapter.core.OutputEventAdapterConfiguration;
+import org.wso2.carbon.event.stream.core.DeliveryLaneConfiguration;
 
 import java.util.Map;
 
@@ -29,6 +30,7 @@ public class EventPublisherConfiguration {
     private boolean enableTracing;
     private boolean enableStatistics;
     private boolean editable;
+    private DeliveryLaneConfiguration deliveryLaneConfiguration;
 
     public String getEventPublisherName() {
         return eventPublisherName;
@@ -102,4 +104,16 @@ public class EventPublisherConfiguration {
     public boolean isEditable() {
         return editable;
     }
+
+    /**
+     * @return the delivery lane of the publisher, or null if the events are published on the thread sending them
+     * to the stream.
+     */
+    public DeliveryLaneConfiguration getDeliveryLaneConfiguration() {
+        return deliveryLaneConfiguration;
+    }
+
+    public void setDeliveryLaneConfiguration(DeliveryLaneConfiguration deliveryLaneConfiguration) {
+        this.deliveryLaneConfiguration = deliveryLaneConfiguration;
+    }
 }
@@ -104,6 +104,11 @@ public final class EventPublisherConstants {
     public static final String DEFAULT_STREAM_VERSION = "1.0.0";
 
     public static final String EF_ATTR_ENCRYPTED = "encrypted";
+    public static final String EF_ELEMENT_DELIVERY_LANE = "deliveryLane";
+    public static final String EF_ATTR_CAPACITY = "capacity";
+    public static final String EF_ATTR_OVERFLOW_POLICY = "overflowPolicy";
+    public static final String EF_ATTR_SPILL_CAPACITY = "spillCapacity";
+    public static final String EF_ATTR_DEDICATED_WORKER = "dedicatedWorker";
     public static final String DOUBLE_QUOTE = "\"";
 
     public static final String EVENT_TRACE_LOGGER = "EVENT_TRACE_LOGGER";
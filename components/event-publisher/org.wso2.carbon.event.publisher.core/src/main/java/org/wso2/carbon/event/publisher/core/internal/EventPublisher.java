@@ -38,6 +38,8 @@ import org.wso2.carbon.event.publisher.core.exception.EventPublisherConfiguratio
 import org.wso2.carbon.event.publisher.core.exception.EventPublisherStreamValidationException;
 import org.wso2.carbon.event.publisher.core.internal.ds.EventPublisherServiceValueHolder;
 import org.wso2.carbon.event.publisher.core.internal.util.EventPublisherUtil;
+import org.wso2.carbon.event.stream.core.AsyncEventConsumer;
+import org.wso2.carbon.event.stream.core.DeliveryLaneConfiguration;
 import org.wso2.carbon.event.stream.core.WSO2EventConsumer;
 import org.wso2.carbon.event.stream.core.exception.EventStreamConfigurationException;
 import org.wso2.carbon.metrics.manager.Counter;
@@ -50,7 +52,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
-public class EventPublisher implements WSO2EventConsumer, EventSync {
+public class EventPublisher implements WSO2EventConsumer, AsyncEventConsumer, EventSync {
 
     private static final Log log = LogFactory.getLog(EventPublisher.class);
 
@@ -277,6 +279,11 @@ public class EventPublisher implements WSO2EventConsumer, EventSync {
         return streamId;
     }
 
+    @Override
+    public DeliveryLaneConfiguration getDeliveryLaneConfiguration() {
+        return eventPublisherConfiguration.getDeliveryLaneConfiguration();
+    }
+
     @Override
     public void onEvent(Event event) {
         sendEvent(event);
@@ -38,6 +38,7 @@ import org.wso2.carbon.event.publisher.core.internal.EventPublisher;
 import org.wso2.carbon.event.publisher.core.internal.ds.EventPublisherServiceValueHolder;
 import org.wso2.carbon.event.publisher.core.internal.util.helper.EventPublisherConfigurationHelper;
 import org.wso2.carbon.event.publisher.core.internal.util.helper.XmlFormatter;
+import org.wso2.carbon.event.stream.core.DeliveryLaneConfiguration;
 import org.wso2.carbon.event.stream.core.EventStreamService;
 
 import javax.xml.namespace.QName;
@@ -45,6 +46,7 @@ import javax.xml.stream.XMLStreamException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 public class EventPublisherConfigurationBuilder {
@@ -107,6 +109,18 @@ public class EventPublisherConfigurationBuilder {
             }
         }
         eventPublisherConfigElement.addChild(toOMElement);
+
+        DeliveryLaneConfiguration deliveryLaneConfiguration = eventPublisherConfiguration.getDeliveryLaneConfiguration();
+        if (deliveryLaneConfiguration != null) {
+            OMElement deliveryLaneOMElement = factory.createOMElement(new QName(
+                    EventPublisherConstants.EF_ELEMENT_DELIVERY_LANE));
+            deliveryLaneOMElement.declareDefaultNamespace(EventPublisherConstants.EF_CONF_NS);
+            deliveryLaneOMElement.addAttribute(EventPublisherConstants.EF_ATTR_CAPACITY, String.valueOf(deliveryLaneConfiguration.getCapacity()), null);
+            deliveryLaneOMElement.addAttribute(EventPublisherConstants.EF_ATTR_OVERFLOW_POLICY, deliveryLaneConfiguration.getOverflowPolicy().name().toLowerCase(Locale.ENGLISH), null);
+            deliveryLaneOMElement.addAttribute(EventPublisherConstants.EF_ATTR_SPILL_CAPACITY, String.valueOf(deliveryLaneConfiguration.getSpillCapacity()), null);
+            deliveryLaneOMElement.addAttribute(EventPublisherConstants.EF_ATTR_DEDICATED_WORKER, String.valueOf(deliveryLaneConfiguration.isDedicatedWorker()), null);
+            eventPublisherConfigElement.addChild(deliveryLaneOMElement);
+        }
         try {
             String formattedXml = XmlFormatter.format(eventPublisherConfigElement.toString());
             eventPublisherConfigElement = AXIOMUtil.stringToOM(formattedXml);
@@ -255,10 +269,38 @@ public class EventPublisherConfigurationBuilder {
         eventPublisherConfiguration.setToAdapterConfiguration(outputEventAdapterConfiguration);
         eventPublisherConfiguration.setToAdapterDynamicProperties(dynamicProperties);
         eventPublisherConfiguration.setEditable(isEditable);
+        eventPublisherConfiguration.setDeliveryLaneConfiguration(getDeliveryLaneConfiguration(
+                eventPublisherConfigOMElement.getFirstChildWithName(new QName(EventPublisherConstants.EF_CONF_NS, EventPublisherConstants.EF_ELEMENT_DELIVERY_LANE)), publisherName));
         return eventPublisherConfiguration;
 
     }
 
+    /**
+     * Builds the delivery lane of a publisher from the optional deliveryLane element, where only the capacity is
+     * mandatory. A publisher without the element receives the events on the thread sending them to the stream.
+     */
+    private static DeliveryLaneConfiguration getDeliveryLaneConfiguration(OMElement deliveryLaneElement,
+                                                                          String publisherName)
+            throws EventPublisherConfigurationException {
+        if (deliveryLaneElement == null) {
+            return null;
+        }
+        String capacity = deliveryLaneElement.getAttributeValue(new QName(EventPublisherConstants.EF_ATTR_CAPACITY));
+        String overflowPolicy = deliveryLaneElement.getAttributeValue(new QName(EventPublisherConstants.EF_ATTR_OVERFLOW_POLICY));
+        String spillCapacity = deliveryLaneElement.getAttributeValue(new QName(EventPublisherConstants.EF_ATTR_SPILL_CAPACITY));
+        String dedicatedWorker = deliveryLaneElement.getAttributeValue(new QName(EventPublisherConstants.EF_ATTR_DEDICATED_WORKER));
+        try {
+            return new DeliveryLaneConfiguration(publisherName, Integer.parseInt(capacity),
+                    overflowPolicy == null ? DeliveryLaneConfiguration.OverflowPolicy.BLOCK :
+                            DeliveryLaneConfiguration.OverflowPolicy.valueOf(overflowPolicy.toUpperCase(Locale.ENGLISH)),
+                    spillCapacity == null ? 0 : Integer.parseInt(spillCapacity), Boolean.parseBoolean(dedicatedWorker));
+        } catch (IllegalArgumentException e) {
+            throw new EventPublisherConfigurationException("Invalid delivery lane of event publisher " + publisherName +
+                    ", capacity: " + capacity + ", overflowPolicy: " + overflowPolicy + ", spillCapacity: " +
+                    spillCapacity, e);
+        }
+    }
+
     public static String getMappingTypeFactoryClass(OMElement omElement) {
         return omElement.getAttributeValue(new QName(EventPublisherConstants.EF_ATTR_FACTORY_CLASS));
     }
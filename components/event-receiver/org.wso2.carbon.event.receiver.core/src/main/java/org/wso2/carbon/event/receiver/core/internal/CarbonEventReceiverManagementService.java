@@ -20,10 +20,10 @@ package org.wso2.carbon.event.receiver.core.internal;
 
 
 import org.apache.log4j.Logger;
+import org.wso2.carbon.event.processor.manager.commons.utils.ByteSerializer;
 import org.wso2.carbon.event.processor.manager.core.EventReceiverManagementService;
 import org.wso2.carbon.event.processor.manager.core.exception.EventManagementException;
 import org.wso2.carbon.event.receiver.core.internal.ds.EventReceiverServiceValueHolder;
-import org.wso2.siddhi.core.util.snapshot.ByteSerializer;
 
 import java.util.HashMap;
 import java.util.Map;
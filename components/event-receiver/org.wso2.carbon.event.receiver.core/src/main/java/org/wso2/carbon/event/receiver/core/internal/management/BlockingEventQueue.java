@@ -111,6 +111,18 @@ public class BlockingEventQueue {
         }
     }
 
+    /**
+     * @return the queued events, from the head of the queue
+     */
+    public Event[] getEvents() {
+        Object[] wrappedEvents = this.queue.toArray();
+        Event[] events = new Event[wrappedEvents.length];
+        for (int i = 0; i < wrappedEvents.length; i++) {
+            events[i] = ((WrappedEvent) wrappedEvents[i]).getEvent();
+        }
+        return events;
+    }
+
     private class WrappedEvent {
         private int size;
         private Event event;
@@ -22,11 +22,11 @@ import org.apache.log4j.Logger;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.event.processor.manager.commons.utils.ByteSerializer;
 import org.wso2.carbon.event.processor.manager.core.EventManagementUtil;
 import org.wso2.carbon.event.processor.manager.core.EventSync;
 import org.wso2.carbon.event.processor.manager.core.Manager;
 import org.wso2.carbon.event.receiver.core.internal.ds.EventReceiverServiceValueHolder;
-import org.wso2.siddhi.core.util.snapshot.ByteSerializer;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -77,16 +77,16 @@ public class QueueInputEventDispatcher extends AbstractInputEventDispatcher impl
     @Override
     public byte[] getState() {
         threadBarrier.lock();
-        byte[] state = ByteSerializer.OToB(eventQueue);
+        byte[] state = ByteSerializer.OToB(eventQueue.getEvents());
         threadBarrier.unlock();
         return state;
     }
 
     @Override
     public void syncState(byte[] bytes) {
-        BlockingEventQueue events = (BlockingEventQueue) ByteSerializer.BToO(bytes);
-        while (events.peek() != null) {
-            if (events.poll().equals(eventQueue.peek())) {
+        Event[] events = (Event[]) ByteSerializer.BToO(bytes);
+        for (Event event : events) {
+            if (event.equals(eventQueue.peek())) {
                 eventQueue.poll();
             } else {
                 break;
@@ -14,12 +14,12 @@
  */
 package org.wso2.carbon.event.receiver.core.internal.type.json;
 
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.InvalidJsonException;
 import com.jayway.jsonpath.InvalidPathException;
 import com.jayway.jsonpath.JsonPath;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.wso2.carbon.databridge.commons.Attribute;
 import org.wso2.carbon.databridge.commons.AttributeType;
 import org.wso2.carbon.databridge.commons.Event;
@@ -39,9 +39,16 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Maps JSON events to the stream attributes. Each received message is parsed once, and the attribute values are
+ * then read from the parsed object, using the JSON paths compiled when the mapper is created for custom mappings,
+ * or by directly looking up the attributes of the default event format.
+ */
 public class JSONInputMapper implements InputMapper {
 
     private static final Log log = LogFactory.getLog(JSONInputMapper.class);
+    // The default json-smart provider creates a parser per parse call, hence the configuration can be shared
+    private final Configuration jsonPathConfiguration = Configuration.defaultConfiguration();
     private EventReceiverConfiguration eventReceiverConfiguration = null;
     private List<JsonPathData> attributeJsonPathDataList = new ArrayList<JsonPathData>();
     private int noMetaData;
@@ -72,10 +79,11 @@ public class JSONInputMapper implements InputMapper {
         Object outObject = null;
         if (obj instanceof String) {
             String jsonString = (String) obj;
+            Object jsonObject = parseJson(jsonString);
             if (jsonString.startsWith(EventReceiverConstants.JSON_ARRAY_START_CHAR)) {
-                outObject = processMultipleEvents(obj);
+                outObject = processMultipleEvents(jsonObject);
             } else {
-                outObject = processSingleEvent(obj);
+                outObject = processSingleEvent(jsonObject);
             }
         }
         return outObject;
@@ -87,10 +95,11 @@ public class JSONInputMapper implements InputMapper {
         Object outObject = null;
         if (obj instanceof String) {
             String jsonString = (String) obj;
+            Object jsonObject = parseJson(jsonString);
             if (jsonString.startsWith(EventReceiverConstants.JSON_ARRAY_START_CHAR)) {
-                outObject = processTypedMultipleEvents(obj);
+                outObject = processTypedMultipleEvents(jsonObject);
             } else {
-                outObject = processTypedSingleEvent(obj);
+                outObject = processTypedSingleEvent(jsonObject);
             }
         }
         return outObject;
@@ -104,26 +113,39 @@ public class JSONInputMapper implements InputMapper {
         return EventReceiverConfigurationHelper.getAttributes(inputMappingAttributes);
     }
 
-    private Event[] processMultipleEvents(Object obj) throws EventReceiverProcessingException {
-        Event[] events = null;
-        if (obj instanceof String) {
-            String stringEvents = (String) obj;
-            JSONArray jsonArray;
-            try {
-                jsonArray = new JSONArray(stringEvents);
-                events = new Event[jsonArray.length()];
-                for (int i = 0; i < jsonArray.length(); i++) {
-                    events[i] = processSingleEvent(jsonArray.getJSONObject(i).toString());
-                }
-            } catch (JSONException e) {
-                throw new EventReceiverProcessingException("Error in parsing JSON: ", e);
+    private Object parseJson(String jsonString) throws EventReceiverProcessingException {
+        try {
+            return jsonPathConfiguration.getProvider().parse(jsonString);
+        } catch (InvalidJsonException e) {
+            throw new EventReceiverProcessingException("Error in parsing JSON: ", e);
+        }
+    }
+
+    private List<?> getJsonEvents(Object jsonObject) throws EventReceiverProcessingException {
+        if (!(jsonObject instanceof List)) {
+            throw new EventReceiverProcessingException("Error in parsing JSON: expected an array of events");
+        }
+        List<?> jsonEvents = (List<?>) jsonObject;
+        for (Object jsonEvent : jsonEvents) {
+            if (!(jsonEvent instanceof Map)) {
+                throw new EventReceiverProcessingException("Error in parsing JSON: array element " + jsonEvent
+                        + " is not a JSON object");
             }
         }
+        return jsonEvents;
+    }
+
+    private Event[] processMultipleEvents(Object obj) throws EventReceiverProcessingException {
+        List<?> jsonEvents = getJsonEvents(obj);
+        Event[] events = new Event[jsonEvents.size()];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = processSingleEvent(jsonEvents.get(i));
+        }
         return events;
     }
 
     private Event processSingleEvent(Object obj) throws EventReceiverProcessingException {
-        Object[] outObjArray = null;
+        Object[] outObjArray = new Object[attributeJsonPathDataList.size()];
         StreamDefinition outStreamDefinition = this.streamDefinition;
         int metaDataCount = outStreamDefinition.getMetaData() != null ? outStreamDefinition.getMetaData().size() : 0;
         int correlationDataCount = outStreamDefinition.getCorrelationData() != null ? outStreamDefinition.getCorrelationData().size() : 0;
@@ -131,67 +153,56 @@ public class JSONInputMapper implements InputMapper {
         Object[] metaDataArray = new Object[metaDataCount];
         Object[] correlationDataArray = new Object[correlationDataCount];
         Object[] payloadDataArray = new Object[payloadDataCount];
-        if (obj instanceof String) {
-            String jsonString = (String) obj;
-            List<Object> objList = new ArrayList<Object>();
-            for (JsonPathData jsonPathData : attributeJsonPathDataList) {
-                JsonPath jsonPath = jsonPathData.getJsonPath();
-                AttributeType type = jsonPathData.getType();
+        int attributeCount = 0;
+        for (JsonPathData jsonPathData : attributeJsonPathDataList) {
+            JsonPath jsonPath = jsonPathData.getJsonPath();
+            AttributeType type = jsonPathData.getType();
+            try {
+                Object resultObject = null;
+                Object returnedObj = null;
+
                 try {
-                    Object resultObject = null;
-                    Object returnedObj = null;
+                    resultObject = jsonPath.read(obj, jsonPathConfiguration);
+                } catch (InvalidPathException e) {
+                    log.debug(e.getMessage() + ". Could not find match for JSONPath : " + jsonPath.toString() + " for event: " + obj.toString());
+                }
 
-                    try {
-                        resultObject = jsonPath.read(jsonString);
-                    } catch (InvalidPathException e) {
-                        log.debug(e.getMessage() + ". Could not find match for JSONPath : " + jsonPath.toString() + " for event: " + obj.toString());
+                if (resultObject == null) {
+                    if (jsonPathData.getDefaultValue() != null && !jsonPathData.getDefaultValue().isEmpty()) {
+                        returnedObj = getPropertyValue(jsonPathData.getDefaultValue(), type);
+                        log.debug("Unable to parse JSONPath to retrieve required attribute. Sending defaults.");
+                    } else if (!(AttributeType.STRING.equals(jsonPathData.getType()))) {
+                        throw new InvalidPropertyValueException("Found Invalid property value null for attribute ");
                     }
-
-                    if (resultObject == null) {
-                        if (jsonPathData.getDefaultValue() != null && !jsonPathData.getDefaultValue().isEmpty()) {
+                } else {
+                    try {
+                        returnedObj = getPropertyValue(resultObject, type);
+                    } catch (NumberFormatException e) {
+                        if ((!AttributeType.STRING.equals(type)) && jsonPathData.getDefaultValue() != null) {
                             returnedObj = getPropertyValue(jsonPathData.getDefaultValue(), type);
-                            log.debug("Unable to parse JSONPath to retrieve required attribute. Sending defaults.");
-                        } else if (!(AttributeType.STRING.equals(jsonPathData.getType()))) {
-                            throw new InvalidPropertyValueException("Found Invalid property value null for attribute ");
-                        }
-                    } else {
-                        try {
-                            returnedObj = getPropertyValue(resultObject, type);
-                        } catch (NumberFormatException e) {
-                            if ((!AttributeType.STRING.equals(type)) && jsonPathData.getDefaultValue() != null) {
-                                returnedObj = getPropertyValue(jsonPathData.getDefaultValue(), type);
-                            } else {
-                                throw e;
-                            }
+                        } else {
+                            throw e;
                         }
                     }
-                    objList.add(returnedObj);
-                } catch (NumberFormatException e) {
-                    log.error("Unable to cast the input data to required type :" + type + " ,hence dropping the event " + obj.toString(), e);
-                    return null;
-                } catch (InvalidPropertyValueException e) {
-                    log.error(e.getMessage() + " ,hence dropping the event : " + obj.toString());
-                    return null;
                 }
+                outObjArray[attributeCount++] = returnedObj;
+            } catch (NumberFormatException e) {
+                log.error("Unable to cast the input data to required type :" + type + " ,hence dropping the event " + obj.toString(), e);
+                return null;
+            } catch (InvalidPropertyValueException e) {
+                log.error(e.getMessage() + " ,hence dropping the event : " + obj.toString());
+                return null;
             }
-            outObjArray = objList.toArray(new Object[objList.size()]);
         }
         return EventReceiverUtil.getEventFromArray(outObjArray, outStreamDefinition, metaDataArray, correlationDataArray, payloadDataArray);
     }
 
     private Event[] processTypedMultipleEvents(Object obj)
             throws EventReceiverProcessingException {
-        Event[] eventArray;
-        String events = (String) obj;
-        JSONArray jsonArray;
-        try {
-            jsonArray = new JSONArray(events);
-            eventArray = new Event[jsonArray.length()];
-            for (int i = 0; i < jsonArray.length(); i++) {
-                eventArray[i] = processTypedSingleEvent(jsonArray.getJSONObject(i).toString());
-            }
-        } catch (JSONException e) {
-            throw new EventReceiverProcessingException("Error in parsing JSON: ", e);
+        List<?> jsonEvents = getJsonEvents(obj);
+        Event[] eventArray = new Event[jsonEvents.size()];
+        for (int i = 0; i < eventArray.length; i++) {
+            eventArray[i] = processTypedSingleEvent(jsonEvents.get(i));
         }
         return eventArray;
     }
@@ -210,70 +221,65 @@ public class JSONInputMapper implements InputMapper {
         Object[] payloadDataArray = new Object[payloadDataCount];
 
         try {
-            if (obj instanceof String) {
-                String jsonString = (String) obj;
-
-                if (noMetaData > 0) {
-                    JsonPath jsonPath = JsonPath.compile("$." + EventReceiverConstants.EVENT_PARENT_TAG + "." + EventReceiverConstants.EVENT_META_TAG);
-                    Map<Object, Object> eventMap = jsonPath.read(jsonString);
-                    if (eventMap == null) {
-                        throw new EventReceiverProcessingException("Missing event MetaData attributes, Event does not match with the stream : " + this.eventReceiverConfiguration.getToStreamName() + ":" + eventReceiverConfiguration.getToStreamVersion());
-                    } else {
-                        for (Attribute metaData : streamDefinition.getMetaData()) {
-                            if (eventMap.containsKey(metaData.getName())) {
-                                attributeArray[attributeCount++] = getPropertyValue(eventMap.get(metaData.getName()), metaData.getType());
+            Object eventObject = obj instanceof Map ? ((Map<?, ?>) obj).get(EventReceiverConstants.EVENT_PARENT_TAG) : null;
+
+            if (noMetaData > 0) {
+                Map<?, ?> eventMap = getEventDataMap(eventObject, EventReceiverConstants.EVENT_META_TAG);
+                if (eventMap == null) {
+                    throw new EventReceiverProcessingException("Missing event MetaData attributes, Event does not match with the stream : " + this.eventReceiverConfiguration.getToStreamName() + ":" + eventReceiverConfiguration.getToStreamVersion());
+                } else {
+                    for (Attribute metaData : streamDefinition.getMetaData()) {
+                        if (eventMap.containsKey(metaData.getName())) {
+                            attributeArray[attributeCount++] = getPropertyValue(eventMap.get(metaData.getName()), metaData.getType());
+                        } else {
+                            if (AttributeType.STRING.equals(metaData.getType())) {
+                                attributeArray[attributeCount++] = getPropertyValue(null, metaData.getType());
                             } else {
-                                if (AttributeType.STRING.equals(metaData.getType())) {
-                                    attributeArray[attributeCount++] = getPropertyValue(null, metaData.getType());
-                                } else {
-                                    throw new InvalidPropertyValueException("Attribute " + metaData.getName() + " tag not found in the event hence Dropping event " + obj.toString());
-                                }
+                                throw new InvalidPropertyValueException("Attribute " + metaData.getName() + " tag not found in the event hence Dropping event " + obj.toString());
                             }
                         }
                     }
                 }
+            }
 
-                if (noCorrelationData > 0) {
-                    JsonPath jsonPath = JsonPath.compile("$." + EventReceiverConstants.EVENT_PARENT_TAG + "." + EventReceiverConstants.EVENT_CORRELATION_TAG);
-                    Map<Object, Object> eventMap = jsonPath.read(jsonString);
-                    if (eventMap == null) {
-                        throw new EventReceiverProcessingException("Missing CorrelationData attributes, Event does not match with the stream : " + this.eventReceiverConfiguration.getToStreamName() + ":" + eventReceiverConfiguration.getToStreamVersion());
-                    } else {
-                        for (Attribute correlationData : streamDefinition.getCorrelationData()) {
-                            if (eventMap.containsKey(correlationData.getName())) {
-                                attributeArray[attributeCount++] = getPropertyValue(eventMap.get(correlationData.getName()), correlationData.getType());
+            if (noCorrelationData > 0) {
+                Map<?, ?> eventMap = getEventDataMap(eventObject, EventReceiverConstants.EVENT_CORRELATION_TAG);
+                if (eventMap == null) {
+                    throw new EventReceiverProcessingException("Missing CorrelationData attributes, Event does not match with the stream : " + this.eventReceiverConfiguration.getToStreamName() + ":" + eventReceiverConfiguration.getToStreamVersion());
+                } else {
+                    for (Attribute correlationData : streamDefinition.getCorrelationData()) {
+                        if (eventMap.containsKey(correlationData.getName())) {
+                            attributeArray[attributeCount++] = getPropertyValue(eventMap.get(correlationData.getName()), correlationData.getType());
+                        } else {
+                            if (AttributeType.STRING.equals(correlationData.getType())) {
+                                attributeArray[attributeCount++] = getPropertyValue(null, correlationData.getType());
                             } else {
-                                if (AttributeType.STRING.equals(correlationData.getType())) {
-                                    attributeArray[attributeCount++] = getPropertyValue(null, correlationData.getType());
-                                } else {
-                                    throw new InvalidPropertyValueException("Attribute " + correlationData.getName() + " tag not found in the event hence Dropping event " + obj.toString());
-                                }
+                                throw new InvalidPropertyValueException("Attribute " + correlationData.getName() + " tag not found in the event hence Dropping event " + obj.toString());
                             }
                         }
                     }
                 }
-                if (noPayloadData > 0) {
-                    JsonPath jsonPath = JsonPath.compile("$." + EventReceiverConstants.EVENT_PARENT_TAG + "." + EventReceiverConstants.EVENT_PAYLOAD_TAG);
-                    Map<Object, Object> eventMap = jsonPath.read(jsonString);
-                    if (eventMap == null) {
-                        throw new EventReceiverProcessingException("Missing PayloadData attributes, Event does not match with the stream : " + this.eventReceiverConfiguration.getToStreamName() + ":" + eventReceiverConfiguration.getToStreamVersion());
-                    } else {
-                        for (Attribute payloadData : streamDefinition.getPayloadData()) {
-                            if (eventMap.containsKey(payloadData.getName())) {
-                                attributeArray[attributeCount++] = getPropertyValue(eventMap.get(payloadData.getName()), payloadData.getType());
+            }
+            if (noPayloadData > 0) {
+                Map<?, ?> eventMap = getEventDataMap(eventObject, EventReceiverConstants.EVENT_PAYLOAD_TAG);
+                if (eventMap == null) {
+                    throw new EventReceiverProcessingException("Missing PayloadData attributes, Event does not match with the stream : " + this.eventReceiverConfiguration.getToStreamName() + ":" + eventReceiverConfiguration.getToStreamVersion());
+                } else {
+                    for (Attribute payloadData : streamDefinition.getPayloadData()) {
+                        if (eventMap.containsKey(payloadData.getName())) {
+                            attributeArray[attributeCount++] = getPropertyValue(eventMap.get(payloadData.getName()), payloadData.getType());
+                        } else {
+                            if (AttributeType.STRING.equals(payloadData.getType())) {
+                                attributeArray[attributeCount++] = getPropertyValue(null, payloadData.getType());
                             } else {
-                                if (AttributeType.STRING.equals(payloadData.getType())) {
-                                    attributeArray[attributeCount++] = getPropertyValue(null, payloadData.getType());
-                                } else {
-                                    throw new InvalidPropertyValueException("Attribute " + payloadData.getName() + " tag not found in the event hence Dropping event " + obj.toString());
-                                }
+                                throw new InvalidPropertyValueException("Attribute " + payloadData.getName() + " tag not found in the event hence Dropping event " + obj.toString());
                             }
                         }
                     }
                 }
-                if (noMetaData + noCorrelationData + noPayloadData != attributeCount) {
-                    throw new EventReceiverProcessingException("Event attributes are not matching with the stream : " + this.eventReceiverConfiguration.getToStreamName() + ":" + eventReceiverConfiguration.getToStreamVersion());
-                }
+            }
+            if (noMetaData + noCorrelationData + noPayloadData != attributeCount) {
+                throw new EventReceiverProcessingException("Event attributes are not matching with the stream : " + this.eventReceiverConfiguration.getToStreamName() + ":" + eventReceiverConfiguration.getToStreamVersion());
             }
             return EventReceiverUtil.getEventFromArray(attributeArray, outStreamDefinition, metaDataArray, correlationDataArray, payloadDataArray);
         } catch (InvalidPropertyValueException e) {
@@ -286,21 +292,37 @@ public class JSONInputMapper implements InputMapper {
     }
 
 
+    private Map<?, ?> getEventDataMap(Object eventObject, String dataTag) {
+        if (eventObject instanceof Map) {
+            Object eventData = ((Map<?, ?>) eventObject).get(dataTag);
+            if (eventData instanceof Map) {
+                return (Map<?, ?>) eventData;
+            }
+        }
+        return null;
+    }
+
     private Object getPropertyValue(Object propertyValue, AttributeType attributeType) throws InvalidPropertyValueException {
 
         if ((!AttributeType.STRING.equals(attributeType)) && propertyValue == null) {
             throw new InvalidPropertyValueException("Found Invalid property value 'null' for attribute of type " + attributeType);
         }
 
+        // Values parsed into the required type are used as they are, instead of being converted through strings
         if (AttributeType.BOOL.equals(attributeType)) {
-            return Boolean.parseBoolean(propertyValue.toString());
+            return propertyValue instanceof Boolean ? propertyValue : Boolean.parseBoolean(propertyValue.toString());
         } else if (AttributeType.DOUBLE.equals(attributeType)) {
-            return Double.parseDouble(propertyValue.toString());
+            return propertyValue instanceof Double ? propertyValue : Double.parseDouble(propertyValue.toString());
         } else if (AttributeType.FLOAT.equals(attributeType)) {
-            return Float.parseFloat(propertyValue.toString());
+            return propertyValue instanceof Float ? propertyValue : Float.parseFloat(propertyValue.toString());
         } else if (AttributeType.INT.equals(attributeType)) {
-            return Integer.parseInt(propertyValue.toString());
+            return propertyValue instanceof Integer ? propertyValue : Integer.parseInt(propertyValue.toString());
         } else if (AttributeType.LONG.equals(attributeType)) {
+            if (propertyValue instanceof Long) {
+                return propertyValue;
+            } else if (propertyValue instanceof Integer) {
+                return ((Integer) propertyValue).longValue();
+            }
             return Long.parseLong(propertyValue.toString());
         } else {
             return propertyValue == null ? null : propertyValue.toString();
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2005 - 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.event.receiver.core.internal.util;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.commons.exception.MalformedStreamDefinitionException;
+import org.wso2.carbon.event.receiver.core.config.EventReceiverConfiguration;
+import org.wso2.carbon.event.receiver.core.config.EventReceiverConstants;
+import org.wso2.carbon.event.receiver.core.config.InputMappingAttribute;
+import org.wso2.carbon.event.receiver.core.config.mapping.JSONInputMapping;
+import org.wso2.carbon.event.receiver.core.exception.EventReceiverConfigurationException;
+import org.wso2.carbon.event.receiver.core.exception.EventReceiverProcessingException;
+import org.wso2.carbon.event.receiver.core.internal.type.json.JSONInputMapper;
+
+public class JSONMappingTestCase {
+    private static final String DEFAULT_FORMAT_EVENT = "{\"event\": {"
+            + "\"metaData\": {\"host\": \"localhost\"}, "
+            + "\"correlationData\": {\"id\": 5}, "
+            + "\"payloadData\": {\"symbol\": \"WSO2\", \"price\": 55.5, \"volume\": \"100\"}}}";
+    private static final String CUSTOM_FORMAT_EVENT = "{\"host\": \"localhost\", \"id\": 5, "
+            + "\"StockQuoteEvent\": {\"StockSymbol\": \"WSO2\", \"LastTradeAmount\": 55.5, \"Volume\": 100}}";
+    private StreamDefinition streamDefinition;
+    private EventReceiverConfiguration jsonEventReceiverConfig;
+
+    @Before
+    public void init() throws MalformedStreamDefinitionException {
+        streamDefinition = new StreamDefinition("stockQuotes", "1.0.0");
+        streamDefinition.addMetaData("host", AttributeType.STRING);
+        streamDefinition.addCorrelationData("id", AttributeType.LONG);
+        streamDefinition.addPayloadData("symbol", AttributeType.STRING);
+        streamDefinition.addPayloadData("price", AttributeType.DOUBLE);
+        streamDefinition.addPayloadData("volume", AttributeType.INT);
+        jsonEventReceiverConfig = new EventReceiverConfiguration();
+        jsonEventReceiverConfig.setToStreamName("stockQuotes");
+        jsonEventReceiverConfig.setToStreamVersion("1.0.0");
+    }
+
+    @Test
+    public void testDefaultFormatEvent() throws EventReceiverConfigurationException,
+            EventReceiverProcessingException {
+        JSONInputMapper inputMapper = new JSONInputMapper(createDefaultConfig(), streamDefinition);
+        Event event = (Event) inputMapper.convertToTypedInputEvent(DEFAULT_FORMAT_EVENT);
+        Assert.assertEquals(streamDefinition.getStreamId(), event.getStreamId());
+        Assert.assertArrayEquals(new Object[]{"localhost"}, event.getMetaData());
+        Assert.assertArrayEquals(new Object[]{5L}, event.getCorrelationData());
+        Assert.assertArrayEquals(new Object[]{"WSO2", 55.5, 100}, event.getPayloadData());
+    }
+
+    @Test
+    public void testDefaultFormatEventArray() throws EventReceiverConfigurationException,
+            EventReceiverProcessingException {
+        JSONInputMapper inputMapper = new JSONInputMapper(createDefaultConfig(), streamDefinition);
+        String otherEvent = "{\"event\": {\"metaData\": {}, \"correlationData\": {\"id\": 6}, "
+                + "\"payloadData\": {\"price\": 60, \"volume\": 200}}}";
+        Event[] events = (Event[]) inputMapper.convertToTypedInputEvent("[" + DEFAULT_FORMAT_EVENT + ", "
+                + otherEvent + "]");
+        Assert.assertEquals(2, events.length);
+        Assert.assertArrayEquals(new Object[]{"WSO2", 55.5, 100}, events[0].getPayloadData());
+        // missing string attributes are null, numbers are converted to the attribute type
+        Assert.assertArrayEquals(new Object[]{null}, events[1].getMetaData());
+        Assert.assertArrayEquals(new Object[]{6L}, events[1].getCorrelationData());
+        Assert.assertArrayEquals(new Object[]{null, 60.0, 200}, events[1].getPayloadData());
+    }
+
+    @Test
+    public void testDefaultFormatEventWithMissingValueIsDropped() throws EventReceiverConfigurationException,
+            EventReceiverProcessingException {
+        JSONInputMapper inputMapper = new JSONInputMapper(createDefaultConfig(), streamDefinition);
+        String event = "{\"event\": {\"metaData\": {\"host\": \"localhost\"}, \"correlationData\": {\"id\": 5}, "
+                + "\"payloadData\": {\"symbol\": \"WSO2\", \"price\": 55.5}}}";
+        Assert.assertNull(inputMapper.convertToTypedInputEvent(event));
+    }
+
+    @Test
+    public void testCustomMappingEvent() throws EventReceiverConfigurationException,
+            EventReceiverProcessingException {
+        JSONInputMapper inputMapper = new JSONInputMapper(createCustomConfig(null), streamDefinition);
+        Event event = (Event) inputMapper.convertToMappedInputEvent(CUSTOM_FORMAT_EVENT);
+        Assert.assertArrayEquals(new Object[]{"localhost"}, event.getMetaData());
+        Assert.assertArrayEquals(new Object[]{5L}, event.getCorrelationData());
+        Assert.assertArrayEquals(new Object[]{"WSO2", 55.5, 100}, event.getPayloadData());
+    }
+
+    @Test
+    public void testCustomMappingEventArray() throws EventReceiverConfigurationException,
+            EventReceiverProcessingException {
+        JSONInputMapper inputMapper = new JSONInputMapper(createCustomConfig(null), streamDefinition);
+        String otherEvent = "{\"host\": \"remote\", \"id\": 6, "
+                + "\"StockQuoteEvent\": {\"StockSymbol\": \"IBM\", \"LastTradeAmount\": \"10\", \"Volume\": 300}}";
+        Event[] events = (Event[]) inputMapper.convertToMappedInputEvent("[" + CUSTOM_FORMAT_EVENT + ", "
+                + otherEvent + "]");
+        Assert.assertEquals(2, events.length);
+        Assert.assertArrayEquals(new Object[]{"WSO2", 55.5, 100}, events[0].getPayloadData());
+        Assert.assertArrayEquals(new Object[]{"remote"}, events[1].getMetaData());
+        Assert.assertArrayEquals(new Object[]{6L}, events[1].getCorrelationData());
+        Assert.assertArrayEquals(new Object[]{"IBM", 10.0, 300}, events[1].getPayloadData());
+    }
+
+    @Test
+    public void testCustomMappingDefaultValues() throws EventReceiverConfigurationException,
+            EventReceiverProcessingException {
+        String event = "{\"id\": 5, \"StockQuoteEvent\": {\"LastTradeAmount\": \"unknown\", \"Volume\": 100}}";
+        JSONInputMapper inputMapper = new JSONInputMapper(createCustomConfig("10.5"), streamDefinition);
+        Event mappedEvent = (Event) inputMapper.convertToMappedInputEvent(event);
+        // the default is used for a missing value as well as for a value that cannot be converted
+        Assert.assertArrayEquals(new Object[]{null}, mappedEvent.getMetaData());
+        Assert.assertArrayEquals(new Object[]{null, 10.5, 100}, mappedEvent.getPayloadData());
+        mappedEvent = (Event) inputMapper.convertToMappedInputEvent(
+                "{\"id\": 5, \"StockQuoteEvent\": {\"Volume\": 100}}");
+        Assert.assertArrayEquals(new Object[]{null, 10.5, 100}, mappedEvent.getPayloadData());
+
+        // without a default value, the event is dropped
+        inputMapper = new JSONInputMapper(createCustomConfig(null), streamDefinition);
+        Assert.assertNull(inputMapper.convertToMappedInputEvent(event));
+        Assert.assertNull(inputMapper.convertToMappedInputEvent(
+                "{\"id\": 5, \"StockQuoteEvent\": {\"Volume\": 100}}"));
+    }
+
+    @Test
+    public void testMalformedJson() throws EventReceiverConfigurationException {
+        JSONInputMapper defaultMapper = new JSONInputMapper(createDefaultConfig(), streamDefinition);
+        JSONInputMapper customMapper = new JSONInputMapper(createCustomConfig(null), streamDefinition);
+        String[] malformedEvents = {"{\"event\": {\"payloadData\": ", "[" + DEFAULT_FORMAT_EVENT + ", ",
+                "[" + DEFAULT_FORMAT_EVENT + ", 5]"};
+        for (String malformedEvent : malformedEvents) {
+            try {
+                defaultMapper.convertToTypedInputEvent(malformedEvent);
+                Assert.fail("Malformed JSON mapped: " + malformedEvent);
+            } catch (EventReceiverProcessingException expected) {
+            }
+            try {
+                customMapper.convertToMappedInputEvent(malformedEvent);
+                Assert.fail("Malformed JSON mapped: " + malformedEvent);
+            } catch (EventReceiverProcessingException expected) {
+            }
+        }
+    }
+
+    private EventReceiverConfiguration createDefaultConfig() {
+        JSONInputMapping jsonInputMapping = new JSONInputMapping();
+        jsonInputMapping.setCustomMappingEnabled(false);
+        jsonEventReceiverConfig.setInputMapping(jsonInputMapping);
+        return jsonEventReceiverConfig;
+    }
+
+    private EventReceiverConfiguration createCustomConfig(String defaultPrice) {
+        JSONInputMapping jsonInputMapping = new JSONInputMapping();
+        jsonInputMapping.addInputMappingAttribute(new InputMappingAttribute("$.host",
+                EventReceiverConstants.META_DATA_PREFIX + "host", AttributeType.STRING));
+        jsonInputMapping.addInputMappingAttribute(new InputMappingAttribute("$.id",
+                EventReceiverConstants.CORRELATION_DATA_PREFIX + "id", AttributeType.LONG));
+        jsonInputMapping.addInputMappingAttribute(new InputMappingAttribute("$.StockQuoteEvent.StockSymbol",
+                "symbol", AttributeType.STRING));
+        InputMappingAttribute priceAttribute = new InputMappingAttribute("$.StockQuoteEvent.LastTradeAmount",
+                "price", AttributeType.DOUBLE);
+        priceAttribute.setDefaultValue(defaultPrice);
+        jsonInputMapping.addInputMappingAttribute(priceAttribute);
+        jsonInputMapping.addInputMappingAttribute(new InputMappingAttribute("$.StockQuoteEvent.Volume",
+                "volume", AttributeType.INT));
+        jsonEventReceiverConfig.setInputMapping(jsonInputMapping);
+        return jsonEventReceiverConfig;
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.event.stream.core;
+
+/**
+ * Optionally implemented by the consumers of a stream, along with {@link SiddhiEventConsumer},
+ * {@link WSO2EventConsumer} or {@link WSO2EventListConsumer}, to receive the events of the junction
+ * through an asynchronous delivery lane, so that a slow consumer doesn't block the threads sending the
+ * events to the stream, or delay the other consumers of the stream.
+ */
+public interface AsyncEventConsumer {
+
+    /**
+     * @return the configuration of the delivery lane of the consumer, or null to receive the events
+     * synchronously on the thread sending them to the stream.
+     */
+    public DeliveryLaneConfiguration getDeliveryLaneConfiguration();
+}
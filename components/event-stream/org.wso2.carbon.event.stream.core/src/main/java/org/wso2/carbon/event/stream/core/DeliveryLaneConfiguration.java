@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.event.stream.core;
+
+/**
+ * Configuration of the asynchronous delivery lane of an {@link AsyncEventConsumer}. A lane buffers the
+ * batches sent to the junction in a bounded ring, which is drained either by a thread dedicated to the
+ * lane, or by a worker pool shared by all the lanes.
+ */
+public class DeliveryLaneConfiguration {
+
+    /**
+     * What happens when a batch is sent to a lane whose ring is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The sending thread waits until the consumer frees a slot of the ring.
+         */
+        BLOCK,
+        /**
+         * The oldest batch in the ring is discarded to accept the new batch.
+         */
+        DROP_OLDEST,
+        /**
+         * The batch is spilled to an overflow buffer of the lane, which is delivered in order after the ring.
+         * The sending thread waits once the overflow buffer is full as well.
+         */
+        SPILL
+    }
+
+    private final String name;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final int spillCapacity;
+    private final boolean dedicatedWorker;
+
+    /**
+     * @param name            name of the lane, used in the lane statistics and worker thread names.
+     * @param capacity        number of batches the ring of the lane can hold.
+     * @param overflowPolicy  what happens when the ring is full.
+     * @param spillCapacity   number of batches the overflow buffer can hold, used with {@link OverflowPolicy#SPILL}.
+     * @param dedicatedWorker true to drain the lane with its own thread, false to use the shared worker pool.
+     */
+    public DeliveryLaneConfiguration(String name, int capacity, OverflowPolicy overflowPolicy, int spillCapacity,
+                                     boolean dedicatedWorker) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Delivery lane capacity should be positive, but found " + capacity);
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.spillCapacity = spillCapacity;
+        this.dedicatedWorker = dedicatedWorker;
+    }
+
+    public DeliveryLaneConfiguration(String name, int capacity, OverflowPolicy overflowPolicy) {
+        this(name, capacity, overflowPolicy, 0, false);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getSpillCapacity() {
+        return spillCapacity;
+    }
+
+    public boolean isDedicatedWorker() {
+        return dedicatedWorker;
+    }
+}
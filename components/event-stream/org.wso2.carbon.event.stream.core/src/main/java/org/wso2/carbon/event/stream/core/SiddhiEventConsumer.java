@@ -23,6 +23,13 @@ public interface SiddhiEventConsumer {
 
     public String getStreamId();
 
+    /**
+     * Receives the events sent to the junction in one call. If this method throws, the events of the batch the
+     * consumer has not processed yet are lost, they are not redelivered one by one, as that would duplicate the
+     * events the consumer had already processed.
+     *
+     * @param events the events of the batch, which are shared with the other Siddhi consumers of the junction.
+     */
     public void consumeEvents(Event[] events);
 
     public void consumeEvent(Event event);
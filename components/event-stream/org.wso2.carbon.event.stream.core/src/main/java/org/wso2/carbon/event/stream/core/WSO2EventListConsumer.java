@@ -21,7 +21,8 @@ import java.util.List;
 
 public interface WSO2EventListConsumer extends WSO2EventConsumer{
     /**
-     * This method will be triggered for all listeners whenever an event list is received
+     * This method will be triggered for all listeners whenever an event list is received. If this method throws,
+     * the events of the list the listener has not processed yet are lost, they are not redelivered one by one.
      *
      * @param event the event object which will be an instance of {@link org.wso2.carbon.databridge.commons.Event}
      */
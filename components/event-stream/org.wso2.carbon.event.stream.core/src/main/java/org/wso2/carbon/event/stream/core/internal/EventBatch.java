@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.event.stream.core.internal;
+
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.event.stream.core.internal.util.EventConverter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The events sent to a junction in one call, shared by all the consumers of the junction. The Siddhi
+ * representation of the events is created once, when the first consumer which needs it asks for it.
+ */
+class EventBatch {
+    private final Event event;
+    private final List<Event> events;
+    private final EventJunction.EventTemplate eventTemplate;
+    private org.wso2.siddhi.core.event.Event siddhiEvent;
+    private org.wso2.siddhi.core.event.Event[] siddhiEvents;
+
+    EventBatch(Event event, EventJunction.EventTemplate eventTemplate) {
+        this.event = event;
+        this.events = Collections.singletonList(event);
+        this.eventTemplate = eventTemplate;
+    }
+
+    EventBatch(List<Event> events, EventJunction.EventTemplate eventTemplate) {
+        this.event = null;
+        this.events = events;
+        this.eventTemplate = eventTemplate;
+    }
+
+    /**
+     * @return true if the batch was sent as a single event, rather than as a list of events.
+     */
+    public boolean isSingleEvent() {
+        return event != null;
+    }
+
+    /**
+     * @return the event, if the batch was sent as a single event.
+     */
+    public Event getEvent() {
+        return event;
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    public int size() {
+        return events.size();
+    }
+
+    public synchronized org.wso2.siddhi.core.event.Event getSiddhiEvent() {
+        if (siddhiEvent == null) {
+            siddhiEvent = eventTemplate.convertToEvent(event);
+        }
+        return siddhiEvent;
+    }
+
+    public synchronized org.wso2.siddhi.core.event.Event[] getSiddhiEvents() {
+        if (siddhiEvents == null) {
+            siddhiEvents = EventConverter.convertToEvents(events, eventTemplate.metaFlag,
+                    eventTemplate.correlationFlag, eventTemplate.payloadFlag, eventTemplate.attributesCount);
+        }
+        return siddhiEvents;
+    }
+}
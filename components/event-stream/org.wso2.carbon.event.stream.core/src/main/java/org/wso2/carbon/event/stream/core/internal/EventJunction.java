@@ -18,6 +18,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.event.stream.core.AsyncEventConsumer;
+import org.wso2.carbon.event.stream.core.DeliveryLaneConfiguration;
 import org.wso2.carbon.event.stream.core.EventProducer;
 import org.wso2.carbon.event.stream.core.EventProducerCallback;
 import org.wso2.carbon.event.stream.core.SiddhiEventConsumer;
@@ -25,6 +27,7 @@ import org.wso2.carbon.event.stream.core.WSO2EventConsumer;
 import org.wso2.carbon.event.stream.core.WSO2EventListConsumer;
 import org.wso2.carbon.event.stream.core.internal.util.EventConverter;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -40,11 +43,7 @@ public class EventJunction implements EventProducerCallback {
       */
     private StreamDefinition streamDefinition;
 
-    private boolean metaFlag = false;
-    private boolean correlationFlag = false;
-    private boolean payloadFlag = false;
-    private int attributesCount;
-
+    private final EventTemplate eventTemplate;
 
     /*
      holding the producers this junction is subscribed to.
@@ -53,67 +52,122 @@ public class EventJunction implements EventProducerCallback {
     private CopyOnWriteArrayList<EventProducer> producers;
 
     /*
-    listeners of this junction.
+    listeners of this junction, adapted to receive batches of events.
     output events can be towards both event formatter and siddhi runtime.
      */
-    private CopyOnWriteArrayList<SiddhiEventConsumer> siddhiEventConsumers;
-    private CopyOnWriteArrayList<WSO2EventConsumer> wso2EventConsumers;
-    private CopyOnWriteArrayList<WSO2EventListConsumer> wso2EventListConsumers;
+    private CopyOnWriteArrayList<JunctionConsumer> consumers;
+
+    /*
+    whether any of the consumers receive the events through an asynchronous delivery lane.
+     */
+    private volatile boolean asyncConsumersExist;
 
     public EventJunction(StreamDefinition streamDefinition) {
         this.streamDefinition = streamDefinition;
         this.producers = new CopyOnWriteArrayList<EventProducer>();
-        this.siddhiEventConsumers = new CopyOnWriteArrayList<SiddhiEventConsumer>();
-        this.wso2EventConsumers = new CopyOnWriteArrayList<WSO2EventConsumer>();
-        this.wso2EventListConsumers = new CopyOnWriteArrayList<WSO2EventListConsumer>();
-        populateEventTemplate(streamDefinition);
+        this.consumers = new CopyOnWriteArrayList<JunctionConsumer>();
+        this.eventTemplate = new EventTemplate(streamDefinition);
     }
 
     public void addConsumer(SiddhiEventConsumer consumer) {
-        if (!siddhiEventConsumers.contains(consumer)) {
+        if (getJunctionConsumer(consumer, JunctionConsumer.SiddhiConsumerAdapter.class) == null) {
             log.info("Consumer added to the junction. Stream:" + getStreamDefinition().getStreamId());
-            siddhiEventConsumers.add(consumer);
+            addJunctionConsumer(new JunctionConsumer.SiddhiConsumerAdapter(consumer), consumer);
         } else {
             log.error("Consumer already exist in the junction: " + streamDefinition.getStreamId());
         }
     }
 
     public boolean removeConsumer(SiddhiEventConsumer consumer) {
-        return siddhiEventConsumers.remove(consumer);
+        return removeJunctionConsumer(consumer, JunctionConsumer.SiddhiConsumerAdapter.class);
     }
 
     public void addConsumer(WSO2EventConsumer consumer) {
-        if (!wso2EventConsumers.contains(consumer)) {
+        if (getJunctionConsumer(consumer, JunctionConsumer.WSO2EventConsumerAdapter.class) == null) {
             log.info("WSO2EventConsumer added to the junction. Stream:" + getStreamDefinition().getStreamId());
             consumer.onAddDefinition(streamDefinition);
-            wso2EventConsumers.add(consumer);
+            addJunctionConsumer(new JunctionConsumer.WSO2EventConsumerAdapter(consumer), consumer);
         } else {
             log.error("WSO2EventConsumer already exist in the junction: " + streamDefinition.getStreamId());
         }
     }
 
     public void addConsumer(WSO2EventListConsumer consumer) {
-        if (!wso2EventListConsumers.contains(consumer)) {
+        if (getJunctionConsumer(consumer, JunctionConsumer.WSO2EventListConsumerAdapter.class) == null) {
             log.info("WSO2EventConsumer added to the junction. Stream:" + getStreamDefinition().getStreamId());
             consumer.onAddDefinition(streamDefinition);
-            wso2EventListConsumers.add(consumer);
+            addJunctionConsumer(new JunctionConsumer.WSO2EventListConsumerAdapter(consumer), consumer);
         } else {
             log.error("WSO2EventConsumer already exist in the junction: " + streamDefinition.getStreamId());
         }
     }
 
     public boolean removeConsumer(WSO2EventConsumer consumer) {
-        boolean isRemoved = wso2EventConsumers.remove(consumer);
+        boolean isRemoved = removeJunctionConsumer(consumer, JunctionConsumer.WSO2EventConsumerAdapter.class);
         consumer.onRemoveDefinition(streamDefinition);
         return isRemoved;
     }
 
     public boolean removeConsumer(WSO2EventListConsumer consumer) {
-        boolean isRemoved = wso2EventListConsumers.remove(consumer);
+        boolean isRemoved = removeJunctionConsumer(consumer, JunctionConsumer.WSO2EventListConsumerAdapter.class);
         consumer.onRemoveDefinition(streamDefinition);
         return isRemoved;
     }
 
+    private JunctionConsumer getJunctionConsumer(Object consumer, Class<? extends JunctionConsumer> adapterType) {
+        for (JunctionConsumer junctionConsumer : consumers) {
+            if (junctionConsumer.getConsumer().equals(consumer) &&
+                    adapterType.isInstance(junctionConsumer.getAdapter())) {
+                return junctionConsumer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds the adapted consumer, through a delivery lane if the consumer asks for asynchronous delivery.
+     */
+    private void addJunctionConsumer(JunctionConsumer junctionConsumer, Object consumer) {
+        if (consumer instanceof AsyncEventConsumer) {
+            DeliveryLaneConfiguration laneConfiguration =
+                    ((AsyncEventConsumer) consumer).getDeliveryLaneConfiguration();
+            if (laneConfiguration != null) {
+                junctionConsumer = new JunctionConsumerLane(junctionConsumer, laneConfiguration,
+                        streamDefinition.getStreamId());
+                asyncConsumersExist = true;
+            }
+        }
+        consumers.add(junctionConsumer);
+    }
+
+    private boolean removeJunctionConsumer(Object consumer, Class<? extends JunctionConsumer> adapterType) {
+        JunctionConsumer junctionConsumer = getJunctionConsumer(consumer, adapterType);
+        if (junctionConsumer != null && consumers.remove(junctionConsumer)) {
+            junctionConsumer.close();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Closes the delivery lanes of the consumers, and waits for their dedicated threads to deliver the batches
+     * which were in the lanes.
+     *
+     * @param deadline the time until which to wait, in milliseconds since the epoch.
+     */
+    void closeDeliveryLanes(long deadline) throws InterruptedException {
+        for (JunctionConsumer consumer : consumers) {
+            consumer.close();
+        }
+        for (JunctionConsumer consumer : consumers) {
+            if (consumer instanceof JunctionConsumerLane &&
+                    !((JunctionConsumerLane) consumer).awaitTermination(deadline - System.currentTimeMillis())) {
+                log.warn("Delivery lane of a consumer of the stream " + streamDefinition.getStreamId() +
+                        " did not drain before the shutdown timeout");
+            }
+        }
+    }
+
     public void addProducer(EventProducer listener) {
         if (!producers.contains(listener)) {
             log.info("Producer added to the junction. Stream:" + getStreamDefinition().getStreamId());
@@ -138,95 +192,64 @@ public class EventJunction implements EventProducerCallback {
 
     @Override
     public void sendEvent(Event event) {
-
-        if (!siddhiEventConsumers.isEmpty()) {
-            org.wso2.siddhi.core.event.Event convertedEvent = EventConverter.convertToEvent(event, metaFlag, correlationFlag, payloadFlag, attributesCount);
-            for (SiddhiEventConsumer consumer : siddhiEventConsumers) {
-                try {
-                    consumer.consumeEvent(convertedEvent);
-                } catch (Exception e) {
-                    log.error("Error while dispatching events: " + e.getMessage(), e);
-                }
-            }
-        }
-
-
-        if (!wso2EventConsumers.isEmpty()) {
-            for (WSO2EventConsumer consumer : wso2EventConsumers) {
-                try {
-                    consumer.onEvent(event);
-                } catch (Exception e) {
-                    log.error("Error while dispatching events: " + e.getMessage(), e);
-                }
-            }
+        if (!consumers.isEmpty()) {
+            dispatch(new EventBatch(event, eventTemplate));
         }
-
-        if (!wso2EventListConsumers.isEmpty()) {
-            for (WSO2EventListConsumer consumer : wso2EventListConsumers) {
-                try {
-                    consumer.onEvent(event);
-                } catch (Exception e) {
-                    log.error("Error while dispatching events: " + e.getMessage(), e);
-                }
-            }
-        }
-
     }
 
     @Override
     public void sendEvents(List<Event> events) {
-        for (Event event : events) {
-            if (!siddhiEventConsumers.isEmpty()) {
-                org.wso2.siddhi.core.event.Event convertedEvent = EventConverter.convertToEvent(event, metaFlag, correlationFlag, payloadFlag, attributesCount);
-                for (SiddhiEventConsumer consumer : siddhiEventConsumers) {
-                    try {
-                        consumer.consumeEvent(convertedEvent);
-                    } catch (Exception e) {
-                        log.error("Error while dispatching events: " + e.getMessage(), e);
-                    }
-                }
-            }
-
-
-            if (!wso2EventConsumers.isEmpty()) {
-                for (WSO2EventConsumer consumer : wso2EventConsumers) {
-                    try {
-                        consumer.onEvent(event);
-                    } catch (Exception e) {
-                        log.error("Error while dispatching events: " + e.getMessage(), e);
-                    }
-                }
+        if (!consumers.isEmpty() && !events.isEmpty()) {
+            if (asyncConsumersExist) {
+                // the delivery lanes hold on to the batch after this call returns, when the producer may reuse the list
+                events = new ArrayList<Event>(events);
             }
+            dispatch(new EventBatch(events, eventTemplate));
         }
+    }
 
-
-        if (!wso2EventListConsumers.isEmpty()) {
-            for (WSO2EventListConsumer eventListConsumer : wso2EventListConsumers) {
-                try {
-                    eventListConsumer.onEventList(events);
-                } catch (Exception e) {
-                    log.error("Error while dispatching events: " + e.getMessage(), e);
-                }
+    /**
+     * Hands the batch to each consumer with a single call, the Siddhi representation of the events is created
+     * only once for all the consumers.
+     */
+    private void dispatch(EventBatch eventBatch) {
+        for (JunctionConsumer consumer : consumers) {
+            try {
+                consumer.consume(eventBatch);
+            } catch (Exception e) {
+                log.error("Error while dispatching events: " + e.getMessage(), e);
             }
         }
     }
 
-    private void populateEventTemplate(StreamDefinition definition) {
-        int attributesCount = 0;
-        if (definition.getMetaData() != null) {
-            attributesCount += definition.getMetaData().size();
-            metaFlag = true;
-        }
-        if (definition.getCorrelationData() != null) {
-            attributesCount += definition.getCorrelationData().size();
-            correlationFlag = true;
+    /**
+     * The layout of the stream attributes in the Siddhi representation of the events.
+     */
+    static class EventTemplate {
+        final boolean metaFlag;
+        final boolean correlationFlag;
+        final boolean payloadFlag;
+        final int attributesCount;
+
+        EventTemplate(StreamDefinition definition) {
+            int attributesCount = 0;
+            if (definition.getMetaData() != null) {
+                attributesCount += definition.getMetaData().size();
+            }
+            if (definition.getCorrelationData() != null) {
+                attributesCount += definition.getCorrelationData().size();
+            }
+            if (definition.getPayloadData() != null) {
+                attributesCount += definition.getPayloadData().size();
+            }
+            this.metaFlag = definition.getMetaData() != null;
+            this.correlationFlag = definition.getCorrelationData() != null;
+            this.payloadFlag = definition.getPayloadData() != null;
+            this.attributesCount = attributesCount;
         }
 
-        if (definition.getPayloadData() != null) {
-            attributesCount += definition.getPayloadData().size();
-            payloadFlag = true;
+        org.wso2.siddhi.core.event.Event convertToEvent(Event event) {
+            return EventConverter.convertToEvent(event, metaFlag, correlationFlag, payloadFlag, attributesCount);
         }
-
-        this.attributesCount = attributesCount;
     }
 }
@@ -24,6 +24,7 @@ import org.wso2.carbon.databridge.commons.utils.DataBridgeCommonsUtils;
 import org.wso2.carbon.event.stream.core.*;
 import org.wso2.carbon.event.stream.core.exception.EventStreamConfigurationException;
 import org.wso2.carbon.event.stream.core.internal.ds.EventStreamServiceValueHolder;
+import org.wso2.carbon.event.stream.core.internal.util.EventStreamConstants;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -76,6 +77,27 @@ public class EventStreamRuntime {
         return eventJunction;
     }
 
+    /**
+     * Closes the asynchronous delivery lanes of the junctions, and waits for the batches already in the lanes to
+     * be delivered, up to {@link EventStreamConstants#DELIVERY_LANE_SHUTDOWN_TIMEOUT} milliseconds.
+     */
+    public void shutdown() {
+        long deadline = System.currentTimeMillis() + EventStreamConstants.DELIVERY_LANE_SHUTDOWN_TIMEOUT;
+        try {
+            for (Map<String, EventJunction> eventJunctionMap : tenantSpecificEventJunctions.values()) {
+                for (EventJunction eventJunction : eventJunctionMap.values()) {
+                    eventJunction.closeDeliveryLanes(deadline);
+                }
+            }
+            if (!JunctionConsumerLane.shutdownSharedWorkers(deadline - System.currentTimeMillis())) {
+                log.warn("Shared delivery lane workers did not terminate before the shutdown timeout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for the delivery lanes to drain");
+        }
+    }
+
     public void publish(String streamId, Event event) {
         int tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
         Map<String, EventJunction> eventJunctionMap = tenantSpecificEventJunctions.get(tenantId);
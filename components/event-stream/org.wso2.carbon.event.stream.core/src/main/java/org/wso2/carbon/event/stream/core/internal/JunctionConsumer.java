@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.event.stream.core.internal;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.event.stream.core.SiddhiEventConsumer;
+import org.wso2.carbon.event.stream.core.WSO2EventConsumer;
+import org.wso2.carbon.event.stream.core.WSO2EventListConsumer;
+
+/**
+ * Adapts the different kinds of consumers of a junction to receive the events as an {@link EventBatch}, so
+ * that the junction dispatches a batch with a single call per consumer, in its most efficient form for the
+ * consumer.
+ */
+abstract class JunctionConsumer {
+    private static final Log log = LogFactory.getLog(JunctionConsumer.class);
+
+    /**
+     * @return the consumer that is adapted.
+     */
+    public abstract Object getConsumer();
+
+    /**
+     * @return the adapter which hands the events to the consumer.
+     */
+    public JunctionConsumer getAdapter() {
+        return this;
+    }
+
+    /**
+     * Delivers the batch to the consumer.
+     *
+     * @param eventBatch the events sent to the junction.
+     */
+    public abstract void consume(EventBatch eventBatch);
+
+    /**
+     * Releases the resources held for the consumer, once it is removed from the junction.
+     */
+    public void close() {
+    }
+
+    /**
+     * Hands the Siddhi representation of the whole batch to the consumer in one call. A failure of the consumer
+     * loses the events of the batch it had not processed yet, which is logged with the size of the batch.
+     */
+    static class SiddhiConsumerAdapter extends JunctionConsumer {
+        private final SiddhiEventConsumer consumer;
+
+        SiddhiConsumerAdapter(SiddhiEventConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public Object getConsumer() {
+            return consumer;
+        }
+
+        @Override
+        public void consume(EventBatch eventBatch) {
+            if (eventBatch.isSingleEvent()) {
+                consumer.consumeEvent(eventBatch.getSiddhiEvent());
+                return;
+            }
+            try {
+                consumer.consumeEvents(eventBatch.getSiddhiEvents());
+            } catch (RuntimeException e) {
+                log.error("Error while dispatching a batch of " + eventBatch.size() + " events to a consumer of " +
+                        "stream " + consumer.getStreamId() + ", the events not processed by the consumer are " +
+                        "dropped: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Hands the whole list of events to the consumer in one call, with the same failure semantics as the Siddhi
+     * consumers.
+     */
+    static class WSO2EventListConsumerAdapter extends JunctionConsumer {
+        private final WSO2EventListConsumer consumer;
+
+        WSO2EventListConsumerAdapter(WSO2EventListConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public Object getConsumer() {
+            return consumer;
+        }
+
+        @Override
+        public void consume(EventBatch eventBatch) {
+            if (eventBatch.isSingleEvent()) {
+                consumer.onEvent(eventBatch.getEvent());
+                return;
+            }
+            try {
+                consumer.onEventList(eventBatch.getEvents());
+            } catch (RuntimeException e) {
+                log.error("Error while dispatching a batch of " + eventBatch.size() + " events to a consumer of " +
+                        "stream " + consumer.getStreamId() + ", the events not processed by the consumer are " +
+                        "dropped: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Fallback for the consumers which only accept single events, the events of the batch are delivered one by
+     * one, and a failure of an event doesn't prevent the delivery of the rest of the batch.
+     */
+    static class WSO2EventConsumerAdapter extends JunctionConsumer {
+        private final WSO2EventConsumer consumer;
+
+        WSO2EventConsumerAdapter(WSO2EventConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public Object getConsumer() {
+            return consumer;
+        }
+
+        @Override
+        public void consume(EventBatch eventBatch) {
+            if (eventBatch.isSingleEvent()) {
+                consumer.onEvent(eventBatch.getEvent());
+                return;
+            }
+            for (Event event : eventBatch.getEvents()) {
+                try {
+                    consumer.onEvent(event);
+                } catch (Exception e) {
+                    log.error("Error while dispatching events: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.event.stream.core.internal;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.stream.core.DeliveryLaneConfiguration;
+import org.wso2.carbon.event.stream.core.internal.util.EventStreamConstants;
+import org.wso2.carbon.metrics.manager.Counter;
+import org.wso2.carbon.metrics.manager.Level;
+import org.wso2.carbon.metrics.manager.MetricManager;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers the batches of a junction to a consumer asynchronously. The batches are buffered in a bounded ring
+ * and handed to the consumer, in the order they were sent, by the thread dedicated to the lane or by the worker
+ * pool shared by the lanes. When the ring is full the {@link DeliveryLaneConfiguration.OverflowPolicy} of the
+ * lane decides whether the sending thread waits, the oldest batch is dropped or the batch is spilled to the
+ * overflow buffer of the lane.
+ * <p>
+ * The number of queued, dropped and spilled events of the lane are published as metrics of the stream.
+ * <p>
+ * A closed lane still delivers the batches already queued in it, and once the shared worker pool is shut down
+ * the remaining batches of the lanes using it are delivered by the threads that are draining them.
+ */
+class JunctionConsumerLane extends JunctionConsumer implements Runnable {
+    private static final Log log = LogFactory.getLog(JunctionConsumerLane.class);
+
+    /*
+     number of batches delivered by a shared worker before giving way to the other lanes.
+      */
+    private static final int MAX_BATCHES_PER_RUN = 64;
+
+    /*
+     worker pool shared by the lanes which don't have a dedicated thread, created when the first such lane is used.
+      */
+    private static ExecutorService sharedWorkers;
+
+    private final JunctionConsumer junctionConsumer;
+    private final DeliveryLaneConfiguration configuration;
+    private final EventBatch[] ring;
+    private int head;
+    private int count;
+    private final ArrayDeque<EventBatch> spill = new ArrayDeque<EventBatch>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final Thread worker;
+    private final Counter queuedEventCounter;
+    private final Counter droppedEventCounter;
+    private final Counter spilledEventCounter;
+    private volatile boolean running = true;
+
+    JunctionConsumerLane(JunctionConsumer junctionConsumer, DeliveryLaneConfiguration configuration,
+                         String streamId) {
+        this.junctionConsumer = junctionConsumer;
+        this.configuration = configuration;
+        this.ring = new EventBatch[configuration.getCapacity()];
+        String metricPrefix = EventStreamConstants.METRICS_ROOT + EventStreamConstants.METRIC_DELIMITER +
+                EventStreamConstants.METRICS_EVENT_STREAMS + EventStreamConstants.METRIC_AGGREGATE_ANNOTATION +
+                EventStreamConstants.METRIC_DELIMITER + streamId + EventStreamConstants.METRIC_DELIMITER +
+                EventStreamConstants.METRICS_LANES + EventStreamConstants.METRIC_DELIMITER +
+                configuration.getName() + EventStreamConstants.METRIC_DELIMITER;
+        this.queuedEventCounter = MetricManager.counter(metricPrefix + EventStreamConstants.METRICS_LANE_DEPTH,
+                Level.INFO, Level.INFO);
+        this.droppedEventCounter = MetricManager.counter(metricPrefix +
+                EventStreamConstants.METRICS_LANE_DROPPED_EVENTS, Level.INFO, Level.INFO);
+        this.spilledEventCounter = MetricManager.counter(metricPrefix +
+                EventStreamConstants.METRICS_LANE_SPILLED_EVENTS, Level.INFO, Level.INFO);
+        if (configuration.isDedicatedWorker()) {
+            worker = new Thread(this, "EventJunction-Lane-" + configuration.getName());
+            worker.setDaemon(true);
+            worker.start();
+        } else {
+            worker = null;
+        }
+    }
+
+    @Override
+    public Object getConsumer() {
+        return junctionConsumer.getConsumer();
+    }
+
+    @Override
+    public JunctionConsumer getAdapter() {
+        return junctionConsumer.getAdapter();
+    }
+
+    @Override
+    public void consume(EventBatch eventBatch) {
+        lock.lock();
+        try {
+            while (true) {
+                if (!running) {
+                    droppedEventCounter.inc(eventBatch.size());
+                    return;
+                }
+                if (count < ring.length && spill.isEmpty()) {
+                    ring[(head + count) % ring.length] = eventBatch;
+                    count++;
+                    break;
+                }
+                DeliveryLaneConfiguration.OverflowPolicy overflowPolicy = configuration.getOverflowPolicy();
+                if (overflowPolicy == DeliveryLaneConfiguration.OverflowPolicy.DROP_OLDEST) {
+                    EventBatch droppedBatch = takeFromRing();
+                    queuedEventCounter.dec(droppedBatch.size());
+                    droppedEventCounter.inc(droppedBatch.size());
+                } else if (overflowPolicy == DeliveryLaneConfiguration.OverflowPolicy.SPILL &&
+                        spill.size() < configuration.getSpillCapacity()) {
+                    spill.add(eventBatch);
+                    spilledEventCounter.inc(eventBatch.size());
+                    break;
+                } else {
+                    notFull.await();
+                }
+            }
+            queuedEventCounter.inc(eventBatch.size());
+            notEmpty.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedEventCounter.inc(eventBatch.size());
+            log.warn("Interrupted while waiting for the delivery lane '" + configuration.getName() +
+                    "', events dropped: " + eventBatch.size());
+            return;
+        } finally {
+            lock.unlock();
+        }
+        if (!configuration.isDedicatedWorker() && !schedule()) {
+            run();
+        }
+    }
+
+    /**
+     * Stops accepting batches, the batches already in the lane are still delivered to the consumer.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the dedicated thread of a closed lane to deliver the batches which were in the lane.
+     *
+     * @param timeout the maximum time to wait in milliseconds.
+     * @return true if the dedicated thread has finished, or the lane doesn't have one.
+     */
+    boolean awaitTermination(long timeout) throws InterruptedException {
+        if (worker == null) {
+            return true;
+        }
+        worker.join(Math.max(timeout, 1));
+        return !worker.isAlive();
+    }
+
+    @Override
+    public void run() {
+        if (configuration.isDedicatedWorker()) {
+            EventBatch eventBatch;
+            while ((eventBatch = take()) != null) {
+                deliver(eventBatch);
+            }
+        } else {
+            do {
+                for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+                    EventBatch eventBatch = poll();
+                    if (eventBatch == null) {
+                        break;
+                    }
+                    deliver(eventBatch);
+                }
+                scheduled.set(false);
+            } while (!isEmpty() && !schedule());
+        }
+    }
+
+    /**
+     * Hands the lane to a shared worker, unless the lane is already scheduled.
+     *
+     * @return false if the lane is claimed for draining but the shared workers are shut down, when the calling
+     * thread needs to drain the lane itself.
+     */
+    private boolean schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                getSharedWorkers().execute(this);
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void deliver(EventBatch eventBatch) {
+        try {
+            junctionConsumer.consume(eventBatch);
+        } catch (Exception e) {
+            log.error("Error while dispatching events: " + e.getMessage(), e);
+        } finally {
+            queuedEventCounter.dec(eventBatch.size());
+        }
+    }
+
+    /**
+     * @return the next batch, waiting for one if the lane is empty, or null once the lane is closed and drained.
+     */
+    private EventBatch take() {
+        lock.lock();
+        try {
+            while (count == 0) {
+                if (!running) {
+                    return null;
+                }
+                notEmpty.awaitUninterruptibly();
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private EventBatch poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isEmpty() {
+        lock.lock();
+        try {
+            return count == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the oldest batch and moves the oldest spilled batch, if any, to the freed slot of the ring, so that
+     * the spilled batches are delivered after the batches which were in the ring before them.
+     */
+    private EventBatch next() {
+        EventBatch eventBatch = takeFromRing();
+        if (!spill.isEmpty()) {
+            ring[(head + count) % ring.length] = spill.poll();
+            count++;
+        }
+        notFull.signal();
+        return eventBatch;
+    }
+
+    private EventBatch takeFromRing() {
+        EventBatch eventBatch = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        count--;
+        return eventBatch;
+    }
+
+    private static synchronized ExecutorService getSharedWorkers() {
+        if (sharedWorkers == null) {
+            sharedWorkers = Executors.newFixedThreadPool(Integer.getInteger(
+                    EventStreamConstants.SHARED_LANE_WORKER_COUNT, Runtime.getRuntime().availableProcessors()),
+                    new ThreadFactory() {
+                        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "EventJunction-Lane-Worker-" +
+                                    threadNumber.getAndIncrement());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return sharedWorkers;
+    }
+
+    /**
+     * Shuts down the worker pool shared by the lanes, once the lanes are closed. The batches which are still in
+     * the lanes are delivered before the workers terminate, and a new pool is created if a lane is used later.
+     *
+     * @param timeout the maximum time to wait for the workers to terminate in milliseconds.
+     * @return true if the workers have terminated.
+     */
+    static boolean shutdownSharedWorkers(long timeout) throws InterruptedException {
+        ExecutorService workers;
+        synchronized (JunctionConsumerLane.class) {
+            workers = sharedWorkers;
+            if (workers == null) {
+                return true;
+            }
+            workers.shutdown();
+        }
+        // the pool is kept until it terminates, so that the lanes rescheduled meanwhile are drained by the workers
+        boolean terminated = workers.awaitTermination(Math.max(timeout, 1), TimeUnit.MILLISECONDS);
+        synchronized (JunctionConsumerLane.class) {
+            if (sharedWorkers == workers) {
+                sharedWorkers = null;
+            }
+        }
+        return terminated;
+    }
+}
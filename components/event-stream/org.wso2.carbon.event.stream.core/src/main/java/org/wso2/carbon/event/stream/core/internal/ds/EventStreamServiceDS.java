@@ -49,6 +49,13 @@ public class EventStreamServiceDS {
         }
     }
 
+    protected void deactivate(ComponentContext context) {
+        EventStreamRuntime eventStreamRuntime = EventStreamServiceValueHolder.getEventStreamRuntime();
+        if (eventStreamRuntime != null) {
+            eventStreamRuntime.shutdown();
+        }
+    }
+
     protected void setConfigurationContextService(ConfigurationContextService configurationContextService) {
         EventStreamServiceValueHolder.registerConfigurationContextService(configurationContextService);
 
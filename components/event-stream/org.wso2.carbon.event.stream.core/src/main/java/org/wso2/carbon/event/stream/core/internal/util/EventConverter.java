@@ -17,6 +17,8 @@ package org.wso2.carbon.event.stream.core.internal.util;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.StreamDefinition;
 
+import java.util.List;
+
 public class EventConverter {
 
     public static Event convertToWSO2Event(org.wso2.siddhi.core.event.Event event, StreamDefinition streamDefinition) {
@@ -58,6 +60,21 @@ public class EventConverter {
         return new Event(streamDefinition.getStreamId(), timeStamp, metaAttributes, correlationAttributes, payloadAttributes);
     }
 
+    /**
+     * Converts a batch of events into their Siddhi representation, which is shared by all the Siddhi consumers
+     * of the batch.
+     */
+    public static org.wso2.siddhi.core.event.Event[] convertToEvents(List<Event> events, boolean metaFlag,
+                                                                     boolean correlationFlag, boolean payloadFlag,
+                                                                     int size) {
+        org.wso2.siddhi.core.event.Event[] convertedEvents = new org.wso2.siddhi.core.event.Event[events.size()];
+        int index = 0;
+        for (Event event : events) {
+            convertedEvents[index++] = convertToEvent(event, metaFlag, correlationFlag, payloadFlag, size);
+        }
+        return convertedEvents;
+    }
+
     public static org.wso2.siddhi.core.event.Event convertToEvent(Event event, boolean metaFlag, boolean correlationFlag, boolean payloadFlag, int size) {
 
         Object[] eventObject;
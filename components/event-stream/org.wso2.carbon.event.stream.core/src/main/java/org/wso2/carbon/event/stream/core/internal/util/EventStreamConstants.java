@@ -62,5 +62,17 @@ public interface EventStreamConstants {
     public static final String EVENT_ATTRIBUTE_VALUE_SEPARATOR = ":";
     public static final String EVENT_ATTRIBUTE_SEPARATOR = ",";
 
+    public static final String SHARED_LANE_WORKER_COUNT = "event.stream.lane.workers";
+    public static final long DELIVERY_LANE_SHUTDOWN_TIMEOUT = 10000;
+
+    public static final String METRICS_ROOT = "WSO2_CEP";
+    public static final String METRICS_EVENT_STREAMS = "EventStreams";
+    public static final String METRICS_LANES = "Lanes";
+    public static final String METRICS_LANE_DEPTH = "QueuedEvents";
+    public static final String METRICS_LANE_DROPPED_EVENTS = "DroppedEvents";
+    public static final String METRICS_LANE_SPILLED_EVENTS = "SpilledEvents";
+    public static final String METRIC_DELIMITER = ".";
+    public static final String METRIC_AGGREGATE_ANNOTATION = "[+]";
+
 
 }
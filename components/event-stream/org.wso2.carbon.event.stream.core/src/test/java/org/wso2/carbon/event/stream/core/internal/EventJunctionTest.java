@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.event.stream.core.internal;
+
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.event.stream.core.SiddhiEventConsumer;
+import org.wso2.carbon.event.stream.core.WSO2EventConsumer;
+import org.wso2.carbon.event.stream.core.WSO2EventListConsumer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class EventJunctionTest {
+    private StreamDefinition streamDefinition;
+    private EventJunction eventJunction;
+
+    @Before
+    public void createJunction() throws Exception {
+        streamDefinition = new StreamDefinition("stock", "1.0.0");
+        streamDefinition.addMetaData("host", AttributeType.STRING);
+        streamDefinition.addPayloadData("symbol", AttributeType.STRING);
+        streamDefinition.addPayloadData("price", AttributeType.DOUBLE);
+        eventJunction = new EventJunction(streamDefinition);
+    }
+
+    @Test
+    public void testBatchIsDeliveredWithOneCallPerConsumer() {
+        RecordingSiddhiConsumer siddhiConsumer = new RecordingSiddhiConsumer(-1);
+        RecordingSiddhiConsumer otherSiddhiConsumer = new RecordingSiddhiConsumer(-1);
+        RecordingListConsumer listConsumer = new RecordingListConsumer(false);
+        RecordingEventConsumer eventConsumer = new RecordingEventConsumer(-1);
+        eventJunction.addConsumer(siddhiConsumer);
+        eventJunction.addConsumer(otherSiddhiConsumer);
+        eventJunction.addConsumer(listConsumer);
+        eventJunction.addConsumer(eventConsumer);
+
+        List<Event> events = createEvents(3);
+        eventJunction.sendEvents(events);
+
+        Assert.assertEquals(1, siddhiConsumer.batches.size());
+        org.wso2.siddhi.core.event.Event[] siddhiEvents = siddhiConsumer.batches.get(0);
+        Assert.assertEquals(3, siddhiEvents.length);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(events.get(i).getTimeStamp(), siddhiEvents[i].getTimestamp());
+            Assert.assertTrue(Arrays.equals(new Object[]{"host", "symbol" + i, (double) i},
+                    siddhiEvents[i].getData()));
+        }
+        // the Siddhi representation is created once for all the Siddhi consumers
+        Assert.assertSame(siddhiEvents, otherSiddhiConsumer.batches.get(0));
+        Assert.assertEquals(1, listConsumer.batches.size());
+        Assert.assertEquals(events, listConsumer.batches.get(0));
+        Assert.assertEquals(events, eventConsumer.events);
+
+        eventJunction.sendEvent(events.get(0));
+        Assert.assertEquals(1, siddhiConsumer.batches.size());
+        Assert.assertEquals(1, siddhiConsumer.singleEvents.size());
+        Assert.assertEquals(1, listConsumer.singleEvents.size());
+        Assert.assertEquals(4, eventConsumer.events.size());
+    }
+
+    @Test
+    public void testFailingConsumerDoesNotAffectOtherConsumers() {
+        RecordingSiddhiConsumer failingSiddhiConsumer = new RecordingSiddhiConsumer(1);
+        RecordingListConsumer failingListConsumer = new RecordingListConsumer(true);
+        RecordingEventConsumer failingEventConsumer = new RecordingEventConsumer(1);
+        RecordingSiddhiConsumer siddhiConsumer = new RecordingSiddhiConsumer(-1);
+        eventJunction.addConsumer(failingSiddhiConsumer);
+        eventJunction.addConsumer(failingListConsumer);
+        eventJunction.addConsumer(failingEventConsumer);
+        eventJunction.addConsumer(siddhiConsumer);
+
+        List<Event> events = createEvents(3);
+        eventJunction.sendEvents(events);
+
+        // the rest of the batch is lost for a batch consumer which fails, but not for a single event consumer
+        Assert.assertEquals(1, failingSiddhiConsumer.processedEvents);
+        Assert.assertEquals(Arrays.asList(events.get(0), events.get(2)), failingEventConsumer.events);
+        Assert.assertEquals(1, siddhiConsumer.batches.size());
+        Assert.assertEquals(3, siddhiConsumer.processedEvents);
+
+        eventJunction.sendEvents(createEvents(2));
+        Assert.assertEquals(2, siddhiConsumer.batches.size());
+        Assert.assertEquals(2, failingListConsumer.batches.size());
+    }
+
+    private List<Event> createEvents(int count) {
+        List<Event> events = new ArrayList<Event>();
+        for (int i = 0; i < count; i++) {
+            events.add(new Event(streamDefinition.getStreamId(), 1000L + i, new Object[]{"host"}, null,
+                    new Object[]{"symbol" + i, (double) i}));
+        }
+        return events;
+    }
+
+    /**
+     * Records the batches, and fails on the event at the given index of a batch, if it's not negative.
+     */
+    private class RecordingSiddhiConsumer implements SiddhiEventConsumer {
+        private final List<org.wso2.siddhi.core.event.Event[]> batches =
+                new ArrayList<org.wso2.siddhi.core.event.Event[]>();
+        private final List<org.wso2.siddhi.core.event.Event> singleEvents =
+                new ArrayList<org.wso2.siddhi.core.event.Event>();
+        private final int failingIndex;
+        private int processedEvents;
+
+        private RecordingSiddhiConsumer(int failingIndex) {
+            this.failingIndex = failingIndex;
+        }
+
+        @Override
+        public String getStreamId() {
+            return streamDefinition.getStreamId();
+        }
+
+        @Override
+        public void consumeEvents(org.wso2.siddhi.core.event.Event[] events) {
+            batches.add(events);
+            for (int i = 0; i < events.length; i++) {
+                if (i == failingIndex) {
+                    throw new IllegalStateException("Failed to process event " + i);
+                }
+                processedEvents++;
+            }
+        }
+
+        @Override
+        public void consumeEvent(org.wso2.siddhi.core.event.Event event) {
+            singleEvents.add(event);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    private class RecordingEventConsumer implements WSO2EventConsumer {
+        final List<Event> events = new ArrayList<Event>();
+        private final int failingIndex;
+        private int received;
+
+        private RecordingEventConsumer(int failingIndex) {
+            this.failingIndex = failingIndex;
+        }
+
+        @Override
+        public String getStreamId() {
+            return streamDefinition.getStreamId();
+        }
+
+        @Override
+        public void onEvent(Event event) {
+            if (received++ == failingIndex) {
+                throw new IllegalStateException("Failed to process event " + event);
+            }
+            events.add(event);
+        }
+
+        @Override
+        public void onAddDefinition(StreamDefinition definition) {
+        }
+
+        @Override
+        public void onRemoveDefinition(StreamDefinition definition) {
+        }
+    }
+
+    private class RecordingListConsumer extends RecordingEventConsumer implements WSO2EventListConsumer {
+        private final List<List<Event>> batches = new ArrayList<List<Event>>();
+        private final List<Event> singleEvents = new ArrayList<Event>();
+        private final boolean failing;
+
+        private RecordingListConsumer(boolean failing) {
+            super(-1);
+            this.failing = failing;
+        }
+
+        @Override
+        public void onEvent(Event event) {
+            singleEvents.add(event);
+        }
+
+        @Override
+        public void onEventList(List<Event> events) {
+            batches.add(events);
+            if (failing) {
+                throw new IllegalStateException("Failed to process the events");
+            }
+        }
+    }
+}
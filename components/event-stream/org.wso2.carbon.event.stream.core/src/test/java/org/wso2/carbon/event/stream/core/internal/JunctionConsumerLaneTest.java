@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.event.stream.core.internal;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Test;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.event.stream.core.DeliveryLaneConfiguration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class JunctionConsumerLaneTest {
+    private static final String STREAM_ID = "org.wso2.test.Stream:1.0.0";
+    private static final long TIMEOUT = 5000;
+
+    @After
+    public void shutdownSharedWorkers() throws InterruptedException {
+        Assert.assertTrue(JunctionConsumerLane.shutdownSharedWorkers(TIMEOUT));
+    }
+
+    @Test
+    public void testSharedWorkerDeliversInOrder() throws InterruptedException {
+        RecordingConsumer consumer = new RecordingConsumer();
+        JunctionConsumerLane lane = createLane(consumer, 4, DeliveryLaneConfiguration.OverflowPolicy.BLOCK, 0, false);
+        for (int i = 0; i < 1000; i++) {
+            lane.consume(createBatch(i));
+        }
+        consumer.awaitDelivered(1000);
+        Assert.assertEquals(sequence(0, 1000), consumer.getDelivered());
+    }
+
+    @Test
+    public void testDedicatedWorkerDeliversInOrder() throws InterruptedException {
+        RecordingConsumer consumer = new RecordingConsumer();
+        JunctionConsumerLane lane = createLane(consumer, 4, DeliveryLaneConfiguration.OverflowPolicy.BLOCK, 0, true);
+        for (int i = 0; i < 1000; i++) {
+            lane.consume(createBatch(i));
+        }
+        lane.close();
+        Assert.assertTrue(lane.awaitTermination(TIMEOUT));
+        Assert.assertEquals(sequence(0, 1000), consumer.getDelivered());
+    }
+
+    @Test
+    public void testBlockPolicyWaitsForConsumer() throws InterruptedException {
+        RecordingConsumer consumer = new RecordingConsumer();
+        consumer.hold();
+        final JunctionConsumerLane lane = createLane(consumer, 2, DeliveryLaneConfiguration.OverflowPolicy.BLOCK, 0,
+                true);
+        lane.consume(createBatch(0));
+        consumer.awaitHeld();
+        lane.consume(createBatch(1));
+        lane.consume(createBatch(2));
+        Thread sender = send(lane, 3);
+        sender.join(200);
+        Assert.assertTrue("Sender did not wait for the full lane", sender.isAlive());
+        consumer.release();
+        sender.join(TIMEOUT);
+        Assert.assertFalse(sender.isAlive());
+        consumer.awaitDelivered(4);
+        Assert.assertEquals(sequence(0, 4), consumer.getDelivered());
+    }
+
+    @Test
+    public void testDropOldestPolicyDiscardsOldestBatches() throws InterruptedException {
+        RecordingConsumer consumer = new RecordingConsumer();
+        consumer.hold();
+        JunctionConsumerLane lane = createLane(consumer, 2, DeliveryLaneConfiguration.OverflowPolicy.DROP_OLDEST, 0,
+                true);
+        lane.consume(createBatch(0));
+        consumer.awaitHeld();
+        for (int i = 1; i < 5; i++) {
+            lane.consume(createBatch(i));
+        }
+        consumer.release();
+        consumer.awaitDelivered(3);
+        lane.close();
+        Assert.assertTrue(lane.awaitTermination(TIMEOUT));
+        Assert.assertEquals(Arrays.asList(0, 3, 4), consumer.getDelivered());
+    }
+
+    @Test
+    public void testSpillPolicyKeepsOrderBeyondCapacity() throws InterruptedException {
+        RecordingConsumer consumer = new RecordingConsumer();
+        consumer.hold();
+        JunctionConsumerLane lane = createLane(consumer, 2, DeliveryLaneConfiguration.OverflowPolicy.SPILL, 2, true);
+        lane.consume(createBatch(0));
+        consumer.awaitHeld();
+        for (int i = 1; i < 5; i++) {
+            lane.consume(createBatch(i));
+        }
+        // the ring and the overflow buffer are full, hence the next sender waits
+        Thread sender = send(lane, 5);
+        sender.join(200);
+        Assert.assertTrue("Sender did not wait for the full overflow buffer", sender.isAlive());
+        consumer.release();
+        sender.join(TIMEOUT);
+        consumer.awaitDelivered(6);
+        Assert.assertEquals(sequence(0, 6), consumer.getDelivered());
+    }
+
+    @Test
+    public void testClosedLaneDrainsQueuedBatches() throws InterruptedException {
+        RecordingConsumer consumer = new RecordingConsumer();
+        consumer.hold();
+        JunctionConsumerLane lane = createLane(consumer, 4, DeliveryLaneConfiguration.OverflowPolicy.BLOCK, 0, true);
+        lane.consume(createBatch(0));
+        consumer.awaitHeld();
+        lane.consume(createBatch(1));
+        lane.consume(createBatch(2));
+        lane.close();
+        // batches sent after the lane is closed are dropped
+        lane.consume(createBatch(3));
+        Assert.assertFalse(lane.awaitTermination(100));
+        consumer.release();
+        Assert.assertTrue(lane.awaitTermination(TIMEOUT));
+        Assert.assertEquals(sequence(0, 3), consumer.getDelivered());
+    }
+
+    @Test
+    public void testSharedWorkersDrainLanesOnShutdown() throws InterruptedException {
+        final RecordingConsumer consumer = new RecordingConsumer();
+        consumer.hold();
+        JunctionConsumerLane lane = createLane(consumer, 16, DeliveryLaneConfiguration.OverflowPolicy.BLOCK, 0,
+                false);
+        for (int i = 0; i < 10; i++) {
+            lane.consume(createBatch(i));
+        }
+        consumer.awaitHeld();
+        lane.close();
+        Thread releaser = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                consumer.release();
+            }
+        };
+        releaser.start();
+        Assert.assertTrue(JunctionConsumerLane.shutdownSharedWorkers(TIMEOUT));
+        Assert.assertEquals(sequence(0, 10), consumer.getDelivered());
+
+        // a lane used after the shutdown gets a new worker pool
+        RecordingConsumer laterConsumer = new RecordingConsumer();
+        JunctionConsumerLane laterLane = createLane(laterConsumer, 4, DeliveryLaneConfiguration.OverflowPolicy.BLOCK,
+                0, false);
+        laterLane.consume(createBatch(0));
+        laterConsumer.awaitDelivered(1);
+        Assert.assertEquals(Collections.singletonList(0), laterConsumer.getDelivered());
+    }
+
+    private static JunctionConsumerLane createLane(JunctionConsumer consumer, int capacity,
+                                                   DeliveryLaneConfiguration.OverflowPolicy overflowPolicy,
+                                                   int spillCapacity, boolean dedicatedWorker) {
+        return new JunctionConsumerLane(consumer, new DeliveryLaneConfiguration("testLane", capacity,
+                overflowPolicy, spillCapacity, dedicatedWorker), STREAM_ID);
+    }
+
+    private static EventBatch createBatch(int id) {
+        return new EventBatch(new Event(STREAM_ID, System.currentTimeMillis(), null, null, new Object[]{id}), null);
+    }
+
+    private static Thread send(final JunctionConsumerLane lane, final int id) {
+        Thread sender = new Thread() {
+            @Override
+            public void run() {
+                lane.consume(createBatch(id));
+            }
+        };
+        sender.start();
+        return sender;
+    }
+
+    private static List<Integer> sequence(int from, int to) {
+        List<Integer> sequence = new ArrayList<Integer>();
+        for (int i = from; i < to; i++) {
+            sequence.add(i);
+        }
+        return sequence;
+    }
+
+    /**
+     * Records the delivered batches, and can hold the delivery of the first batch until released.
+     */
+    private static class RecordingConsumer extends JunctionConsumer {
+        private final List<Integer> delivered = Collections.synchronizedList(new ArrayList<Integer>());
+        private final CountDownLatch held = new CountDownLatch(1);
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        @Override
+        public Object getConsumer() {
+            return this;
+        }
+
+        @Override
+        public void consume(EventBatch eventBatch) {
+            held.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.add((Integer) eventBatch.getEvent().getPayloadData()[0]);
+        }
+
+        void hold() {
+            gate = new CountDownLatch(1);
+        }
+
+        void awaitHeld() throws InterruptedException {
+            Assert.assertTrue(held.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        void awaitDelivered(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (delivered.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(count, delivered.size());
+        }
+
+        List<Integer> getDelivered() {
+            synchronized (delivered) {
+                return new ArrayList<Integer>(delivered);
+            }
+        }
+    }
+}